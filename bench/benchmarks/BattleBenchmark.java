@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.GamePiece;
+import model.Loc;
+import model.PieceType;
+import model.StrategoModel;
+import model.StrategoRules;
+
+/**
+ * Measures deciding battles, both the rule alone and the changes a battle
+ * makes to the model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class BattleBenchmark {
+
+    // Attackers and defenders of every pair of piece types
+    private GamePiece[] attackers;
+    private GamePiece[] defenders;
+
+    // Board and pieces of a battle that is set up again after it is fought
+    private StrategoModel model;
+    private GamePiece attacker;
+    private GamePiece defender;
+
+    /**
+     * Create the pieces and an empty board.
+     */
+    @Setup
+    public void setUp() {
+        PieceType[] types = PieceType.values();
+        attackers = new GamePiece[types.length * types.length];
+        defenders = new GamePiece[types.length * types.length];
+        for (int i = 0; i < attackers.length; i++) {
+            attackers[i] = new GamePiece(types[i / types.length], GamePiece.RED_TEAM);
+            defenders[i] = new GamePiece(types[i % types.length], GamePiece.BLUE_TEAM);
+        }
+
+        model = new StrategoModel();
+        model.getState().setPlacement(false);
+        attacker = new GamePiece(PieceType.MINER, GamePiece.RED_TEAM);
+        defender = new GamePiece(PieceType.BOMB, GamePiece.BLUE_TEAM);
+    }
+
+    /**
+     * Winner of a battle between every pair of piece types.
+     *
+     * @param blackhole Sink for the results.
+     */
+    @Benchmark
+    public void getBattleWinner(Blackhole blackhole) {
+        for (int i = 0; i < attackers.length; i++)
+            blackhole.consume(StrategoRules.getBattleWinner(attackers[i], defenders[i]));
+    }
+
+    /**
+     * A miner taking a bomb, including putting both pieces back.
+     *
+     * @return Winner's location.
+     */
+    @Benchmark
+    public Loc battle() {
+        model.setPiece(attacker, 45);
+        model.setPiece(defender, 44);
+        StrategoRules.battle(model, attacker, defender);
+        Loc loc = attacker.getLocation();
+        model.removePiece(attacker);
+        return loc;
+    }
+}
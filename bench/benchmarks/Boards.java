@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+import model.GamePiece;
+import model.PieceType;
+import model.Setups;
+import model.StrategoModel;
+
+/**
+ * Positions shared by the benchmarks. Every position is built from a fixed
+ * seed so that runs on different machines measure the same boards.
+ */
+final class Boards {
+
+    /**
+     * Seed of the random setups.
+     */
+    static final long SEED = 0x5EED;
+
+    private Boards() {
+    }
+
+    /**
+     * Build a position by name.
+     *
+     * @param name "empty" for the placement phase, "crowded" for two full
+     *             setups at the start of the game, or "scouts" for an open board
+     *             with a few scouts on each side.
+     * @return Model holding the position.
+     */
+    static StrategoModel create(String name) {
+        StrategoModel model = new StrategoModel();
+        SplittableRandom random = new SplittableRandom(SEED);
+        switch (name) {
+        case "empty":
+            return model;
+        case "crowded":
+            Setups.placeRandom(model, GamePiece.RED_TEAM, random);
+            Setups.placeRandom(model, GamePiece.BLUE_TEAM, random);
+            break;
+        case "scouts":
+            placeScouts(model, GamePiece.RED_TEAM, 9);
+            placeScouts(model, GamePiece.BLUE_TEAM, 0);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown board: " + name);
+        }
+        model.getState().setPlacement(false);
+        return model;
+    }
+
+    /**
+     * Put a flag guarded by bombs on the back row of a team and its scouts on
+     * open squares in front of them.
+     */
+    private static void placeScouts(StrategoModel model, boolean team, int backRow) {
+        int forward = backRow == 0 ? 1 : -1;
+        model.setPiece(new GamePiece(PieceType.FLAG, team), backRow * 10);
+        model.setPiece(new GamePiece(PieceType.BOMB, team), backRow * 10 + 1);
+        model.setPiece(new GamePiece(PieceType.BOMB, team), (backRow + forward) * 10);
+        for (int col = 1; col < 10; col++)
+            model.setPiece(new GamePiece(PieceType.SCOUT, team), (backRow + 3 * forward) * 10 + col);
+    }
+}
@@ -0,0 +1,153 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.GamePiece;
+import model.Loc;
+import model.PieceType;
+import network.MessageCodec;
+import network.StrategoPieceUpdate;
+
+/**
+ * Measures sending piece updates through the binary format of
+ * {@link MessageCodec} that the controller uses, and through object streams
+ * that stay open for the whole game, as the controller used to. Every turn
+ * sends a new message, so each write makes a new one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class MessageBenchmark {
+
+    // Writes after which the stream forgets the objects it has written, so
+    // that the benchmark does not run out of memory
+    private static final int RESET_INTERVAL = 4096;
+
+    private StrategoPieceUpdate move;
+    private int writes;
+
+    private ByteArrayOutputStream bytes;
+    private ObjectOutputStream output;
+
+    // A message written on its own stream, to read back
+    private byte[] serialized;
+
+    // Buffer for the binary format, and a move in it to read back
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+
+    /**
+     * Create the messages and the streams.
+     *
+     * @throws IOException If a stream cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        move = new StrategoPieceUpdate(Loc.of(6, 3), Loc.of(5, 3), GamePiece.RED_TEAM);
+        bytes = new ByteArrayOutputStream();
+        output = new ObjectOutputStream(bytes);
+
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(single)) {
+            out.writeObject(move);
+        }
+        serialized = single.toByteArray();
+
+        buffer = ByteBuffer.allocate(MessageCodec.MAX_MESSAGE_SIZE);
+        encoded = ByteBuffer.allocate(MessageCodec.MAX_MESSAGE_SIZE);
+        MessageCodec.write(encoded, move);
+        encoded.flip();
+    }
+
+    /**
+     * Encoding a move in the binary format.
+     *
+     * @return Bytes written.
+     */
+    @Benchmark
+    public int encodeMove() {
+        buffer.clear();
+        MessageCodec.write(buffer, new StrategoPieceUpdate(Loc.of(6, 3), Loc.of(5, 3), GamePiece.RED_TEAM));
+        return buffer.position();
+    }
+
+    /**
+     * Decoding a move in the binary format.
+     *
+     * @return The message read.
+     * @throws IOException If the bytes are not a valid message.
+     */
+    @Benchmark
+    public Object decodeMove() throws IOException {
+        encoded.rewind();
+        return MessageCodec.read(encoded);
+    }
+
+    /**
+     * Writing a move on an open stream, as each turn does.
+     *
+     * @return Bytes written.
+     * @throws IOException If the stream cannot be written.
+     */
+    @Benchmark
+    public int writeMove() throws IOException {
+        return write(new StrategoPieceUpdate(Loc.of(6, 3), Loc.of(5, 3), GamePiece.RED_TEAM));
+    }
+
+    /**
+     * Writing a placement on an open stream.
+     *
+     * @return Bytes written.
+     * @throws IOException If the stream cannot be written.
+     */
+    @Benchmark
+    public int writePlacement() throws IOException {
+        return write(new StrategoPieceUpdate(Loc.of(6, 3), PieceType.MARSHALL, GamePiece.RED_TEAM));
+    }
+
+    /**
+     * Reading a move from a new stream, including the stream header and class
+     * descriptors.
+     *
+     * @return The message read.
+     * @throws IOException            If the stream cannot be read.
+     * @throws ClassNotFoundException If the message class is missing.
+     */
+    @Benchmark
+    public Object readMove() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return input.readObject();
+        }
+    }
+
+    /**
+     * Write a message as the controller does and empty the buffer.
+     */
+    private int write(Object message) throws IOException {
+        bytes.reset();
+        output.writeObject(message);
+        if (++writes % RESET_INTERVAL == 0)
+            output.reset();
+        return bytes.size();
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.GamePiece;
+import model.Loc;
+import model.PieceType;
+import model.StrategoModel;
+
+/**
+ * Measures the model operations behind every message: setting pieces, checking
+ * whether the game is over and keeping locations in hash sets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class ModelBenchmark {
+
+    private StrategoModel model;
+    private GamePiece piece;
+    private int square;
+
+    // Locations of every square, made with the constructor and shared
+    private Loc[] newLocs;
+    private Loc[] sharedLocs;
+    private Set<Loc> set;
+
+    /**
+     * Build a full board and the locations.
+     */
+    @Setup
+    public void setUp() {
+        model = Boards.create("crowded");
+        piece = new GamePiece(PieceType.SCOUT, GamePiece.RED_TEAM);
+        square = 40;
+        model.setPiece(piece, square);
+
+        newLocs = new Loc[StrategoModel.ROWS * StrategoModel.COLS];
+        sharedLocs = new Loc[newLocs.length];
+        for (int sq = 0; sq < newLocs.length; sq++) {
+            newLocs[sq] = new Loc(sq / StrategoModel.COLS, sq % StrategoModel.COLS);
+            sharedLocs[sq] = Loc.of(sq);
+        }
+        set = new HashSet<>();
+    }
+
+    /**
+     * A scout moving one square back and forth across an empty row.
+     *
+     * @return Square the scout moved to.
+     */
+    @Benchmark
+    public int setPiece() {
+        square = square == 40 ? 41 : 40;
+        model.setPiece(piece, square);
+        return square;
+    }
+
+    /**
+     * Checking both teams for the end of the game.
+     *
+     * @return True if either team has lost.
+     */
+    @Benchmark
+    public boolean isGameOver() {
+        return model.isGameOver(GamePiece.RED_TEAM) || model.isGameOver(GamePiece.BLUE_TEAM);
+    }
+
+    /**
+     * Adding and finding every square with new locations.
+     *
+     * @return Number of locations found.
+     */
+    @Benchmark
+    public int locHashSetNew() {
+        return fillSet(newLocs);
+    }
+
+    /**
+     * Adding and finding every square with shared locations.
+     *
+     * @return Number of locations found.
+     */
+    @Benchmark
+    public int locHashSetShared() {
+        return fillSet(sharedLocs);
+    }
+
+    /**
+     * Add locations to the set and look up each one.
+     */
+    private int fillSet(Loc[] locs) {
+        set.clear();
+        for (Loc loc : locs)
+            set.add(loc);
+        int found = 0;
+        for (Loc loc : locs) {
+            if (set.contains(loc))
+                found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,134 @@
+package benchmarks;
+
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.Bitboard;
+import model.BoardState;
+import model.GamePiece;
+import model.Loc;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceType;
+import model.Setups;
+import network.Referee;
+import network.StrategoMessage;
+import network.StrategoPieceUpdate;
+import network.StrategoPlacementBatch;
+
+/**
+ * Measures how fast a game server's referee checks and applies moves.
+ *
+ * The setup records a game of random legal moves from two random setups. Each
+ * call replays it on a new referee: both setups, the start of the game and
+ * {@link #PLIES} moves, each followed by the end of the turn. The time is
+ * reported per move, with the setups shared out over the moves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class RefereeBenchmark {
+
+    /**
+     * Number of moves of the recorded game.
+     */
+    static final int PLIES = 200;
+
+    // Messages of the recorded game and the team that sent each
+    private final List<StrategoMessage> messages = new ArrayList<>();
+    private final List<Boolean> teams = new ArrayList<>();
+
+    /**
+     * Record a game that lasts at least {@link #PLIES} moves.
+     *
+     * @throws ProtocolException If the referee rejects a recorded move.
+     */
+    @Setup
+    public void setUp() throws ProtocolException {
+        for (long seed = Boards.SEED; !record(seed); seed++) {
+            messages.clear();
+            teams.clear();
+        }
+    }
+
+    /**
+     * Record a game from a seed.
+     *
+     * @return True if the game lasted {@link #PLIES} moves.
+     */
+    private boolean record(long seed) throws ProtocolException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Referee referee = new Referee((team, message) -> {
+        });
+        for (boolean team : new boolean[] { GamePiece.RED_TEAM, GamePiece.BLUE_TEAM }) {
+            PieceType[] army = Setups.randomArmy(random);
+            StrategoPlacementBatch batch = new StrategoPlacementBatch(team);
+            int next = 0;
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                if (Bitboard.inSetupZone(team, sq))
+                    batch.add(new StrategoPieceUpdate(Loc.of(sq), army[next++], team));
+            }
+            play(referee, team, batch);
+        }
+        StrategoMessage begin = new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, GamePiece.RED_TEAM);
+        play(referee, GamePiece.RED_TEAM, begin);
+        play(referee, GamePiece.BLUE_TEAM, begin);
+
+        BoardState state = referee.getModel().getState();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int ply = 0; ply < PLIES; ply++) {
+            boolean team = state.getTurn();
+            int count = MoveGenerator.generateAll(state, team, moves);
+            if (count == 0 || referee.isOver())
+                return false;
+            int move = moves[random.nextInt(count)];
+            play(referee, team, new StrategoPieceUpdate(Loc.of(Move.from(move)), Loc.of(Move.to(move)), team));
+            play(referee, team, new StrategoMessage(StrategoMessage.MessageType.END_OF_TURN, !team));
+        }
+        return !referee.isOver();
+    }
+
+    /**
+     * Hand a message to the referee and record it.
+     */
+    private void play(Referee referee, boolean team, StrategoMessage message) throws ProtocolException {
+        referee.handle(team, message);
+        messages.add(message);
+        teams.add(team);
+    }
+
+    /**
+     * Replay the recorded game on a new referee.
+     *
+     * @param blackhole Sink for the messages the referee sends.
+     * @return Number of moves made.
+     * @throws ProtocolException If the referee rejects a recorded move.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PLIES)
+    public int replay(Blackhole blackhole) throws ProtocolException {
+        Referee referee = new Referee((team, message) -> blackhole.consume(message));
+        for (int i = 0; i < messages.size(); i++)
+            referee.handle(teams.get(i), messages.get(i));
+        return referee.getPlies();
+    }
+}
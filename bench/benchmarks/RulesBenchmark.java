@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import controller.StrategoController;
+import model.GamePiece;
+import model.Loc;
+import model.MoveGenerator;
+import model.StrategoModel;
+
+/**
+ * Measures generating the moves of the pieces, which the controller does on
+ * every click.
+ *
+ * The move benchmarks ask for the moves of every square of the team, once
+ * through the set that the view uses and once through the move buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class RulesBenchmark {
+
+    @Param({ "empty", "crowded", "scouts" })
+    public String board;
+
+    private StrategoController controller;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    // Squares of red's pieces, or the setup zone while placing
+    private Loc[] squares;
+
+    /**
+     * Build the board and the pieces.
+     */
+    @Setup
+    public void setUp() {
+        StrategoModel model = Boards.create(board);
+        boolean placement = model.getState().isPlacement();
+        controller = new StrategoController(model, GamePiece.RED_TEAM);
+        controller.setPlacement(placement);
+
+        int count = 0;
+        Loc[] found = new Loc[StrategoModel.ROWS * StrategoModel.COLS];
+        for (int sq = 0; sq < found.length; sq++) {
+            GamePiece piece = model.getPiece(sq);
+            boolean setupZone = sq >= 60 && !controller.isLake(Loc.of(sq));
+            if (placement ? setupZone : piece != null && piece.getTeam() == GamePiece.RED_TEAM)
+                found[count++] = Loc.of(sq);
+        }
+        squares = new Loc[count];
+        System.arraycopy(found, 0, squares, 0, count);
+    }
+
+    /**
+     * Moves of every piece as sets of locations.
+     *
+     * @param blackhole Sink for the results.
+     */
+    @Benchmark
+    public void getMovesSet(Blackhole blackhole) {
+        boolean fromBin = controller.isPlacement();
+        for (Loc loc : squares) {
+            Set<Loc> set = controller.getMoves(fromBin ? null : loc, fromBin);
+            blackhole.consume(set);
+        }
+    }
+
+    /**
+     * Moves of every piece written to a buffer.
+     *
+     * @return Total number of moves.
+     */
+    @Benchmark
+    public int getMovesBuffer() {
+        boolean fromBin = controller.isPlacement();
+        int total = 0;
+        for (Loc loc : squares)
+            total += controller.getMoves(fromBin ? null : loc, fromBin, moves);
+        return total;
+    }
+}
@@ -0,0 +1,288 @@
+package benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import main.Tournament;
+import model.GamePiece;
+import model.Loc;
+import model.PieceType;
+import network.GameServer;
+import network.MessageCodec;
+import network.StrategoMessage;
+import network.StrategoPieceUpdate;
+import network.ThreadedGameServer;
+
+/**
+ * Measures how the game servers hold up under many connections. It is a plain
+ * program rather than a JMH benchmark since what it measures is the cost of
+ * the connections a server holds, not of one operation.
+ *
+ * A server is started in this process with one of three ways of serving
+ * connections: the selector threads of {@link GameServer}, or a platform or a
+ * virtual thread per connection with {@link ThreadedGameServer}. It is then
+ * given a number of idle games, whose players join and wait, and a number of
+ * active games, whose players place and remove a piece in turn as fast as the
+ * server passes the messages on. The program reports the time to connect, the
+ * threads and heap the process uses with all games open, and the rate and
+ * latency of the messages of the active games. The players are plain blocking
+ * sockets, so the threads counted are the server's, while the heap also holds
+ * the players' small buffers, which are the same in every mode.
+ *
+ * <pre>
+ * java -cp bench-bin:bin benchmarks.ServerLoad -m virtual -i 10000 -a 1000
+ * </pre>
+ *
+ * Every game takes four sockets in this process, so the limit of open files
+ * must be raised for large counts, e.g. {@code ulimit -n 50000}.
+ *
+ * Usage: {@code ServerLoad [-m selector|platform|virtual] [-i idle] [-a active]
+ * [-r rounds] [-c clients]}
+ */
+public class ServerLoad {
+
+    // Square of the piece each team places and removes in active games
+    private static final Loc RED_SQUARE = Loc.of(6, 0);
+    private static final Loc BLUE_SQUARE = Loc.of(3, 0);
+
+    /**
+     * Run the measurement.
+     *
+     * @param args Command line options, see the class description.
+     * @throws Exception If the server cannot be started or a game fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String mode = "virtual";
+        int idle = 10000;
+        int active = 1000;
+        int rounds = 100;
+        int clients = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                switch (args[i]) {
+                case "-m":
+                    mode = args[i + 1];
+                    if (!mode.equals("selector") && !mode.equals("platform") && !mode.equals("virtual"))
+                        throw new IllegalArgumentException("Unknown mode: " + mode);
+                    break;
+                case "-i":
+                    idle = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-a":
+                    active = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-r":
+                    rounds = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-c":
+                    clients = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: ServerLoad [-m selector|platform|virtual] [-i idle] [-a active] [-r rounds]"
+                    + " [-c clients]");
+            if (e.getMessage() != null)
+                System.err.println(e.getMessage());
+            System.exit(1);
+        }
+
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeap();
+        Closeable server;
+        int port;
+        if (mode.equals("selector")) {
+            GameServer selector = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            server = selector;
+            port = selector.getPort();
+        } else {
+            ThreadedGameServer threaded = new ThreadedGameServer(0, mode.equals("virtual"));
+            server = threaded;
+            port = threaded.getPort();
+            if (mode.equals("virtual") && !threaded.isVirtual())
+                System.out.println("Virtual threads are not available, using platform threads");
+        }
+
+        List<Game> games = new ArrayList<>();
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < idle + active; i++)
+                games.add(new Game(port));
+            long connect = System.nanoTime() - start;
+            System.out.printf(Locale.ROOT, "%s: %d games connected in %.2f s%n", mode, games.size(), connect / 1e9);
+            System.out.printf(Locale.ROOT, "  threads %d, heap %.1f MB (%d bytes per game)%n",
+                    ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore,
+                    (usedHeap() - heapBefore) / 1e6, games.isEmpty() ? 0 : (usedHeap() - heapBefore) / games.size());
+
+            if (active > 0)
+                play(games.subList(idle, idle + active), rounds, clients);
+        } finally {
+            for (Game game : games)
+                game.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Play the active games on a number of client threads and report the
+     * message rate and latency.
+     */
+    private static void play(List<Game> games, int rounds, int clients) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Tournament.Histogram>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            List<Game> share = new ArrayList<>();
+            for (int i = c; i < games.size(); i += clients)
+                share.add(games.get(i));
+            results.add(executor.submit(() -> {
+                Tournament.Histogram latency = new Tournament.Histogram();
+                for (int r = 0; r < rounds; r++) {
+                    for (Game game : share)
+                        game.round(latency);
+                }
+                return latency;
+            }));
+        }
+        Tournament.Histogram latency = new Tournament.Histogram();
+        for (Future<Tournament.Histogram> result : results)
+            latency.merge(result.get());
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        System.out.printf(Locale.ROOT, "  %d messages in %.2f s, %.0f messages/s%n", latency.getCount(),
+                elapsed / 1e9, latency.getCount() * 1e9 / elapsed);
+        System.out.printf(Locale.ROOT, "  latency mean %.1f us, p50 < %.1f us, p99 < %.1f us%n",
+                latency.getMean() / 1e3, latency.getPercentile(0.5) / 1e3, latency.getPercentile(0.99) / 1e3);
+    }
+
+    /**
+     * Get the heap in use after a garbage collection.
+     */
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A game of two connected players.
+     */
+    private static final class Game implements Closeable {
+
+        private final Player red;
+        private final Player blue;
+
+        /**
+         * Connect both players and wait until the server has paired them.
+         */
+        Game(int port) throws IOException {
+            red = new Player(port, GamePiece.RED_TEAM);
+            blue = new Player(port, GamePiece.BLUE_TEAM);
+            red.receive();
+            blue.receive();
+        }
+
+        /**
+         * Have each player place a piece and remove it again, timing every
+         * message from being sent to being received.
+         */
+        void round(Tournament.Histogram latency) throws IOException {
+            pass(red, blue, new StrategoPieceUpdate(RED_SQUARE, PieceType.SCOUT, GamePiece.RED_TEAM), latency);
+            pass(blue, red, new StrategoPieceUpdate(BLUE_SQUARE, PieceType.SCOUT, GamePiece.BLUE_TEAM), latency);
+            pass(red, blue, remove(RED_SQUARE, GamePiece.RED_TEAM), latency);
+            pass(blue, red, remove(BLUE_SQUARE, GamePiece.BLUE_TEAM), latency);
+        }
+
+        /**
+         * Send a message from one player to the other.
+         */
+        private static void pass(Player from, Player to, StrategoMessage message, Tournament.Histogram latency)
+                throws IOException {
+            long start = System.nanoTime();
+            from.send(message);
+            to.receive();
+            latency.record(System.nanoTime() - start);
+        }
+
+        /**
+         * Create the message that removes a piece.
+         */
+        private static StrategoPieceUpdate remove(Loc from, boolean team) {
+            StrategoPieceUpdate update = new StrategoPieceUpdate(from);
+            update.setTeam(team);
+            return update;
+        }
+
+        /**
+         * Disconnect both players.
+         */
+        @Override
+        public void close() {
+            red.close();
+            blue.close();
+        }
+    }
+
+    /**
+     * One player's connection to the server.
+     */
+    private static final class Player implements Closeable {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        /**
+         * Connect, exchange headers and announce the team.
+         */
+        Player(int port, boolean team) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64));
+            MessageCodec.writeHeader(out);
+            send(new StrategoMessage(StrategoMessage.MessageType.BEGIN_PLACEMENT, team));
+            MessageCodec.readHeader(in);
+        }
+
+        /**
+         * Send a message.
+         */
+        void send(StrategoMessage message) throws IOException {
+            MessageCodec.write(out, message);
+            out.flush();
+        }
+
+        /**
+         * Wait for a message.
+         */
+        StrategoMessage receive() throws IOException {
+            return MessageCodec.read(in);
+        }
+
+        /**
+         * Close the connection.
+         */
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
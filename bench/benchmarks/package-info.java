@@ -0,0 +1,24 @@
+/**
+ * JMH benchmarks of the rules and the model.
+ *
+ * The benchmarks are kept out of the game's source folder so that the game does
+ * not depend on JMH. To run them, compile the game's classes and then this
+ * folder with jmh-core and jmh-generator-annprocess on the class path, which
+ * generates the benchmark runners:
+ *
+ * <pre>
+ * javac -d bin src/model/*.java src/controller/*.java src/network/*.java ...
+ * javac -d bench-bin -cp bin:jmh-core.jar:jmh-generator-annprocess.jar bench/benchmarks/*.java
+ * java -cp bench-bin:bin:jmh-core.jar:jopt-simple.jar:commons-math3.jar org.openjdk.jmh.Main
+ * </pre>
+ *
+ * Every benchmark forks two JVMs with a fixed heap, warms up for five seconds
+ * and measures for five, and every board is built from a fixed seed, so that
+ * results on different machines can be compared. Pass a regular expression to
+ * run some of them, e.g. {@code RulesBenchmark.getMoves}, and {@code -prof gc}
+ * to see allocation.
+ *
+ * {@link benchmarks.ServerLoad} is a plain program rather than a benchmark. It
+ * compares the ways the game servers serve connections under many open games.
+ */
+package benchmarks;
@@ -0,0 +1,223 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import controller.StrategoController;
+import model.BeliefTracker;
+import model.GamePiece;
+import model.Loc;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceType;
+import model.Setups;
+import network.StrategoMessage;
+
+/**
+ * A computer opponent that connects to another player over the network in the
+ * same way as the board scene does, so a human can play against it without any
+ * change to the messages that are sent. The computer places its pieces at
+ * random, ends the placement phase after the same time as the other player and
+ * picks its moves with a {@link SearchEngine}. By default this is
+ * {@link ISMCTS}, which only uses what the computer is allowed to see of the
+ * other player's pieces.
+ *
+ * Incoming messages and the computer's own moves are handled on a single
+ * thread. Changes to the model that the computer makes itself are sent to the
+ * other player, while changes that came from the other player are not.
+ */
+public class AIPlayer implements Observer {
+
+    /**
+     * Default time budget for each move in milliseconds.
+     */
+    public static final long DEFAULT_MOVE_TIME = 1000;
+
+    private StrategoController controller;
+    private boolean team;
+    private long moveTime;
+
+    private ScheduledExecutorService executor;
+    private SearchEngine search;
+
+    // True while a message from the other player is applied to the model
+    private boolean remote;
+
+    // Last move the computer played
+    private volatile int lastMove = Move.NONE;
+
+    /**
+     * Create a computer player and start connecting to the other player.
+     *
+     * @param team     True for blue, false for red.
+     * @param server   True for server, false for client.
+     * @param hostName Name of host.
+     * @param port     Port number.
+     */
+    public AIPlayer(boolean team, boolean server, String hostName, int port) {
+        this(team, server, hostName, port, new ISMCTS(), DEFAULT_MOVE_TIME);
+    }
+
+    /**
+     * Create a computer player and start connecting to the other player.
+     *
+     * @param team     True for blue, false for red.
+     * @param server   True for server, false for client.
+     * @param hostName Name of host.
+     * @param port     Port number.
+     * @param search   Engine that picks the computer's moves.
+     * @param moveTime Time budget for each move in milliseconds.
+     */
+    public AIPlayer(boolean team, boolean server, String hostName, int port, SearchEngine search, long moveTime) {
+        this.team = team;
+        this.search = search;
+        this.moveTime = moveTime;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Stratego AI");
+            thread.setDaemon(true);
+            return thread;
+        });
+        controller = new StrategoController(team, server, hostName, port, this::dispatch);
+        search.setBeliefs(new BeliefTracker(controller.getModel(), team));
+        controller.getModel().addObserver(this);
+    }
+
+    /**
+     * Returns the controller used by the computer player.
+     *
+     * @return The controller of the computer player.
+     */
+    public StrategoController getController() {
+        return controller;
+    }
+
+    /**
+     * Returns the engine that picks the computer's moves, which tells how many
+     * positions the last search looked at and how fast.
+     *
+     * @return The search engine of the computer player.
+     */
+    public SearchEngine getSearch() {
+        return search;
+    }
+
+    /**
+     * Returns the last move the computer played.
+     *
+     * @return The move, or {@link Move#NONE} if it has not moved yet.
+     */
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Apply a message from the other player on the computer's thread.
+     *
+     * @param task Task that applies the message to the model.
+     */
+    private void dispatch(Runnable task) {
+        executor.execute(() -> {
+            remote = true;
+            try {
+                task.run();
+            } finally {
+                remote = false;
+            }
+        });
+    }
+
+    /**
+     * Send the computer's own changes to the other player and react to the
+     * messages that move the game along.
+     *
+     * @param o   Model instance
+     * @param arg Message describing the change
+     */
+    @Override
+    public void update(Observable o, Object arg) {
+        StrategoMessage msg = (StrategoMessage) arg;
+        if (!remote) {
+            controller.sendMessage(msg);
+        }
+
+        if (msg.isBeginning()) {
+            executor.execute(this::placePieces);
+        } else if (msg.isGameStart()) {
+            // The other player starts its game once it receives this message
+            // from us, and sends it back once more when it does
+            if (controller.isPlacement()) {
+                controller.setPlacement(false);
+                controller.sendMessage(new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, msg.getTeam()));
+                if (msg.getTeam() == team)
+                    executor.execute(this::play);
+            }
+        } else if (msg.isEndOfTurn()) {
+            if (msg.getTeam() == team) {
+                executor.execute(this::play);
+            } else if (!remote && controller.isGameOver()) {
+                controller.sendMessage(new StrategoMessage(StrategoMessage.MessageType.GAME_OVER, team));
+                close();
+            }
+        } else if (msg.isGameOver()) {
+            close();
+        }
+    }
+
+    /**
+     * Place a full set of pieces at random in the setup zone.
+     */
+    private void placePieces() {
+        PieceType[] army = Setups.randomArmy(new SplittableRandom());
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = controller.getMoves(null, true, moves);
+        List<GamePiece> pieces = new ArrayList<>();
+        List<Loc> locs = new ArrayList<>();
+        for (int i = 0; i < count && i < army.length; i++) {
+            pieces.add(new GamePiece(army[i], team));
+            locs.add(Loc.of(Move.to(moves[i])));
+        }
+        controller.placePieces(pieces, locs);
+        executor.schedule(this::endPlacement, StrategoController.PLACEMENT_PHASE_TIME, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Tell the other player that the placement phase is over, unless it already
+     * told us. Red moves first.
+     */
+    private void endPlacement() {
+        if (controller.isPlacement())
+            controller.sendMessage(new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, GamePiece.RED_TEAM));
+    }
+
+    /**
+     * Search for the best move and play it. The computer gives up if it has no
+     * legal move.
+     */
+    private void play() {
+        if (controller.isPlacement() || controller.getModel().getState().getTurn() != team)
+            return;
+        int move = search.search(controller.getModel().getState(), moveTime);
+        if (move == Move.NONE) {
+            controller.sendMessage(new StrategoMessage(StrategoMessage.MessageType.GAME_OVER, !team));
+            close();
+            return;
+        }
+        lastMove = move;
+        controller.movePiece(Loc.of(Move.from(move)), Loc.of(Move.to(move)));
+    }
+
+    /**
+     * Disconnect from the other player and stop the computer's thread.
+     */
+    public void close() {
+        controller.closeAllSockets();
+        executor.shutdown();
+        search.close();
+    }
+}
@@ -0,0 +1,29 @@
+package ai;
+
+import model.BoardState;
+import model.Move;
+
+/**
+ * A player that picks moves for a game played without a user interface or
+ * network connection.
+ */
+public interface Agent {
+
+    /**
+     * Pick a move for the team whose turn it is. The board holds the type of
+     * every piece, but an agent that plays fair only looks at the enemy pieces
+     * that have been revealed.
+     *
+     * @param state Board to move on. It must be the same when this method
+     *              returns.
+     * @return Legal move for the team to move, or {@link Move#NONE} if there is
+     *         none.
+     */
+    int chooseMove(BoardState state);
+
+    /**
+     * Release any threads held by the agent.
+     */
+    default void close() {
+    }
+}
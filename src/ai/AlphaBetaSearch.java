@@ -0,0 +1,411 @@
+package ai;
+
+import model.Bitboard;
+import model.BoardState;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceType;
+import model.StrategoModel;
+
+/**
+ * Iterative deepening alpha-beta search over a {@link BoardState}. Moves are
+ * made and taken back on the board that is searched, so the board is left as
+ * it was when the search returns.
+ *
+ * Each iteration searches one ply deeper than the last, trying the best move
+ * stored in the transposition table first, then attacks ordered by the value of
+ * the attacked piece and finally quiet moves, with killer moves ahead of the
+ * rest. The search stops when the time budget runs out and the move of the
+ * last completed iteration is played. At the leaves attacks are searched until
+ * the position is quiet.
+ *
+ * The evaluation is the material balance with a small bonus for pieces that
+ * have advanced towards the enemy. Capturing the flag or leaving the enemy
+ * without a movable piece wins.
+ */
+public class AlphaBetaSearch implements SearchEngine {
+
+    /**
+     * Score of a won position. Wins found sooner score higher.
+     */
+    public static final int WIN = 1000000;
+
+    /**
+     * Deepest iteration that is searched.
+     */
+    public static final int MAX_DEPTH = 32;
+
+    // Deepest ply reached by the search, including attacks at the leaves
+    private static final int MAX_PLY = 64;
+
+    private static final int INFINITY = WIN + 1;
+
+    // Check the clock every this many nodes, plus one
+    private static final int CHECK_INTERVAL = 1023;
+
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int ATTACK_SCORE = 1 << 20;
+    private static final int KILLER_SCORE = 1 << 10;
+
+    private final TranspositionTable table;
+
+    // Move lists and ordering scores for each ply
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+
+    // Two quiet moves per ply that caused a cutoff
+    private final int[][] killers = new int[MAX_PLY][2];
+
+    private BoardState state;
+    private long deadline;
+    private boolean aborted;
+    private long nodes;
+    private int rootMove;
+
+    // Results of the last search
+    private int bestMove = Move.NONE;
+    private int bestScore;
+    private int completedDepth;
+    private long elapsed;
+
+    /**
+     * Create a search with a transposition table of 2^tableBits entries.
+     *
+     * @param tableBits Log2 of the number of transposition table entries.
+     */
+    public AlphaBetaSearch(int tableBits) {
+        table = new TranspositionTable(tableBits);
+    }
+
+    /**
+     * Find the best move for the team whose turn it is, searching as deep as the
+     * time budget allows.
+     *
+     * @param state  Board to search. It is restored before this method returns.
+     * @param millis Time budget in milliseconds.
+     * @return Best move found, or {@link Move#NONE} if the team cannot move.
+     */
+    @Override
+    public int search(BoardState state, long millis) {
+        return search(state, MAX_DEPTH, millis);
+    }
+
+    /**
+     * Find the best move for the team whose turn it is.
+     *
+     * @param state    Board to search. It is restored before this method returns.
+     * @param maxDepth Deepest iteration to search, at most {@link #MAX_DEPTH}.
+     * @param millis   Time budget in milliseconds.
+     * @return Best move found, or {@link Move#NONE} if the team cannot move.
+     */
+    public int search(BoardState state, int maxDepth, long millis) {
+        this.state = state;
+        long start = System.nanoTime();
+        deadline = start + millis * 1000000L;
+        aborted = false;
+        nodes = 0;
+        bestMove = Move.NONE;
+        bestScore = 0;
+        completedDepth = 0;
+        for (int[] killer : killers) {
+            killer[0] = Move.NONE;
+            killer[1] = Move.NONE;
+        }
+
+        for (int d = 1; d <= Math.min(maxDepth, MAX_DEPTH); d++) {
+            rootMove = Move.NONE;
+            int score = negamax(d, 0, -INFINITY, INFINITY);
+            if (aborted)
+                break;
+            bestMove = rootMove;
+            bestScore = score;
+            completedDepth = d;
+            // Nothing changes once a forced win or loss has been found
+            if (Math.abs(score) >= WIN - MAX_PLY)
+                break;
+        }
+        if (bestMove == Move.NONE) {
+            // Out of time before the first iteration completed
+            int count = MoveGenerator.generateAll(state, state.getTurn(), moves[0]);
+            if (count > 0)
+                bestMove = moves[0][0];
+        }
+        this.state = null;
+        elapsed = System.nanoTime() - start;
+        return bestMove;
+    }
+
+    /**
+     * Get the score of the move returned by the last search, from the point of
+     * view of the team that was moving.
+     *
+     * @return Score of the best move.
+     */
+    public int getScore() {
+        return bestScore;
+    }
+
+    /**
+     * Get the depth of the last completed iteration of the last search.
+     *
+     * @return Search depth in plies.
+     */
+    public int getDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Get the number of positions visited by the last search.
+     *
+     * @return Node count.
+     */
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the speed of the last search.
+     *
+     * @return Positions visited per second.
+     */
+    @Override
+    public double getNodesPerSecond() {
+        return elapsed == 0 ? 0 : nodes * 1e9 / elapsed;
+    }
+
+    /**
+     * Removes everything learned by earlier searches.
+     */
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Search a position to a depth.
+     *
+     * @return Score from the point of view of the team to move.
+     */
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (timeUp())
+            return 0;
+        boolean team = state.getTurn();
+        if (state.hasLost(team))
+            return -WIN + ply;
+        if (state.hasLost(!team))
+            return WIN - ply;
+        if (depth <= 0 || ply >= MAX_PLY - 1)
+            return quiesce(ply, alpha, beta);
+
+        long hash = state.getHash();
+        long entry = table.probe(hash);
+        int ttMove = Move.NONE;
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            // The root always searches so that it has a move to play
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateAll(state, team, list);
+        if (count == 0)
+            return -WIN + ply;
+        scoreMoves(ply, count, ttMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int found = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            boolean attack = state.isOccupied(Move.to(move));
+            state.makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            state.unmakeMove();
+            if (aborted)
+                return 0;
+            if (score > best) {
+                best = score;
+                found = move;
+                if (ply == 0)
+                    rootMove = move;
+            }
+            if (score > alpha)
+                alpha = score;
+            if (alpha >= beta) {
+                if (!attack && killers[ply][0] != move) {
+                    killers[ply][1] = killers[ply][0];
+                    killers[ply][0] = move;
+                }
+                break;
+            }
+        }
+
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(hash, found, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Search only attacks until the position is quiet, so that the evaluation is
+     * not taken in the middle of an exchange.
+     *
+     * @return Score from the point of view of the team to move.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        boolean team = state.getTurn();
+        int standPat = evaluate(team);
+        if (standPat >= beta || ply >= MAX_PLY - 1)
+            return standPat;
+        if (standPat > alpha)
+            alpha = standPat;
+
+        int[] list = moves[ply];
+        int all = MoveGenerator.generateAll(state, team, list);
+        int count = 0;
+        for (int i = 0; i < all; i++) {
+            if (state.isOccupied(Move.to(list[i])))
+                list[count++] = list[i];
+        }
+        scoreMoves(ply, count, Move.NONE);
+
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            state.makeMove(move);
+            int score = -negamax(0, ply + 1, -beta, -alpha);
+            state.unmakeMove();
+            if (aborted)
+                return 0;
+            if (score >= beta)
+                return score;
+            if (score > alpha)
+                alpha = score;
+        }
+        return alpha;
+    }
+
+    /**
+     * Score the moves of a ply for ordering: the transposition table move first,
+     * then attacks on the most valuable pieces by the least valuable attackers,
+     * then killer moves.
+     */
+    private void scoreMoves(int ply, int count, int ttMove) {
+        int[] list = moves[ply];
+        int[] score = scores[ply];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int victim = state.get(Move.to(move));
+            if (move == ttMove) {
+                score[i] = TT_MOVE_SCORE;
+            } else if (victim != 0) {
+                int attacker = state.get(Move.from(move));
+                score[i] = ATTACK_SCORE + victimValue(victim) * 16 - BoardState.typeOf(attacker).getValue() / 16;
+            } else if (move == killers[ply][0] || move == killers[ply][1]) {
+                score[i] = KILLER_SCORE;
+            } else {
+                score[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Get the value of an attacked piece for move ordering. The flag is worth the
+     * most, since taking it wins.
+     */
+    private static int victimValue(int code) {
+        PieceType type = BoardState.typeOf(code);
+        return type == PieceType.FLAG ? 1000 : type.getValue();
+    }
+
+    /**
+     * Swap the best scoring of the remaining moves into place and return it.
+     */
+    private int pickMove(int ply, int index, int count) {
+        int[] list = moves[ply];
+        int[] score = scores[ply];
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (score[i] > score[best])
+                best = i;
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int s = score[best];
+        score[best] = score[index];
+        score[index] = s;
+        return move;
+    }
+
+    /**
+     * Evaluate a quiet position.
+     *
+     * @return Score from the point of view of the team.
+     */
+    private int evaluate(boolean team) {
+        int score = state.getMaterial(team) - state.getMaterial(!team);
+        return score + advancement(team) - advancement(!team);
+    }
+
+    /**
+     * Sum of the number of rows each movable piece of a team has advanced from
+     * its own back row.
+     */
+    private int advancement(boolean team) {
+        int total = 0;
+        for (int word = 0; word < 2; word++) {
+            long bits = state.getOccupied(team, word);
+            while (bits != 0) {
+                int sq = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                PieceType type = BoardState.typeOf(state.get(sq));
+                if (type == PieceType.FLAG || type == PieceType.BOMB)
+                    continue;
+                int row = Bitboard.row(sq);
+                // Red starts at the bottom of the board and blue at the top
+                total += team ? row : StrategoModel.ROWS - 1 - row;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Checks the clock every so often and sets the aborted flag once the time
+     * budget has run out.
+     */
+    private boolean timeUp() {
+        if ((++nodes & CHECK_INTERVAL) == 0 && System.nanoTime() - deadline > 0)
+            aborted = true;
+        return aborted;
+    }
+
+    /**
+     * Convert a win or loss score relative to the root to one relative to the
+     * current position before storing it.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY)
+            return score + ply;
+        if (score <= -WIN + MAX_PLY)
+            return score - ply;
+        return score;
+    }
+
+    /**
+     * Convert a stored win or loss score back to one relative to the root.
+     */
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY)
+            return score - ply;
+        if (score <= -WIN + MAX_PLY)
+            return score + ply;
+        return score;
+    }
+}
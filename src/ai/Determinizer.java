@@ -0,0 +1,262 @@
+package ai;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import model.BeliefTracker;
+import model.Bitboard;
+import model.BoardState;
+import model.PieceType;
+
+/**
+ * Samples full information boards that are consistent with what one team knows
+ * about a position. The team knows where every enemy piece is and the type of
+ * every revealed enemy piece. Since every piece that leaves the board is
+ * revealed in battle, it also knows how many of each type the enemy has left,
+ * and it knows that an enemy piece that has moved is not a bomb or flag.
+ *
+ * Without beliefs, each sample deals the types of the unrevealed enemy pieces
+ * out at random, uniformly among the deals that satisfy these constraints. With
+ * a {@link BeliefTracker}, the pieces are visited in random order and each one
+ * draws a type from the types left in the pool, weighted by the probability the
+ * tracker gives it.
+ */
+public class Determinizer {
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    // Deals tried before a piece may get a type it was believed not to have
+    private static final int MAX_ATTEMPTS = 16;
+
+    private final BoardState root;
+
+    // Unrevealed enemy squares, pieces that have moved first
+    private final int[] squares = new int[Bitboard.SQUARES];
+    private int unknown;
+    private int moved;
+
+    // Codes of the enemy pieces that could be on the unrevealed squares,
+    // immovable pieces first
+    private final int[] codes = new int[Bitboard.SQUARES];
+    private int immovable;
+
+    // Pool count of each type, and the counts left while a sample is dealt
+    private final int[] poolCounts = new int[BoardState.TYPES];
+    private final int[] left = new int[BoardState.TYPES];
+
+    // Type probabilities for each unrevealed square, or null for uniform deals
+    private final double[] weights;
+    private final boolean enemy;
+    private final int[] order = new int[Bitboard.SQUARES];
+
+    // Number of types each unknown piece could have, and the type it was dealt
+    private final int[] options = new int[Bitboard.SQUARES];
+    private final int[] dealt = new int[Bitboard.SQUARES];
+
+    /**
+     * Create a determinizer for a position as seen by a team.
+     *
+     * @param root Position to sample from. It must not change while samples are
+     *             taken.
+     * @param team Team whose knowledge is used.
+     */
+    public Determinizer(BoardState root, boolean team) {
+        this(root, team, null);
+    }
+
+    /**
+     * Create a determinizer for a position as seen by a team, weighting the
+     * types of the enemy pieces by a team's beliefs. The beliefs are copied, so
+     * the tracker may change while samples are taken.
+     *
+     * @param root    Position to sample from. It must not change while samples
+     *                are taken.
+     * @param team    Team whose knowledge is used.
+     * @param beliefs Beliefs of the team about the position, or null.
+     */
+    public Determinizer(BoardState root, boolean team, BeliefTracker beliefs) {
+        this.root = root;
+        this.enemy = !team;
+
+        // Split the unrevealed enemy squares into moved and unmoved
+        for (int pass = 0; pass < 2; pass++) {
+            for (int word = 0; word < 2; word++) {
+                long moves = root.getMoved(word);
+                long bits = root.getOccupied(enemy, word) & ~root.getRevealed(word)
+                        & (pass == 0 ? moves : ~moves);
+                while (bits != 0) {
+                    squares[unknown++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+            if (pass == 0)
+                moved = unknown;
+        }
+
+        // The pool is every enemy piece except the revealed ones
+        int[] remaining = new int[PIECE_TYPES.length];
+        for (PieceType type : PIECE_TYPES)
+            remaining[type.ordinal()] = root.getCount(enemy, type);
+        for (int word = 0; word < 2; word++) {
+            long bits = root.getOccupied(enemy, word) & root.getRevealed(word);
+            while (bits != 0) {
+                int sq = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                remaining[root.getType(sq).ordinal()]--;
+            }
+        }
+        System.arraycopy(remaining, 0, poolCounts, 0, remaining.length);
+        int count = 0;
+        for (PieceType type : new PieceType[] { PieceType.FLAG, PieceType.BOMB }) {
+            for (int i = 0; i < remaining[type.ordinal()]; i++)
+                codes[count++] = BoardState.code(type, enemy);
+            remaining[type.ordinal()] = 0;
+        }
+        immovable = count;
+        for (PieceType type : PIECE_TYPES) {
+            for (int i = 0; i < remaining[type.ordinal()]; i++)
+                codes[count++] = BoardState.code(type, enemy);
+        }
+
+        if (beliefs == null) {
+            weights = null;
+        } else {
+            weights = new double[unknown * BoardState.TYPES];
+            double[] distribution = new double[BoardState.TYPES];
+            for (int i = 0; i < unknown; i++) {
+                if (!beliefs.isTracked(squares[i])) {
+                    Arrays.fill(distribution, 1);
+                } else {
+                    beliefs.getDistribution(squares[i], distribution);
+                }
+                System.arraycopy(distribution, 0, weights, i * BoardState.TYPES, BoardState.TYPES);
+                for (int t = 0; t < BoardState.TYPES; t++) {
+                    if (distribution[t] > 0)
+                        options[i]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of enemy pieces whose type is unknown.
+     *
+     * @return Number of unrevealed enemy pieces.
+     */
+    public int getUnknownCount() {
+        return unknown;
+    }
+
+    /**
+     * Copy the position to a board and deal out the unknown enemy types.
+     *
+     * @param target Board to write the sample to.
+     * @param random Source of randomness.
+     */
+    public void sample(BoardState target, SplittableRandom random) {
+        target.copyFrom(root);
+        if (weights != null) {
+            sampleBeliefs(target, random);
+            return;
+        }
+        // Bombs and the flag go on unmoved squares, unless there are too few of
+        // them to explain the position
+        int first = immovable <= unknown - moved ? moved : 0;
+        for (int i = 0; i < immovable; i++) {
+            int j = first + i + random.nextInt(unknown - first - i);
+            int sq = squares[j];
+            squares[j] = squares[first + i];
+            squares[first + i] = sq;
+            put(target, sq, codes[i]);
+        }
+        // The movable pieces are shuffled onto the other squares
+        for (int i = unknown - 1; i > immovable; i--) {
+            int j = immovable + random.nextInt(i - immovable + 1);
+            int code = codes[j];
+            codes[j] = codes[i];
+            codes[i] = code;
+        }
+        int next = immovable;
+        for (int i = 0; i < unknown; i++) {
+            if (i < first || i >= first + immovable)
+                put(target, squares[i], codes[next++]);
+        }
+    }
+
+    /**
+     * Deal the types one piece at a time, drawing each type from what is left of
+     * the pool by the believed probabilities. Pieces with the fewest possible
+     * types are dealt first, in random order among equals, and the deal starts
+     * over if a piece is left without a possible type. After a few attempts
+     * such a piece gets whatever is left.
+     */
+    private void sampleBeliefs(BoardState target, SplittableRandom random) {
+        for (int attempt = 1; !deal(random, attempt == MAX_ATTEMPTS); attempt++)
+            ;
+        for (int i = 0; i < unknown; i++)
+            put(target, squares[i], BoardState.code(PIECE_TYPES[dealt[i]], enemy));
+    }
+
+    /**
+     * Try to deal a type to every unknown piece.
+     *
+     * @return True if every piece got a type.
+     */
+    private boolean deal(SplittableRandom random, boolean force) {
+        System.arraycopy(poolCounts, 0, left, 0, left.length);
+        // Random order, then a stable sort by the number of possible types
+        for (int i = 0; i < unknown; i++) {
+            int k = random.nextInt(i + 1);
+            order[i] = order[k];
+            order[k] = i;
+        }
+        for (int i = 1; i < unknown; i++) {
+            int piece = order[i];
+            int j = i - 1;
+            for (; j >= 0 && options[order[j]] > options[piece]; j--)
+                order[j + 1] = order[j];
+            order[j + 1] = piece;
+        }
+
+        for (int n = 0; n < unknown; n++) {
+            int i = order[n];
+            int base = i * BoardState.TYPES;
+            double total = 0;
+            for (int t = 0; t < BoardState.TYPES; t++) {
+                if (left[t] > 0)
+                    total += weights[base + t];
+            }
+            int type = -1;
+            if (total > 0) {
+                double r = random.nextDouble() * total;
+                for (int t = 0; t < BoardState.TYPES; t++) {
+                    if (left[t] > 0 && weights[base + t] > 0) {
+                        type = t;
+                        r -= weights[base + t];
+                        if (r < 0)
+                            break;
+                    }
+                }
+            } else if (force) {
+                for (int t = 0; t < BoardState.TYPES && type < 0; t++) {
+                    if (left[t] > 0)
+                        type = t;
+                }
+            } else {
+                return false;
+            }
+            left[type]--;
+            dealt[i] = type;
+        }
+        return true;
+    }
+
+    /**
+     * Put a piece on a square, keeping the square's moved flag.
+     */
+    private static void put(BoardState target, int sq, int code) {
+        boolean moved = target.hasMoved(sq);
+        target.put(sq, code, false);
+        target.setMoved(sq, moved);
+    }
+}
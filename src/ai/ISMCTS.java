@@ -0,0 +1,345 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.BeliefTracker;
+import model.BoardState;
+import model.Move;
+import model.MoveGenerator;
+
+/**
+ * Information set Monte Carlo tree search. Every iteration samples a
+ * {@link Determinizer determinization} of the enemy pieces the searching team
+ * cannot see, walks down a tree of moves that are legal in that sample, adds a
+ * new move to the tree and plays random moves from there to score it.
+ *
+ * The tree is shared by all samples, so a move is scored by how well it does
+ * across the positions the enemy could be in. Children are selected with UCB1,
+ * counting the number of times a child was available rather than the visits of
+ * its parent, since not every move is legal in every sample.
+ *
+ * Determinizations are weighted by a {@link BeliefTracker} when one is given.
+ *
+ * The search runs one tree per thread on every core and adds up the visits of
+ * the moves at the root when the time budget runs out.
+ */
+public class ISMCTS implements SearchEngine {
+
+    /**
+     * Exploration constant of the UCB1 formula.
+     */
+    public static final double EXPLORATION = 0.7;
+
+    // Random moves played from a new node before the position is scored
+    private static final int PLAYOUT_DEPTH = 80;
+
+    // Deepest the tree may grow, leaving room on the undo stack for a playout
+    private static final int MAX_TREE_DEPTH = BoardState.MAX_UNDO - PLAYOUT_DEPTH - 1;
+
+    // Material balance that scores a playout as about three in four
+    private static final double MATERIAL_SCALE = 200;
+
+    private final int threads;
+    private final ExecutorService pool;
+    private final SplittableRandom random;
+
+    // Beliefs used to weight the determinizations, if any
+    private BeliefTracker beliefs;
+
+    // Results of the last search
+    private long iterations;
+    private long nodes;
+    private long elapsed;
+
+    /**
+     * Create a search that uses every core.
+     */
+    public ISMCTS() {
+        this(Runtime.getRuntime().availableProcessors(), System.nanoTime());
+    }
+
+    /**
+     * Create a search with a number of threads and a random seed.
+     *
+     * @param threads Number of trees searched in parallel.
+     * @param seed    Seed for the random numbers of the search.
+     */
+    public ISMCTS(int threads, long seed) {
+        this.threads = threads;
+        this.random = new SplittableRandom(seed);
+        pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Stratego ISMCTS");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Find the move for the team whose turn it is that has been visited most,
+     * searching until the time budget runs out.
+     *
+     * @param state  Board to search. It is not changed.
+     * @param millis Time budget in milliseconds.
+     * @return Best move found, or {@link Move#NONE} if the team cannot move.
+     */
+    @Override
+    public int search(BoardState state, long millis) {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1000000L;
+        List<Callable<Worker>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(state, beliefs, random.split(), deadline);
+            workers.add(() -> {
+                worker.run();
+                return worker;
+            });
+        }
+
+        // Add up the visits of each move at the roots
+        int[] visits = new int[1 << 14];
+        iterations = 0;
+        nodes = 0;
+        try {
+            for (Future<Worker> future : pool.invokeAll(workers)) {
+                Worker worker = future.get();
+                iterations += worker.iterations;
+                nodes += worker.nodes;
+                for (Node child : worker.root.children)
+                    visits[child.move] += child.visits;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        elapsed = System.nanoTime() - start;
+
+        int best = Move.NONE;
+        for (int move = 0; move < visits.length; move++) {
+            if (visits[move] > 0 && (best == Move.NONE || visits[move] > visits[best]))
+                best = move;
+        }
+        return best;
+    }
+
+    /**
+     * Weight the determinizations by the beliefs of the searching team instead
+     * of dealing the unknown types uniformly.
+     *
+     * @param beliefs Beliefs of the team that searches, or null.
+     */
+    @Override
+    public void setBeliefs(BeliefTracker beliefs) {
+        this.beliefs = beliefs;
+    }
+
+    /**
+     * Get the number of iterations, i.e. determinizations searched, in the last
+     * search.
+     *
+     * @return Iteration count.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Get the number of moves made in the trees and playouts of the last search.
+     *
+     * @return Node count.
+     */
+    @Override
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the speed of the last search over all threads.
+     *
+     * @return Moves made per second.
+     */
+    @Override
+    public double getNodesPerSecond() {
+        return elapsed == 0 ? 0 : nodes * 1e9 / elapsed;
+    }
+
+    /**
+     * Stop the search threads.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * A move in the tree with the statistics of the iterations that made it.
+     */
+    static final class Node {
+        final Node parent;
+        final int move;
+        // Team that made the move
+        final boolean team;
+        final List<Node> children = new ArrayList<>();
+        int visits;
+        int availability;
+        // Sum of the scores for the team that made the move
+        double reward;
+
+        /**
+         * Create a node for a move made by a team.
+         */
+        Node(Node parent, int move, boolean team) {
+            this.parent = parent;
+            this.move = move;
+            this.team = team;
+        }
+    }
+
+    /**
+     * Searches one tree on one thread.
+     */
+    private static final class Worker {
+
+        private final boolean team;
+        private final SplittableRandom random;
+        private final long deadline;
+        private final Determinizer determinizer;
+        private final BoardState board = new BoardState();
+        private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        // Marks the legal moves and the moves with a child in the current step
+        private final int[] legal = new int[1 << 14];
+        private final int[] expanded = new int[1 << 14];
+        private int stamp;
+
+        final Node root;
+        long iterations;
+        long nodes;
+
+        /**
+         * Create a worker for a position. The position is copied so that the
+         * worker does not read the caller's board while it searches.
+         */
+        Worker(BoardState state, BeliefTracker beliefs, SplittableRandom random, long deadline) {
+            this.root = new Node(null, Move.NONE, !state.getTurn());
+            this.team = state.getTurn();
+            this.random = random;
+            this.deadline = deadline;
+            BoardState copy = new BoardState();
+            copy.copyFrom(state);
+            this.determinizer = new Determinizer(copy, team, beliefs);
+        }
+
+        /**
+         * Run iterations until the deadline.
+         */
+        void run() {
+            do {
+                for (int i = 0; i < 64; i++)
+                    iterate();
+            } while (System.nanoTime() - deadline < 0);
+        }
+
+        /**
+         * One iteration: sample, select, expand, play out and back up.
+         */
+        private void iterate() {
+            iterations++;
+            determinizer.sample(board, random);
+            Node node = root;
+
+            // Select moves in the tree until a move is found that has no node
+            while (board.getPly() < MAX_TREE_DEPTH && !board.hasLost(false) && !board.hasLost(true)) {
+                int count = MoveGenerator.generateAll(board, board.getTurn(), moves);
+                if (count == 0)
+                    break;
+                stamp++;
+                for (int i = 0; i < count; i++)
+                    legal[moves[i]] = stamp;
+                for (Node child : node.children)
+                    expanded[child.move] = stamp;
+                int untried = 0;
+                for (int i = 0; i < count; i++) {
+                    if (expanded[moves[i]] != stamp)
+                        moves[untried++] = moves[i];
+                }
+                if (untried > 0) {
+                    int move = moves[random.nextInt(untried)];
+                    Node child = new Node(node, move, board.getTurn());
+                    node.children.add(child);
+                    makeMove(move);
+                    node = child;
+                    break;
+                }
+                node = select(node);
+                makeMove(node.move);
+            }
+
+            double score = playout();
+            for (; node != null; node = node.parent) {
+                node.visits++;
+                node.reward += node.team == team ? score : 1 - score;
+            }
+        }
+
+        /**
+         * Pick the child with the best upper confidence bound among the moves
+         * that are legal in this sample, and count them as available.
+         */
+        private Node select(Node node) {
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Node child : node.children) {
+                if (legal[child.move] != stamp)
+                    continue;
+                child.availability++;
+                double value = child.reward / child.visits
+                        + EXPLORATION * Math.sqrt(Math.log(child.availability) / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Play random moves until the game ends or the playout is long enough.
+         *
+         * @return Score for the searching team between 0 and 1.
+         */
+        private double playout() {
+            for (int i = 0; i < PLAYOUT_DEPTH; i++) {
+                if (board.hasLost(team))
+                    return 0;
+                if (board.hasLost(!team))
+                    return 1;
+                int count = MoveGenerator.generateAll(board, board.getTurn(), moves);
+                if (count == 0)
+                    return board.getTurn() == team ? 0 : 1;
+                makeMove(moves[random.nextInt(count)]);
+            }
+            if (board.hasLost(team))
+                return 0;
+            if (board.hasLost(!team))
+                return 1;
+            int balance = board.getMaterial(team) - board.getMaterial(!team);
+            return 1 / (1 + Math.exp(-balance / MATERIAL_SCALE));
+        }
+
+        /**
+         * Make a move on the sampled board and count it.
+         */
+        private void makeMove(int move) {
+            nodes++;
+            board.makeMove(move);
+        }
+    }
+}
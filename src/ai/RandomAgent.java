@@ -0,0 +1,37 @@
+package ai;
+
+import java.util.SplittableRandom;
+
+import model.BoardState;
+import model.Move;
+import model.MoveGenerator;
+
+/**
+ * Agent that plays a random legal move.
+ */
+public class RandomAgent implements Agent {
+
+    private final SplittableRandom random;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    /**
+     * Create a random agent.
+     *
+     * @param random Source of randomness.
+     */
+    public RandomAgent(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Pick a random legal move.
+     *
+     * @param state Board to move on.
+     * @return Random move, or {@link Move#NONE} if there is none.
+     */
+    @Override
+    public int chooseMove(BoardState state) {
+        int count = MoveGenerator.generateAll(state, state.getTurn(), moves);
+        return count == 0 ? Move.NONE : moves[random.nextInt(count)];
+    }
+}
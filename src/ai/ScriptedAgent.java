@@ -0,0 +1,71 @@
+package ai;
+
+import model.BoardState;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceType;
+import model.StrategoRules;
+
+/**
+ * Agent that follows fixed rules, as a simple and repeatable opponent. It
+ * attacks the most valuable revealed enemy piece that one of its pieces is sure
+ * to beat. Otherwise it moves its least valuable piece that can step forward
+ * onto an empty square, and otherwise it plays its first legal move. It never
+ * looks at the type of an unrevealed enemy piece.
+ */
+public class ScriptedAgent implements Agent {
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    /**
+     * Pick a move by the rules of this agent.
+     *
+     * @param state Board to move on.
+     * @return Chosen move, or {@link Move#NONE} if there is none.
+     */
+    @Override
+    public int chooseMove(BoardState state) {
+        boolean team = state.getTurn();
+        int count = MoveGenerator.generateAll(state, team, moves);
+        if (count == 0)
+            return Move.NONE;
+
+        int attack = Move.NONE;
+        int attackValue = -1;
+        int advance = Move.NONE;
+        int advanceValue = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            PieceType type = state.getType(from);
+            if (state.isOccupied(to)) {
+                if (!state.isRevealed(to))
+                    continue;
+                PieceType defender = state.getType(to);
+                int value = defender == PieceType.FLAG ? Integer.MAX_VALUE : defender.getValue();
+                if (StrategoRules.getBattleResult(type, defender) == StrategoRules.ATTACKER_WINS
+                        && value > attackValue) {
+                    attack = move;
+                    attackValue = value;
+                }
+            } else if (isForward(team, from, to) && type.getValue() < advanceValue) {
+                advance = move;
+                advanceValue = type.getValue();
+            }
+        }
+        if (attack != Move.NONE)
+            return attack;
+        if (advance != Move.NONE)
+            return advance;
+        return moves[0];
+    }
+
+    /**
+     * Checks whether a move goes towards the enemy's side of the board. Red
+     * starts at the bottom and blue at the top.
+     */
+    private static boolean isForward(boolean team, int from, int to) {
+        return team ? to > from + 9 : to < from - 9;
+    }
+}
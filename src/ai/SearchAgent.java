@@ -0,0 +1,75 @@
+package ai;
+
+import java.util.SplittableRandom;
+
+import model.BoardState;
+
+/**
+ * Agent that picks its moves with a {@link SearchEngine} and a fixed time
+ * budget per move.
+ *
+ * An engine that searches the board it is given, like {@link AlphaBetaSearch},
+ * would see the type of every enemy piece. To play fair, such an agent searches
+ * a {@link Determinizer determinization} instead: the enemy pieces it has not
+ * seen are dealt types at random from the ones the enemy has left. Engines that
+ * only use what the team to move knows, like {@link ISMCTS}, search the board
+ * itself.
+ */
+public class SearchAgent implements Agent {
+
+    private final SearchEngine engine;
+    private final long moveTime;
+
+    // Deals the unseen enemy types, or null to search the board itself
+    private final SplittableRandom random;
+    private final BoardState view = new BoardState();
+
+    /**
+     * Create an agent for an engine that only uses what the team to move knows.
+     *
+     * @param engine   Engine that picks the moves.
+     * @param moveTime Time budget for each move in milliseconds.
+     */
+    public SearchAgent(SearchEngine engine, long moveTime) {
+        this(engine, moveTime, null);
+    }
+
+    /**
+     * Create an agent for a search engine that searches a determinization of
+     * each position.
+     *
+     * @param engine   Engine that picks the moves.
+     * @param moveTime Time budget for each move in milliseconds.
+     * @param random   Source of randomness for the determinizations, or null to
+     *                 search the board itself.
+     */
+    public SearchAgent(SearchEngine engine, long moveTime, SplittableRandom random) {
+        this.engine = engine;
+        this.moveTime = moveTime;
+        this.random = random;
+    }
+
+    /**
+     * Search for the best move. The moves of the team to move do not depend on
+     * the types of the enemy pieces, so the move found on a determinization is
+     * legal on the board.
+     *
+     * @param state Board to move on.
+     * @return Best move found.
+     */
+    @Override
+    public int chooseMove(BoardState state) {
+        if (random == null)
+            return engine.search(state, moveTime);
+        new Determinizer(state, state.getTurn()).sample(view, random);
+        return engine.search(view, moveTime);
+    }
+
+    /**
+     * Release the engine's threads.
+     */
+    @Override
+    public void close() {
+        engine.close();
+    }
+}
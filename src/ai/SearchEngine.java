@@ -0,0 +1,49 @@
+package ai;
+
+import model.BeliefTracker;
+import model.BoardState;
+import model.Move;
+
+/**
+ * Picks a move for the team whose turn it is within a time budget.
+ */
+public interface SearchEngine {
+
+    /**
+     * Find the best move for the team whose turn it is.
+     *
+     * @param state  Board to search. It is the same when this method returns.
+     * @param millis Time budget in milliseconds.
+     * @return Best move found, or {@link Move#NONE} if the team cannot move.
+     */
+    int search(BoardState state, long millis);
+
+    /**
+     * Get the number of positions visited by the last search.
+     *
+     * @return Node count.
+     */
+    long getNodes();
+
+    /**
+     * Get the speed of the last search.
+     *
+     * @return Positions visited per second.
+     */
+    double getNodesPerSecond();
+
+    /**
+     * Give the engine the beliefs of the searching team about the enemy pieces
+     * it cannot see. Engines that search with full information ignore them.
+     *
+     * @param beliefs Beliefs of the team that searches.
+     */
+    default void setBeliefs(BeliefTracker beliefs) {
+    }
+
+    /**
+     * Release any threads held by the engine.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,107 @@
+package ai;
+
+import java.util.Arrays;
+
+import model.Move;
+
+/**
+ * Fixed size hash table of search results keyed by Zobrist hash. Entries are
+ * stored in two parallel long arrays, and a newer entry always replaces an older
+ * one in the same slot.
+ *
+ * An entry packs the score (low 32 bits), the best move (14 bits), the search
+ * depth (8 bits) and the bound type (2 bits).
+ */
+public class TranspositionTable {
+
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int MOVE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 46;
+    private static final int BOUND_SHIFT = 54;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    /**
+     * Create a table with 2^bits entries.
+     *
+     * @param bits Log2 of the number of entries.
+     */
+    public TranspositionTable(int bits) {
+        keys = new long[1 << bits];
+        entries = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Store a search result.
+     *
+     * @param hash  Position hash.
+     * @param move  Best move found, or {@link Move#NONE}.
+     * @param score Score of the position.
+     * @param depth Depth that was searched.
+     * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}.
+     */
+    public void store(long hash, int move, int score, int depth, int bound) {
+        int i = (int) hash & mask;
+        keys[i] = hash;
+        entries[i] = (score & 0xFFFFFFFFL) | ((long) (move & 0x3FFF) << MOVE_SHIFT)
+                | ((long) depth << DEPTH_SHIFT) | ((long) bound << BOUND_SHIFT);
+    }
+
+    /**
+     * Look up the entry for a position.
+     *
+     * @param hash Position hash.
+     * @return The packed entry, or 0 if the position is not in the table.
+     */
+    public long probe(long hash) {
+        int i = (int) hash & mask;
+        return keys[i] == hash ? entries[i] : 0L;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(entries, 0L);
+    }
+
+    /**
+     * @param entry Packed entry.
+     * @return Score of the entry.
+     */
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * @param entry Packed entry.
+     * @return Best move of the entry, or {@link Move#NONE}.
+     */
+    public static int move(long entry) {
+        int move = (int) (entry >>> MOVE_SHIFT) & 0x3FFF;
+        return move == 0x3FFF ? Move.NONE : move;
+    }
+
+    /**
+     * @param entry Packed entry.
+     * @return Depth of the entry.
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * @param entry Packed entry.
+     * @return Bound type of the entry, or 0 for an empty entry.
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 0x3;
+    }
+}
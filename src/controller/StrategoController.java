@@ -1,19 +1,27 @@
 package controller;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashSet;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javafx.application.Platform;
+import model.GameJournal;
+import model.GamePiece;
 import model.Loc;
-import model.PieceType;
+import model.MoveGenerator;
 import model.StrategoModel;
+import model.StrategoRules;
+import network.MessageCodec;
 import network.StrategoMessage;
-import view.Piece;
+import network.StrategoPieceUpdate;
 
 /**
  * This class is the controller of the Stratego game.
@@ -30,15 +38,27 @@ public class StrategoController implements Runnable {
     private String hostName;
     private int portNumber;
 
+    // Runs incoming messages against the model, e.g. on the JavaFX thread
+    private Executor dispatcher;
+
     // Socket stuff
     private ServerSocket serverSocket = null;
     private Socket socket = null;
 
     private boolean placement = true; // if we are in the piece placement phase
 
+    // Set when the other side is a game server that referees the game
+    private volatile boolean refereed;
+
+    // Records the game to a file, if it is recorded
+    private GameJournal journal;
+
+    // Times incoming messages on their way to the screen
+    private final UiMetrics metrics = new UiMetrics();
+
     // Streams
-    private ObjectOutputStream output;
-    private ObjectInputStream input;
+    private DataOutputStream output;
+    private DataInputStream input;
 
     // ============== Constructors ===================================
     /**
@@ -61,47 +81,33 @@ public class StrategoController implements Runnable {
      * @param port     Port number.
      */
     public StrategoController(boolean team, boolean server, String hostName, int port) {
+        this(team, server, hostName, port, Platform::runLater);
+    }
+
+    /**
+     * Constructor for a controller that processes incoming messages with the
+     * given executor instead of the JavaFX application thread. This allows the
+     * game to be played without a user interface.
+     *
+     * @param team       True for blue, false for red.
+     * @param server     True for server, false for client.
+     * @param hostName   Name of host.
+     * @param port       Port number.
+     * @param dispatcher Executor that applies incoming messages to the model.
+     */
+    public StrategoController(boolean team, boolean server, String hostName, int port, Executor dispatcher) {
         this.model = new StrategoModel();
         this.team = team;
         this.server = server;
         this.hostName = hostName;
         this.portNumber = port;
+        this.dispatcher = dispatcher;
 
         new Thread(this).start();
     }
 
     // ============== Methods ===================================
 
-    /**
-     * Determines which Piece wins the battle.
-     *
-     * This method assumes that the battle is a legal move. For example the
-     * attacking piece will never be the flag.
-     *
-     * @param p1 The attacking piece.
-     * @param p2 The piece being attacked.
-     * @return The Piece that wins the battle, or null if tie.
-     */
-    private static Piece getBattleWinner(Piece p1, Piece p2) {
-        // Bomb only loses against miner
-        if (p2.getPieceType() == PieceType.BOMB) {
-            if (p1.getPieceType() == PieceType.MINER)
-                return p1;
-            return p2;
-        }
-        // Spy wins against marshall
-        if (p1.getPieceType() == PieceType.SPY && p2.getPieceType() == PieceType.MARSHALL)
-            return p1;
-        // Compare ranks
-        if (p1.getRank() > p2.getRank()) {
-            return p1;
-        } else if (p1.getRank() < p2.getRank()) {
-            return p2;
-        } else {
-            return null;
-        }
-    }
-
     /**
      * Returns the current model used by current constructor.
      * 
@@ -111,6 +117,15 @@ public class StrategoController implements Runnable {
         return model;
     }
 
+    /**
+     * Returns the counters that time incoming messages until they are shown.
+     *
+     * @return Metrics of this controller.
+     */
+    public UiMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns the team of current constructor.
      * 
@@ -136,6 +151,18 @@ public class StrategoController implements Runnable {
      */
     public void setPlacement(boolean placement) {
         this.placement = placement;
+        model.getState().setPlacement(placement);
+    }
+
+    /**
+     * Returns true if a game server referees the game. The server then hides
+     * the other team's ranks, resolves battles and decides when the game is
+     * over.
+     * 
+     * @return True if the game is refereed, false if not.
+     */
+    public boolean isRefereed() {
+        return refereed;
     }
 
     /**
@@ -155,14 +182,7 @@ public class StrategoController implements Runnable {
      * @return True if current location is a lake, false otherwise.
      */
     public boolean isLake(Loc loc) {
-        int row = loc.getRow();
-        int col = loc.getCol();
-        if (row >= 4 && row <= 5) {
-            if (col >= 2 && col <= 3)
-                return true;
-            return col >= 6 && col <= 7;
-        }
-        return false;
+        return StrategoRules.isLake(loc);
     }
 
     /**
@@ -175,6 +195,16 @@ public class StrategoController implements Runnable {
         return model.getPiece(loc) != null;
     }
 
+    /**
+     * Checks if a square has a piece or not.
+     * 
+     * @param sq Square index in the range 0-99.
+     * @return True if the square has a piece, false if not.
+     */
+    public boolean hasPiece(int sq) {
+        return model.getState().isOccupied(sq);
+    }
+
     /**
      * Get the set of moves that can be made by the piece at the specified location.
      *
@@ -184,53 +214,23 @@ public class StrategoController implements Runnable {
      * @return Set of moves for the piece.
      */
     public Set<Loc> getMoves(Loc loc, boolean fromBin) {
-        Set<Loc> moves = new HashSet<>();
-        if (placement) {
-            int startRow = 0;
-            if (team == Piece.RED_TEAM)
-                startRow = 6;
-            for (int r = 0; r < 4; r++) {
-                for (int c = 0; c < StrategoModel.COLS; c++) {
-                    Loc move = new Loc(r + startRow, c);
-                    if (fromBin) {
-                        if (!hasPiece(move))
-                            moves.add(move);
-                    } else
-                        moves.add(move);
-                }
-            }
-            return moves;
-        } else {
-            Piece piece = model.getPiece(loc);
-            if (!model.inBounds(loc) || piece == null)
-                return moves;
-            PieceType type = piece.getPieceType();
-            // Flag and bomb cannot be moved
-            if (type == PieceType.FLAG || type == PieceType.BOMB) {
-                return moves;
-            }
-            int limit = 1;
-            // Scout can move any distance
-            if (type == PieceType.SCOUT)
-                limit = StrategoModel.ROWS;
-            // Add moves
-            for (Direction dir : Direction.values()) {
-                Loc current = loc;
-                for (int i = 0; i < limit; i++) {
-                    current = current.getRelative(dir, 1);
-                    if (!model.inBounds(current) || isLake(current))
-                        break;
-                    if (hasPiece(current)) {
-                        boolean team = model.getPiece(current).getTeam();
-                        if (team != this.team)
-                            moves.add(current);
-                        break;
-                    }
-                    moves.add(current);
-                }
-            }
-            return moves;
-        }
+        return StrategoRules.getMoves(model, team, placement, loc, fromBin);
+    }
+
+    /**
+     * Write the moves that can be made by the piece at the specified location to
+     * a reusable buffer instead of allocating a set.
+     *
+     * @param loc     Location to get moves for, or null for placing a piece.
+     * @param fromBin Whether the piece being moved is coming from the bin or is
+     *                already on the board.
+     * @param moves   Buffer of at least {@link MoveGenerator#MAX_MOVES} entries
+     *                that the encoded moves are written to.
+     * @return Number of moves written.
+     * @see model.Move
+     */
+    public int getMoves(Loc loc, boolean fromBin, int[] moves) {
+        return StrategoRules.getMoves(model, team, placement, loc, fromBin, moves);
     }
 
     /**
@@ -241,19 +241,12 @@ public class StrategoController implements Runnable {
      * @param to   The new location, represented by a Loc object.
      */
     public void movePiece(Loc from, Loc to) {
-        Piece p1 = model.getPiece(from);
-        if (hasPiece(to)) { // if target location already contains a piece
-            Piece p2 = model.getPiece(to);
-            if (placement) {
-                model.removePiece(p1);
-                model.removePiece(p2);
-                model.setPiece(p1, to);
-                model.setPiece(p2, from);
-            } else {
-                battle(p1, p2);
-            }
+        if (refereed && !placement && hasPiece(to)) {
+            // The referee knows the rank of the other piece and sends both
+            // players the battle
+            sendMessage(new StrategoPieceUpdate(from, to, team));
         } else {
-            model.setPiece(p1, to);
+            StrategoRules.movePiece(model, placement, from, to);
         }
         if (!placement) {
             model.processUpdate(new StrategoMessage(StrategoMessage.MessageType.END_OF_TURN, !team));
@@ -266,10 +259,21 @@ public class StrategoController implements Runnable {
      * @param piece The Piece to place.
      * @param loc   The location, represented by a Loc object.
      */
-    public void placePiece(Piece piece, Loc loc) {
+    public void placePiece(GamePiece piece, Loc loc) {
         model.setPiece(piece, loc);
     }
 
+    /**
+     * Places several pieces at once. The other player receives them in one
+     * message.
+     * 
+     * @param pieces The pieces to place.
+     * @param locs   The location of each piece.
+     */
+    public void placePieces(List<GamePiece> pieces, List<Loc> locs) {
+        model.placePieces(pieces, locs, team);
+    }
+
     /**
      * Battles two pieces.
      * 
@@ -278,26 +282,10 @@ public class StrategoController implements Runnable {
      * 
      * @param p1 The attacking piece.
      * @param p2 The piece being attacked.
-     * @see StrategoController#getBattleWinner(Piece, Piece)
+     * @see StrategoRules#getBattleWinner(GamePiece, GamePiece)
      */
-    public void battle(Piece p1, Piece p2) {
-        Piece winner = getBattleWinner(p1, p2);
-        // Reveal pieces
-        Piece tempWin = p1;
-        if (winner == p2)
-            tempWin = p2;
-        Piece tempLose = p2;
-        if (winner == p2)
-            tempLose = p1;
-        model.reveal(tempWin, tempLose, winner == null);
-        if (winner == p1) {
-            model.setPiece(p1, p2.getLocation());
-        } else if (winner == p2) {
-            model.removePiece(p1);
-        } else { // tie
-            model.removePiece(p1);
-            model.removePiece(p2);
-        }
+    public void battle(GamePiece p1, GamePiece p2) {
+        StrategoRules.battle(model, p1, p2);
     }
 
     /**
@@ -306,12 +294,43 @@ public class StrategoController implements Runnable {
      * The game is over if a player's flag is stolen or if the player has no movable
      * pieces.
      * 
-     * @return True if game over, false if not.
+     * @return True if game over, false if not. Always false in a refereed
+     *         game, where the referee decides.
      */
     public boolean isGameOver() {
+        if (refereed)
+            return false;
         return model.isGameOver(!team);
     }
 
+    /**
+     * Record the game to a journal file from now on, so that it can be
+     * replayed later.
+     *
+     * @param file File to write the journal to.
+     * @throws IOException If the file cannot be created.
+     * @see model.GameReplay
+     */
+    public void record(Path file) throws IOException {
+        stopRecording();
+        journal = new GameJournal(file, GameJournal.DEFAULT_INTERVAL);
+        journal.attach(model);
+    }
+
+    /**
+     * Stop recording the game, if it is recorded, and finish the journal file.
+     */
+    public void stopRecording() {
+        if (journal == null)
+            return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        journal = null;
+    }
+
     // ============== Networking ==================================
 
     /**
@@ -323,7 +342,10 @@ public class StrategoController implements Runnable {
         if (!socket.isClosed()) {
             if (message != null) {
                 try {
-                    output.writeObject(message);
+                    synchronized (output) {
+                        MessageCodec.write(output, message);
+                        output.flush();
+                    }
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -349,25 +371,36 @@ public class StrategoController implements Runnable {
                 System.out.println("Client started!");
             }
 
-            // Initialize streams
-            output = new ObjectOutputStream(socket.getOutputStream());
-            input = new ObjectInputStream(socket.getInputStream());
+            // Initialize streams and check that both sides speak the same protocol
+            socket.setTcpNoDelay(true);
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            MessageCodec.writeHeader(output);
+            output.flush();
+            MessageCodec.readHeader(input);
             System.out.println("Streams initialized!");
 
-            // Give the client a moment to load
+            // Give the client a moment to load, then tell the other side which
+            // team we play. Either side starts placing pieces when it receives
+            // this, which a game server holds back until it finds an opponent.
             Thread.sleep(1000);
-            Platform.runLater(() -> {
-                model.processUpdate(new StrategoMessage(StrategoMessage.MessageType.BEGIN_PLACEMENT));
-            });
+            sendMessage(new StrategoMessage(StrategoMessage.MessageType.BEGIN_PLACEMENT, team));
 
             while (!socket.isClosed()) { // check that socket is open
-                StrategoMessage inputMsg = (StrategoMessage) input.readObject();
+                StrategoMessage inputMsg = MessageCodec.read(input);
                 if (inputMsg != null) { // process input msg if it's not null (and it shouldn't be null)
-                    Platform.runLater(() -> model.processUpdate(inputMsg));
+                    if (inputMsg.isBeginning() && inputMsg.isRefereed())
+                        refereed = true;
+                    long received = metrics.received();
+                    dispatcher.execute(() -> {
+                        long started = metrics.dispatched(received);
+                        model.processUpdate(inputMsg);
+                        metrics.updated(received, started);
+                    });
                 }
 
             }
-        } catch (ClassNotFoundException | IOException | InterruptedException e) {
+        } catch (IOException | InterruptedException e) {
             // e.printStackTrace();
             closeAllSockets();
         }
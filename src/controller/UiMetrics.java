@@ -0,0 +1,273 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counters of how long the user interface takes to show what happens, to tell
+ * whether lag comes from the network, the model or the drawing of the board.
+ *
+ * A message from the other player goes through three stages, each timed from
+ * the moment it is read from the socket:
+ * <ul>
+ * <li>queue: waiting for the JavaFX thread to run it,</li>
+ * <li>update: applying it to the model, which updates the scene,</li>
+ * <li>latency: until the next pulse has laid out the scene with it, just
+ * before the scene is rendered.</li>
+ * </ul>
+ * Pulses are timed from the start to the end of their layout, and frames by
+ * the time between pulses while something asks for every frame. The number of
+ * messages waiting for the JavaFX thread is counted as well.
+ *
+ * Times are recorded from several threads and in nanoseconds, and reported in
+ * milliseconds.
+ */
+public final class UiMetrics {
+
+    /**
+     * Count, mean, maximum and last value of a time.
+     */
+    public static final class Stat {
+
+        private final String name;
+        private long count;
+        private long total;
+        private long max;
+        private long last;
+
+        /**
+         * Create an empty counter.
+         *
+         * @param name Name the counter is reported by.
+         */
+        Stat(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Add a time.
+         *
+         * @param nanos Time in nanoseconds.
+         */
+        public synchronized void record(long nanos) {
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+            last = nanos;
+        }
+
+        /**
+         * Get the name the counter is reported by.
+         *
+         * @return Name of the counter.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the number of times recorded.
+         *
+         * @return Number of times.
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the mean of the times.
+         *
+         * @return Mean time in milliseconds, or 0 if none was recorded.
+         */
+        public synchronized double getMean() {
+            return count == 0 ? 0 : total / 1e6 / count;
+        }
+
+        /**
+         * Get the longest time.
+         *
+         * @return Longest time in milliseconds.
+         */
+        public synchronized double getMax() {
+            return max / 1e6;
+        }
+
+        /**
+         * Get the last time.
+         *
+         * @return Last time in milliseconds.
+         */
+        public synchronized double getLast() {
+            return last / 1e6;
+        }
+
+        /**
+         * Forget every time recorded.
+         */
+        synchronized void reset() {
+            count = total = max = last = 0;
+        }
+    }
+
+    private final Stat frame = new Stat("frame");
+    private final Stat pulse = new Stat("pulse");
+    private final Stat queue = new Stat("queue");
+    private final Stat update = new Stat("update");
+    private final Stat latency = new Stat("latency");
+
+    // Messages handed to the dispatcher that have not run yet
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger maxPending = new AtomicInteger();
+
+    // Time the earliest message not yet laid out was received, or 0
+    private volatile long unrendered;
+    private long lastFrame;
+    private long pulseStart;
+
+    /**
+     * Note that a message was read from the socket and handed to the
+     * dispatcher.
+     *
+     * @return Time it was received, to pass to {@link #dispatched(long)}.
+     */
+    public long received() {
+        int depth = pending.incrementAndGet();
+        maxPending.accumulateAndGet(depth, Math::max);
+        return System.nanoTime();
+    }
+
+    /**
+     * Note that the dispatcher started to run a message.
+     *
+     * @param received Time the message was received.
+     * @return Time it started, to pass to {@link #updated(long, long)}.
+     */
+    public long dispatched(long received) {
+        long now = System.nanoTime();
+        pending.decrementAndGet();
+        queue.record(now - received);
+        return now;
+    }
+
+    /**
+     * Note that a message was applied to the model and the scene.
+     *
+     * @param received Time the message was received.
+     * @param started  Time the dispatcher started to run it.
+     */
+    public void updated(long received, long started) {
+        update.record(System.nanoTime() - started);
+        if (unrendered == 0)
+            unrendered = received;
+    }
+
+    /**
+     * Note that a frame started. Called at every frame, e.g. by an animation
+     * timer, to time the frames.
+     *
+     * @param now Time of the frame in nanoseconds.
+     */
+    public void frame(long now) {
+        if (lastFrame != 0)
+            frame.record(now - lastFrame);
+        lastFrame = now;
+    }
+
+    /**
+     * Stop timing frames until {@link #frame(long)} is called again, so the
+     * time without frames is not counted as one long frame.
+     */
+    public void pauseFrames() {
+        lastFrame = 0;
+    }
+
+    /**
+     * Note that a pulse started to lay out the scene.
+     */
+    public void pulseStarted() {
+        pulseStart = System.nanoTime();
+    }
+
+    /**
+     * Note that a pulse finished laying out the scene, which shows every
+     * message that was applied before it.
+     */
+    public void pulseFinished() {
+        long now = System.nanoTime();
+        if (pulseStart != 0)
+            pulse.record(now - pulseStart);
+        long received = unrendered;
+        if (received != 0) {
+            unrendered = 0;
+            latency.record(now - received);
+        }
+    }
+
+    /**
+     * Get every counter of times, in the order they are reported.
+     *
+     * @return Frame, pulse, queue, update and latency counters.
+     */
+    public Stat[] getStats() {
+        return new Stat[] { frame, pulse, queue, update, latency };
+    }
+
+    /**
+     * Get the number of messages waiting for the dispatcher.
+     *
+     * @return Number of messages received that have not run yet.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Get the most messages that waited for the dispatcher at the same time.
+     *
+     * @return Largest number of pending messages.
+     */
+    public int getMaxPending() {
+        return maxPending.get();
+    }
+
+    /**
+     * Forget every time recorded and the largest number of pending messages.
+     */
+    public void reset() {
+        for (Stat stat : getStats())
+            stat.reset();
+        maxPending.set(pending.get());
+    }
+
+    /**
+     * Report the counters as comma separated values, one line per counter. A
+     * last line gives the number of pending messages as its count and the most
+     * that were pending at once as its maximum.
+     *
+     * @return Header line and a line per counter.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("name,count,mean_ms,max_ms,last_ms\n");
+        for (Stat stat : getStats()) {
+            report.append(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f\n", stat.getName(), stat.getCount(),
+                    stat.getMean(), stat.getMax(), stat.getLast()));
+        }
+        report.append(String.format(Locale.ROOT, "pending,%d,,%d,\n", getPending(), getMaxPending()));
+        return report.toString();
+    }
+
+    /**
+     * Write the report of the counters to a file.
+     *
+     * @param file File to write, replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public void export(Path file) throws IOException {
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        Files.writeString(file, report());
+    }
+}
@@ -0,0 +1,490 @@
+package main;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import controller.Direction;
+import controller.StrategoController;
+import model.BoardState;
+import model.GamePiece;
+import model.Loc;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceType;
+import model.Setups;
+import model.StrategoModel;
+import model.StrategoRules;
+
+/**
+ * Counts every sequence of moves up to a depth from a position with random
+ * setups for both teams, which gives a stable measure of how fast moves are
+ * generated, made and taken back. Both teams can see every piece, so each
+ * battle has one outcome.
+ *
+ * A game that is over has no moves, so it adds nothing to the count below it.
+ *
+ * In validation mode the moves are made on a {@link StrategoModel}, and at
+ * every position the moves of the move generator are compared with the moves
+ * the controller offers for each piece and with a simple reference that walks
+ * the board one location at a time. The hash and the pieces are checked after
+ * every move and after it is taken back.
+ *
+ * Usage: {@code Perft [-d depth] [-p threads] [-s seed] [-v]}
+ */
+public class Perft {
+
+    /**
+     * Depth counted unless set otherwise.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    private final long seed;
+
+    /**
+     * Create a counter for the position with the setups of a seed.
+     *
+     * @param seed Seed of the random setups.
+     */
+    public Perft(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Build the start position: random setups for both teams and red to move.
+     *
+     * @return New model holding the position.
+     */
+    public StrategoModel createModel() {
+        StrategoModel model = new StrategoModel();
+        SplittableRandom random = new SplittableRandom(seed);
+        Setups.placeRandom(model, GamePiece.RED_TEAM, random);
+        Setups.placeRandom(model, GamePiece.BLUE_TEAM, random);
+        model.getState().setPlacement(false);
+        model.getState().setTurn(GamePiece.RED_TEAM);
+        return model;
+    }
+
+    /**
+     * Count the move sequences up to a depth.
+     *
+     * @param depth    Number of moves in each sequence.
+     * @param threads  Number of threads; the moves at the root are shared out
+     *                 when there is more than one.
+     * @param validate True to check the move generator at every position, which
+     *                 is much slower.
+     * @return Counts and time taken.
+     * @throws IllegalStateException if validation finds a difference.
+     */
+    public Result run(int depth, int threads, boolean validate) {
+        long start = System.nanoTime();
+        Result result;
+        if (threads <= 1 || depth == 0) {
+            result = new Walker(createModel(), validate).count(depth);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                int[] moves = new int[MoveGenerator.MAX_MOVES];
+                BoardState state = createModel().getState();
+                int count = MoveGenerator.generateAll(state, state.getTurn(), moves);
+                result = pool.invoke(new RootMoves(this, moves, 0, count, depth, validate));
+                result.nodes++;
+            } finally {
+                pool.shutdown();
+            }
+        }
+        result.elapsed = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Counts from the position after some of the moves at the root, splitting
+     * them in halves until one is left.
+     */
+    private static class RootMoves extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Perft perft;
+        private final int[] moves;
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final boolean validate;
+
+        /**
+         * Create a task for the root moves of a position from one index up to
+         * another.
+         */
+        RootMoves(Perft perft, int[] moves, int from, int to, int depth, boolean validate) {
+            this.perft = perft;
+            this.moves = moves;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.validate = validate;
+        }
+
+        /**
+         * Count below one root move, or split the moves between this thread and
+         * another. Each root move gets its own model.
+         */
+        @Override
+        protected Result compute() {
+            if (to <= from)
+                return new Result();
+            if (to - from == 1) {
+                Walker walker = new Walker(perft.createModel(), validate);
+                walker.make(moves[from]);
+                Result result = walker.count(depth - 1);
+                walker.unmake();
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            RootMoves left = new RootMoves(perft, moves, from, middle, depth, validate);
+            left.fork();
+            Result result = new RootMoves(perft, moves, middle, to, depth, validate).compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Walks the moves from a position on one thread.
+     */
+    private static final class Walker {
+
+        private final StrategoModel model;
+        private final BoardState state;
+        private final boolean validate;
+
+        // Controllers of both teams, used when validating
+        private final StrategoController red;
+        private final StrategoController blue;
+
+        // Move buffers for every ply
+        private final int[][] buffers = new int[BoardState.MAX_UNDO][];
+        private final int[] check = new int[MoveGenerator.MAX_MOVES];
+
+        private final Result result = new Result();
+
+        /**
+         * Create a walker for a model.
+         */
+        Walker(StrategoModel model, boolean validate) {
+            this.model = model;
+            this.state = model.getState();
+            this.validate = validate;
+            red = new StrategoController(model, GamePiece.RED_TEAM);
+            blue = new StrategoController(model, GamePiece.BLUE_TEAM);
+            red.setPlacement(false);
+            blue.setPlacement(false);
+        }
+
+        /**
+         * Count the sequences of moves to a depth from the current position.
+         *
+         * @return Counts, including the current position as a node.
+         */
+        Result count(int depth) {
+            if (validate)
+                validate();
+            perft(depth);
+            return result;
+        }
+
+        /**
+         * Count the leaves below the current position.
+         */
+        private long perft(int depth) {
+            result.nodes++;
+            if (depth == 0) {
+                result.leaves++;
+                return 1;
+            }
+            if (state.hasLost(false) || state.hasLost(true)) {
+                result.gameEnds++;
+                return 0;
+            }
+            int ply = state.getPly();
+            int[] moves = buffers[ply];
+            if (moves == null)
+                moves = buffers[ply] = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateAll(state, state.getTurn(), moves);
+            if (validate)
+                validateMoves(moves, count);
+
+            // The last move of a sequence only needs to be counted, not made
+            if (depth == 1 && !validate) {
+                for (int i = 0; i < count; i++) {
+                    if (state.isOccupied(Move.to(moves[i])))
+                        result.battles++;
+                }
+                result.nodes += count;
+                result.leaves += count;
+                return count;
+            }
+
+            long leaves = 0;
+            for (int i = 0; i < count; i++) {
+                make(moves[i]);
+                leaves += perft(depth - 1);
+                unmake();
+            }
+            return leaves;
+        }
+
+        /**
+         * Make a move and count it if it is a battle, checking the position
+         * afterwards when validating.
+         */
+        void make(int move) {
+            if (state.isOccupied(Move.to(move)))
+                result.battles++;
+            if (!validate) {
+                state.makeMove(move);
+                return;
+            }
+            model.makeMove(move);
+            validate();
+        }
+
+        /**
+         * Take back the last move, checking that the position is the same as
+         * before it when validating.
+         */
+        void unmake() {
+            if (!validate) {
+                state.unmakeMove();
+                return;
+            }
+            model.unmakeMove();
+            validate();
+        }
+
+        /**
+         * Check that the hash matches the pieces and that the model's pieces
+         * match the board.
+         */
+        private void validate() {
+            if (state.getHash() != state.computeHash())
+                fail("hash does not match the pieces");
+            for (int sq = 0; sq < StrategoModel.ROWS * StrategoModel.COLS; sq++) {
+                GamePiece piece = model.getPiece(sq);
+                if (piece == null ? state.isOccupied(sq)
+                        : !state.isOccupied(sq, piece.getTeam()) || state.getType(sq) != piece.getPieceType()
+                                || !Loc.of(sq).equals(piece.getLocation()))
+                    fail("model and board differ on " + Loc.of(sq));
+            }
+        }
+
+        /**
+         * Compare the generated moves with the controller and the reference for
+         * every piece of the team to move.
+         */
+        private void validateMoves(int[] moves, int count) {
+            boolean team = state.getTurn();
+            StrategoController controller = team ? blue : red;
+            int total = 0;
+            for (int sq = 0; sq < StrategoModel.ROWS * StrategoModel.COLS; sq++) {
+                GamePiece piece = model.getPiece(sq);
+                if (piece == null || piece.getTeam() != team)
+                    continue;
+                Loc loc = Loc.of(sq);
+                Set<Loc> generated = new HashSet<>();
+                for (int i = 0; i < count; i++) {
+                    if (Move.from(moves[i]) == sq)
+                        generated.add(Loc.of(Move.to(moves[i])));
+                }
+                total += generated.size();
+                Set<Loc> reference = referenceMoves(loc, piece);
+                if (!generated.equals(reference))
+                    fail("generator gives " + generated + " but the reference gives " + reference + " from " + loc);
+                Set<Loc> offered = controller.getMoves(loc, false);
+                if (!generated.equals(offered))
+                    fail("generator gives " + generated + " but the controller offers " + offered + " from " + loc);
+                int checked = controller.getMoves(loc, false, check);
+                if (checked != generated.size())
+                    fail("controller writes " + checked + " moves from " + loc);
+            }
+            if (total != count)
+                fail("generator gives " + count + " moves, " + total + " of them from the team's pieces");
+        }
+
+        /**
+         * Find the moves of a piece by stepping over the board in each
+         * direction.
+         */
+        private Set<Loc> referenceMoves(Loc loc, GamePiece piece) {
+            Set<Loc> moves = new HashSet<>();
+            PieceType type = piece.getPieceType();
+            if (type == PieceType.FLAG || type == PieceType.BOMB)
+                return moves;
+            int reach = type == PieceType.SCOUT ? StrategoModel.ROWS : 1;
+            for (Direction dir : Direction.values()) {
+                for (int dist = 1; dist <= reach; dist++) {
+                    Loc to = loc.getRelative(dir, dist);
+                    if (!model.inBounds(to) || StrategoRules.isLake(to))
+                        break;
+                    GamePiece other = model.getPiece(to);
+                    if (other != null && other.getTeam() == piece.getTeam())
+                        break;
+                    moves.add(to);
+                    if (other != null)
+                        break;
+                }
+            }
+            return moves;
+        }
+
+        /**
+         * Report a difference found while validating.
+         */
+        private void fail(String message) {
+            throw new IllegalStateException(message + " at ply " + state.getPly());
+        }
+    }
+
+    /**
+     * Counts of a walk over the moves.
+     */
+    public static class Result {
+        long leaves;
+        long nodes;
+        long battles;
+        long gameEnds;
+        long elapsed;
+
+        /**
+         * Add the counts of another walk to these counts.
+         *
+         * @param other Counts to add.
+         */
+        void merge(Result other) {
+            leaves += other.leaves;
+            nodes += other.nodes;
+            battles += other.battles;
+            gameEnds += other.gameEnds;
+        }
+
+        /**
+         * Get the number of move sequences of the full depth.
+         *
+         * @return Leaf count.
+         */
+        public long getLeaves() {
+            return leaves;
+        }
+
+        /**
+         * Get the number of positions visited, including the root and the
+         * leaves.
+         *
+         * @return Node count.
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Get the number of moves onto an enemy piece.
+         *
+         * @return Battle count.
+         */
+        public long getBattles() {
+            return battles;
+        }
+
+        /**
+         * Get the number of positions above the full depth where a team has
+         * lost.
+         *
+         * @return Number of finished games.
+         */
+        public long getGameEnds() {
+            return gameEnds;
+        }
+
+        /**
+         * Get the speed of the walk.
+         *
+         * @return Positions visited per second.
+         */
+        public double getNodesPerSecond() {
+            return elapsed == 0 ? 0 : nodes * 1e9 / elapsed;
+        }
+    }
+
+    /**
+     * Describe the counts of a walk on one line.
+     *
+     * @param label  Name of the walk.
+     * @param result Counts to describe.
+     * @return Text of the line.
+     */
+    static String report(String label, Result result) {
+        return String.format(Locale.ROOT,
+                "%-10s leaves %,d  nodes %,d  battles %,d  game ends %,d  %.1f ms  %,.0f nodes/s", label,
+                result.leaves, result.nodes, result.battles, result.gameEnds, result.elapsed / 1e6,
+                result.getNodesPerSecond());
+    }
+
+    /**
+     * Count the move sequences to each depth up to the one asked for, first on
+     * one thread and then on all of them.
+     *
+     * @param args Command line options, see the class description.
+     */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        boolean validate = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                case "-d":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "-p":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-s":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-v":
+                    validate = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (depth < 0 || depth >= BoardState.MAX_UNDO)
+                throw new IllegalArgumentException("Depth must be between 0 and " + (BoardState.MAX_UNDO - 1));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: Perft [-d depth] [-p threads] [-s seed] [-v]");
+            if (e.getMessage() != null)
+                System.err.println(e.getMessage());
+            System.exit(1);
+        }
+
+        Perft perft = new Perft(seed);
+        System.out.println("Seed " + seed + (validate ? ", validating" : ""));
+        for (int d = 1; d <= depth; d++) {
+            System.out.println("Depth " + d);
+            Result single = perft.run(d, 1, validate);
+            System.out.println(report("1 thread", single));
+            if (threads > 1) {
+                Result parallel = perft.run(d, threads, validate);
+                System.out.println(report(threads + " threads", parallel));
+                if (parallel.leaves != single.leaves) {
+                    System.err.println("Leaf counts differ");
+                    System.exit(1);
+                }
+            }
+        }
+    }
+}
@@ -5,6 +5,9 @@ import view.StrategoView;
 
 /**
  * Starts the Stratego game.
+ *
+ * Usage: {@code Stratego [--renderer=canvas|cells]}. The board is drawn with a
+ * node per square unless the canvas renderer is chosen.
  */
 public class Stratego {
 
@@ -0,0 +1,590 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import ai.Agent;
+import ai.AlphaBetaSearch;
+import ai.ISMCTS;
+import ai.RandomAgent;
+import ai.ScriptedAgent;
+import ai.SearchAgent;
+import model.BoardState;
+import model.GameJournal;
+import model.GamePiece;
+import model.MoveGenerator;
+import model.Setups;
+import model.StrategoModel;
+
+/**
+ * Plays games between two agents without a user interface or network
+ * connection and reports how they did. Games are spread over a fork-join pool.
+ * Every game starts from random setups for both teams, and the agents take
+ * turns playing red. Games can be recorded to a folder with a
+ * {@link GameJournal} each, e.g. as training data.
+ *
+ * Usage: {@code Tournament [-n games] [-a agent] [-b agent] [-t millis]
+ * [-p threads] [-s seed] [-m plies] [-j folder]}, where an agent is one of
+ * random, scripted, alphabeta or ismcts.
+ */
+public class Tournament {
+
+    /**
+     * Moves after which a game is a draw, unless set otherwise.
+     */
+    public static final int MAX_PLIES = 2000;
+
+    // Normal quantile for 95% confidence intervals
+    private static final double Z = 1.96;
+
+    // Log2 of the number of transposition table entries of each alpha-beta agent
+    private static final int TABLE_BITS = 16;
+
+    private final String agentA;
+    private final String agentB;
+    private final int games;
+    private final long moveTime;
+    private final int threads;
+    private final long seed;
+    private final int maxPlies;
+
+    // Folder the games are recorded to, or null
+    private final Path journals;
+
+    /**
+     * Create a tournament.
+     *
+     * @param agentA   Name of the first agent.
+     * @param agentB   Name of the second agent.
+     * @param games    Number of games to play.
+     * @param moveTime Time budget per move of search agents in milliseconds.
+     * @param threads  Number of games played at the same time.
+     * @param seed     Seed for the setups and agents, so runs can be repeated.
+     * @param maxPlies Moves after which a game is a draw.
+     */
+    public Tournament(String agentA, String agentB, int games, long moveTime, int threads, long seed,
+            int maxPlies) {
+        this(agentA, agentB, games, moveTime, threads, seed, maxPlies, null);
+    }
+
+    /**
+     * Create a tournament that records its games.
+     *
+     * @param agentA   Name of the first agent.
+     * @param agentB   Name of the second agent.
+     * @param games    Number of games to play.
+     * @param moveTime Time budget per move of search agents in milliseconds.
+     * @param threads  Number of games played at the same time.
+     * @param seed     Seed for the setups and agents, so runs can be repeated.
+     * @param maxPlies Moves after which a game is a draw.
+     * @param journals Folder to write a journal of each game to, named by the
+     *                 number of the game, or null to not record the games.
+     */
+    public Tournament(String agentA, String agentB, int games, long moveTime, int threads, long seed,
+            int maxPlies, Path journals) {
+        this.agentA = agentA;
+        this.agentB = agentB;
+        this.games = games;
+        this.moveTime = moveTime;
+        this.threads = threads;
+        this.seed = seed;
+        this.maxPlies = maxPlies;
+        this.journals = journals;
+        // Fail early on unknown agent names
+        createAgent(agentA, new SplittableRandom()).close();
+        createAgent(agentB, new SplittableRandom()).close();
+    }
+
+    /**
+     * Create an agent by name.
+     *
+     * @param name   random, scripted, alphabeta or ismcts.
+     * @param random Source of randomness for the agent.
+     * @return New agent.
+     * @throws IllegalArgumentException if the name is unknown.
+     */
+    private Agent createAgent(String name, SplittableRandom random) {
+        switch (name) {
+        case "random":
+            return new RandomAgent(random);
+        case "scripted":
+            return new ScriptedAgent();
+        case "alphabeta":
+            return new SearchAgent(new AlphaBetaSearch(TABLE_BITS), moveTime, random.split());
+        case "ismcts":
+            return new SearchAgent(new ISMCTS(1, random.nextLong()), moveTime);
+        default:
+            throw new IllegalArgumentException("Unknown agent: " + name);
+        }
+    }
+
+    /**
+     * Play all the games.
+     *
+     * @return Combined results.
+     */
+    public Result run() {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            Result result = pool.invoke(new Games(this, 0, games));
+            result.elapsed = System.nanoTime() - start;
+            return result;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Play one game. Agent A plays red in even games and blue in odd games.
+     *
+     * @param index Number of the game, which determines its random numbers.
+     * @return Result of the game.
+     * @throws UncheckedIOException If the game's journal cannot be written.
+     */
+    Result playGame(int index) {
+        Result result = new Result();
+        SplittableRandom random = new SplittableRandom(seed ^ (index * 0x9E3779B97F4A7C15L));
+        boolean teamA = index % 2 == 0 ? GamePiece.RED_TEAM : GamePiece.BLUE_TEAM;
+        Agent a = createAgent(agentA, random.split());
+        Agent b = createAgent(agentB, random.split());
+        GameJournal journal = null;
+        try {
+            StrategoModel model = new StrategoModel();
+            Setups.placeRandom(model, GamePiece.RED_TEAM, random);
+            Setups.placeRandom(model, GamePiece.BLUE_TEAM, random);
+            BoardState state = model.getState();
+            state.setPlacement(false);
+            state.setTurn(GamePiece.RED_TEAM);
+            if (journals != null) {
+                journal = new GameJournal(journals.resolve("game-" + index + ".journal"),
+                        GameJournal.DEFAULT_INTERVAL);
+                journal.snapshot(state);
+            }
+
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int ply = 0;
+            Boolean winner = null;
+            while (winner == null && ply < maxPlies) {
+                boolean team = state.getTurn();
+                int count = MoveGenerator.generateAll(state, team, moves);
+                if (state.hasLost(!team)) {
+                    winner = team;
+                    break;
+                }
+                if (state.hasLost(team) || count == 0) {
+                    winner = !team;
+                    break;
+                }
+                boolean isA = team == teamA;
+                long time = System.nanoTime();
+                int move = (isA ? a : b).chooseMove(state);
+                time = System.nanoTime() - time;
+                (isA ? result.latencyA : result.latencyB).record(time);
+                if (!contains(moves, count, move)) {
+                    result.illegal++;
+                    winner = !team;
+                    break;
+                }
+                model.makeMove(move);
+                model.clearHistory();
+                if (journal != null)
+                    journal.recordMove(move, state);
+                ply++;
+            }
+            if (journal != null)
+                journal.close();
+
+            result.games = 1;
+            result.plies = ply;
+            if (winner == null)
+                result.draws = 1;
+            else if (winner == teamA)
+                result.winsA = 1;
+            else
+                result.winsB = 1;
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            a.close();
+            b.close();
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    // The game failed already, which is reported instead
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a move is among the first entries of a buffer.
+     */
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Plays a range of games, splitting it in halves until one game is left.
+     */
+    private static class Games extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Tournament tournament;
+        private final int from;
+        private final int to;
+
+        /**
+         * Create a task for the games of a tournament from one index up to
+         * another.
+         */
+        Games(Tournament tournament, int from, int to) {
+            this.tournament = tournament;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Play the games, or split them between this thread and another.
+         */
+        @Override
+        protected Result compute() {
+            if (to - from == 1)
+                return tournament.playGame(from);
+            if (to <= from)
+                return new Result();
+            int middle = (from + to) >>> 1;
+            Games left = new Games(tournament, from, middle);
+            left.fork();
+            Result result = new Games(tournament, middle, to).compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+
+    /**
+     * Results of one or more games, from the point of view of agent A.
+     */
+    public static class Result {
+        int games;
+        int winsA;
+        int winsB;
+        int draws;
+        int illegal;
+        long plies;
+        long elapsed;
+        final Histogram latencyA = new Histogram();
+        final Histogram latencyB = new Histogram();
+
+        /**
+         * Add the results of other games to these results.
+         *
+         * @param other Results to add.
+         */
+        void merge(Result other) {
+            games += other.games;
+            winsA += other.winsA;
+            winsB += other.winsB;
+            draws += other.draws;
+            illegal += other.illegal;
+            plies += other.plies;
+            latencyA.merge(other.latencyA);
+            latencyB.merge(other.latencyB);
+        }
+
+        /**
+         * Get the number of games played.
+         *
+         * @return Number of games.
+         */
+        public int getGames() {
+            return games;
+        }
+
+        /**
+         * Get the number of games won by agent A.
+         *
+         * @return Wins of agent A.
+         */
+        public int getWinsA() {
+            return winsA;
+        }
+
+        /**
+         * Get the number of games won by agent B.
+         *
+         * @return Wins of agent B.
+         */
+        public int getWinsB() {
+            return winsB;
+        }
+
+        /**
+         * Get the number of games that reached the move limit.
+         *
+         * @return Number of draws.
+         */
+        public int getDraws() {
+            return draws;
+        }
+
+        /**
+         * Get the move latencies of agent A.
+         *
+         * @return Latency histogram.
+         */
+        public Histogram getLatencyA() {
+            return latencyA;
+        }
+
+        /**
+         * Get the score of agent A, counting a draw as half a win.
+         *
+         * @return Score between 0 and 1.
+         */
+        public double getScore() {
+            return games == 0 ? 0 : (winsA + draws / 2.0) / games;
+        }
+
+        /**
+         * Get the number of games played per second.
+         *
+         * @return Games per second.
+         */
+        public double getGamesPerSecond() {
+            return elapsed == 0 ? 0 : games * 1e9 / elapsed;
+        }
+    }
+
+    /**
+     * Counts move latencies in buckets that double in width.
+     */
+    public static class Histogram {
+        // Bucket k counts latencies from 2^k up to 2^(k+1) nanoseconds
+        private final long[] buckets = new long[64];
+        private long count;
+        private long total;
+
+        /**
+         * Count one latency.
+         *
+         * @param nanos Latency in nanoseconds.
+         */
+        public void record(long nanos) {
+            buckets[63 - Long.numberOfLeadingZeros(Math.max(nanos, 1))]++;
+            count++;
+            total += nanos;
+        }
+
+        /**
+         * Add the counts of another histogram to this one.
+         *
+         * @param other Histogram to add.
+         */
+        public void merge(Histogram other) {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] += other.buckets[i];
+            count += other.count;
+            total += other.total;
+        }
+
+        /**
+         * Get the number of latencies counted.
+         *
+         * @return Count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the mean latency.
+         *
+         * @return Mean in nanoseconds.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Get an upper bound for a percentile of the latencies.
+         *
+         * @param fraction Percentile as a fraction, e.g. 0.99.
+         * @return Upper edge of the bucket that holds the percentile, in
+         *         nanoseconds.
+         */
+        public long getPercentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0)
+                    return 2L << i;
+            }
+            return 0;
+        }
+
+        /**
+         * Write the non-empty buckets, one per line, with a bar of up to 40
+         * characters.
+         *
+         * @param out Builder to write to.
+         */
+        void print(StringBuilder out) {
+            long max = 0;
+            for (long bucket : buckets)
+                max = Math.max(max, bucket);
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] == 0)
+                    continue;
+                out.append(String.format(Locale.ROOT, "  %9s - %-9s %10d ", time(1L << i), time(2L << i),
+                        buckets[i]));
+                for (long bar = buckets[i] * 40 / max; bar > 0; bar--)
+                    out.append('#');
+                out.append('\n');
+            }
+        }
+    }
+
+    /**
+     * Get the Wilson score interval of a proportion.
+     *
+     * @param successes Number of successes, which may be fractional.
+     * @param trials    Number of trials.
+     * @return Lower and upper bounds of the 95% confidence interval.
+     */
+    public static double[] wilson(double successes, int trials) {
+        if (trials == 0)
+            return new double[] { 0, 1 };
+        double p = successes / trials;
+        double z2 = Z * Z;
+        double denominator = 1 + z2 / trials;
+        double center = (p + z2 / (2 * trials)) / denominator;
+        double half = Z * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+        return new double[] { Math.max(0, center - half), Math.min(1, center + half) };
+    }
+
+    /**
+     * Format a duration with a unit that suits it.
+     */
+    private static String time(double nanos) {
+        if (nanos < 1e3)
+            return String.format(Locale.ROOT, "%.0fns", nanos);
+        if (nanos < 1e6)
+            return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+        if (nanos < 1e9)
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        return String.format(Locale.ROOT, "%.1fs", nanos / 1e9);
+    }
+
+    /**
+     * Describe the results of the tournament.
+     *
+     * @param result Results to describe.
+     * @return Report of several lines.
+     */
+    public String report(Result result) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%d games of %s vs %s, %.1f games/s, %.1f moves/game%n", result.games,
+                agentA, agentB, result.getGamesPerSecond(),
+                result.games == 0 ? 0.0 : (double) result.plies / result.games));
+        double[] interval = wilson(result.winsA + result.draws / 2.0, result.games);
+        out.append(String.format(Locale.ROOT,
+                "%s: %d wins, %d losses, %d draws, score %.1f%% (95%% CI %.1f%% - %.1f%%)%n", agentA, result.winsA,
+                result.winsB, result.draws, 100 * result.getScore(), 100 * interval[0], 100 * interval[1]));
+        if (result.illegal > 0)
+            out.append(result.illegal).append(" games lost by an illegal move\n");
+        printLatency(out, agentA, result.latencyA);
+        printLatency(out, agentB, result.latencyB);
+        return out.toString();
+    }
+
+    /**
+     * Describe the move latencies of an agent.
+     */
+    private static void printLatency(StringBuilder out, String name, Histogram latency) {
+        out.append(String.format(Locale.ROOT, "%s move latency: mean %s, p50 < %s, p99 < %s, %d moves%n", name,
+                time(latency.getMean()), time(latency.getPercentile(0.5)), time(latency.getPercentile(0.99)),
+                latency.getCount()));
+        latency.print(out);
+    }
+
+    /**
+     * Run a tournament from the command line.
+     *
+     * @param args Options, see the class description.
+     */
+    public static void main(String[] args) {
+        String agentA = "alphabeta";
+        String agentB = "random";
+        int games = 100;
+        long moveTime = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        int maxPlies = MAX_PLIES;
+        Path journals = null;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                case "-n":
+                    games = Integer.parseInt(value);
+                    break;
+                case "-a":
+                    agentA = value;
+                    break;
+                case "-b":
+                    agentB = value;
+                    break;
+                case "-t":
+                    moveTime = Long.parseLong(value);
+                    break;
+                case "-p":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "-s":
+                    seed = Long.parseLong(value);
+                    break;
+                case "-m":
+                    maxPlies = Integer.parseInt(value);
+                    break;
+                case "-j":
+                    journals = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (journals != null)
+                Files.createDirectories(journals);
+            Tournament tournament = new Tournament(agentA, agentB, games, moveTime, threads, seed, maxPlies,
+                    journals);
+            System.out.println("Seed " + seed);
+            System.out.print(tournament.report(tournament.run()));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: Tournament [-n games] [-a agent] [-b agent] [-t millis] [-p threads]"
+                    + " [-s seed] [-m plies] [-j folder]");
+            System.err.println("Agents: random, scripted, alphabeta, ismcts");
+            if (e.getMessage() != null)
+                System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Cannot create " + journals + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
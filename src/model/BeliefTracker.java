@@ -0,0 +1,350 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.Observer;
+
+import network.StrategoMessage;
+import network.StrategoPieceBattle;
+import network.StrategoPieceUpdate;
+import network.StrategoPlacementBatch;
+
+/**
+ * Keeps what one team believes about the types of the enemy pieces it cannot
+ * see. Every unrevealed enemy piece has a probability for each piece type.
+ *
+ * The tracker observes a model and learns from the messages that any player
+ * could see: a piece that moves during the game is not a bomb or flag, a piece
+ * that moves more than one square is a scout, and a piece that battles is
+ * revealed. Revealed pieces are taken out of the pool of types the other
+ * pieces can have.
+ *
+ * Messages only update the evidence for one piece and the pool, which takes
+ * constant time. The probabilities are fitted to the evidence and the pool by
+ * iterative proportional fitting the next time they are read.
+ */
+public class BeliefTracker implements Observer {
+
+    private static final int TYPES = BoardState.TYPES;
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private static final int FLAG = PieceType.FLAG.ordinal();
+    private static final int BOMB = PieceType.BOMB.ordinal();
+    private static final int SCOUT = PieceType.SCOUT.ordinal();
+
+    // Rounds of fitting, and the error at which fitting stops early
+    private static final int FITTING_ROUNDS = 20;
+    private static final double TOLERANCE = 1e-6;
+
+    private final StrategoModel model;
+    private final boolean enemy;
+
+    // Whether each square holds an enemy piece that is tracked, and whether it
+    // has been revealed
+    private final boolean[] tracked = new boolean[Bitboard.SQUARES];
+    private final boolean[] known = new boolean[Bitboard.SQUARES];
+
+    // Evidence for each (square, type): 1 if the piece could have the type,
+    // 0 if it cannot
+    private final double[] evidence = new double[Bitboard.SQUARES * TYPES];
+
+    // Fitted probabilities for each (square, type)
+    private final double[] probability = new double[Bitboard.SQUARES * TYPES];
+    private boolean dirty = true;
+
+    // Expected number of pieces of each type while fitting
+    private final double[] columns = new double[TYPES];
+
+    // Number of unrevealed enemy pieces of each type
+    private final int[] pool = new int[TYPES];
+
+    /**
+     * Create a tracker for a team and start observing a model. Enemy pieces that
+     * are already on the board are taken into account.
+     *
+     * @param model Model to observe.
+     * @param team  Team whose beliefs are tracked.
+     */
+    public BeliefTracker(StrategoModel model, boolean team) {
+        this.model = model;
+        this.enemy = !team;
+        BoardState state = model.getState();
+        for (PieceType type : PIECE_TYPES) {
+            // Every piece that has left the board was revealed in battle
+            pool[type.ordinal()] = state.isPlacement() ? type.getQuantity() : state.getCount(enemy, type);
+        }
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            if (!state.isOccupied(sq, enemy))
+                continue;
+            track(sq);
+            if (state.hasMoved(sq))
+                exclude(sq, BOMB, FLAG);
+            if (state.isRevealed(sq))
+                reveal(sq, state.getType(sq));
+        }
+        model.addObserver(this);
+    }
+
+    /**
+     * Learn from a change to the model.
+     *
+     * @param o   Model instance
+     * @param arg Message describing the change
+     */
+    @Override
+    public void update(Observable o, Object arg) {
+        StrategoMessage msg = (StrategoMessage) arg;
+        if (msg.isPlacementBatch()) {
+            for (StrategoPieceUpdate update : ((StrategoPlacementBatch) msg).getUpdates())
+                learn(update);
+        } else if (msg.isPieceUpdate()) {
+            learn((StrategoPieceUpdate) msg);
+        }
+    }
+
+    /**
+     * Learn from one piece update.
+     */
+    private void learn(StrategoPieceUpdate update) {
+        if (update instanceof StrategoPieceBattle) {
+            // Both pieces are still on their squares
+            revealPiece(update.getFromSquare());
+            revealPiece(update.getToSquare());
+        } else if (update.isPlacement()) {
+            if (update.getTeam() == enemy)
+                track(update.getToSquare());
+        } else if (update.isMove()) {
+            int from = update.getFromSquare();
+            int to = update.getToSquare();
+            untrack(to);
+            if (tracked[from])
+                move(from, to);
+        } else if (update.isRemove()) {
+            untrack(update.getFromSquare());
+        }
+    }
+
+    /**
+     * Get the probability that the enemy piece on a square has a type.
+     *
+     * @param sq   Square index.
+     * @param type Piece type.
+     * @return Probability between 0 and 1, or 0 if no enemy piece is tracked on
+     *         the square.
+     */
+    public double getProbability(int sq, PieceType type) {
+        fit();
+        return probability[sq * TYPES + type.ordinal()];
+    }
+
+    /**
+     * Get the most likely type of the enemy piece on a square.
+     *
+     * @param sq Square index.
+     * @return Most likely type, or null if no enemy piece is tracked on the
+     *         square.
+     */
+    public PieceType getLikelyType(int sq) {
+        if (!tracked[sq])
+            return null;
+        fit();
+        int best = 0;
+        for (int t = 1; t < TYPES; t++) {
+            if (probability[sq * TYPES + t] > probability[sq * TYPES + best])
+                best = t;
+        }
+        return PIECE_TYPES[best];
+    }
+
+    /**
+     * Copy the probabilities of the enemy piece on a square into an array.
+     *
+     * @param sq  Square index.
+     * @param out Array of at least {@link BoardState#TYPES} entries, indexed by
+     *            type ordinal.
+     */
+    public void getDistribution(int sq, double[] out) {
+        fit();
+        System.arraycopy(probability, sq * TYPES, out, 0, TYPES);
+    }
+
+    /**
+     * Checks whether an enemy piece on a square is tracked.
+     *
+     * @param sq Square index.
+     * @return True if an enemy piece is tracked on the square.
+     */
+    public boolean isTracked(int sq) {
+        return tracked[sq];
+    }
+
+    /**
+     * Checks whether the enemy piece on a square has been revealed.
+     *
+     * @param sq Square index.
+     * @return True if the piece is tracked and its type is known.
+     */
+    public boolean isKnown(int sq) {
+        return known[sq];
+    }
+
+    /**
+     * Get the number of unrevealed enemy pieces of a type.
+     *
+     * @param type Piece type.
+     * @return Number of pieces in the pool.
+     */
+    public int getPoolCount(PieceType type) {
+        return pool[type.ordinal()];
+    }
+
+    /**
+     * Start tracking an unknown enemy piece that could be of any type.
+     */
+    private void track(int sq) {
+        tracked[sq] = true;
+        known[sq] = false;
+        for (int t = 0; t < TYPES; t++)
+            evidence[sq * TYPES + t] = 1;
+        dirty = true;
+    }
+
+    /**
+     * Stop tracking a square, e.g. after its piece was captured.
+     */
+    private void untrack(int sq) {
+        if (!tracked[sq])
+            return;
+        tracked[sq] = false;
+        known[sq] = false;
+        for (int t = 0; t < TYPES; t++)
+            evidence[sq * TYPES + t] = 0;
+        dirty = true;
+    }
+
+    /**
+     * Move the beliefs about a piece to another square and learn from how far it
+     * moved.
+     */
+    private void move(int from, int to) {
+        System.arraycopy(evidence, from * TYPES, evidence, to * TYPES, TYPES);
+        tracked[to] = true;
+        known[to] = known[from];
+        tracked[from] = false;
+        known[from] = false;
+        for (int t = 0; t < TYPES; t++)
+            evidence[from * TYPES + t] = 0;
+        dirty = true;
+
+        if (known[to] || model.getState().isPlacement())
+            return;
+        int distance = Math.abs(Bitboard.row(to) - Bitboard.row(from))
+                + Math.abs(Bitboard.col(to) - Bitboard.col(from));
+        if (distance > 1) {
+            for (int t = 0; t < TYPES; t++) {
+                if (t != SCOUT)
+                    evidence[to * TYPES + t] = 0;
+            }
+        } else {
+            exclude(to, BOMB, FLAG);
+        }
+    }
+
+    /**
+     * Rule out two types for a piece.
+     */
+    private void exclude(int sq, int type1, int type2) {
+        evidence[sq * TYPES + type1] = 0;
+        evidence[sq * TYPES + type2] = 0;
+        dirty = true;
+    }
+
+    /**
+     * Learn the type of a piece on a square from the model, if it is an enemy
+     * piece that is not known yet.
+     */
+    private void revealPiece(int sq) {
+        if (!tracked[sq] || known[sq])
+            return;
+        GamePiece piece = model.getPiece(sq);
+        if (piece != null)
+            reveal(sq, piece.getPieceType());
+    }
+
+    /**
+     * Mark the piece on a square as known to have a type and take it out of the
+     * pool.
+     */
+    private void reveal(int sq, PieceType type) {
+        known[sq] = true;
+        for (int t = 0; t < TYPES; t++)
+            evidence[sq * TYPES + t] = 0;
+        evidence[sq * TYPES + type.ordinal()] = 1;
+        if (pool[type.ordinal()] > 0)
+            pool[type.ordinal()]--;
+        dirty = true;
+    }
+
+    /**
+     * Fit the probabilities of the unknown pieces so that every piece's
+     * probabilities add up to one and the expected number of pieces of each type
+     * matches the pool, as far as the evidence allows.
+     */
+    private void fit() {
+        if (!dirty)
+            return;
+        dirty = false;
+        System.arraycopy(evidence, 0, probability, 0, probability.length);
+
+        // The pool may be larger than the number of unknown pieces while the
+        // enemy is still placing pieces
+        int unknown = 0;
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            if (tracked[sq] && !known[sq])
+                unknown++;
+        }
+        int total = 0;
+        for (int t = 0; t < TYPES; t++)
+            total += pool[t];
+        if (unknown == 0 || total == 0)
+            return;
+        double scale = (double) unknown / total;
+
+        for (int round = 0; round < FITTING_ROUNDS; round++) {
+            // Make every piece's probabilities add up to one
+            Arrays.fill(columns, 0);
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                if (!tracked[sq] || known[sq])
+                    continue;
+                int base = sq * TYPES;
+                double sum = 0;
+                for (int t = 0; t < TYPES; t++)
+                    sum += probability[base + t];
+                if (sum == 0)
+                    continue;
+                for (int t = 0; t < TYPES; t++) {
+                    probability[base + t] /= sum;
+                    columns[t] += probability[base + t];
+                }
+            }
+            if (round == FITTING_ROUNDS - 1)
+                break;
+            // Scale each type to the number of pieces of that type in the pool
+            double error = 0;
+            for (int t = 0; t < TYPES; t++) {
+                double target = pool[t] * scale;
+                error = Math.max(error, Math.abs(columns[t] - target));
+                columns[t] = columns[t] == 0 ? 0 : target / columns[t];
+            }
+            if (error < TOLERANCE)
+                break;
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                if (!tracked[sq] || known[sq])
+                    continue;
+                int base = sq * TYPES;
+                for (int t = 0; t < TYPES; t++)
+                    probability[base + t] *= columns[t];
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package model;
+
+/**
+ * Helpers for working with 128-bit square masks. The squares of the board are
+ * numbered row by row ({@code row * COLS + col}), so the 100 squares fit in two
+ * longs: squares 0-63 live in the low word of a mask and squares 64-99 in the
+ * high word. Masks are stored as pairs of longs and indexed with
+ * {@link #word(int)} and {@link #bit(int)}.
+ */
+public final class Bitboard {
+
+    public static final int SQUARES = StrategoModel.ROWS * StrategoModel.COLS;
+
+    /**
+     * Mask of the lake squares in the middle of the board. Both lakes lie in the
+     * low word.
+     */
+    public static final long LAKES_LO;
+    public static final long LAKES_HI = 0L;
+
+    // Setup zones, indexed by team index (0 for red, 1 for blue)
+    private static final long[] SETUP_LO = new long[2];
+    private static final long[] SETUP_HI = new long[2];
+
+    public static final int SETUP_ROWS = 4;
+
+    static {
+        long lakes = 0L;
+        for (int row = 4; row <= 5; row++) {
+            for (int col : new int[] { 2, 3, 6, 7 }) {
+                lakes |= bit(square(row, col));
+            }
+        }
+        LAKES_LO = lakes;
+
+        for (int team = 0; team < 2; team++) {
+            int startRow = team == 0 ? StrategoModel.ROWS - SETUP_ROWS : 0;
+            for (int row = startRow; row < startRow + SETUP_ROWS; row++) {
+                for (int col = 0; col < StrategoModel.COLS; col++) {
+                    int sq = square(row, col);
+                    if (word(sq) == 0)
+                        SETUP_LO[team] |= bit(sq);
+                    else
+                        SETUP_HI[team] |= bit(sq);
+                }
+            }
+        }
+    }
+
+    private Bitboard() {
+    }
+
+    /**
+     * Get the square index of a row and column. The coordinates are assumed to be
+     * on the board.
+     *
+     * @param row Board row.
+     * @param col Board column.
+     * @return Square index in the range 0-99.
+     */
+    public static int square(int row, int col) {
+        return row * StrategoModel.COLS + col;
+    }
+
+    /**
+     * Get the row of a square index.
+     *
+     * @param sq Square index.
+     * @return Board row.
+     */
+    public static int row(int sq) {
+        return sq / StrategoModel.COLS;
+    }
+
+    /**
+     * Get the column of a square index.
+     *
+     * @param sq Square index.
+     * @return Board column.
+     */
+    public static int col(int sq) {
+        return sq % StrategoModel.COLS;
+    }
+
+    /**
+     * Checks whether a row and column lie on the board.
+     *
+     * @param row Board row.
+     * @param col Board column.
+     * @return True if the coordinates are on the board.
+     */
+    public static boolean inBounds(int row, int col) {
+        return row >= 0 && row < StrategoModel.ROWS && col >= 0 && col < StrategoModel.COLS;
+    }
+
+    /**
+     * Get which word of a mask holds a square.
+     *
+     * @param sq Square index.
+     * @return 0 for the low word, 1 for the high word.
+     */
+    public static int word(int sq) {
+        return sq >>> 6;
+    }
+
+    /**
+     * Get the bit that represents a square within its word.
+     *
+     * @param sq Square index.
+     * @return Single bit mask.
+     */
+    public static long bit(int sq) {
+        return 1L << (sq & 63);
+    }
+
+    /**
+     * Checks whether a square is one of the lakes.
+     *
+     * @param sq Square index.
+     * @return True if the square is a lake.
+     */
+    public static boolean isLake(int sq) {
+        return word(sq) == 0 && (LAKES_LO & bit(sq)) != 0;
+    }
+
+    /**
+     * Checks whether a square is inside a team's setup zone.
+     *
+     * @param team False for red, true for blue.
+     * @param sq   Square index.
+     * @return True if the team may place pieces on the square.
+     */
+    public static boolean inSetupZone(boolean team, int sq) {
+        int t = team ? 1 : 0;
+        long mask = word(sq) == 0 ? SETUP_LO[t] : SETUP_HI[t];
+        return (mask & bit(sq)) != 0;
+    }
+
+    /**
+     * Get the low word of a team's setup zone.
+     *
+     * @param team False for red, true for blue.
+     * @return Low word of the setup zone mask.
+     */
+    public static long setupLo(boolean team) {
+        return SETUP_LO[team ? 1 : 0];
+    }
+
+    /**
+     * Get the high word of a team's setup zone.
+     *
+     * @param team False for red, true for blue.
+     * @return High word of the setup zone mask.
+     */
+    public static long setupHi(boolean team) {
+        return SETUP_HI[team ? 1 : 0];
+    }
+}
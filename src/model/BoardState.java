@@ -0,0 +1,605 @@
+package model;
+
+/**
+ * Primitive representation of the pieces on the board. Each team has a 128-bit
+ * occupancy mask and one 128-bit mask per piece type, and a byte per square
+ * holds the piece code so the piece on a square can be found without scanning
+ * the masks.
+ *
+ * A piece code is 0 for an empty square, otherwise
+ * {@code 1 + teamIndex * TYPES + type.ordinal()}, where the team index is 0 for
+ * red and 1 for blue.
+ *
+ * Moves can be applied with {@link #makeMove(int)} and taken back with
+ * {@link #unmakeMove()}, which keep the information needed to restore the board
+ * on a fixed size undo stack.
+ *
+ * Piece counters by team and type, and the material value of each team, are
+ * kept up to date as pieces are put and cleared so that questions such as
+ * whether a team has lost are answered in constant time.
+ *
+ * A {@link Zobrist} hash of the pieces, their reveal flags, the team to move
+ * and the game phase is updated with every change.
+ *
+ * Pieces that have moved during the game are marked as well, since a piece that
+ * has moved is known not to be a bomb or flag. The mark is not part of the
+ * hash.
+ */
+public class BoardState {
+
+    public static final int TYPES = PieceType.values().length;
+
+    /**
+     * Number of moves that can be made before they have to be unmade or the
+     * history cleared.
+     */
+    public static final int MAX_UNDO = 1024;
+
+    // Layout of an undo record: the move in the low bits, then the codes and
+    // reveal flags of the attacking and attacked pieces
+    private static final int ATTACKER_SHIFT = 14;
+    private static final int DEFENDER_SHIFT = 19;
+    private static final int CODE_MASK = 0x1F;
+    private static final int ATTACKER_REVEALED = 1 << 24;
+    private static final int DEFENDER_REVEALED = 1 << 25;
+    private static final int ATTACKER_MOVED = 1 << 26;
+    private static final int DEFENDER_MOVED = 1 << 27;
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private static final int FLAG = PieceType.FLAG.ordinal();
+    private static final int BOMB = PieceType.BOMB.ordinal();
+
+    // Piece code of each square
+    private final byte[] squares = new byte[Bitboard.SQUARES];
+
+    // Occupancy masks, two words per team
+    private final long[] occupied = new long[2 * 2];
+
+    // Piece type masks, two words per (team, type)
+    private final long[] pieces = new long[2 * TYPES * 2];
+
+    // Number of pieces on the board by code - 1, and totals per team
+    private final int[] counts = new int[2 * TYPES];
+    private final int[] movable = new int[2];
+    private final int[] material = new int[2];
+
+    // Squares of pieces that have been revealed, two words
+    private final long[] revealedSquares = new long[2];
+
+    // Squares of pieces that have moved during the game, two words
+    private final long[] movedSquares = new long[2];
+
+    // Team whose turn it is
+    private boolean turn;
+
+    // True during the piece placement phase
+    private boolean placement = true;
+
+    private long hash = Zobrist.PLACEMENT;
+
+    private final int[] history = new int[MAX_UNDO];
+    private int ply;
+
+    /**
+     * Get the index used for a team in the mask arrays.
+     *
+     * @param team False for red, true for blue.
+     * @return 0 for red, 1 for blue.
+     */
+    public static int teamIndex(boolean team) {
+        return team ? 1 : 0;
+    }
+
+    /**
+     * Get the piece code for a piece type and team.
+     *
+     * @param type Piece type.
+     * @param team False for red, true for blue.
+     * @return Piece code, never 0.
+     */
+    public static int code(PieceType type, boolean team) {
+        return 1 + teamIndex(team) * TYPES + type.ordinal();
+    }
+
+    /**
+     * Get the piece type of a non-empty piece code.
+     *
+     * @param code Piece code.
+     * @return Piece type.
+     */
+    public static PieceType typeOf(int code) {
+        return PIECE_TYPES[(code - 1) % TYPES];
+    }
+
+    /**
+     * Get the team of a non-empty piece code.
+     *
+     * @param code Piece code.
+     * @return False for red, true for blue.
+     */
+    public static boolean teamOf(int code) {
+        return code > TYPES;
+    }
+
+    /**
+     * Puts an unrevealed piece on a square, replacing whatever was there.
+     *
+     * @param sq   Square index.
+     * @param type Piece type.
+     * @param team False for red, true for blue.
+     */
+    public void put(int sq, PieceType type, boolean team) {
+        put(sq, code(type, team), false);
+    }
+
+    /**
+     * Puts an unrevealed piece on a square by code, replacing whatever was there.
+     *
+     * @param sq   Square index.
+     * @param code Non-empty piece code.
+     */
+    public void put(int sq, int code) {
+        put(sq, code, false);
+    }
+
+    /**
+     * Puts a piece on a square by code, replacing whatever was there.
+     *
+     * @param sq       Square index.
+     * @param code     Non-empty piece code.
+     * @param revealed True if the piece has been revealed.
+     */
+    public void put(int sq, int code, boolean revealed) {
+        if (squares[sq] != 0)
+            clear(sq);
+        squares[sq] = (byte) code;
+        toggle(sq, code);
+        count(code, 1);
+        if (revealed)
+            revealedSquares[Bitboard.word(sq)] |= Bitboard.bit(sq);
+        hash ^= Zobrist.piece(code, revealed, sq);
+    }
+
+    /**
+     * Removes the piece on a square, if any.
+     *
+     * @param sq Square index.
+     */
+    public void clear(int sq) {
+        int code = squares[sq];
+        if (code == 0)
+            return;
+        hash ^= Zobrist.piece(code, isRevealed(sq), sq);
+        revealedSquares[Bitboard.word(sq)] &= ~Bitboard.bit(sq);
+        movedSquares[Bitboard.word(sq)] &= ~Bitboard.bit(sq);
+        squares[sq] = 0;
+        toggle(sq, code);
+        count(code, -1);
+    }
+
+    /**
+     * Moves the piece on one square to another square, replacing whatever was on
+     * the destination. The piece keeps its reveal flag, and is marked as moved
+     * unless the game is in the placement phase.
+     *
+     * @param from Square index of the piece.
+     * @param to   Destination square index.
+     */
+    public void move(int from, int to) {
+        int code = squares[from];
+        if (code == 0)
+            return;
+        boolean wasRevealed = isRevealed(from);
+        boolean wasMoved = !placement || hasMoved(from);
+        clear(from);
+        put(to, code, wasRevealed);
+        setMoved(to, wasMoved);
+    }
+
+    /**
+     * Flip the bit of a square in the occupancy and piece type masks of a piece.
+     */
+    private void toggle(int sq, int code) {
+        int word = Bitboard.word(sq);
+        long bit = Bitboard.bit(sq);
+        int team = teamOf(code) ? 1 : 0;
+        occupied[team * 2 + word] ^= bit;
+        pieces[(code - 1) * 2 + word] ^= bit;
+    }
+
+    /**
+     * Add to the piece counters of a piece.
+     */
+    private void count(int code, int delta) {
+        int team = teamOf(code) ? 1 : 0;
+        int type = (code - 1) % TYPES;
+        counts[code - 1] += delta;
+        if (type != FLAG && type != BOMB)
+            movable[team] += delta;
+        material[team] += delta * PIECE_TYPES[type].getValue();
+    }
+
+    /**
+     * Checks whether the piece on a square has been revealed.
+     *
+     * @param sq Square index.
+     * @return True if the square holds a revealed piece.
+     */
+    public boolean isRevealed(int sq) {
+        return (revealedSquares[Bitboard.word(sq)] & Bitboard.bit(sq)) != 0;
+    }
+
+    /**
+     * Sets whether the piece on a square has been revealed. Nothing happens if
+     * the square is empty.
+     *
+     * @param sq   Square index.
+     * @param flag True if the piece has been revealed.
+     */
+    public void setRevealed(int sq, boolean flag) {
+        int code = squares[sq];
+        if (code == 0 || isRevealed(sq) == flag)
+            return;
+        hash ^= Zobrist.piece(code, !flag, sq) ^ Zobrist.piece(code, flag, sq);
+        revealedSquares[Bitboard.word(sq)] ^= Bitboard.bit(sq);
+    }
+
+    /**
+     * Checks whether the piece on a square has moved during the game.
+     *
+     * @param sq Square index.
+     * @return True if the square holds a piece that has moved.
+     */
+    public boolean hasMoved(int sq) {
+        return (movedSquares[Bitboard.word(sq)] & Bitboard.bit(sq)) != 0;
+    }
+
+    /**
+     * Sets whether the piece on a square has moved during the game. Nothing
+     * happens if the square is empty.
+     *
+     * @param sq   Square index.
+     * @param flag True if the piece has moved.
+     */
+    public void setMoved(int sq, boolean flag) {
+        if (squares[sq] == 0)
+            return;
+        if (flag)
+            movedSquares[Bitboard.word(sq)] |= Bitboard.bit(sq);
+        else
+            movedSquares[Bitboard.word(sq)] &= ~Bitboard.bit(sq);
+    }
+
+    /**
+     * Get one word of the mask of squares holding revealed pieces.
+     *
+     * @param word 0 for the low word, 1 for the high word.
+     * @return Revealed mask word.
+     */
+    public long getRevealed(int word) {
+        return revealedSquares[word];
+    }
+
+    /**
+     * Get one word of the mask of squares holding pieces that have moved.
+     *
+     * @param word 0 for the low word, 1 for the high word.
+     * @return Moved mask word.
+     */
+    public long getMoved(int word) {
+        return movedSquares[word];
+    }
+
+    /**
+     * Get the piece code on a square.
+     *
+     * @param sq Square index.
+     * @return Piece code, or 0 if the square is empty.
+     */
+    public int get(int sq) {
+        return squares[sq];
+    }
+
+    /**
+     * Checks whether any piece is on a square.
+     *
+     * @param sq Square index.
+     * @return True if the square is occupied.
+     */
+    public boolean isOccupied(int sq) {
+        int word = Bitboard.word(sq);
+        return ((occupied[word] | occupied[2 + word]) & Bitboard.bit(sq)) != 0;
+    }
+
+    /**
+     * Checks whether a piece of a team is on a square.
+     *
+     * @param sq   Square index.
+     * @param team False for red, true for blue.
+     * @return True if the square holds a piece of the team.
+     */
+    public boolean isOccupied(int sq, boolean team) {
+        int word = Bitboard.word(sq);
+        return (occupied[teamIndex(team) * 2 + word] & Bitboard.bit(sq)) != 0;
+    }
+
+    /**
+     * Get the type of the piece on a square.
+     *
+     * @param sq Square index.
+     * @return Piece type, or null if the square is empty.
+     */
+    public PieceType getType(int sq) {
+        int code = squares[sq];
+        return code == 0 ? null : typeOf(code);
+    }
+
+    /**
+     * Get one word of a team's occupancy mask.
+     *
+     * @param team False for red, true for blue.
+     * @param word 0 for the low word, 1 for the high word.
+     * @return Occupancy mask word.
+     */
+    public long getOccupied(boolean team, int word) {
+        return occupied[teamIndex(team) * 2 + word];
+    }
+
+    /**
+     * Get one word of the mask of a team's pieces of a type.
+     *
+     * @param team False for red, true for blue.
+     * @param type Piece type.
+     * @param word 0 for the low word, 1 for the high word.
+     * @return Piece type mask word.
+     */
+    public long getPieces(boolean team, PieceType type, int word) {
+        return pieces[(code(type, team) - 1) * 2 + word];
+    }
+
+    /**
+     * Checks whether a team still has a piece of a type on the board.
+     *
+     * @param team False for red, true for blue.
+     * @param type Piece type.
+     * @return True if at least one such piece is on the board.
+     */
+    public boolean hasPiece(boolean team, PieceType type) {
+        return counts[code(type, team) - 1] != 0;
+    }
+
+    /**
+     * Get the number of pieces of a type a team has on the board.
+     *
+     * @param team False for red, true for blue.
+     * @param type Piece type.
+     * @return Number of pieces remaining.
+     */
+    public int getCount(boolean team, PieceType type) {
+        return counts[code(type, team) - 1];
+    }
+
+    /**
+     * Get the number of pieces other than flags and bombs a team has on the
+     * board.
+     *
+     * @param team False for red, true for blue.
+     * @return Number of movable pieces remaining.
+     */
+    public int getMovableCount(boolean team) {
+        return movable[teamIndex(team)];
+    }
+
+    /**
+     * Get the total material value of a team's pieces on the board.
+     *
+     * @param team False for red, true for blue.
+     * @return Sum of {@link PieceType#getValue()} over the team's pieces.
+     */
+    public int getMaterial(boolean team) {
+        return material[teamIndex(team)];
+    }
+
+    /**
+     * Checks whether a team has any piece other than flags and bombs.
+     *
+     * @param team False for red, true for blue.
+     * @return True if the team has a piece that is able to move.
+     */
+    public boolean hasMovablePiece(boolean team) {
+        return movable[teamIndex(team)] != 0;
+    }
+
+    /**
+     * Checks whether a team has lost, i.e. its flag has been captured or it has
+     * no piece that is able to move.
+     *
+     * @param team False for red, true for blue.
+     * @return True if the team has lost.
+     */
+    public boolean hasLost(boolean team) {
+        return !hasPiece(team, PieceType.FLAG) || !hasMovablePiece(team);
+    }
+
+    /**
+     * Make this board a copy of another board, reusing its arrays. The undo
+     * stack of the copy is empty.
+     *
+     * @param other Board to copy.
+     */
+    public void copyFrom(BoardState other) {
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        System.arraycopy(other.occupied, 0, occupied, 0, occupied.length);
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.counts, 0, counts, 0, counts.length);
+        System.arraycopy(other.movable, 0, movable, 0, movable.length);
+        System.arraycopy(other.material, 0, material, 0, material.length);
+        System.arraycopy(other.revealedSquares, 0, revealedSquares, 0, revealedSquares.length);
+        System.arraycopy(other.movedSquares, 0, movedSquares, 0, movedSquares.length);
+        turn = other.turn;
+        placement = other.placement;
+        hash = other.hash;
+        ply = 0;
+    }
+
+    /**
+     * Get the team whose turn it is.
+     *
+     * @return False for red, true for blue.
+     */
+    public boolean getTurn() {
+        return turn;
+    }
+
+    /**
+     * Set the team whose turn it is.
+     *
+     * @param turn False for red, true for blue.
+     */
+    public void setTurn(boolean turn) {
+        if (this.turn != turn)
+            hash ^= Zobrist.BLUE_TURN;
+        this.turn = turn;
+    }
+
+    /**
+     * Get whether the game is in the piece placement phase.
+     *
+     * @return True during the placement phase.
+     */
+    public boolean isPlacement() {
+        return placement;
+    }
+
+    /**
+     * Set whether the game is in the piece placement phase.
+     *
+     * @param placement True during the placement phase.
+     */
+    public void setPlacement(boolean placement) {
+        if (this.placement != placement)
+            hash ^= Zobrist.PLACEMENT;
+        this.placement = placement;
+    }
+
+    /**
+     * Get the Zobrist hash of the position, which is updated incrementally.
+     *
+     * @return 64-bit position hash.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Compute the Zobrist hash of the position from scratch. This always equals
+     * {@link #getHash()} and is meant for checking it.
+     *
+     * @return 64-bit position hash.
+     */
+    public long computeHash() {
+        long h = 0L;
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            if (squares[sq] != 0)
+                h ^= Zobrist.piece(squares[sq], isRevealed(sq), sq);
+        }
+        if (turn)
+            h ^= Zobrist.BLUE_TURN;
+        if (placement)
+            h ^= Zobrist.PLACEMENT;
+        return h;
+    }
+
+    /**
+     * Get the number of moves on the undo stack.
+     *
+     * @return Number of moves that can be unmade.
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Forget the moves on the undo stack, e.g. after a move has actually been
+     * played. The board is not changed.
+     */
+    public void clearHistory() {
+        ply = 0;
+    }
+
+    /**
+     * Makes a move for the piece on the origin square and passes the turn to the
+     * other team. If the destination holds a piece the two pieces battle, both
+     * are revealed and the loser is removed. The move is assumed to be legal.
+     *
+     * @param move Encoded move, see {@link Move}.
+     * @return {@link StrategoRules#ATTACKER_WINS} if the piece moved to the
+     *         destination, {@link StrategoRules#DEFENDER_WINS} if it was removed,
+     *         or {@link StrategoRules#TIE} if both pieces were removed.
+     * @throws IllegalStateException if the undo stack is full.
+     */
+    public int makeMove(int move) {
+        if (ply == MAX_UNDO)
+            throw new IllegalStateException("Undo stack is full");
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int attacker = squares[from];
+        int defender = squares[to];
+        boolean attackerRevealed = isRevealed(from);
+        int record = move | attacker << ATTACKER_SHIFT | defender << DEFENDER_SHIFT;
+        if (attackerRevealed)
+            record |= ATTACKER_REVEALED;
+        if (defender != 0 && isRevealed(to))
+            record |= DEFENDER_REVEALED;
+        if (hasMoved(from))
+            record |= ATTACKER_MOVED;
+        if (defender != 0 && hasMoved(to))
+            record |= DEFENDER_MOVED;
+        history[ply++] = record;
+        turn = !turn;
+        hash ^= Zobrist.BLUE_TURN;
+
+        clear(from);
+        if (defender == 0) {
+            put(to, attacker, attackerRevealed);
+            setMoved(to, true);
+            return StrategoRules.ATTACKER_WINS;
+        }
+        int result = StrategoRules.getBattleResult(typeOf(attacker), typeOf(defender));
+        if (result == StrategoRules.ATTACKER_WINS) {
+            put(to, attacker, true);
+            setMoved(to, true);
+        } else if (result == StrategoRules.TIE) {
+            clear(to);
+        } else {
+            setRevealed(to, true);
+        }
+        return result;
+    }
+
+    /**
+     * Takes back the last move made with {@link #makeMove(int)}.
+     *
+     * @throws IllegalStateException if there is no move to unmake.
+     */
+    public void unmakeMove() {
+        if (ply == 0)
+            throw new IllegalStateException("No move to unmake");
+        int record = history[--ply];
+        int from = Move.from(record);
+        int to = Move.to(record);
+        int attacker = (record >>> ATTACKER_SHIFT) & CODE_MASK;
+        int defender = (record >>> DEFENDER_SHIFT) & CODE_MASK;
+        turn = !turn;
+        hash ^= Zobrist.BLUE_TURN;
+
+        clear(to);
+        put(from, attacker, (record & ATTACKER_REVEALED) != 0);
+        setMoved(from, (record & ATTACKER_MOVED) != 0);
+        if (defender != 0) {
+            put(to, defender, (record & DEFENDER_REVEALED) != 0);
+            setMoved(to, (record & DEFENDER_MOVED) != 0);
+        }
+    }
+}
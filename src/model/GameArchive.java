@@ -0,0 +1,820 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * A read-only file of many finished games for training, with an index of the
+ * games by ID and an index of every position they pass through by its Zobrist
+ * hash. The file is mapped into memory, and a game is handed out as a buffer
+ * over the mapped bytes, so reading games creates no objects besides the
+ * buffer and nothing is copied.
+ *
+ * The file holds a header, the games, the game index and the position index.
+ * Every game is stored as its start position and its encoded moves:
+ *
+ * <pre>
+ * int    length of the record in bytes
+ * long   game ID
+ * short  number of moves
+ * byte   result, see {@link #RED_WINS}, {@link #BLUE_WINS} and {@link #DRAW}
+ * byte   1 if blue moves first
+ * byte[] piece code of each square, with {@link GameJournal}'s reveal and
+ *        move bits
+ * short[] moves, see {@link Move}
+ * </pre>
+ *
+ * The game index holds an ID and a file offset per game, sorted by ID. The
+ * position index holds a hash and a reference per position, sorted by hash,
+ * where the reference is the offset of the game shifted left by 16 bits plus
+ * the number of moves made before the position. All numbers are big-endian.
+ *
+ * Files larger than a mapping can hold are mapped in regions of
+ * {@link #REGION_SIZE} bytes. No game or index entry crosses the end of a
+ * region; the writer pads the end of a region with zeros instead.
+ *
+ * The mapping is released when the archive is garbage collected.
+ *
+ * Usage: {@code GameArchive archive journal...} writes the games of journal
+ * files to a new archive, with the place of each journal in the list as its ID.
+ */
+public final class GameArchive {
+
+    /**
+     * First bytes of an archive file.
+     */
+    public static final int MAGIC = 0x53544741; // "STGA"
+
+    /**
+     * Version of the archive format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Result of a game won by red.
+     */
+    public static final int RED_WINS = 0;
+
+    /**
+     * Result of a game won by blue.
+     */
+    public static final int BLUE_WINS = 1;
+
+    /**
+     * Result of a game that ended without a winner, e.g. at a move limit.
+     */
+    public static final int DRAW = 2;
+
+    /**
+     * Number of bytes mapped at a time.
+     */
+    public static final int REGION_SIZE = 1 << 30;
+
+    /**
+     * Largest number of moves of an archived game.
+     */
+    public static final int MAX_PLIES = 0xFFFF;
+
+    // Layout of the file header: magic, version, game and position counts and
+    // the offsets of both indexes
+    private static final int HEADER_SIZE = 64;
+
+    // Layout of a game record
+    private static final int ID = 4;
+    private static final int PLIES = 12;
+    private static final int RESULT = 14;
+    private static final int FIRST_TURN = 15;
+    private static final int SQUARES = 16;
+    private static final int MOVES = SQUARES + Bitboard.SQUARES;
+
+    // Size of an entry of either index
+    private static final int ENTRY_SIZE = 16;
+
+    private static final int REGION_BITS = 30;
+    private static final long REGION_MASK = REGION_SIZE - 1;
+
+    private final MappedByteBuffer[] regions;
+    private final long gameCount;
+    private final long positionCount;
+    private final long gameIndex;
+    private final long positionIndex;
+
+    /**
+     * Map an archive file into memory.
+     *
+     * @param file Archive file.
+     * @throws IOException If the file cannot be read or is not an archive.
+     */
+    public GameArchive(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            regions = new MappedByteBuffer[(int) ((size + REGION_MASK) >>> REGION_BITS)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i << REGION_BITS;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+            }
+            if (size < HEADER_SIZE || regions[0].getInt(0) != MAGIC)
+                throw new IOException("Not a game archive");
+            if (regions[0].getInt(4) != VERSION)
+                throw new IOException("Archive version " + regions[0].getInt(4) + ", expected " + VERSION);
+            gameCount = regions[0].getLong(8);
+            positionCount = regions[0].getLong(16);
+            gameIndex = regions[0].getLong(24);
+            positionIndex = regions[0].getLong(32);
+            if (gameIndex + gameCount * ENTRY_SIZE > positionIndex || positionIndex + positionCount * ENTRY_SIZE > size)
+                throw new IOException("Game archive is cut short");
+        }
+    }
+
+    /**
+     * Get the number of games.
+     *
+     * @return Number of games in the archive.
+     */
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Get the number of positions in the position index.
+     *
+     * @return Number of positions, counting every game separately.
+     */
+    public long getPositionCount() {
+        return positionCount;
+    }
+
+    /**
+     * Get a game by its place in the order of IDs.
+     *
+     * @param index Index from 0 to {@link #getGameCount()} - 1.
+     * @return Buffer over the game's bytes, to be read with the static methods
+     *         of this class.
+     * @throws IndexOutOfBoundsException If there is no such game.
+     */
+    public ByteBuffer getGame(long index) {
+        if (index < 0 || index >= gameCount)
+            throw new IndexOutOfBoundsException("Game " + index + " of " + gameCount);
+        return gameAt(getLong(gameIndex + index * ENTRY_SIZE + 8));
+    }
+
+    /**
+     * Find a game by its ID.
+     *
+     * @param id Game ID.
+     * @return Buffer over the game's bytes, or null if there is no such game.
+     */
+    public ByteBuffer findGame(long id) {
+        long low = 0;
+        long high = gameCount - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long key = getLong(gameIndex + middle * ENTRY_SIZE);
+            if (key < id)
+                low = middle + 1;
+            else if (key > id)
+                high = middle - 1;
+            else
+                return getGame(middle);
+        }
+        return null;
+    }
+
+    /**
+     * Hand every game to a consumer in the order they are stored, which reads
+     * the file from start to end.
+     *
+     * @param consumer Receives a buffer over each game's bytes. The buffer
+     *                 may be kept.
+     */
+    public void forEachGame(Consumer<ByteBuffer> consumer) {
+        long offset = HEADER_SIZE;
+        for (long i = 0; i < gameCount; i++) {
+            // Skip the padding at the end of a region
+            if (REGION_SIZE - (offset & REGION_MASK) < MOVES || getInt(offset) == 0)
+                offset = (offset | REGION_MASK) + 1;
+            ByteBuffer game = gameAt(offset);
+            consumer.accept(game);
+            offset += game.limit();
+        }
+    }
+
+    /**
+     * Find the first entry of the position index with a hash. Entries with the
+     * same hash follow it.
+     *
+     * @param hash Zobrist hash of a position, see {@link BoardState#getHash()}.
+     * @return Index of the entry, or -1 if no game reached the position.
+     */
+    public long findPosition(long hash) {
+        long low = 0;
+        long high = positionCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getPositionHash(middle) < hash)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low < positionCount && getPositionHash(low) == hash ? low : -1;
+    }
+
+    /**
+     * Get the hash of an entry of the position index.
+     *
+     * @param entry Index of the entry.
+     * @return Zobrist hash of the position.
+     */
+    public long getPositionHash(long entry) {
+        return getLong(positionIndex + entry * ENTRY_SIZE);
+    }
+
+    /**
+     * Get the game of an entry of the position index.
+     *
+     * @param entry Index of the entry.
+     * @return Buffer over the bytes of the game that reached the position.
+     */
+    public ByteBuffer getPositionGame(long entry) {
+        return gameAt(getLong(positionIndex + entry * ENTRY_SIZE + 8) >>> 16);
+    }
+
+    /**
+     * Get the number of moves made before the position of an entry of the
+     * position index.
+     *
+     * @param entry Index of the entry.
+     * @return Number of moves of the entry's game before the position.
+     */
+    public int getPositionPly(long entry) {
+        return (int) (getLong(positionIndex + entry * ENTRY_SIZE + 8) & 0xFFFF);
+    }
+
+    /**
+     * Get a buffer over the game that starts at an offset.
+     */
+    private ByteBuffer gameAt(long offset) {
+        ByteBuffer game = regions[(int) (offset >>> REGION_BITS)].duplicate();
+        int start = (int) (offset & REGION_MASK);
+        game.position(start).limit(start + game.getInt(start));
+        return game.slice();
+    }
+
+    /**
+     * Read a number at an offset of the file.
+     */
+    private int getInt(long offset) {
+        return regions[(int) (offset >>> REGION_BITS)].getInt((int) (offset & REGION_MASK));
+    }
+
+    /**
+     * Read a number at an offset of the file.
+     */
+    private long getLong(long offset) {
+        return regions[(int) (offset >>> REGION_BITS)].getLong((int) (offset & REGION_MASK));
+    }
+
+    /**
+     * Get the ID of a game.
+     *
+     * @param game Buffer over the game's bytes.
+     * @return Game ID.
+     */
+    public static long getId(ByteBuffer game) {
+        return game.getLong(ID);
+    }
+
+    /**
+     * Get the number of moves of a game.
+     *
+     * @param game Buffer over the game's bytes.
+     * @return Number of moves.
+     */
+    public static int getPlies(ByteBuffer game) {
+        return game.getShort(PLIES) & 0xFFFF;
+    }
+
+    /**
+     * Get the result of a game.
+     *
+     * @param game Buffer over the game's bytes.
+     * @return {@link #RED_WINS}, {@link #BLUE_WINS} or {@link #DRAW}.
+     */
+    public static int getResult(ByteBuffer game) {
+        return game.get(RESULT);
+    }
+
+    /**
+     * Get a move of a game.
+     *
+     * @param game Buffer over the game's bytes.
+     * @param ply  Number of moves made before the move.
+     * @return Encoded move, see {@link Move}.
+     */
+    public static int getMove(ByteBuffer game, int ply) {
+        return game.getShort(MOVES + ply * 2) & 0xFFFF;
+    }
+
+    /**
+     * Set up a board with the position of a game after a number of moves. The
+     * board is cleared first, so one board can be reused for many positions.
+     *
+     * @param game  Buffer over the game's bytes.
+     * @param ply   Number of moves to make from the start position.
+     * @param state Board to set up. Its undo stack is cleared.
+     */
+    public static void load(ByteBuffer game, int ply, BoardState state) {
+        state.clearHistory();
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            int square = game.get(SQUARES + sq) & 0xFF;
+            int code = square & GameJournal.CODE_MASK;
+            if (code == 0) {
+                state.clear(sq);
+            } else {
+                state.put(sq, code, (square & GameJournal.REVEALED_BIT) != 0);
+                state.setMoved(sq, (square & GameJournal.MOVED_BIT) != 0);
+            }
+        }
+        state.setPlacement(false);
+        state.setTurn(game.get(FIRST_TURN) != 0);
+        for (int i = 0; i < ply; i++) {
+            if (state.getPly() == BoardState.MAX_UNDO)
+                state.clearHistory();
+            state.makeMove(getMove(game, i));
+        }
+        state.clearHistory();
+    }
+
+    /**
+     * Writes an archive. Games are written as they are added, and the indexes
+     * when the writer is closed. The entries of the position index are sorted
+     * in memory in runs, by default of {@link #RUN_SIZE}, and the runs spilled
+     * to temporary files next to the archive and merged at the end, so the
+     * number of positions is not limited by the heap.
+     */
+    public static final class Writer implements Closeable {
+
+        /**
+         * Number of position entries sorted in memory at a time.
+         */
+        public static final int RUN_SIZE = 1 << 22;
+
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final Path file;
+        private final int runSize;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long offset = HEADER_SIZE;
+
+        // IDs and offsets of the games
+        private long[] ids = new long[1024];
+        private long[] offsets = new long[1024];
+        private int games;
+
+        // Position entries not yet spilled, and the spilled runs
+        private long[] hashes = new long[1024];
+        private long[] refs = new long[1024];
+        private int positions;
+        private long positionCount;
+        private final List<Path> runs = new ArrayList<>();
+
+        // Reused to replay games
+        private final BoardState replay = new BoardState();
+        private final int[] legal = new int[MoveGenerator.MAX_MOVES];
+
+        private boolean closed;
+
+        /**
+         * Create a writer for a new archive, replacing any file of that name.
+         *
+         * @param file Archive file.
+         * @throws IOException If the file cannot be created.
+         */
+        public Writer(Path file) throws IOException {
+            this(file, RUN_SIZE);
+        }
+
+        /**
+         * Create a writer for a new archive that sorts a given number of
+         * position entries in memory at a time.
+         *
+         * @param file    Archive file.
+         * @param runSize Number of position entries sorted at a time.
+         * @throws IOException If the file cannot be created.
+         */
+        public Writer(Path file, int runSize) throws IOException {
+            if (runSize < 1)
+                throw new IllegalArgumentException("Run size must be positive: " + runSize);
+            this.file = file;
+            this.runSize = runSize;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+
+        /**
+         * Add a game given as its start position and moves. The position after
+         * every move goes into the position index, and the result is decided
+         * from the last position with the same rules as {@link main.Tournament}.
+         *
+         * @param id    Game ID, which should be unique in the archive.
+         * @param start Position after the placement phase.
+         * @param moves Legal moves of the game, see {@link Move}.
+         * @param count Number of moves.
+         * @throws IOException If the archive cannot be written.
+         */
+        public void add(long id, BoardState start, int[] moves, int count) throws IOException {
+            if (count > MAX_PLIES)
+                throw new IllegalArgumentException("Game of " + count + " moves is too long");
+            int length = MOVES + count * 2;
+            if ((offset & REGION_MASK) + length > REGION_SIZE)
+                pad((offset | REGION_MASK) + 1);
+            long gameOffset = offset;
+
+            replay.copyFrom(start);
+            replay.setPlacement(false);
+            putInt(length);
+            putLong(id);
+            putShort(count);
+            ensure(2 + Bitboard.SQUARES);
+            buffer.put((byte) DRAW);
+            buffer.put((byte) (replay.getTurn() == GamePiece.BLUE_TEAM ? 1 : 0));
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                int square = replay.get(sq);
+                if (replay.isRevealed(sq))
+                    square |= GameJournal.REVEALED_BIT;
+                if (replay.hasMoved(sq))
+                    square |= GameJournal.MOVED_BIT;
+                buffer.put((byte) square);
+            }
+            offset += 2 + Bitboard.SQUARES;
+
+            for (int i = 0; i <= count; i++) {
+                addPosition(replay.getHash(), gameOffset << 16 | i);
+                if (i == count)
+                    break;
+                putShort(moves[i]);
+                if (replay.getPly() == BoardState.MAX_UNDO)
+                    replay.clearHistory();
+                replay.makeMove(moves[i]);
+            }
+            setResult(gameOffset, result(replay));
+            replay.clearHistory();
+
+            if (games == ids.length) {
+                ids = Arrays.copyOf(ids, games * 2);
+                offsets = Arrays.copyOf(offsets, games * 2);
+            }
+            ids[games] = id;
+            offsets[games++] = gameOffset;
+        }
+
+        /**
+         * Add a game recorded by a {@link GameJournal}. Battles are decided
+         * again from the ranks of the journal's start position, so the journal
+         * should know every rank, as those of {@link main.Tournament} and of a
+         * referee do.
+         *
+         * @param id     Game ID, which should be unique in the archive.
+         * @param replay Recorded game that got past the placement phase.
+         * @throws IOException If the archive cannot be written.
+         */
+        public void add(long id, GameReplay replay) throws IOException {
+            if (replay.getPlies() < 0)
+                throw new IllegalArgumentException("Game did not start");
+            int[] moves = replay.getMoves();
+            add(id, replay.load(0).getState(), moves, moves.length);
+        }
+
+        /**
+         * Get the result of a game from its last position.
+         */
+        private int result(BoardState state) {
+            boolean team = state.getTurn();
+            if (state.hasLost(!team))
+                return team ? BLUE_WINS : RED_WINS;
+            if (state.hasLost(team) || MoveGenerator.generateAll(state, team, legal) == 0)
+                return team ? RED_WINS : BLUE_WINS;
+            return DRAW;
+        }
+
+        /**
+         * Write the result byte of the game being added, which may have left
+         * the buffer already.
+         */
+        private void setResult(long gameOffset, int result) throws IOException {
+            long at = gameOffset + RESULT;
+            long flushed = offset - buffer.position();
+            if (at >= flushed)
+                buffer.put((int) (at - flushed), (byte) result);
+            else
+                channel.write(ByteBuffer.wrap(new byte[] { (byte) result }), at);
+        }
+
+        /**
+         * Add an entry to the position index, spilling a sorted run if the
+         * entries in memory are full.
+         */
+        private void addPosition(long hash, long ref) throws IOException {
+            if (positions == runSize) {
+                spill();
+            } else if (positions == hashes.length) {
+                hashes = Arrays.copyOf(hashes, Math.min(positions * 2, runSize));
+                refs = Arrays.copyOf(refs, hashes.length);
+            }
+            hashes[positions] = hash;
+            refs[positions++] = ref;
+            positionCount++;
+        }
+
+        /**
+         * Sort the position entries in memory and write them to a temporary
+         * file.
+         */
+        private void spill() throws IOException {
+            sort(hashes, refs, 0, positions - 1);
+            Path run = Files.createTempFile(file.toAbsolutePath().getParent(), "positions", ".run");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+                for (int i = 0; i < positions; i++) {
+                    out.writeLong(hashes[i]);
+                    out.writeLong(refs[i]);
+                }
+            }
+            positions = 0;
+        }
+
+        /**
+         * Write the indexes and the header and close the file.
+         *
+         * @throws IOException If the archive cannot be written, or two games
+         *                     have the same ID.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+            closed = true;
+            try {
+                pad((offset + ENTRY_SIZE - 1) & -ENTRY_SIZE);
+                long gameIndex = offset;
+                sort(ids, offsets, 0, games - 1);
+                for (int i = 0; i < games; i++) {
+                    if (i > 0 && ids[i] == ids[i - 1])
+                        throw new IOException("Duplicate game ID " + ids[i]);
+                    putLong(ids[i]);
+                    putLong(offsets[i]);
+                }
+                long positionIndex = offset;
+                if (runs.isEmpty()) {
+                    sort(hashes, refs, 0, positions - 1);
+                    for (int i = 0; i < positions; i++) {
+                        putLong(hashes[i]);
+                        putLong(refs[i]);
+                    }
+                } else {
+                    if (positions > 0)
+                        spill();
+                    merge();
+                }
+                flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(games).putLong(positionCount);
+                header.putLong(gameIndex).putLong(positionIndex);
+                header.clear();
+                channel.write(header, 0);
+            } finally {
+                channel.close();
+                for (Path run : runs)
+                    Files.deleteIfExists(run);
+            }
+        }
+
+        /**
+         * Merge the spilled runs into the position index.
+         */
+        private void merge() throws IOException {
+            PriorityQueue<Run> queue = new PriorityQueue<>();
+            try {
+                for (Path path : runs) {
+                    Run run = new Run(path);
+                    if (run.next())
+                        queue.add(run);
+                }
+                while (!queue.isEmpty()) {
+                    Run run = queue.poll();
+                    putLong(run.hash);
+                    putLong(run.ref);
+                    if (run.next())
+                        queue.add(run);
+                    else
+                        run.close();
+                }
+            } finally {
+                for (Run run : queue)
+                    run.close();
+            }
+        }
+
+        /**
+         * Write zeros up to an offset, which never crosses into the next
+         * region.
+         */
+        private void pad(long to) throws IOException {
+            while (offset < to) {
+                ensure(1);
+                buffer.put((byte) 0);
+                offset++;
+            }
+        }
+
+        /**
+         * Write the low 16 bits of a number.
+         */
+        private void putShort(int value) throws IOException {
+            ensure(2);
+            buffer.putShort((short) value);
+            offset += 2;
+        }
+
+        /**
+         * Write a number.
+         */
+        private void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            offset += 4;
+        }
+
+        /**
+         * Write a number.
+         */
+        private void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+            offset += 8;
+        }
+
+        /**
+         * Make room in the buffer for a number of bytes.
+         */
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        /**
+         * Write the buffer to the file.
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        /**
+         * Sort two arrays by the first and then the second, keeping their
+         * entries together.
+         */
+        private static void sort(long[] keys, long[] values, int low, int high) {
+            while (high - low > 16) {
+                int middle = (low + high) >>> 1;
+                long pivotKey = keys[middle];
+                long pivotValue = values[middle];
+                int i = low;
+                int j = high;
+                while (i <= j) {
+                    while (compare(keys[i], values[i], pivotKey, pivotValue) < 0)
+                        i++;
+                    while (compare(keys[j], values[j], pivotKey, pivotValue) > 0)
+                        j--;
+                    if (i <= j)
+                        swap(keys, values, i++, j--);
+                }
+                // Recurse into the smaller part to bound the stack depth
+                if (j - low < high - i) {
+                    sort(keys, values, low, j);
+                    low = i;
+                } else {
+                    sort(keys, values, i, high);
+                    high = j;
+                }
+            }
+            for (int i = low + 1; i <= high; i++) {
+                for (int j = i; j > low && compare(keys[j - 1], values[j - 1], keys[j], values[j]) > 0; j--)
+                    swap(keys, values, j - 1, j);
+            }
+        }
+
+        /**
+         * Compare two entries by key and then by value.
+         */
+        private static int compare(long key, long value, long otherKey, long otherValue) {
+            int order = Long.compare(key, otherKey);
+            return order != 0 ? order : Long.compare(value, otherValue);
+        }
+
+        /**
+         * Swap two entries of both arrays.
+         */
+        private static void swap(long[] keys, long[] values, int i, int j) {
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+
+        /**
+         * A sorted run of position entries being merged.
+         */
+        private static final class Run implements Comparable<Run>, Closeable {
+
+            private final DataInputStream in;
+
+            // Current entry
+            long hash;
+            long ref;
+
+            /**
+             * Open a run file.
+             */
+            Run(Path path) throws IOException {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+            }
+
+            /**
+             * Read the next entry.
+             *
+             * @return False at the end of the run.
+             */
+            boolean next() throws IOException {
+                try {
+                    hash = in.readLong();
+                } catch (EOFException e) {
+                    return false;
+                }
+                ref = in.readLong();
+                return true;
+            }
+
+            /**
+             * Order runs by their current entry.
+             */
+            @Override
+            public int compareTo(Run other) {
+                return compare(hash, ref, other.hash, other.ref);
+            }
+
+            /**
+             * Close the run file.
+             */
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Write journal files to a new archive.
+     *
+     * @param args The archive file, then the journal files.
+     * @throws IOException If a journal cannot be read or the archive written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GameArchive archive journal...");
+            System.exit(1);
+        }
+        try (Writer writer = new Writer(Paths.get(args[0]))) {
+            for (int i = 1; i < args.length; i++) {
+                GameReplay replay = GameReplay.read(Paths.get(args[i]));
+                if (replay.getPlies() >= 0)
+                    writer.add(i - 1, replay);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import network.MessageCodec;
+import network.StrategoMessage;
+
+/**
+ * Records a game to a file as it is played, so that it can be replayed later
+ * with {@link GameReplay}.
+ *
+ * The file is an append-only log of records. Every change of a model the
+ * journal is attached to is written as the message the model notifies its
+ * observers with, in the encoding of {@link MessageCodec}, so a battle takes
+ * a few bytes. Games played with {@link StrategoModel#makeMove(int)}, which
+ * does not notify observers, record each move with
+ * {@link #recordMove(int, BoardState)} instead. After the start of the game
+ * and every {@link #getInterval()} moves, a snapshot of the whole position is
+ * written, so that reaching any move of the game only takes replaying the
+ * moves since the last snapshot.
+ *
+ * Records are encoded on the thread that makes the change, which takes well
+ * under a microsecond, and handed to a thread of the journal that writes them
+ * through a buffer. The buffer is flushed whenever the journal has nothing
+ * left to write, and the file is complete once the journal is closed.
+ */
+public class GameJournal implements Observer, Closeable {
+
+    /**
+     * First bytes of a journal file.
+     */
+    public static final int MAGIC = 0x53544A4C; // "STJL"
+
+    /**
+     * Version of the journal format. The messages in it are also tied to
+     * {@link MessageCodec#VERSION}.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Number of bytes of the file header: the magic number, the journal
+     * version and the message version.
+     */
+    public static final int HEADER_SIZE = 6;
+
+    /**
+     * Moves between snapshots, unless set otherwise.
+     */
+    public static final int DEFAULT_INTERVAL = 32;
+
+    /**
+     * Folder that games played from the user interface are recorded to.
+     */
+    public static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".stratego", "games");
+
+    // Record tags
+    static final int MESSAGE = 0;
+    static final int MOVE = 1;
+    static final int SNAPSHOT = 2;
+
+    // Sizes of move and snapshot records, including the tag. A snapshot holds
+    // the number of moves, a byte per square and a byte of flags.
+    static final int MOVE_SIZE = 3;
+    static final int SNAPSHOT_SIZE = 1 + 4 + Bitboard.SQUARES + 1;
+
+    // Bits of a snapshot square besides the piece code
+    static final int CODE_MASK = 0x1F;
+    static final int REVEALED_BIT = 0x40;
+    static final int MOVED_BIT = 0x80;
+
+    // Bits of the flags byte of a snapshot
+    static final int BLUE_TURN = 0x01;
+    static final int PLACEMENT = 0x02;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Queued after the last record to stop the writer thread
+    private static final byte[] END = new byte[0];
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+    private final OutputStream out;
+    private final Thread writer;
+    private final int interval;
+
+    // Reused to encode messages, which are then copied to a record
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 + MessageCodec.MAX_MESSAGE_SIZE);
+
+    // Model the journal observes, if any
+    private StrategoModel model;
+
+    private int plies;
+    private boolean closed;
+
+    // Set by the writer thread if the file cannot be written
+    private volatile IOException failure;
+
+    /**
+     * Create a journal that writes to a new file, replacing any file of that
+     * name.
+     *
+     * @param file     File to write to.
+     * @param interval Moves between snapshots of the position.
+     * @throws IOException If the file cannot be created.
+     */
+    public GameJournal(Path file, int interval) throws IOException {
+        if (interval < 1)
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + interval);
+        this.interval = interval;
+        out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.put((byte) VERSION);
+        header.put((byte) MessageCodec.VERSION);
+        queue.add(header.array());
+        writer = new Thread(this::write, "Stratego journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Get a new file name in a folder for the journal of a game that starts
+     * now, creating the folder if needed.
+     *
+     * @param directory Folder of the file.
+     * @param team      Team of the player whose view of the game is recorded.
+     * @return Path of the file.
+     * @throws IOException If the folder cannot be created.
+     */
+    public static Path newFile(Path directory, boolean team) throws IOException {
+        Files.createDirectories(directory);
+        String time = LocalDateTime.now().format(FILE_TIME);
+        return directory.resolve(time + (team == GamePiece.RED_TEAM ? "-red" : "-blue") + ".journal");
+    }
+
+    /**
+     * Get the number of moves between snapshots.
+     *
+     * @return Snapshot interval.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Get the number of moves recorded.
+     *
+     * @return Number of moves since the start of the game.
+     */
+    public synchronized int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Record every change of a model from now on, until the journal is closed.
+     *
+     * @param model Model of the game.
+     */
+    public synchronized void attach(StrategoModel model) {
+        if (this.model != null)
+            this.model.deleteObserver(this);
+        this.model = model;
+        model.addObserver(this);
+    }
+
+    /**
+     * Record a change of the model the journal is attached to.
+     */
+    @Override
+    public void update(Observable o, Object arg) {
+        record((StrategoMessage) arg, ((StrategoModel) o).getState());
+    }
+
+    /**
+     * Record a message that has been applied to a game. A move ends with the
+     * end of the turn, and the start of the game and every
+     * {@link #getInterval()} moves are followed by a snapshot.
+     *
+     * @param message Message applied.
+     * @param state   Position after the message.
+     */
+    public synchronized void record(StrategoMessage message, BoardState state) {
+        if (closed || failure != null)
+            return;
+        buffer.clear();
+        buffer.put((byte) MESSAGE);
+        MessageCodec.write(buffer, message);
+        queue.add(Arrays.copyOf(buffer.array(), buffer.position()));
+        if (message.isGameStart() && plies == 0)
+            snapshot(state);
+        else if (message.isEndOfTurn())
+            endMove(state);
+    }
+
+    /**
+     * Record a move made with {@link StrategoModel#makeMove(int)}. The battle,
+     * if any, follows from the position, so only the move is written.
+     *
+     * @param move  Encoded move, see {@link Move}.
+     * @param state Position after the move.
+     */
+    public synchronized void recordMove(int move, BoardState state) {
+        if (closed || failure != null)
+            return;
+        queue.add(new byte[] { MOVE, (byte) (move >>> 8), (byte) move });
+        endMove(state);
+    }
+
+    /**
+     * Record the whole position, such as a game set up without messages.
+     *
+     * @param state Position to record.
+     */
+    public synchronized void snapshot(BoardState state) {
+        if (closed || failure != null)
+            return;
+        ByteBuffer record = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        record.put((byte) SNAPSHOT);
+        record.putInt(plies);
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            int square = state.get(sq);
+            if (state.isRevealed(sq))
+                square |= REVEALED_BIT;
+            if (state.hasMoved(sq))
+                square |= MOVED_BIT;
+            record.put((byte) square);
+        }
+        int flags = 0;
+        if (state.getTurn() == GamePiece.BLUE_TEAM)
+            flags |= BLUE_TURN;
+        if (state.isPlacement())
+            flags |= PLACEMENT;
+        record.put((byte) flags);
+        queue.add(record.array());
+    }
+
+    /**
+     * Count a move and take a snapshot if one is due.
+     */
+    private void endMove(BoardState state) {
+        plies++;
+        if (plies % interval == 0)
+            snapshot(state);
+    }
+
+    /**
+     * Stop recording, write the records that are left and close the file.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            if (model != null)
+                model.deleteObserver(this);
+            queue.add(END);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Write records as they arrive until the journal is closed, flushing the
+     * buffer whenever there is nothing left to write.
+     */
+    private void write() {
+        try (OutputStream output = out) {
+            while (true) {
+                byte[] record = queue.take();
+                if (record == END)
+                    break;
+                output.write(record);
+                if (queue.isEmpty())
+                    output.flush();
+            }
+        } catch (IOException e) {
+            failure = e;
+            queue.clear();
+        } catch (InterruptedException e) {
+            failure = new IOException("Journal writer interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package model;
+
+/**
+ * Represents a piece in the game, independent of how it is drawn. Holds the
+ * piece's type, team, location on the board and whether or not the piece has
+ * been revealed to the enemy player.
+ *
+ */
+public class GamePiece {
+
+    public static final boolean RED_TEAM = false;
+    public static final boolean BLUE_TEAM = true;
+
+    private final PieceType type;
+    private final boolean team;
+
+    private Loc loc;
+    private boolean revealed;
+
+    /**
+     * Constructor. Creates a red piece.
+     *
+     * @param type Type of piece.
+     */
+    public GamePiece(PieceType type) {
+        this(type, RED_TEAM);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param type Type of piece.
+     * @param team False for red, true for blue.
+     */
+    public GamePiece(PieceType type, boolean team) {
+        this.type = type;
+        this.team = team;
+    }
+
+    /**
+     *
+     * @return Piece's rank.
+     */
+    public int getRank() {
+        return type.getRank();
+    }
+
+    /**
+     *
+     * @return Piece's type.
+     */
+    public PieceType getPieceType() {
+        return type;
+    }
+
+    /**
+     *
+     * @return Team.
+     */
+    public boolean getTeam() {
+        return team;
+    }
+
+    /**
+     *
+     * @return Location, or null if the piece is not on the board.
+     */
+    public Loc getLocation() {
+        return loc;
+    }
+
+    /**
+     * Sets the location of the piece. Only the model should call this.
+     *
+     * @param loc Location.
+     */
+    public void setLocation(Loc loc) {
+        this.loc = loc;
+    }
+
+    /**
+     *
+     * @return True if the piece has been revealed to the enemy.
+     */
+    public boolean isRevealed() {
+        return revealed;
+    }
+
+    /**
+     * Sets whether the piece has been revealed to the enemy.
+     *
+     * @param revealed True if revealed
+     */
+    public void setRevealed(boolean revealed) {
+        this.revealed = revealed;
+    }
+
+    /**
+     * Used for debugging.
+     */
+    @Override
+    public String toString() {
+        return type.name() + " " + (team ? "BLUE" : "RED");
+    }
+
+}
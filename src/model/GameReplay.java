@@ -0,0 +1,288 @@
+package model;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import network.MessageCodec;
+import network.StrategoMessage;
+import network.StrategoPieceBattle;
+import network.StrategoPieceUpdate;
+
+/**
+ * A game recorded by a {@link GameJournal}, which can be loaded at any move.
+ *
+ * Reading a journal checks every record once and notes where each move ends
+ * and where the snapshots are. Loading a move then starts from the last
+ * snapshot before it and replays only the records after the snapshot, so it
+ * takes at most one snapshot interval of moves however long the game is.
+ *
+ * A journal whose last record was cut short, e.g. because the program stopped
+ * while it was written, is read up to that record.
+ */
+public final class GameReplay {
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private final byte[] data;
+
+    // Offset after the records of each move, starting with the start of the
+    // game, and the number of moves
+    private int[] moveEnds = new int[64];
+    private int plies = -1;
+
+    // Offsets of the snapshots and their number
+    private int[] snapshots = new int[16];
+    private int snapshotCount;
+
+    /**
+     * Read the journal of a game from bytes.
+     *
+     * @param data Contents of a journal file, which must not be changed.
+     * @throws IOException If the bytes are not a journal.
+     */
+    public GameReplay(byte[] data) throws IOException {
+        this.data = data;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < GameJournal.HEADER_SIZE || buffer.getInt() != GameJournal.MAGIC)
+            throw new IOException("Not a game journal");
+        int version = buffer.get();
+        int messages = buffer.get();
+        if (version != GameJournal.VERSION || messages != MessageCodec.VERSION)
+            throw new IOException("Journal version " + version + "." + messages + ", expected "
+                    + GameJournal.VERSION + "." + MessageCodec.VERSION);
+        scan(buffer);
+    }
+
+    /**
+     * Read the journal of a game from a file.
+     *
+     * @param file Journal file.
+     * @return The recorded game.
+     * @throws IOException If the file cannot be read or is not a journal.
+     */
+    public static GameReplay read(Path file) throws IOException {
+        return new GameReplay(Files.readAllBytes(file));
+    }
+
+    /**
+     * Get the number of moves recorded.
+     *
+     * @return Number of moves, or -1 if the game did not get past the placement
+     *         phase.
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Get the number of snapshots of the position in the journal.
+     *
+     * @return Number of snapshots.
+     */
+    public int getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    /**
+     * Check every record and note where the moves and snapshots are.
+     */
+    private void scan(ByteBuffer buffer) throws ProtocolException {
+        // Whether a piece has moved since the game started
+        boolean moving = false;
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int tag = buffer.get();
+            if (tag == GameJournal.MESSAGE) {
+                StrategoMessage message = MessageCodec.read(buffer);
+                if (message == null)
+                    break;
+                if (message.isGameStart() && !moving)
+                    setMoveEnd(0, buffer.position());
+                else if (message.isEndOfTurn() && plies >= 0)
+                    setMoveEnd(plies + 1, buffer.position());
+                else if (message.isPieceUpdate() && plies >= 0)
+                    moving = true;
+            } else if (tag == GameJournal.MOVE) {
+                if (buffer.remaining() < GameJournal.MOVE_SIZE - 1)
+                    break;
+                buffer.position(start + GameJournal.MOVE_SIZE);
+                if (plies < 0)
+                    throw new ProtocolException("Move before the start of the game");
+                setMoveEnd(plies + 1, buffer.position());
+            } else if (tag == GameJournal.SNAPSHOT) {
+                if (buffer.remaining() < GameJournal.SNAPSHOT_SIZE - 1)
+                    break;
+                checkSnapshot(start);
+                buffer.position(start + GameJournal.SNAPSHOT_SIZE);
+                if (snapshotCount == snapshots.length)
+                    snapshots = Arrays.copyOf(snapshots, snapshotCount * 2);
+                snapshots[snapshotCount++] = start;
+                // A snapshot right after a move is part of it, so loading the
+                // move starts from the snapshot
+                boolean placement = (data[buffer.position() - 1] & GameJournal.PLACEMENT) != 0;
+                if (plies >= 0 && moveEnds[plies] == start)
+                    moveEnds[plies] = buffer.position();
+                else if (plies < 0 && !placement)
+                    setMoveEnd(0, buffer.position());
+            } else {
+                throw new ProtocolException("Unknown journal record " + tag);
+            }
+        }
+    }
+
+    /**
+     * Check that every square of a snapshot holds a valid piece code.
+     */
+    private void checkSnapshot(int start) throws ProtocolException {
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            int code = data[start + 5 + sq] & GameJournal.CODE_MASK;
+            if (code > 2 * PIECE_TYPES.length)
+                throw new ProtocolException("Bad piece code " + code + " in snapshot");
+        }
+    }
+
+    /**
+     * Note where the records of a move end.
+     */
+    private void setMoveEnd(int ply, int offset) {
+        if (ply == moveEnds.length)
+            moveEnds = Arrays.copyOf(moveEnds, ply * 2);
+        moveEnds[ply] = offset;
+        plies = ply;
+    }
+
+    /**
+     * Load the position of the game after a number of moves.
+     *
+     * @param ply Number of moves, from 0 for the start of the game to
+     *            {@link #getPlies()}.
+     * @return A new model holding the position. Pieces whose type the player
+     *         who recorded the game did not know have the types the player's
+     *         model gave them.
+     * @throws IndexOutOfBoundsException If the game has no such move.
+     */
+    public StrategoModel load(int ply) {
+        if (ply < 0 || ply > plies)
+            throw new IndexOutOfBoundsException("Move " + ply + " of " + plies);
+        int end = moveEnds[ply];
+        StrategoModel model = new StrategoModel();
+        int position = GameJournal.HEADER_SIZE;
+        int snapshot = lastSnapshotBefore(end);
+        if (snapshot >= 0) {
+            restore(model, snapshots[snapshot]);
+            position = snapshots[snapshot] + GameJournal.SNAPSHOT_SIZE;
+        }
+        replay(model, position, end);
+        return model;
+    }
+
+    /**
+     * Find the last snapshot that starts before an offset.
+     *
+     * @return Index of the snapshot, or -1 if there is none.
+     */
+    private int lastSnapshotBefore(int offset) {
+        int index = Arrays.binarySearch(snapshots, 0, snapshotCount, offset);
+        return index >= 0 ? index - 1 : -index - 2;
+    }
+
+    /**
+     * Set up a new model with the position of a snapshot.
+     */
+    private void restore(StrategoModel model, int start) {
+        BoardState state = model.getState();
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            int square = data[start + 5 + sq] & 0xFF;
+            int code = square & GameJournal.CODE_MASK;
+            if (code == 0)
+                continue;
+            GamePiece piece = new GamePiece(BoardState.typeOf(code), BoardState.teamOf(code));
+            piece.setRevealed((square & GameJournal.REVEALED_BIT) != 0);
+            model.setPiece(piece, sq);
+            state.setMoved(sq, (square & GameJournal.MOVED_BIT) != 0);
+        }
+        int flags = data[start + GameJournal.SNAPSHOT_SIZE - 1];
+        state.setPlacement((flags & GameJournal.PLACEMENT) != 0);
+        state.setTurn((flags & GameJournal.BLUE_TURN) != 0 ? GamePiece.BLUE_TEAM : GamePiece.RED_TEAM);
+    }
+
+    /**
+     * Get the moves of the game as encoded moves. A move that started a
+     * battle is the move of the attacking piece.
+     *
+     * @return One move per move of the game, see {@link Move}.
+     */
+    public int[] getMoves() {
+        int[] moves = new int[Math.max(plies, 0)];
+        if (plies <= 0)
+            return moves;
+        StrategoModel model = load(0);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        for (int ply = 0; ply < plies; ply++) {
+            moves[ply] = Move.NONE;
+            buffer.limit(moveEnds[ply + 1]).position(moveEnds[ply]);
+            while (buffer.hasRemaining()) {
+                int move = apply(model, buffer);
+                if (moves[ply] == Move.NONE)
+                    moves[ply] = move;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Apply the records between two offsets to a model.
+     */
+    private void replay(StrategoModel model, int position, int end) {
+        ByteBuffer buffer = ByteBuffer.wrap(data, position, end - position);
+        while (buffer.hasRemaining())
+            apply(model, buffer);
+    }
+
+    /**
+     * Apply the next record of a buffer to a model.
+     *
+     * @return The move the record makes or starts, or {@link Move#NONE} if it
+     *         does not move a piece of the team to move.
+     */
+    private static int apply(StrategoModel model, ByteBuffer buffer) {
+        int tag = buffer.get();
+        if (tag == GameJournal.MOVE) {
+            int move = (buffer.get() & 0xFF) << 8 | buffer.get() & 0xFF;
+            model.makeMove(move);
+            model.clearHistory();
+            return move;
+        }
+        if (tag == GameJournal.SNAPSHOT) {
+            buffer.position(buffer.position() + GameJournal.SNAPSHOT_SIZE - 1);
+            return Move.NONE;
+        }
+        StrategoMessage message;
+        try {
+            message = MessageCodec.read(buffer);
+        } catch (ProtocolException e) {
+            // Every record was checked when the journal was read
+            throw new IllegalStateException(e);
+        }
+        int move = Move.NONE;
+        BoardState state = model.getState();
+        if (message instanceof StrategoPieceBattle && !state.isPlacement()) {
+            // A battle names the winner first, so the attacker is whichever
+            // piece belongs to the team to move
+            StrategoPieceUpdate battle = (StrategoPieceUpdate) message;
+            if (state.isOccupied(battle.getFromSquare(), state.getTurn()))
+                move = Move.of(battle.getFromSquare(), battle.getToSquare());
+            else
+                move = Move.of(battle.getToSquare(), battle.getFromSquare());
+        } else if (message.isPieceUpdate() && ((StrategoPieceUpdate) message).isMove() && !state.isPlacement()) {
+            StrategoPieceUpdate update = (StrategoPieceUpdate) message;
+            move = Move.of(update.getFromSquare(), update.getToSquare());
+        }
+        model.processUpdate(message);
+        return move;
+    }
+}
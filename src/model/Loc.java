@@ -7,10 +7,22 @@ import controller.Direction;
 /**
  * The Loc class holds the information of a coordinate position.
  * 
+ * Locations on the board are shared: {@link #of(int, int)} and
+ * {@link #of(int)} return the same instance for the same square, and each
+ * location knows its square index (0-99) so that it can be used with the
+ * primitive board representation.
  *
  */
 public class Loc implements Serializable {
 
+    // Shared instances for every square on the board
+    private static final Loc[] SQUARES = new Loc[Bitboard.SQUARES];
+
+    static {
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++)
+            SQUARES[sq] = new Loc(Bitboard.row(sq), Bitboard.col(sq));
+    }
+
     private final int row;
     private final int col;
 
@@ -25,6 +37,40 @@ public class Loc implements Serializable {
         this.col = col;
     }
 
+    /**
+     * Returns the location of a row and column. Locations on the board are
+     * shared instances; other locations are created as needed.
+     *
+     * @param row The row coordinate of the location.
+     * @param col The col coordinate of the location.
+     * @return the location
+     */
+    public static Loc of(int row, int col) {
+        if (Bitboard.inBounds(row, col))
+            return SQUARES[Bitboard.square(row, col)];
+        return new Loc(row, col);
+    }
+
+    /**
+     * Returns the shared location of a square index.
+     *
+     * @param sq Square index in the range 0-99.
+     * @return the location of the square
+     */
+    public static Loc of(int sq) {
+        return SQUARES[sq];
+    }
+
+    /**
+     * Returns the square index of the location. Only meaningful for locations on
+     * the board.
+     *
+     * @return the square index, row * COLS + col
+     */
+    public int getIndex() {
+        return Bitboard.square(row, col);
+    }
+
     /**
      * Returns the row of the location.
      * 
@@ -44,15 +90,14 @@ public class Loc implements Serializable {
     }
 
     /**
-     * Creates a new Loc object in a specified direction and at a specified
-     * distance.
+     * Returns the location in a specified direction and at a specified distance.
      * 
      * @param dir  The direction to the new location.
      * @param dist The distance to the new location.
-     * @return a new Loc object in a specified direction and at a specified distance
+     * @return the Loc object in a specified direction and at a specified distance
      */
     public Loc getRelative(Direction dir, int dist) {
-        return new Loc(row + dir.getDeltaRow() * dist, col + dir.getDeltaCol() * dist);
+        return of(row + dir.getDeltaRow() * dist, col + dir.getDeltaCol() * dist);
     }
 
     /**
@@ -85,6 +130,15 @@ public class Loc implements Serializable {
         return result;
     }
 
+    /**
+     * Replaces deserialized locations on the board with the shared instance.
+     *
+     * @return the shared location
+     */
+    private Object readResolve() {
+        return of(row, col);
+    }
+
     /**
      * Outputs the row and col in a string. For example, for row=1, and col=3, the
      * output is: 1, 3
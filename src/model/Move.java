@@ -0,0 +1,70 @@
+package model;
+
+/**
+ * Encodes a move as a single int so that moves can be stored in primitive
+ * arrays. The origin square is held in the low seven bits and the destination
+ * square in the next seven bits. Piece placements from the bin use
+ * {@link #BIN} as the origin square.
+ */
+public final class Move {
+
+    /**
+     * Origin square of a piece that is placed from the bin.
+     */
+    public static final int BIN = 127;
+
+    /**
+     * Value that never represents a move.
+     */
+    public static final int NONE = -1;
+
+    private static final int SQUARE_BITS = 7;
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+
+    private Move() {
+    }
+
+    /**
+     * Encode a move.
+     *
+     * @param from Origin square index, or {@link #BIN}.
+     * @param to   Destination square index.
+     * @return Encoded move.
+     */
+    public static int of(int from, int to) {
+        return from | (to << SQUARE_BITS);
+    }
+
+    /**
+     * Get the origin square of an encoded move.
+     *
+     * @param move Encoded move.
+     * @return Origin square index, or {@link #BIN}.
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Get the destination square of an encoded move.
+     *
+     * @param move Encoded move.
+     * @return Destination square index.
+     */
+    public static int to(int move) {
+        return (move >>> SQUARE_BITS) & SQUARE_MASK;
+    }
+
+    /**
+     * Describes a move for debugging, e.g. {@code 6,0-5,0}.
+     *
+     * @param move Encoded move.
+     * @return Readable move.
+     */
+    public static String toString(int move) {
+        int from = from(move);
+        int to = to(move);
+        String origin = from == BIN ? "bin" : Bitboard.row(from) + "," + Bitboard.col(from);
+        return origin + "-" + Bitboard.row(to) + "," + Bitboard.col(to);
+    }
+}
@@ -0,0 +1,169 @@
+package model;
+
+import controller.Direction;
+
+/**
+ * Generates moves into caller supplied int arrays without allocating. Moves are
+ * encoded with {@link Move}. Neighbor tables hold the squares a single step
+ * piece can reach from each square, and ray tables hold the squares a scout
+ * passes over in each direction until it leaves the board or reaches a lake.
+ */
+public final class MoveGenerator {
+
+    /**
+     * Size of a buffer that is large enough for every move of one team.
+     */
+    public static final int MAX_MOVES = 512;
+
+    private static final int DIRECTIONS = Direction.values().length;
+
+    // Squares next to each square, excluding lakes
+    private static final int[][] NEIGHBORS = new int[Bitboard.SQUARES][];
+
+    // Squares along each (square, direction) ray, nearest first, stopping before
+    // the edge of the board or a lake
+    private static final int[][] RAYS = new int[Bitboard.SQUARES * DIRECTIONS][];
+
+    static {
+        int[] buffer = new int[Math.max(StrategoModel.ROWS, StrategoModel.COLS)];
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            int neighbors = 0;
+            int[] adjacent = new int[DIRECTIONS];
+            for (Direction dir : Direction.values()) {
+                int length = 0;
+                int row = Bitboard.row(sq) + dir.getDeltaRow();
+                int col = Bitboard.col(sq) + dir.getDeltaCol();
+                while (Bitboard.inBounds(row, col) && !Bitboard.isLake(Bitboard.square(row, col))) {
+                    buffer[length++] = Bitboard.square(row, col);
+                    row += dir.getDeltaRow();
+                    col += dir.getDeltaCol();
+                }
+                int[] ray = new int[length];
+                System.arraycopy(buffer, 0, ray, 0, length);
+                RAYS[sq * DIRECTIONS + dir.ordinal()] = ray;
+                if (length > 0)
+                    adjacent[neighbors++] = ray[0];
+            }
+            NEIGHBORS[sq] = new int[neighbors];
+            System.arraycopy(adjacent, 0, NEIGHBORS[sq], 0, neighbors);
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Get the squares next to a square that a piece may step onto, ignoring
+     * other pieces.
+     *
+     * @param sq Square index.
+     * @return Neighboring squares that are not lakes. Must not be modified.
+     */
+    public static int[] getNeighbors(int sq) {
+        return NEIGHBORS[sq];
+    }
+
+    /**
+     * Get the squares along a ray from a square, ignoring other pieces.
+     *
+     * @param sq  Square index.
+     * @param dir Direction of the ray.
+     * @return Squares on the ray, nearest first. Must not be modified.
+     */
+    public static int[] getRay(int sq, Direction dir) {
+        return RAYS[sq * DIRECTIONS + dir.ordinal()];
+    }
+
+    /**
+     * Write the moves of the piece on a square to a buffer. A piece may move onto
+     * any empty square it can reach and attack a piece that does not belong to
+     * the moving team.
+     *
+     * @param state Board to generate moves on.
+     * @param sq    Square of the piece to move.
+     * @param team  Team that is moving.
+     * @param moves Buffer to write encoded moves to.
+     * @param count Number of moves already in the buffer.
+     * @return The new number of moves in the buffer.
+     */
+    public static int generate(BoardState state, int sq, boolean team, int[] moves, int count) {
+        int code = state.get(sq);
+        if (code == 0)
+            return count;
+        PieceType type = BoardState.typeOf(code);
+        if (type == PieceType.FLAG || type == PieceType.BOMB)
+            return count;
+        if (type == PieceType.SCOUT) {
+            int base = sq * DIRECTIONS;
+            for (int d = 0; d < DIRECTIONS; d++) {
+                int[] ray = RAYS[base + d];
+                for (int i = 0; i < ray.length; i++) {
+                    int to = ray[i];
+                    if (state.isOccupied(to)) {
+                        if (!state.isOccupied(to, team))
+                            moves[count++] = Move.of(sq, to);
+                        break;
+                    }
+                    moves[count++] = Move.of(sq, to);
+                }
+            }
+        } else {
+            int[] neighbors = NEIGHBORS[sq];
+            for (int i = 0; i < neighbors.length; i++) {
+                int to = neighbors[i];
+                if (!state.isOccupied(to, team))
+                    moves[count++] = Move.of(sq, to);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write every move of a team to a buffer.
+     *
+     * @param state Board to generate moves on.
+     * @param team  Team that is moving.
+     * @param moves Buffer of at least {@link #MAX_MOVES} entries.
+     * @return Number of moves written.
+     */
+    public static int generateAll(BoardState state, boolean team, int[] moves) {
+        int count = 0;
+        for (int word = 0; word < 2; word++) {
+            long bits = state.getOccupied(team, word);
+            while (bits != 0) {
+                int sq = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                count = generate(state, sq, team, moves, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write the placement phase moves of a team to a buffer. Pieces from the bin
+     * are placed on empty squares of the setup zone, while a piece already on the
+     * board may be moved to any square of the setup zone, swapping places with
+     * the piece there.
+     *
+     * @param state     Board to generate moves on.
+     * @param team      Team that is placing pieces.
+     * @param from      Square of the piece being moved, or {@link Move#BIN}.
+     * @param emptyOnly True to only include empty squares.
+     * @param moves     Buffer of at least {@link #MAX_MOVES} entries.
+     * @return Number of moves written.
+     */
+    public static int generatePlacements(BoardState state, boolean team, int from, boolean emptyOnly, int[] moves) {
+        int count = 0;
+        for (int word = 0; word < 2; word++) {
+            long bits = word == 0 ? Bitboard.setupLo(team) : Bitboard.setupHi(team);
+            if (emptyOnly)
+                bits &= ~(state.getOccupied(false, word) | state.getOccupied(true, word));
+            while (bits != 0) {
+                int to = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                moves[count++] = Move.of(from, to);
+            }
+        }
+        return count;
+    }
+}
@@ -5,31 +5,34 @@ package model;
  */
 public enum PieceType {
 
-    FLAG(-1, 1),
-    BOMB(0, 6),
-    SPY(1, 1),
-    SCOUT(2, 8),
-    MINER(3, 5),
-    SERGEANT(4, 4),
-    LIEUTENANT(5, 4),
-    CAPTAIN(6, 4),
-    MAJOR(7, 3),
-    COLONEL(8, 2),
-    GENERAL(9, 1),
-    MARSHALL(10, 1);
+    FLAG(-1, 1, 0),
+    BOMB(0, 6, 20),
+    SPY(1, 1, 30),
+    SCOUT(2, 8, 10),
+    MINER(3, 5, 25),
+    SERGEANT(4, 4, 15),
+    LIEUTENANT(5, 4, 25),
+    CAPTAIN(6, 4, 40),
+    MAJOR(7, 3, 80),
+    COLONEL(8, 2, 140),
+    GENERAL(9, 1, 250),
+    MARSHALL(10, 1, 400);
     
     private int rank;
     private int quantity;
+    private int value;
     
     /**
-     * Set the rank and quantity of each piece.
+     * Set the rank, quantity and material value of each piece.
      *
      * @param rank Piece rank.
      * @param quantity Number that each player starts with.
+     * @param value Material value of the piece.
      */
-    PieceType(int rank, int quantity) {
+    PieceType(int rank, int quantity, int value) {
         this.rank = rank;
         this.quantity = quantity;
+        this.value = value;
     }
     
     /**
@@ -50,4 +53,15 @@ public enum PieceType {
     public int getQuantity() {
         return quantity;
     }
+    
+    /**
+     * Get the material value of this piece type, a rough measure of
+     * how much the piece is worth when evaluating a position. The
+     * flag is worth nothing since losing it ends the game.
+     *
+     * @return Material value.
+     */
+    public int getValue() {
+        return value;
+    }
 }
@@ -0,0 +1,62 @@
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Helpers for setting up the pieces of a team before a game.
+ */
+public final class Setups {
+
+    /**
+     * Number of pieces each team starts with.
+     */
+    public static final int ARMY_SIZE;
+
+    static {
+        int size = 0;
+        for (PieceType type : PieceType.values())
+            size += type.getQuantity();
+        ARMY_SIZE = size;
+    }
+
+    private Setups() {
+    }
+
+    /**
+     * Get a full set of piece types in random order.
+     *
+     * @param random Source of randomness.
+     * @return {@link #ARMY_SIZE} piece types, each as often as its quantity.
+     */
+    public static PieceType[] randomArmy(SplittableRandom random) {
+        PieceType[] army = new PieceType[ARMY_SIZE];
+        int count = 0;
+        for (PieceType type : PieceType.values()) {
+            for (int i = 0; i < type.getQuantity(); i++)
+                army[count++] = type;
+        }
+        for (int i = army.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            PieceType type = army[i];
+            army[i] = army[j];
+            army[j] = type;
+        }
+        return army;
+    }
+
+    /**
+     * Place a full set of a team's pieces at random on the empty squares of its
+     * setup zone.
+     *
+     * @param model  Model to place the pieces in.
+     * @param team   False for red, true for blue.
+     * @param random Source of randomness.
+     */
+    public static void placeRandom(StrategoModel model, boolean team, SplittableRandom random) {
+        PieceType[] army = randomArmy(random);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generatePlacements(model.getState(), team, Move.BIN, true, moves);
+        for (int i = 0; i < count && i < army.length; i++)
+            model.setPiece(new GamePiece(army[i], team), Move.to(moves[i]));
+    }
+}
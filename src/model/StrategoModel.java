@@ -1,12 +1,13 @@
 package model;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Observable;
 
 import network.StrategoMessage;
 import network.StrategoPieceBattle;
 import network.StrategoPieceUpdate;
-import view.Piece;
+import network.StrategoPlacementBatch;
 
 /**
  * Model for the Stratego game. Holds a representation of the game board
@@ -21,17 +22,49 @@ public class StrategoModel extends Observable {
     public static final int ROWS = 10;
     public static final int COLS = 10;
 
-    private Piece[] board;
+    private GamePiece[] board;
+    private BoardState state;
+
+    // Moves, pieces and reveal flags needed to undo moves made with makeMove
+    private int[] undoMoves = new int[BoardState.MAX_UNDO];
+    private GamePiece[] undoPieces = new GamePiece[BoardState.MAX_UNDO * 2];
+    private boolean[] undoRevealed = new boolean[BoardState.MAX_UNDO * 2];
+
+    // Collects the updates of setPiece instead of notifying observers of each
+    // one, while a batch of placements is applied
+    private StrategoPlacementBatch batch;
 
     /**
      * Constructor. Initializes the board array.
      */
     public StrategoModel() {
-        board = new Piece[ROWS * COLS];
+        board = new GamePiece[ROWS * COLS];
+        state = new BoardState();
     }
 
     private int getIndex(Loc loc) {
-        return loc.getRow() * ROWS + loc.getCol();
+        return loc.getIndex();
+    }
+
+    /**
+     * Get the bitboard representation of the pieces on the board. The state is
+     * kept in sync with the pieces by {@link #setPiece(GamePiece, Loc)}.
+     *
+     * @return Board state.
+     */
+    public BoardState getState() {
+        return state;
+    }
+
+    /**
+     * Get the Zobrist hash of the current position. The hash covers the type,
+     * team, location and reveal flag of every piece, the team to move and the
+     * game phase.
+     *
+     * @return 64-bit position hash.
+     */
+    public long getHash() {
+        return state.getHash();
     }
 
     /**
@@ -43,11 +76,7 @@ public class StrategoModel extends Observable {
     public boolean inBounds(Loc loc) {
         if (loc == null)
             return false;
-        int row = loc.getRow();
-        int col = loc.getCol();
-        if (row < 0 || row >= ROWS)
-            return false;
-        return col >= 0 && col < COLS;
+        return Bitboard.inBounds(loc.getRow(), loc.getCol());
     }
 
     /**
@@ -58,73 +87,233 @@ public class StrategoModel extends Observable {
      * @return message The piece update message caused by setting this piece, or
      *         null if at least one of the parameters is invalid.
      */
-    public StrategoPieceUpdate setPiece(Piece piece, Loc loc) {
+    public StrategoPieceUpdate setPiece(GamePiece piece, Loc loc) {
         StrategoPieceUpdate message = null;
         if (!inBounds(loc))
             return null;
         if (piece != null && Objects.equals(piece.getLocation(), loc))
             return null;
         int index = getIndex(loc);
-        if (board[index] != null)
+        if (board[index] != null) {
             board[index].setLocation(null);
-        board[getIndex(loc)] = piece;
+            state.clear(index);
+        }
+        board[index] = piece;
         setChanged();
         if (piece != null) {
             Loc from = piece.getLocation();
             piece.setLocation(loc);
+            state.put(index, BoardState.code(piece.getPieceType(), piece.getTeam()), piece.isRevealed());
             if (from == null) {
                 // Place piece
                 message = new StrategoPieceUpdate(loc, piece.getPieceType(), piece.getTeam());
             } else {
                 // Move piece
                 board[getIndex(from)] = null;
+                if (!state.isPlacement())
+                    state.setMoved(index, true);
+                state.clear(getIndex(from));
                 message = new StrategoPieceUpdate(from, loc, piece.getTeam());
             }
-            notifyObservers(message);
         } else {
             // Remove piece
             message = new StrategoPieceUpdate(loc);
+        }
+        if (batch != null) {
+            message.setTeam(batch.getTeam());
+            batch.add(message);
+        } else {
             notifyObservers(message);
         }
         return message;
     }
 
+    /**
+     * Places several pieces of a team during the placement phase and notifies
+     * observers once with all of the changes, instead of once per piece.
+     *
+     * @param pieces Pieces to place, in order. A null piece removes the piece at
+     *               its location.
+     * @param locs   Location of each piece.
+     * @param team   Team the pieces belong to.
+     * @return The batch of piece updates caused by placing the pieces, which is
+     *         empty if nothing changed.
+     */
+    public StrategoPlacementBatch placePieces(List<GamePiece> pieces, List<Loc> locs, boolean team) {
+        return batch(team, () -> {
+            for (int i = 0; i < pieces.size(); i++)
+                setPiece(pieces.get(i), locs.get(i));
+        });
+    }
+
+    /**
+     * Make changes to a team's pieces during the placement phase and notify
+     * observers once with all of them, instead of once per change.
+     *
+     * @param team    Team the pieces belong to.
+     * @param changes Calls to {@link #setPiece(GamePiece, Loc)} that make the
+     *                changes.
+     * @return The batch of piece updates caused by the changes, which is empty
+     *         if nothing changed.
+     */
+    public StrategoPlacementBatch batch(boolean team, Runnable changes) {
+        StrategoPlacementBatch placed = new StrategoPlacementBatch(team);
+        batch = placed;
+        try {
+            changes.run();
+        } finally {
+            batch = null;
+        }
+        if (placed.size() > 0) {
+            setChanged();
+            notifyObservers(placed);
+        }
+        return placed;
+    }
+
     /**
      * Apply the changes from a piece update message to this model.
      *
-     * @param msg Piece update message generated by {@link #setPiece(Piece, Loc)}
+     * @param msg Piece update message generated by {@link #setPiece(GamePiece, Loc)}
      */
     public void processUpdate(StrategoMessage msg) {
-        if (msg.isPieceUpdate()) {
+        if (msg.isPlacementBatch()) {
+            batch = new StrategoPlacementBatch(msg.getTeam());
+            try {
+                for (StrategoPieceUpdate update : ((StrategoPlacementBatch) msg).getUpdates())
+                    processUpdate(update);
+            } finally {
+                batch = null;
+            }
+            setChanged();
+            notifyObservers(msg);
+        } else if (msg.isPieceUpdate()) {
             StrategoPieceUpdate update = (StrategoPieceUpdate) msg;
             if (update instanceof StrategoPieceBattle) {
-                reveal(getPiece(update.getFrom()), getPiece(update.getTo()), ((StrategoPieceBattle) msg).isTie());
+                reveal(getPiece(update.getFromSquare()), getPiece(update.getToSquare()),
+                        ((StrategoPieceBattle) msg).isTie());
             } else {
-                if (update.isPlacement()) {
-                    Piece piece = new Piece(update.getPieceType(), update.getTeam(), false);
-                    setPiece(piece, update.getTo());
+                if (update.isHidden()) {
+                    GamePiece piece = new GamePiece(placeholder(update.getTeam()), update.getTeam());
+                    setPiece(piece, update.getToSquare());
+                } else if (update.isPlacement() && !state.isPlacement()
+                        && state.isOccupied(update.getToSquare(), update.getTeam())) {
+                    identify(update.getToSquare(), update.getPieceType());
+                    setChanged();
+                    notifyObservers(update);
+                } else if (update.isPlacement()) {
+                    GamePiece piece = new GamePiece(update.getPieceType(), update.getTeam());
+                    setPiece(piece, update.getToSquare());
                 } else if (update.isMove()) {
-                    setPiece(getPiece(update.getFrom()), update.getTo());
+                    setPiece(getPiece(update.getFromSquare()), update.getToSquare());
                 } else if (update.isRemove()) {
-                    setPiece(null, update.getFrom());
+                    setPiece(null, update.getFromSquare());
                 }
             }
         } else {
+            if (msg.isGameStart()) {
+                state.setPlacement(false);
+                state.setTurn(msg.getTeam());
+            } else if (msg.isEndOfTurn()) {
+                state.setTurn(msg.getTeam());
+            }
             setChanged();
             notifyObservers(msg);
         }
     }
 
     /**
-     * Gets the Piece object at the location specified by the Loc object.
+     * Get a type for a piece whose real type is hidden. This is the first type
+     * the team has fewer of than it starts with, so that the counts of every
+     * type stay right as long as every hidden piece gets one.
+     */
+    private PieceType placeholder(boolean team) {
+        for (PieceType type : PieceType.values()) {
+            if (state.getCount(team, type) < type.getQuantity())
+                return type;
+        }
+        return PieceType.FLAG;
+    }
+
+    /**
+     * Give a piece whose type was hidden its real type, which a referee sends
+     * right before the piece fights. Another hidden piece of the team that was
+     * given that type as a placeholder gets the piece's old placeholder, so that
+     * the counts of every type stay right.
+     *
+     * @param sq   Square of the piece.
+     * @param type Real type of the piece.
+     */
+    private void identify(int sq, PieceType type) {
+        GamePiece piece = board[sq];
+        PieceType placeholder = piece.getPieceType();
+        if (placeholder == type)
+            return;
+        for (int other = 0; other < board.length; other++) {
+            GamePiece hidden = board[other];
+            if (other != sq && hidden != null && hidden.getTeam() == piece.getTeam() && !hidden.isRevealed()
+                    && hidden.getPieceType() == type) {
+                retype(other, placeholder);
+                break;
+            }
+        }
+        retype(sq, type);
+    }
+
+    /**
+     * Replace the piece on a square with one of another type, keeping its
+     * reveal and move flags.
+     */
+    private void retype(int sq, PieceType type) {
+        GamePiece old = board[sq];
+        GamePiece piece = new GamePiece(type, old.getTeam());
+        piece.setRevealed(old.isRevealed());
+        piece.setLocation(old.getLocation());
+        old.setLocation(null);
+        board[sq] = piece;
+        boolean moved = state.hasMoved(sq);
+        state.put(sq, BoardState.code(type, piece.getTeam()), piece.isRevealed());
+        state.setMoved(sq, moved);
+    }
+
+    /**
+     * Gets the piece at the location specified by the Loc object.
      * 
      * @param loc The Loc object that specifies the coordinates.
-     * @return the Piece object at the location specified by the Loc object
+     * @return the piece at the location specified by the Loc object
      */
-    public Piece getPiece(Loc loc) {
+    public GamePiece getPiece(Loc loc) {
         if (!inBounds(loc))
             return null;
-        return board[getIndex(loc)];
+        int index = getIndex(loc);
+        if (!state.isOccupied(index))
+            return null;
+        return board[index];
+    }
+
+    /**
+     * Gets the piece on a square.
+     *
+     * @param sq Square index in the range 0-99.
+     * @return the piece on the square, or null if the square is empty
+     */
+    public GamePiece getPiece(int sq) {
+        if (!state.isOccupied(sq))
+            return null;
+        return board[sq];
+    }
+
+    /**
+     * Changes the piece on a square.
+     *
+     * @param piece The piece to be set
+     * @param sq    Square index in the range 0-99.
+     * @return message The piece update message caused by setting this piece, or
+     *         null if nothing changed.
+     * @see #setPiece(GamePiece, Loc)
+     */
+    public StrategoPieceUpdate setPiece(GamePiece piece, int sq) {
+        return setPiece(piece, Loc.of(sq));
     }
 
     /**
@@ -141,7 +330,7 @@ public class StrategoModel extends Observable {
      * 
      * @param piece The piece to remove.
      */
-    public void removePiece(Piece piece) {
+    public void removePiece(GamePiece piece) {
         removePiece(piece.getLocation());
     }
 
@@ -153,35 +342,127 @@ public class StrategoModel extends Observable {
      * @param p2  Piece 2 to reveal
      * @param tie True if the pieces are equal, false if not.
      */
-    public void reveal(Piece p1, Piece p2, boolean tie) {
+    public void reveal(GamePiece p1, GamePiece p2, boolean tie) {
         p1.setRevealed(true);
         p2.setRevealed(true);
+        state.setRevealed(getIndex(p1.getLocation()), true);
+        state.setRevealed(getIndex(p2.getLocation()), true);
         setChanged();
         notifyObservers(new StrategoPieceBattle(p1.getLocation(), p2.getLocation(), tie));
     }
 
     /**
-     * Checks if @param team has lost the game by iterating over the board and
-     * checking what pieces they have.
+     * Checks if @param team has lost the game by checking the team's flag and
+     * movable piece counters.
      * 
      * @param team False for red, true for blue.
      * @return true if team no longer has their flag or any movable pieces, else
      *         false
      */
     public boolean isGameOver(boolean team) {
-        boolean hasFlag = false;
-        boolean hasMoveablePiece = false;
-
-        for (int i = 0; i < board.length; i++) {
-            Piece current = board[i];
-            if (current != null && current.getTeam() == team) {
-                if (current.getPieceType() == PieceType.FLAG) {
-                    hasFlag = true;
-                } else if (current.getPieceType() != PieceType.BOMB) {
-                    hasMoveablePiece = true;
-                }
-            }
+        return state.hasLost(team);
+    }
+
+    /**
+     * Get the number of pieces of a type that a team still has on the board.
+     *
+     * @param team False for red, true for blue.
+     * @param type Piece type.
+     * @return Number of pieces remaining.
+     */
+    public int getPieceCount(boolean team, PieceType type) {
+        return state.getCount(team, type);
+    }
+
+    /**
+     * Get the material balance from the point of view of a team: the value of
+     * the team's pieces minus the value of the enemy's pieces.
+     *
+     * @param team False for red, true for blue.
+     * @return Material balance, positive if the team is ahead.
+     * @see PieceType#getValue()
+     */
+    public int getMaterialBalance(boolean team) {
+        return state.getMaterial(team) - state.getMaterial(!team);
+    }
+
+    /**
+     * Makes a move without notifying observers, so that positions can be searched
+     * and taken back with {@link #unmakeMove()}. If the destination holds a piece
+     * the pieces battle, are revealed and the loser is removed. The move is
+     * assumed to be legal and the turn passes to the other team.
+     *
+     * Pieces must not be set or removed while there are moves to unmake.
+     *
+     * @param move Encoded move, see {@link Move}.
+     * @return Battle result, see {@link BoardState#makeMove(int)}.
+     * @throws IllegalStateException if the undo stack is full.
+     */
+    public int makeMove(int move) {
+        int ply = state.getPly();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        GamePiece attacker = board[from];
+        GamePiece defender = board[to];
+        int result = state.makeMove(move);
+
+        undoMoves[ply] = move;
+        undoPieces[ply * 2] = attacker;
+        undoPieces[ply * 2 + 1] = defender;
+        undoRevealed[ply * 2] = attacker.isRevealed();
+        undoRevealed[ply * 2 + 1] = defender != null && defender.isRevealed();
+
+        board[from] = null;
+        attacker.setLocation(null);
+        if (defender != null) {
+            attacker.setRevealed(true);
+            defender.setRevealed(true);
         }
-        return (!hasFlag || !hasMoveablePiece);
+        if (result == StrategoRules.ATTACKER_WINS) {
+            board[to] = attacker;
+            attacker.setLocation(Loc.of(to));
+            if (defender != null)
+                defender.setLocation(null);
+        } else if (result == StrategoRules.TIE) {
+            board[to] = null;
+            defender.setLocation(null);
+        }
+        return result;
+    }
+
+    /**
+     * Takes back the last move made with {@link #makeMove(int)} without notifying
+     * observers.
+     *
+     * @throws IllegalStateException if there is no move to unmake.
+     */
+    public void unmakeMove() {
+        state.unmakeMove();
+        int ply = state.getPly();
+        int move = undoMoves[ply];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        GamePiece attacker = undoPieces[ply * 2];
+        GamePiece defender = undoPieces[ply * 2 + 1];
+        undoPieces[ply * 2] = null;
+        undoPieces[ply * 2 + 1] = null;
+
+        board[from] = attacker;
+        attacker.setLocation(Loc.of(from));
+        attacker.setRevealed(undoRevealed[ply * 2]);
+        board[to] = defender;
+        if (defender != null) {
+            defender.setLocation(Loc.of(to));
+            defender.setRevealed(undoRevealed[ply * 2 + 1]);
+        }
+    }
+
+    /**
+     * Forget the moves that can be unmade, keeping the current position.
+     */
+    public void clearHistory() {
+        for (int i = 0; i < state.getPly() * 2; i++)
+            undoPieces[i] = null;
+        state.clearHistory();
     }
 }
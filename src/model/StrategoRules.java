@@ -0,0 +1,206 @@
+package model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The rules of Stratego: where pieces may be placed and moved, and how battles
+ * are resolved. The rules only depend on the model, so they can be used
+ * without a user interface or network connection.
+ *
+ */
+public final class StrategoRules {
+
+    /**
+     * Battle result when the attacking piece wins.
+     */
+    public static final int ATTACKER_WINS = 1;
+
+    /**
+     * Battle result when both pieces are removed.
+     */
+    public static final int TIE = 0;
+
+    /**
+     * Battle result when the attacked piece wins.
+     */
+    public static final int DEFENDER_WINS = -1;
+
+    // Battle results indexed by attacker and defender type ordinals
+    private static final int[][] BATTLE_RESULTS = new int[BoardState.TYPES][BoardState.TYPES];
+
+    static {
+        for (PieceType attacker : PieceType.values()) {
+            for (PieceType defender : PieceType.values()) {
+                int result;
+                if (defender == PieceType.BOMB) {
+                    // Bomb only loses against miner
+                    result = attacker == PieceType.MINER ? ATTACKER_WINS : DEFENDER_WINS;
+                } else if (attacker == PieceType.SPY && defender == PieceType.MARSHALL) {
+                    // Spy wins against marshall
+                    result = ATTACKER_WINS;
+                } else {
+                    // Compare ranks
+                    result = Integer.signum(attacker.getRank() - defender.getRank());
+                }
+                BATTLE_RESULTS[attacker.ordinal()][defender.ordinal()] = result;
+            }
+        }
+    }
+
+    private StrategoRules() {
+    }
+
+    /**
+     * Checks if a location is a lake.
+     *
+     * @param loc The location, represented by a Loc object.
+     * @return True if the location is a lake, false otherwise.
+     */
+    public static boolean isLake(Loc loc) {
+        int row = loc.getRow();
+        int col = loc.getCol();
+        if (!Bitboard.inBounds(row, col))
+            return false;
+        return Bitboard.isLake(Bitboard.square(row, col));
+    }
+
+    /**
+     * Determines which Piece wins the battle.
+     *
+     * This method assumes that the battle is a legal move. For example the
+     * attacking piece will never be the flag.
+     *
+     * @param p1 The attacking piece.
+     * @param p2 The piece being attacked.
+     * @return The Piece that wins the battle, or null if tie.
+     */
+    public static GamePiece getBattleWinner(GamePiece p1, GamePiece p2) {
+        int result = getBattleResult(p1.getPieceType(), p2.getPieceType());
+        if (result == ATTACKER_WINS)
+            return p1;
+        if (result == DEFENDER_WINS)
+            return p2;
+        return null;
+    }
+
+    /**
+     * Get the result of a battle between two piece types.
+     *
+     * @param attacker Type of the attacking piece.
+     * @param defender Type of the piece being attacked.
+     * @return {@link #ATTACKER_WINS}, {@link #DEFENDER_WINS} or {@link #TIE}.
+     */
+    public static int getBattleResult(PieceType attacker, PieceType defender) {
+        return BATTLE_RESULTS[attacker.ordinal()][defender.ordinal()];
+    }
+
+    /**
+     * Get the set of moves that can be made by the piece at the specified location.
+     *
+     * @param model     Model holding the pieces.
+     * @param team      Team of the player asking for moves.
+     * @param placement True during the piece placement phase.
+     * @param loc       Location to get moves for, or null for placing a piece.
+     * @param fromBin   Whether the piece being moved is coming from the bin or is
+     *                  already on the board.
+     * @return Set of moves for the piece.
+     */
+    public static Set<Loc> getMoves(StrategoModel model, boolean team, boolean placement, Loc loc, boolean fromBin) {
+        Set<Loc> moves = new HashSet<>();
+        int[] buffer = new int[MoveGenerator.MAX_MOVES];
+        int count = getMoves(model, team, placement, loc, fromBin, buffer);
+        for (int i = 0; i < count; i++) {
+            int to = Move.to(buffer[i]);
+            moves.add(Loc.of(to));
+        }
+        return moves;
+    }
+
+    /**
+     * Write the moves that can be made by the piece at the specified location to
+     * a buffer.
+     *
+     * @param model     Model holding the pieces.
+     * @param team      Team of the player asking for moves.
+     * @param placement True during the piece placement phase.
+     * @param loc       Location to get moves for, or null for placing a piece.
+     * @param fromBin   Whether the piece being moved is coming from the bin or is
+     *                  already on the board.
+     * @param moves     Buffer of at least {@link MoveGenerator#MAX_MOVES} entries
+     *                  that the encoded moves are written to.
+     * @return Number of moves written.
+     * @see Move
+     */
+    public static int getMoves(StrategoModel model, boolean team, boolean placement, Loc loc, boolean fromBin,
+            int[] moves) {
+        int from = Move.BIN;
+        if (model.inBounds(loc))
+            from = loc.getIndex();
+        if (placement)
+            return MoveGenerator.generatePlacements(model.getState(), team, from, fromBin, moves);
+        if (from == Move.BIN)
+            return 0;
+        return MoveGenerator.generate(model.getState(), from, team, moves, 0);
+    }
+
+    /**
+     * Moves piece from a location to another. During the placement phase two
+     * pieces swap places; otherwise the pieces battle if the new location has an
+     * enemy piece.
+     *
+     * @param model     Model holding the pieces.
+     * @param placement True during the piece placement phase.
+     * @param from      The current location, represented by a Loc object.
+     * @param to        The new location, represented by a Loc object.
+     */
+    public static void movePiece(StrategoModel model, boolean placement, Loc from, Loc to) {
+        GamePiece p1 = model.getPiece(from);
+        GamePiece p2 = model.getPiece(to);
+        if (p2 != null) { // if target location already contains a piece
+            if (placement) {
+                model.batch(p1.getTeam(), () -> {
+                    model.removePiece(p1);
+                    model.removePiece(p2);
+                    model.setPiece(p1, to);
+                    model.setPiece(p2, from);
+                });
+            } else {
+                battle(model, p1, p2);
+            }
+        } else {
+            model.setPiece(p1, to);
+        }
+    }
+
+    /**
+     * Battles two pieces.
+     *
+     * Two pieces fight, either the attacking piece wins and takes the position of
+     * the other piece, or attacker is defeated and removed.
+     *
+     * @param model Model holding the pieces.
+     * @param p1    The attacking piece.
+     * @param p2    The piece being attacked.
+     * @see StrategoRules#getBattleWinner(GamePiece, GamePiece)
+     */
+    public static void battle(StrategoModel model, GamePiece p1, GamePiece p2) {
+        GamePiece winner = getBattleWinner(p1, p2);
+        // Reveal pieces
+        GamePiece tempWin = p1;
+        if (winner == p2)
+            tempWin = p2;
+        GamePiece tempLose = p2;
+        if (winner == p2)
+            tempLose = p1;
+        model.reveal(tempWin, tempLose, winner == null);
+        if (winner == p1) {
+            model.setPiece(p1, p2.getLocation());
+        } else if (winner == p2) {
+            model.removePiece(p1);
+        } else { // tie
+            model.removePiece(p1);
+            model.removePiece(p2);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing of positions. The hash of a position is the
+ * exclusive or of a key for every piece (by piece code, square and whether it
+ * has been revealed), a key if it is blue's turn and a key during the placement
+ * phase. The keys come from a fixed seed, so hashes are stable between runs and
+ * can be stored.
+ */
+public final class Zobrist {
+
+    private static final long SEED = 0x535452415445474FL;
+
+    // Keys indexed by ((code * 2 + revealed) * SQUARES + square)
+    private static final long[] PIECES = new long[(2 * BoardState.TYPES + 1) * 2 * Bitboard.SQUARES];
+
+    /**
+     * Key that is included when it is blue's turn.
+     */
+    public static final long BLUE_TURN;
+
+    /**
+     * Key that is included during the placement phase.
+     */
+    public static final long PLACEMENT;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < PIECES.length; i++)
+            PIECES[i] = random.nextLong();
+        BLUE_TURN = random.nextLong();
+        PLACEMENT = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Get the key of a piece on a square.
+     *
+     * @param code     Non-empty piece code, see {@link BoardState}.
+     * @param revealed True if the piece has been revealed.
+     * @param sq       Square index.
+     * @return Zobrist key.
+     */
+    public static long piece(int code, boolean revealed, int sq) {
+        return PIECES[((code << 1) + (revealed ? 1 : 0)) * Bitboard.SQUARES + sq];
+    }
+}
@@ -0,0 +1,71 @@
+package network;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that serve network connections, one per connection.
+ *
+ * Virtual threads are used when the Java runtime has them (Java 21 and later)
+ * so that a connection waiting for its next message only costs a small object
+ * instead of a platform thread and its stack. They are looked up at run time,
+ * so the game still builds and runs on older versions, where every connection
+ * gets a platform thread.
+ */
+public final class ConnectionThreads {
+
+    // Creates virtual threads, or null if the runtime has none
+    private static final ThreadFactory VIRTUAL_FACTORY = findVirtualFactory();
+
+    private ConnectionThreads() {
+    }
+
+    /**
+     * Checks whether the runtime has virtual threads.
+     *
+     * @return True if virtual threads can be created.
+     */
+    public static boolean isVirtualAvailable() {
+        return VIRTUAL_FACTORY != null;
+    }
+
+    /**
+     * Create an executor that runs every task on a new thread.
+     *
+     * @param name    Name of the threads.
+     * @param virtual True to use virtual threads if the runtime has them.
+     * @return New executor.
+     */
+    public static ExecutorService newExecutor(String name, boolean virtual) {
+        if (virtual && VIRTUAL_FACTORY != null) {
+            try {
+                Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) method.invoke(null, VIRTUAL_FACTORY);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + " " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Look up the factory of virtual threads.
+     */
+    private static ThreadFactory findVirtualFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A server that hosts many games at once. Players connect to it as clients in
+ * the same way as they would connect to another player, and it pairs a red
+ * player with a blue player and passes the moves of each game between them.
+ *
+ * Each player tells which team it plays by sending
+ * {@link StrategoMessage.MessageType#BEGIN_PLACEMENT BEGIN_PLACEMENT} right
+ * after the connection header. The server holds that message until a player of
+ * the other team arrives and then sends each player the other's, which starts
+ * the placement phase on both sides just like a direct connection does.
+ *
+ * The server referees every game with a {@link Referee}: it holds the true
+ * position, passes each team's placements on without their ranks, resolves
+ * battles itself and decides when the game is over. A player who places or
+ * moves a piece that is not theirs, places outside its setup zone, moves out of
+ * turn or illegally or claims a win is dropped, and the other player wins.
+ *
+ * Connections are non-blocking and are shared out over a few threads that each
+ * wait on a selector, so one server can hold thousands of games.
+ *
+ * Usage: {@code GameServer [-p port] [-t threads]}
+ */
+public class GameServer implements Closeable {
+
+    /**
+     * Port the server listens on unless set otherwise.
+     */
+    public static final int DEFAULT_PORT = 4000;
+
+    // Bytes of messages a player may have waiting to be sent before it is
+    // dropped for reading too slowly
+    private static final int OUTPUT_SIZE = 4096;
+    private static final int INPUT_SIZE = 256;
+
+    private final ServerSocketChannel acceptor;
+    private final Loop[] loops;
+    private final Thread acceptThread;
+    private int nextLoop;
+
+    // Cleared to stop accepting, then the loops are stopped once the accept
+    // thread has finished, so no channel is handed to a loop that has ended
+    private volatile boolean running = true;
+    private volatile boolean stopped;
+
+    private final Lobby lobby = new Lobby();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    /**
+     * Create a server and start accepting players.
+     *
+     * @param port    Port to listen on, or 0 for any free port.
+     * @param threads Number of selector threads.
+     * @throws IOException If the port cannot be opened.
+     */
+    public GameServer(int port, int threads) throws IOException {
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(new InetSocketAddress(port));
+        loops = new Loop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new Loop(i);
+            loops[i].thread.start();
+        }
+        acceptThread = new Thread(this::accept, "Stratego server accept");
+        acceptThread.start();
+    }
+
+    /**
+     * Get the port the server listens on.
+     *
+     * @return Port number.
+     */
+    public int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of players that are connected.
+     *
+     * @return Number of open connections.
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Get the number of games in progress.
+     *
+     * @return Number of paired players.
+     */
+    public int getMatchCount() {
+        return lobby.getMatchCount();
+    }
+
+    /**
+     * Get the number of players waiting for an opponent.
+     *
+     * @return Number of players without a game.
+     */
+    public int getWaitingCount() {
+        return lobby.getWaitingCount();
+    }
+
+    /**
+     * Stop accepting players, close every connection and wait for the server's
+     * threads to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            acceptor.close();
+        } catch (IOException e) {
+        }
+        boolean interrupted = false;
+        try {
+            acceptThread.join();
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        stopped = true;
+        for (Loop loop : loops)
+            loop.selector.wakeup();
+        for (Loop loop : loops) {
+            try {
+                loop.thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Accept players and hand them to the selector threads in turn.
+     */
+    private void accept() {
+        while (running) {
+            try {
+                SocketChannel channel = acceptor.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connectionCount.incrementAndGet();
+                loops[nextLoop].add(channel);
+                nextLoop = (nextLoop + 1) % loops.length;
+            } catch (IOException e) {
+                if (running)
+                    e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A thread that waits on a selector for its connections to be ready.
+     */
+    private final class Loop implements Runnable {
+
+        final Thread thread;
+        final Selector selector;
+
+        // Channels to register on the selector's thread
+        private final Queue<SocketChannel> added = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Create a loop and its thread.
+         */
+        Loop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "Stratego server " + index);
+        }
+
+        /**
+         * Hand a new channel to this loop.
+         */
+        void add(SocketChannel channel) {
+            added.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Serve the connections until the server is closed, then close them and
+         * any channels that were handed over but not registered yet.
+         */
+        @Override
+        public void run() {
+            while (!stopped) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    break;
+                }
+                SocketChannel channel;
+                while ((channel = added.poll()) != null)
+                    register(channel);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isWritable())
+                        connection.flush();
+                    if (key.isValid() && key.isReadable())
+                        connection.read();
+                }
+            }
+            for (SelectionKey key : selector.keys())
+                ((Connection) key.attachment()).close();
+            SocketChannel channel;
+            while ((channel = added.poll()) != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                }
+                connectionCount.decrementAndGet();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+            }
+        }
+
+        /**
+         * Start serving a channel and send it the connection header.
+         */
+        private void register(SocketChannel channel) {
+            Connection connection = new Connection(channel, this);
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (ClosedChannelException e) {
+                connectionCount.decrementAndGet();
+                return;
+            }
+            synchronized (connection) {
+                MessageCodec.writeHeader(connection.output);
+                connection.flushLocked();
+            }
+        }
+    }
+
+    /**
+     * A connected player.
+     */
+    private final class Connection extends Lobby.Player {
+
+        final SocketChannel channel;
+        final Loop loop;
+        SelectionKey key;
+
+        // Bytes read but not handled yet, and bytes not sent yet. The output is
+        // guarded by the connection since the other player's thread writes it.
+        private final ByteBuffer input = ByteBuffer.allocate(INPUT_SIZE);
+        final ByteBuffer output = ByteBuffer.allocate(OUTPUT_SIZE);
+
+        private boolean greeted;
+        private boolean closing;
+        private boolean closed;
+
+        /**
+         * Create a connection served by a loop.
+         */
+        Connection(SocketChannel channel, Loop loop) {
+            super(lobby);
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        /**
+         * Read what the player sent and handle every whole message.
+         */
+        void read() {
+            try {
+                if (channel.read(input) < 0) {
+                    close();
+                    return;
+                }
+                input.flip();
+                if (!greeted) {
+                    if (input.remaining() < MessageCodec.HEADER_SIZE) {
+                        input.compact();
+                        return;
+                    }
+                    MessageCodec.readHeader(input);
+                    greeted = true;
+                }
+                StrategoMessage message;
+                while (!closed && (message = MessageCodec.read(input)) != null)
+                    receive(message);
+                input.compact();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Send a message to the player. A player that does not keep up with its
+         * messages is dropped.
+         */
+        @Override
+        void send(StrategoMessage message) {
+            synchronized (this) {
+                if (closed || closing)
+                    return;
+                if (output.remaining() < MessageCodec.MAX_MESSAGE_SIZE) {
+                    closing = true;
+                } else {
+                    MessageCodec.write(output, message);
+                    flushLocked();
+                    return;
+                }
+            }
+            close();
+        }
+
+        /**
+         * Send the bytes that are waiting, on the loop's thread.
+         */
+        void flush() {
+            boolean done;
+            synchronized (this) {
+                done = flushLocked();
+            }
+            if (done)
+                close();
+        }
+
+        /**
+         * Write as much of the output as the channel takes and wait for the
+         * channel to be writable if some is left.
+         *
+         * @return True if the connection should now be closed.
+         */
+        boolean flushLocked() {
+            if (closed)
+                return false;
+            output.flip();
+            try {
+                channel.write(output);
+            } catch (IOException e) {
+                output.clear();
+                return true;
+            }
+            boolean pending = output.hasRemaining();
+            output.compact();
+            if (closing && !pending)
+                return true;
+            int interest = pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+            if (key.isValid() && key.interestOps() != interest) {
+                key.interestOps(interest);
+                if (Thread.currentThread() != loop.thread)
+                    loop.selector.wakeup();
+            }
+            return false;
+        }
+
+        /**
+         * Close the connection once the messages waiting for the player are
+         * sent.
+         */
+        @Override
+        void closeWhenSent() {
+            boolean done;
+            synchronized (this) {
+                closing = true;
+                done = flushLocked() || output.position() == 0;
+            }
+            if (done)
+                close();
+        }
+
+        /**
+         * Close the connection and end the player's game.
+         */
+        void close() {
+            synchronized (this) {
+                if (closed)
+                    return;
+                closed = true;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+            connectionCount.decrementAndGet();
+            leave();
+        }
+    }
+
+    /**
+     * Run a server until the process is stopped.
+     *
+     * @param args Command line options, see the class description.
+     * @throws IOException If the port cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                switch (args[i]) {
+                case "-p":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-t":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: GameServer [-p port] [-t threads]");
+            if (e.getMessage() != null)
+                System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        GameServer server = new GameServer(port, threads);
+        System.out.println("Game server listening on port " + server.getPort() + " with " + threads + " threads");
+    }
+}
@@ -0,0 +1,233 @@
+package network;
+
+import java.net.ProtocolException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pairs the players of a game server and referees their games, whatever way
+ * the server reads and writes its connections.
+ *
+ * A player announces its team with
+ * {@link StrategoMessage.MessageType#BEGIN_PLACEMENT BEGIN_PLACEMENT}. The
+ * lobby holds it until a player of the other team arrives and then sends each
+ * player the other's announcement, which starts the placement phase on both
+ * sides just like a direct connection does.
+ *
+ * Every game is played through a {@link Referee}, which holds the true
+ * position, hides each team's ranks from the other and resolves battles. A
+ * player who sends a message the referee does not allow is dropped and the
+ * other player wins.
+ */
+final class Lobby {
+
+    // Players waiting for an opponent, by team. Guarded by the lobby.
+    private final Queue<Player> waitingRed = new ArrayDeque<>();
+    private final Queue<Player> waitingBlue = new ArrayDeque<>();
+
+    private final AtomicInteger matchCount = new AtomicInteger();
+
+    /**
+     * Get the number of games in progress.
+     *
+     * @return Number of paired players.
+     */
+    int getMatchCount() {
+        return matchCount.get();
+    }
+
+    /**
+     * Get the number of players waiting for an opponent.
+     *
+     * @return Number of players without a game.
+     */
+    synchronized int getWaitingCount() {
+        return waitingRed.size() + waitingBlue.size();
+    }
+
+    /**
+     * Pair a player with a waiting player of the other team, or let it wait.
+     */
+    private void seat(Player player) {
+        Match match;
+        synchronized (this) {
+            Queue<Player> others = player.team ? waitingRed : waitingBlue;
+            Player opponent = others.poll();
+            if (opponent == null) {
+                (player.team ? waitingBlue : waitingRed).add(player);
+                return;
+            }
+            match = player.team ? new Match(opponent, player) : new Match(player, opponent);
+            player.match = match;
+            opponent.match = match;
+            matchCount.incrementAndGet();
+        }
+        match.start();
+    }
+
+    /**
+     * Take a player out of the waiting queues.
+     *
+     * @return The player's game, or null if it was still waiting.
+     */
+    private synchronized Match unseat(Player player) {
+        if (player.match == null) {
+            waitingRed.remove(player);
+            waitingBlue.remove(player);
+        }
+        return player.match;
+    }
+
+    /**
+     * A connection to a player, as seen by the lobby. The server reads messages
+     * from the connection and hands them to {@link #receive(StrategoMessage)},
+     * and calls {@link #leave()} once when the connection is closed.
+     */
+    abstract static class Player {
+
+        private final Lobby lobby;
+        private boolean seated;
+        private boolean team;
+        private volatile Match match;
+
+        /**
+         * Create a player in a lobby.
+         *
+         * @param lobby Lobby that pairs the player.
+         */
+        Player(Lobby lobby) {
+            this.lobby = lobby;
+        }
+
+        /**
+         * Handle a message from the player. Only the thread that reads the
+         * player's connection may call this.
+         *
+         * @param message Message read from the connection.
+         * @throws ProtocolException If the message is not allowed, after which
+         *                           the connection should be closed.
+         */
+        final void receive(StrategoMessage message) throws ProtocolException {
+            Match current = match;
+            if (current != null) {
+                current.handle(this, message);
+            } else if (!seated && message.isBeginning()) {
+                seated = true;
+                team = message.getTeam();
+                lobby.seat(this);
+            } else {
+                throw new ProtocolException("Message before the game started");
+            }
+        }
+
+        /**
+         * Take the player out of the lobby and end its game.
+         */
+        final void leave() {
+            Match current = lobby.unseat(this);
+            if (current != null)
+                current.leave(this);
+        }
+
+        /**
+         * Send a message to the player. Any thread may call this.
+         *
+         * @param message Message to send.
+         */
+        abstract void send(StrategoMessage message);
+
+        /**
+         * Close the connection once the messages waiting for the player are
+         * sent. Any thread may call this.
+         */
+        abstract void closeWhenSent();
+    }
+
+    /**
+     * A game between two players, refereed by the lobby.
+     */
+    final class Match {
+
+        private final Player red;
+        private final Player blue;
+        private final Referee referee = new Referee(this::deliver);
+        private boolean over;
+
+        /**
+         * Create a game between two players.
+         */
+        private Match(Player red, Player blue) {
+            this.red = red;
+            this.blue = blue;
+        }
+
+        /**
+         * Start the placement phase by sending each player the other's
+         * announcement, marked as coming from a referee.
+         */
+        synchronized void start() {
+            red.send(announcement(blue.team));
+            blue.send(announcement(red.team));
+        }
+
+        /**
+         * Let the referee check and apply a message from a player.
+         */
+        synchronized void handle(Player player, StrategoMessage message) throws ProtocolException {
+            if (over)
+                return;
+            referee.handle(player.team, message);
+            if (referee.isOver()) {
+                end();
+                red.closeWhenSent();
+                blue.closeWhenSent();
+            }
+        }
+
+        /**
+         * End the game of a player who left. The other player wins if the game
+         * was not over yet.
+         */
+        synchronized void leave(Player player) {
+            Player opponent = opponent(player);
+            if (!over)
+                opponent.send(new StrategoMessage(StrategoMessage.MessageType.GAME_OVER, opponent.team));
+            end();
+            opponent.closeWhenSent();
+        }
+
+        /**
+         * Mark the game as over.
+         */
+        private void end() {
+            if (!over) {
+                over = true;
+                matchCount.decrementAndGet();
+            }
+        }
+
+        /**
+         * Get the other player of the game.
+         */
+        private Player opponent(Player player) {
+            return player == red ? blue : red;
+        }
+
+        /**
+         * Send a message from the referee to a player.
+         */
+        private void deliver(boolean team, StrategoMessage message) {
+            (team == red.team ? red : blue).send(message);
+        }
+
+        /**
+         * Create the message that tells a player its opponent's team.
+         */
+        private StrategoMessage announcement(boolean team) {
+            StrategoMessage message = new StrategoMessage(StrategoMessage.MessageType.BEGIN_PLACEMENT, team);
+            message.setRefereed(true);
+            return message;
+        }
+    }
+}
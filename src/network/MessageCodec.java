@@ -0,0 +1,447 @@
+package network;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import model.Bitboard;
+import model.Loc;
+import model.PieceType;
+
+/**
+ * Writes and reads messages in the binary format the players send to each
+ * other.
+ *
+ * A connection starts with a header of {@link #MAGIC} and {@link #VERSION}
+ * from both sides. After that every message starts with one byte that holds its
+ * kind in the low four bits, the team in bit 4 and a flag in bit 5, which is
+ * set for a battle that is a tie and for a BEGIN_PLACEMENT sent by a referee.
+ * The kind decides how many bytes follow:
+ *
+ * <pre>
+ * BEGIN_PLACEMENT, BEGIN_GAME, END_OF_TURN, GAME_OVER   nothing
+ * placement                                             to square, piece type
+ * hidden placement                                      to square
+ * move, battle                                          from square, to square
+ * remove                                                from square
+ * placement batch                                       count, updates
+ * </pre>
+ *
+ * Squares are indices from 0 to 99 and piece types are ordinals. A placement
+ * batch holds from 1 to {@link StrategoPlacementBatch#MAX_UPDATES} placement,
+ * hidden placement, move and remove messages, each written as above. Anything else is rejected,
+ * so a message read from the network is always valid.
+ */
+public final class MessageCodec {
+
+    /**
+     * Bytes every connection starts with.
+     */
+    public static final int MAGIC = 0x5354524F; // "STRO"
+
+    /**
+     * Version of the format. It changes whenever messages are written or used
+     * differently. Version 2 sends BEGIN_PLACEMENT to announce a player's
+     * team, version 3 adds placement batches and version 4 adds referees and
+     * hidden placements.
+     */
+    public static final int VERSION = 4;
+
+    /**
+     * Number of bytes of the connection header.
+     */
+    public static final int HEADER_SIZE = 5;
+
+    /**
+     * Largest number of bytes of one message.
+     */
+    public static final int MAX_MESSAGE_SIZE = 2 + 3 * StrategoPlacementBatch.MAX_UPDATES;
+
+    // Kinds of message, in the low bits of the first byte
+    private static final int BEGIN_PLACEMENT = 0;
+    private static final int BEGIN_GAME = 1;
+    private static final int END_OF_TURN = 2;
+    private static final int GAME_OVER = 3;
+    private static final int PLACEMENT = 4;
+    private static final int MOVE = 5;
+    private static final int REMOVE = 6;
+    private static final int BATTLE = 7;
+    private static final int BATCH = 8;
+    private static final int HIDDEN = 9;
+    private static final int KINDS = 10;
+
+    private static final int KIND_MASK = 0x0F;
+    private static final int TEAM_BIT = 0x10;
+    private static final int FLAG_BIT = 0x20;
+
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Write the connection header.
+     *
+     * @param out Stream to write to.
+     * @throws IOException If the stream cannot be written.
+     */
+    public static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Read the other side's connection header and check that it speaks the same
+     * version.
+     *
+     * @param in Stream to read from.
+     * @throws ProtocolException If the header is not a Stratego header of this
+     *                           version.
+     * @throws IOException       If the stream cannot be read.
+     */
+    public static void readHeader(DataInput in) throws IOException {
+        int magic = in.readInt();
+        int version = in.readUnsignedByte();
+        checkHeader(magic, version);
+    }
+
+    /**
+     * Write the connection header to a buffer.
+     *
+     * @param buffer Buffer with at least {@link #HEADER_SIZE} bytes left.
+     */
+    public static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+    }
+
+    /**
+     * Read the other side's connection header from a buffer.
+     *
+     * @param buffer Buffer with at least {@link #HEADER_SIZE} bytes left.
+     * @throws ProtocolException If the header is not a Stratego header of this
+     *                           version.
+     */
+    public static void readHeader(ByteBuffer buffer) throws ProtocolException {
+        int magic = buffer.getInt();
+        int version = buffer.get() & 0xFF;
+        checkHeader(magic, version);
+    }
+
+    /**
+     * Check the values of a connection header.
+     */
+    private static void checkHeader(int magic, int version) throws ProtocolException {
+        if (magic != MAGIC)
+            throw new ProtocolException("Not a Stratego connection");
+        if (version != VERSION)
+            throw new ProtocolException("Protocol version " + version + ", expected " + VERSION);
+    }
+
+    /**
+     * Get the number of bytes of a message. The size of a placement batch
+     * depends on its updates, so for a batch this is only the size of the first
+     * byte and the count.
+     *
+     * @param first First byte of the message.
+     * @return Size of the message including the first byte.
+     * @throws ProtocolException If the first byte is not the start of a message.
+     */
+    public static int size(int first) throws ProtocolException {
+        switch (kind(first)) {
+        case PLACEMENT:
+        case MOVE:
+        case BATTLE:
+            return 3;
+        case REMOVE:
+        case HIDDEN:
+        case BATCH:
+            return 2;
+        default:
+            return 1;
+        }
+    }
+
+    /**
+     * Write a message.
+     *
+     * @param out     Stream to write to.
+     * @param message Message to write.
+     * @throws IOException If the stream cannot be written.
+     */
+    public static void write(DataOutput out, StrategoMessage message) throws IOException {
+        int first = first(message);
+        out.writeByte(first);
+        switch (first & KIND_MASK) {
+        case PLACEMENT: {
+            StrategoPieceUpdate update = (StrategoPieceUpdate) message;
+            out.writeByte(update.getToSquare());
+            out.writeByte(update.getPieceType().ordinal());
+            break;
+        }
+        case MOVE:
+        case BATTLE: {
+            StrategoPieceUpdate update = (StrategoPieceUpdate) message;
+            out.writeByte(update.getFromSquare());
+            out.writeByte(update.getToSquare());
+            break;
+        }
+        case REMOVE:
+            out.writeByte(((StrategoPieceUpdate) message).getFromSquare());
+            break;
+        case HIDDEN:
+            out.writeByte(((StrategoPieceUpdate) message).getToSquare());
+            break;
+        case BATCH: {
+            StrategoPlacementBatch batch = (StrategoPlacementBatch) message;
+            out.writeByte(batch.size());
+            for (StrategoPieceUpdate update : batch.getUpdates())
+                write(out, update);
+            break;
+        }
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Read a message, waiting for all of its bytes.
+     *
+     * @param in Stream to read from.
+     * @return Message read.
+     * @throws ProtocolException If the bytes are not a valid message.
+     * @throws IOException       If the stream cannot be read.
+     */
+    public static StrategoMessage read(DataInput in) throws IOException {
+        int first = in.readUnsignedByte();
+        int size = size(first);
+        int a = size > 1 ? in.readUnsignedByte() : 0;
+        int b = size > 2 ? in.readUnsignedByte() : 0;
+        if (kind(first) != BATCH)
+            return create(first, a, b);
+
+        StrategoPlacementBatch batch = new StrategoPlacementBatch((first & TEAM_BIT) != 0);
+        checkCount(a);
+        for (int i = 0; i < a; i++) {
+            int entry = in.readUnsignedByte();
+            int entrySize = batchEntrySize(entry);
+            int from = in.readUnsignedByte();
+            int to = entrySize > 2 ? in.readUnsignedByte() : 0;
+            batch.add((StrategoPieceUpdate) create(entry, from, to));
+        }
+        return batch;
+    }
+
+    /**
+     * Write a message to a buffer.
+     *
+     * @param buffer  Buffer with at least {@link #MAX_MESSAGE_SIZE} bytes left.
+     * @param message Message to write.
+     */
+    public static void write(ByteBuffer buffer, StrategoMessage message) {
+        int first = first(message);
+        buffer.put((byte) first);
+        switch (first & KIND_MASK) {
+        case PLACEMENT: {
+            StrategoPieceUpdate update = (StrategoPieceUpdate) message;
+            buffer.put((byte) update.getToSquare());
+            buffer.put((byte) update.getPieceType().ordinal());
+            break;
+        }
+        case MOVE:
+        case BATTLE: {
+            StrategoPieceUpdate update = (StrategoPieceUpdate) message;
+            buffer.put((byte) update.getFromSquare());
+            buffer.put((byte) update.getToSquare());
+            break;
+        }
+        case REMOVE:
+            buffer.put((byte) ((StrategoPieceUpdate) message).getFromSquare());
+            break;
+        case HIDDEN:
+            buffer.put((byte) ((StrategoPieceUpdate) message).getToSquare());
+            break;
+        case BATCH: {
+            StrategoPlacementBatch batch = (StrategoPlacementBatch) message;
+            buffer.put((byte) batch.size());
+            for (StrategoPieceUpdate update : batch.getUpdates())
+                write(buffer, update);
+            break;
+        }
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Read a message from a buffer if all of its bytes are there. Otherwise the
+     * buffer is left as it was.
+     *
+     * @param buffer Buffer to read from.
+     * @return Message read, or null if the buffer does not hold a whole message.
+     * @throws ProtocolException If the bytes are not a valid message.
+     */
+    public static StrategoMessage read(ByteBuffer buffer) throws ProtocolException {
+        if (!buffer.hasRemaining())
+            return null;
+        int position = buffer.position();
+        int first = buffer.get(position) & 0xFF;
+        int size = size(first);
+        if (buffer.remaining() < size)
+            return null;
+        if (kind(first) == BATCH)
+            return readBatch(buffer, first);
+        buffer.position(position + 1);
+        int a = size > 1 ? buffer.get() & 0xFF : 0;
+        int b = size > 2 ? buffer.get() & 0xFF : 0;
+        return create(first, a, b);
+    }
+
+    /**
+     * Read a placement batch from a buffer if all of its bytes are there.
+     */
+    private static StrategoMessage readBatch(ByteBuffer buffer, int first) throws ProtocolException {
+        int position = buffer.position();
+        int count = buffer.get(position + 1) & 0xFF;
+        checkCount(count);
+        // Find the end of the batch before taking anything from the buffer
+        int end = position + 2;
+        for (int i = 0; i < count; i++) {
+            if (end >= buffer.limit())
+                return null;
+            end += batchEntrySize(buffer.get(end) & 0xFF);
+        }
+        if (end > buffer.limit())
+            return null;
+
+        StrategoPlacementBatch batch = new StrategoPlacementBatch((first & TEAM_BIT) != 0);
+        buffer.position(position + 2);
+        for (int i = 0; i < count; i++) {
+            int entry = buffer.get() & 0xFF;
+            int from = buffer.get() & 0xFF;
+            int to = size(entry) > 2 ? buffer.get() & 0xFF : 0;
+            batch.add((StrategoPieceUpdate) create(entry, from, to));
+        }
+        return batch;
+    }
+
+    /**
+     * Check the number of updates of a placement batch.
+     */
+    private static void checkCount(int count) throws ProtocolException {
+        if (count == 0 || count > StrategoPlacementBatch.MAX_UPDATES)
+            throw new ProtocolException("Placement batch of " + count + " updates");
+    }
+
+    /**
+     * Get the size of an update in a placement batch from its first byte.
+     */
+    private static int batchEntrySize(int entry) throws ProtocolException {
+        int kind = kind(entry);
+        if (kind != PLACEMENT && kind != HIDDEN && kind != MOVE && kind != REMOVE)
+            throw new ProtocolException("Message " + entry + " in a placement batch");
+        return size(entry);
+    }
+
+    /**
+     * Get the first byte of a message.
+     */
+    private static int first(StrategoMessage message) {
+        int kind;
+        boolean flag = false;
+        switch (message.getType()) {
+        case BEGIN_PLACEMENT:
+            kind = BEGIN_PLACEMENT;
+            flag = message.isRefereed();
+            break;
+        case BEGIN_GAME:
+            kind = BEGIN_GAME;
+            break;
+        case END_OF_TURN:
+            kind = END_OF_TURN;
+            break;
+        case GAME_OVER:
+            kind = GAME_OVER;
+            break;
+        case PLACEMENT_BATCH:
+            kind = BATCH;
+            break;
+        default:
+            StrategoPieceUpdate update = (StrategoPieceUpdate) message;
+            if (update instanceof StrategoPieceBattle) {
+                kind = BATTLE;
+                flag = ((StrategoPieceBattle) update).isTie();
+            } else if (update.isHidden()) {
+                kind = HIDDEN;
+            } else if (update.isPlacement()) {
+                kind = PLACEMENT;
+            } else if (update.isMove()) {
+                kind = MOVE;
+            } else if (update.isRemove()) {
+                kind = REMOVE;
+            } else {
+                throw new IllegalArgumentException("Piece update without squares");
+            }
+            break;
+        }
+        return kind | (message.getTeam() ? TEAM_BIT : 0) | (flag ? FLAG_BIT : 0);
+    }
+
+    /**
+     * Get the kind of a message from its first byte.
+     */
+    private static int kind(int first) throws ProtocolException {
+        int kind = first & KIND_MASK;
+        if (kind >= KINDS || (first & ~(KIND_MASK | TEAM_BIT | FLAG_BIT)) != 0)
+            throw new ProtocolException("Unknown message " + first);
+        return kind;
+    }
+
+    /**
+     * Create a message from its bytes.
+     */
+    private static StrategoMessage create(int first, int a, int b) throws ProtocolException {
+        boolean team = (first & TEAM_BIT) != 0;
+        switch (kind(first)) {
+        case BEGIN_PLACEMENT: {
+            StrategoMessage begin = new StrategoMessage(StrategoMessage.MessageType.BEGIN_PLACEMENT, team);
+            begin.setRefereed((first & FLAG_BIT) != 0);
+            return begin;
+        }
+        case BEGIN_GAME:
+            return new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, team);
+        case END_OF_TURN:
+            return new StrategoMessage(StrategoMessage.MessageType.END_OF_TURN, team);
+        case GAME_OVER:
+            return new StrategoMessage(StrategoMessage.MessageType.GAME_OVER, team);
+        case PLACEMENT:
+            if (b >= PIECE_TYPES.length)
+                throw new ProtocolException("Unknown piece type " + b);
+            return new StrategoPieceUpdate(square(a), PIECE_TYPES[b], team);
+        case HIDDEN:
+            return StrategoPieceUpdate.hidden(square(a), team);
+        case MOVE:
+            return new StrategoPieceUpdate(square(a), square(b), team);
+        case REMOVE: {
+            StrategoPieceUpdate remove = new StrategoPieceUpdate(square(a));
+            remove.setTeam(team);
+            return remove;
+        }
+        default:
+            StrategoPieceBattle battle = new StrategoPieceBattle(square(a), square(b), (first & FLAG_BIT) != 0);
+            battle.setTeam(team);
+            return battle;
+        }
+    }
+
+    /**
+     * Get the location of a square index read from a message.
+     */
+    private static Loc square(int sq) throws ProtocolException {
+        if (sq >= Bitboard.SQUARES)
+            throw new ProtocolException("Square out of range " + sq);
+        return Loc.of(sq);
+    }
+}
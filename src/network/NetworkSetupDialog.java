@@ -28,8 +28,21 @@ public class NetworkSetupDialog extends Dialog<NetworkSetupDialog.Result> {
     private Label create;
     private RadioButton server;
     private RadioButton client;
+    private RadioButton hosted;
     private ToggleGroup createGroup;
 
+    private HBox teamRow;
+    private Label teamLabel;
+    private RadioButton red;
+    private RadioButton blue;
+    private ToggleGroup teamGroup;
+
+    private HBox playAsRow;
+    private Label playAs;
+    private RadioButton human;
+    private RadioButton computer;
+    private ToggleGroup playAsGroup;
+
     private HBox hostInfoRow;
     private Label serverHost;
     private TextField host;
@@ -48,15 +61,38 @@ public class NetworkSetupDialog extends Dialog<NetworkSetupDialog.Result> {
         cancelButton = new ButtonType("Cancel", ButtonData.CANCEL_CLOSE);
         getDialogPane().getButtonTypes().addAll(okButton, cancelButton);
 
-        // Create: Server/Client
+        // Create: Server/Client/Game Server
         create = new Label("Create:");
         server = new RadioButton("Server");
         server.setSelected(true);
         client = new RadioButton("Client");
+        hosted = new RadioButton("Game Server");
         createGroup = new ToggleGroup();
         server.setToggleGroup(createGroup);
         client.setToggleGroup(createGroup);
-        createRow = new HBox(10, create, server, client);
+        hosted.setToggleGroup(createGroup);
+        createRow = new HBox(10, create, server, client, hosted);
+
+        // Team: Red/Blue, only chosen when joining a game server
+        teamLabel = new Label("Team:");
+        red = new RadioButton("Red");
+        red.setSelected(true);
+        blue = new RadioButton("Blue");
+        teamGroup = new ToggleGroup();
+        red.setToggleGroup(teamGroup);
+        blue.setToggleGroup(teamGroup);
+        teamRow = new HBox(10, teamLabel, red, blue);
+        teamRow.disableProperty().bind(hosted.selectedProperty().not());
+
+        // Play as: Human/Computer
+        playAs = new Label("Play as:");
+        human = new RadioButton("Human");
+        human.setSelected(true);
+        computer = new RadioButton("Computer");
+        playAsGroup = new ToggleGroup();
+        human.setToggleGroup(playAsGroup);
+        computer.setToggleGroup(playAsGroup);
+        playAsRow = new HBox(10, playAs, human, computer);
 
         // Server: ... Port: ...
         serverHost = new Label("Server");
@@ -65,7 +101,7 @@ public class NetworkSetupDialog extends Dialog<NetworkSetupDialog.Result> {
         port = new TextField("4000");
         hostInfoRow = new HBox(10, serverHost, host, serverPort, port);
 
-        content = new VBox(30, createRow, hostInfoRow);
+        content = new VBox(30, createRow, teamRow, playAsRow, hostInfoRow);
         content.setPadding(new Insets(15));
         getDialogPane().setContent(content);
 
@@ -83,9 +119,10 @@ public class NetworkSetupDialog extends Dialog<NetworkSetupDialog.Result> {
                 alert.showAndWait();
                 return null;
             }
-            return new Result(server.isSelected(), host.getText(), portNumber);
-            // return new Result(server.isSelected(), human.isSelected(), host.getText(),
-            // portNumber);
+            // The server plays red and the client blue, unless a game server
+            // pairs the players
+            boolean team = hosted.isSelected() ? blue.isSelected() : client.isSelected();
+            return new Result(server.isSelected(), team, human.isSelected(), host.getText(), portNumber);
         });
     }
 
@@ -94,6 +131,8 @@ public class NetworkSetupDialog extends Dialog<NetworkSetupDialog.Result> {
      */
     public class Result {
         private boolean server;
+        private boolean team;
+        private boolean human;
         private String host;
         private int port;
 
@@ -101,11 +140,15 @@ public class NetworkSetupDialog extends Dialog<NetworkSetupDialog.Result> {
          * Create a Result with the given options.
          * 
          * @param server True if the new game instance is a server, false if client.
+         * @param team   False to play red, true to play blue.
+         * @param human  True to play as a human, false to let the computer play.
          * @param host   The server host IP or name.
          * @param port   The port number for the socket.
          */
-        public Result(boolean server, String host, int port) {
+        public Result(boolean server, boolean team, boolean human, String host, int port) {
             this.server = server;
+            this.team = team;
+            this.human = human;
             this.host = host;
             this.port = port;
         }
@@ -119,14 +162,23 @@ public class NetworkSetupDialog extends Dialog<NetworkSetupDialog.Result> {
             return server;
         }
 
+        /**
+         * Get the team to play.
+         *
+         * @return False for red, true for blue.
+         */
+        public boolean getTeam() {
+            return team;
+        }
+
         /**
          * Get whether to play as human or AI.
          *
          * @return True to play as a human, false to play as AI.
          */
-//        public boolean isHuman() {
-//            return human;
-//        }
+        public boolean isHuman() {
+            return human;
+        }
 
         /**
          * Get the host to connect to when playing as the client.
@@ -0,0 +1,329 @@
+package network;
+
+import java.net.ProtocolException;
+
+import model.Bitboard;
+import model.BoardState;
+import model.GamePiece;
+import model.Loc;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceType;
+import model.Setups;
+import model.StrategoModel;
+import model.StrategoRules;
+
+/**
+ * Keeps the true position of a game on a server and decides what each player
+ * may do and learn.
+ *
+ * Players send the referee their placements and moves instead of sending them
+ * to each other. The referee checks every message against its own model and
+ * the move generator and passes on only what the other player may know: the
+ * placements of the other team arrive without their ranks, and a rank is only
+ * revealed right before the piece fights. When a piece attacks, the referee
+ * resolves the battle itself and sends the result to both players. It also
+ * decides when the game is over, so a player can only end a game by giving up.
+ * A player who has not placed a full army when the game starts loses. If
+ * neither has, the game is over without a winner, and no game over message is
+ * sent, since that names a winner.
+ *
+ * A message that is not allowed throws a {@link ProtocolException}, after which
+ * the player who sent it should be dropped.
+ *
+ * The referee is not thread safe; each game's messages must be handled one at
+ * a time.
+ */
+public final class Referee {
+
+    /**
+     * Receives the messages the referee sends to the players.
+     */
+    public interface Sender {
+
+        /**
+         * Send a message to a player.
+         *
+         * @param team    Team of the player.
+         * @param message Message to send.
+         */
+        void send(boolean team, StrategoMessage message);
+    }
+
+    private final StrategoModel model = new StrategoModel();
+    private final Sender sender;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    // Teams that have ended their placement phase, by team
+    private final boolean[] ready = new boolean[2];
+
+    // Whether the team to move has made its move, and the number of moves
+    private boolean moved;
+    private int plies;
+
+    // True while a battle is resolved, so that the model's updates are sent to
+    // both players
+    private boolean resolving;
+
+    private boolean over;
+    private boolean winner;
+    private boolean draw;
+
+    /**
+     * Create a referee for a new game in the placement phase.
+     *
+     * @param sender Where the messages to the players go.
+     */
+    public Referee(Sender sender) {
+        this.sender = sender;
+        model.addObserver((o, arg) -> {
+            if (resolving) {
+                sender.send(GamePiece.RED_TEAM, (StrategoMessage) arg);
+                sender.send(GamePiece.BLUE_TEAM, (StrategoMessage) arg);
+            }
+        });
+    }
+
+    /**
+     * Get the true position of the game.
+     *
+     * @return The referee's model. It must not be changed.
+     */
+    public StrategoModel getModel() {
+        return model;
+    }
+
+    /**
+     * Checks whether the game is over.
+     *
+     * @return True once a player has won.
+     */
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Get the winner of the game.
+     *
+     * @return Team that won, only valid once the game is over and not a draw.
+     */
+    public boolean getWinner() {
+        return winner;
+    }
+
+    /**
+     * Checks whether the game ended without a winner, which happens when
+     * neither player placed a full army.
+     *
+     * @return True if the game is over and nobody won.
+     */
+    public boolean isDraw() {
+        return draw;
+    }
+
+    /**
+     * Get the number of moves made in the game.
+     *
+     * @return Number of moves since the placement phase ended.
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    /**
+     * Check a message from a player, apply it to the true position and send the
+     * players what they may learn from it. Messages after the end of the game
+     * are ignored.
+     *
+     * @param team    Team of the player who sent the message.
+     * @param message Message sent.
+     * @throws ProtocolException If the player may not send the message.
+     */
+    public void handle(boolean team, StrategoMessage message) throws ProtocolException {
+        if (over)
+            return;
+        BoardState state = model.getState();
+        switch (message.getType()) {
+        case PIECE_UPDATE:
+            if (state.isPlacement())
+                place(team, (StrategoPieceUpdate) message);
+            else
+                move(team, (StrategoPieceUpdate) message);
+            break;
+        case PLACEMENT_BATCH:
+            if (!state.isPlacement() || message.getTeam() != team)
+                throw notAllowed(message);
+            StrategoPlacementBatch hidden = new StrategoPlacementBatch(team);
+            for (StrategoPieceUpdate update : ((StrategoPlacementBatch) message).getUpdates()) {
+                check(team, update);
+                model.processUpdate(update);
+                hidden.add(hide(update));
+            }
+            sender.send(!team, hidden);
+            break;
+        case BEGIN_GAME:
+            beginGame(team, message);
+            break;
+        case END_OF_TURN:
+            if (state.isPlacement() || state.getTurn() != team || message.getTeam() == team || !moved)
+                throw notAllowed(message);
+            model.processUpdate(message);
+            moved = false;
+            sender.send(!team, message);
+            if (model.isGameOver(!team))
+                end(team);
+            else if (model.isGameOver(team))
+                end(!team);
+            break;
+        case GAME_OVER:
+            // A player may only give up
+            if (message.getTeam() == team)
+                throw notAllowed(message);
+            end(!team);
+            break;
+        default:
+            throw notAllowed(message);
+        }
+    }
+
+    /**
+     * Apply a placement phase update and pass it on without the rank.
+     */
+    private void place(boolean team, StrategoPieceUpdate update) throws ProtocolException {
+        check(team, update);
+        model.processUpdate(update);
+        sender.send(!team, hide(update));
+    }
+
+    /**
+     * Check a placement phase update of a team.
+     */
+    private void check(boolean team, StrategoPieceUpdate update) throws ProtocolException {
+        BoardState state = model.getState();
+        int from = update.getFromSquare();
+        int to = update.getToSquare();
+        boolean allowed;
+        if (update instanceof StrategoPieceBattle || update.isHidden()) {
+            allowed = false;
+        } else if (update.isPlacement()) {
+            allowed = update.getTeam() == team && Bitboard.inSetupZone(team, to) && !state.isOccupied(to)
+                    && state.getCount(team, update.getPieceType()) < update.getPieceType().getQuantity();
+        } else if (update.isMove()) {
+            allowed = state.isOccupied(from, team) && Bitboard.inSetupZone(team, to) && !state.isOccupied(to);
+        } else {
+            allowed = state.isOccupied(from, team);
+        }
+        if (!allowed)
+            throw new ProtocolException("Update not allowed: " + update.getMessageType());
+    }
+
+    /**
+     * Get the update the other player receives for a placement phase update.
+     */
+    private static StrategoPieceUpdate hide(StrategoPieceUpdate update) {
+        if (!update.isPlacement())
+            return update;
+        return StrategoPieceUpdate.hidden(update.getTo(), update.getTeam());
+    }
+
+    /**
+     * Mark a team as done placing. The game starts when both teams are.
+     */
+    private void beginGame(boolean team, StrategoMessage message) throws ProtocolException {
+        if (message.getTeam() != GamePiece.RED_TEAM)
+            throw notAllowed(message);
+        // Both players pass the message back and forth once to leave the
+        // placement phase, so copies are expected until the first move
+        if (plies > 0 || moved)
+            return;
+        sender.send(!team, message);
+        ready[team ? 1 : 0] = true;
+        if (!model.getState().isPlacement() || !ready[0] || !ready[1])
+            return;
+        model.processUpdate(message);
+        boolean redArmy = pieceCount(GamePiece.RED_TEAM) == Setups.ARMY_SIZE;
+        boolean blueArmy = pieceCount(GamePiece.BLUE_TEAM) == Setups.ARMY_SIZE;
+        // A player who did not place a full army loses, and nobody wins if
+        // neither did
+        if (!redArmy && !blueArmy) {
+            over = true;
+            draw = true;
+        } else if (!redArmy || !blueArmy) {
+            end(!redArmy);
+        }
+    }
+
+    /**
+     * Get the number of pieces a team has on the board.
+     */
+    private int pieceCount(boolean team) {
+        int count = 0;
+        for (PieceType type : PieceType.values())
+            count += model.getPieceCount(team, type);
+        return count;
+    }
+
+    /**
+     * Check a move and either make it or resolve the battle it starts.
+     */
+    private void move(boolean team, StrategoPieceUpdate update) throws ProtocolException {
+        BoardState state = model.getState();
+        int from = update.getFromSquare();
+        int to = update.getToSquare();
+        if (state.getTurn() != team || moved || !update.isMove() || update instanceof StrategoPieceBattle
+                || !state.isOccupied(from, team) || !isLegal(state, team, from, to))
+            throw new ProtocolException("Move not allowed: " + update.getMessageType());
+        moved = true;
+        plies++;
+        if (!state.isOccupied(to)) {
+            model.processUpdate(update);
+            sender.send(!team, update);
+            return;
+        }
+
+        // Each player learns the rank of the other's piece, then both see the
+        // battle play out
+        GamePiece attacker = model.getPiece(from);
+        GamePiece defender = model.getPiece(to);
+        if (!attacker.isRevealed())
+            sender.send(!team, new StrategoPieceUpdate(Loc.of(from), attacker.getPieceType(), team));
+        if (!defender.isRevealed())
+            sender.send(team, new StrategoPieceUpdate(Loc.of(to), defender.getPieceType(), !team));
+        resolving = true;
+        try {
+            StrategoRules.battle(model, attacker, defender);
+        } finally {
+            resolving = false;
+        }
+    }
+
+    /**
+     * Checks whether the move generator allows a move.
+     */
+    private boolean isLegal(BoardState state, boolean team, int from, int to) {
+        int count = MoveGenerator.generate(state, from, team, moves, 0);
+        for (int i = 0; i < count; i++) {
+            if (Move.to(moves[i]) == to)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * End the game and tell both players who won.
+     */
+    private void end(boolean winner) {
+        over = true;
+        this.winner = winner;
+        StrategoMessage message = new StrategoMessage(StrategoMessage.MessageType.GAME_OVER, winner);
+        sender.send(GamePiece.RED_TEAM, message);
+        sender.send(GamePiece.BLUE_TEAM, message);
+    }
+
+    /**
+     * Create the exception for a message a player may not send.
+     */
+    private static ProtocolException notAllowed(StrategoMessage message) {
+        return new ProtocolException("Message not allowed: " + message.getType());
+    }
+}
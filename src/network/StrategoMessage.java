@@ -10,6 +10,7 @@ public class StrategoMessage implements Serializable {
 
     private MessageType type;
     private boolean team;
+    private boolean refereed;
 
     /**
      * Default constructor.
@@ -58,6 +59,15 @@ public class StrategoMessage implements Serializable {
         return type == MessageType.PIECE_UPDATE;
     }
 
+    /**
+     * Returns true if message is of type PLACEMENT_BATCH.
+     * 
+     * @return true if message is of type PLACEMENT_BATCH.
+     */
+    public boolean isPlacementBatch() {
+        return type == MessageType.PLACEMENT_BATCH;
+    }
+
     /**
      * Returns true if message is of type END_OF_TURN.
      * 
@@ -103,6 +113,26 @@ public class StrategoMessage implements Serializable {
         this.team = team;
     }
 
+    /**
+     * Returns true if the message comes from a game server that referees the
+     * game. Only BEGIN_PLACEMENT carries this.
+     * 
+     * @return true if a referee sent the message.
+     */
+    public boolean isRefereed() {
+        return refereed;
+    }
+
+    /**
+     * Sets whether the message comes from a game server that referees the
+     * game.
+     * 
+     * @param refereed true if a referee sends the message.
+     */
+    public void setRefereed(boolean refereed) {
+        this.refereed = refereed;
+    }
+
     /**
      * Message type enum.
      * 
@@ -110,7 +140,7 @@ public class StrategoMessage implements Serializable {
      *
      */
     public enum MessageType {
-        BEGIN_PLACEMENT, BEGIN_GAME, PIECE_UPDATE, END_OF_TURN, GAME_OVER
+        BEGIN_PLACEMENT, BEGIN_GAME, PIECE_UPDATE, PLACEMENT_BATCH, END_OF_TURN, GAME_OVER
     }
 
 }
@@ -4,18 +4,31 @@ import model.Loc;
 import model.PieceType;
 
 /**
- * A message that a piece has been placed, removed, or moved.
+ * A message that a piece has been placed, removed, or moved. Locations are
+ * held as square indices.
  */
 public class StrategoPieceUpdate extends StrategoMessage {
 
-    private Loc from;
-    private Loc to;
+    /**
+     * Square index of a location that is not part of the message.
+     */
+    public static final int NO_SQUARE = -1;
+
+    private int from = NO_SQUARE;
+    private int to = NO_SQUARE;
     private PieceType pieceType;
 
     private StrategoPieceUpdate() {
         super(MessageType.PIECE_UPDATE);
     }
 
+    /**
+     * Get the square index of a location.
+     */
+    private static int square(Loc loc) {
+        return loc == null ? NO_SQUARE : loc.getIndex();
+    }
+
     /**
      * Create a message that a piece was removed.
      *
@@ -23,7 +36,7 @@ public class StrategoPieceUpdate extends StrategoMessage {
      */
     public StrategoPieceUpdate(Loc from) {
         this();
-        this.from = from;
+        this.from = square(from);
     }
 
     /**
@@ -35,8 +48,8 @@ public class StrategoPieceUpdate extends StrategoMessage {
      */
     public StrategoPieceUpdate(Loc from, Loc to, boolean team) {
         this();
-        this.from = from;
-        this.to = to;
+        this.from = square(from);
+        this.to = square(to);
         setTeam(team);
     }
 
@@ -49,18 +62,40 @@ public class StrategoPieceUpdate extends StrategoMessage {
      */
     public StrategoPieceUpdate(Loc to, PieceType pieceType, boolean team) {
         this();
-        this.to = to;
+        this.to = square(to);
         this.pieceType = pieceType;
         setTeam(team);
     }
 
+    /**
+     * Create a message that a piece whose type the receiver may not know has
+     * been placed.
+     *
+     * @param to   Placed location.
+     * @param team Which team the piece belongs to.
+     * @return New hidden placement.
+     */
+    public static StrategoPieceUpdate hidden(Loc to, boolean team) {
+        return new StrategoPieceUpdate(to, (PieceType) null, team);
+    }
+
     /**
      * Get whether this message represents a piece placement.
      *
      * @return True if this message is a placement, false otherwise.
      */
     public boolean isPlacement() {
-        return from == null && to != null;
+        return from == NO_SQUARE && to != NO_SQUARE;
+    }
+
+    /**
+     * Get whether this message is a placement of a piece whose type the
+     * receiver may not know. A referee sends these for the other team's pieces.
+     *
+     * @return True if this message is a placement without a piece type.
+     */
+    public boolean isHidden() {
+        return isPlacement() && pieceType == null;
     }
 
     /**
@@ -69,7 +104,7 @@ public class StrategoPieceUpdate extends StrategoMessage {
      * @return True if this message is a move, false otherwise.
      */
     public boolean isMove() {
-        return from != null && to != null;
+        return from != NO_SQUARE && to != NO_SQUARE;
     }
 
     /**
@@ -78,7 +113,7 @@ public class StrategoPieceUpdate extends StrategoMessage {
      * @return True if this message is a remove, false otherwise.
      */
     public boolean isRemove() {
-        return from != null && to == null;
+        return from != NO_SQUARE && to == NO_SQUARE;
     }
 
     /**
@@ -87,6 +122,15 @@ public class StrategoPieceUpdate extends StrategoMessage {
      * @return Old location.
      */
     public Loc getFrom() {
+        return from == NO_SQUARE ? null : Loc.of(from);
+    }
+
+    /**
+     * Get the square index the piece moved from.
+     *
+     * @return Old square index, or {@link #NO_SQUARE}.
+     */
+    public int getFromSquare() {
         return from;
     }
 
@@ -96,6 +140,15 @@ public class StrategoPieceUpdate extends StrategoMessage {
      * @return New location.
      */
     public Loc getTo() {
+        return to == NO_SQUARE ? null : Loc.of(to);
+    }
+
+    /**
+     * Get the square index the piece moved to.
+     *
+     * @return New square index, or {@link #NO_SQUARE}.
+     */
+    public int getToSquare() {
         return to;
     }
 
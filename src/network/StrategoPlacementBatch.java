@@ -0,0 +1,66 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A message that carries several piece updates of the placement phase at once,
+ * such as a whole setup placed at random. The updates are applied in order, and
+ * the other player receives them in one message instead of one per piece.
+ */
+public class StrategoPlacementBatch extends StrategoMessage {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Largest number of updates in one batch. This is enough to clear a team's
+     * setup zone and fill it again.
+     */
+    public static final int MAX_UPDATES = 80;
+
+    private final List<StrategoPieceUpdate> updates = new ArrayList<>();
+
+    /**
+     * Create an empty batch.
+     *
+     * @param team The team whose pieces are updated.
+     */
+    public StrategoPlacementBatch(boolean team) {
+        super(MessageType.PLACEMENT_BATCH, team);
+    }
+
+    /**
+     * Add an update to the end of the batch.
+     *
+     * @param update Placement, move or remove of a piece.
+     * @throws IllegalArgumentException If the update is a battle.
+     * @throws IllegalStateException    If the batch already holds
+     *                                  {@link #MAX_UPDATES} updates.
+     */
+    public void add(StrategoPieceUpdate update) {
+        if (update instanceof StrategoPieceBattle)
+            throw new IllegalArgumentException("Battles cannot be batched");
+        if (updates.size() == MAX_UPDATES)
+            throw new IllegalStateException("Batch is full");
+        updates.add(update);
+    }
+
+    /**
+     * Get the updates in the order they are applied.
+     *
+     * @return Unmodifiable list of updates.
+     */
+    public List<StrategoPieceUpdate> getUpdates() {
+        return Collections.unmodifiableList(updates);
+    }
+
+    /**
+     * Get the number of updates.
+     *
+     * @return Number of updates in the batch.
+     */
+    public int size() {
+        return updates.size();
+    }
+}
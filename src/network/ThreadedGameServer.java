@@ -0,0 +1,268 @@
+package network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A server that hosts many games at once like {@link GameServer}, but serves
+ * every connection with blocking reads on a thread of its own. The threads are
+ * virtual threads when the runtime has them and platform threads otherwise,
+ * see {@link ConnectionThreads}.
+ *
+ * Messages are written straight to the player's socket by the thread of the
+ * player who sent them, so a player who stops reading holds up the other
+ * player of its game, but no other game.
+ *
+ * Players are accepted on a thread of their own. Closing the server stops that
+ * thread first, so no player arrives while the connections are closed, then
+ * closes every connection and waits for their threads to finish, so no thread
+ * outlives the server.
+ *
+ * Usage: {@code ThreadedGameServer [-p port] [-m virtual|platform]}
+ */
+public class ThreadedGameServer implements Closeable {
+
+    // Time to wait for the connection threads when the server is closed
+    private static final long SHUTDOWN_SECONDS = 5;
+
+    // Buffer sizes of each connection, kept small since most connections are
+    // waiting for a message most of the time
+    private static final int BUFFER_SIZE = 256;
+
+    private final ServerSocket listener;
+    private final ExecutorService executor;
+    private final Thread acceptThread;
+    private final boolean virtual;
+    private final Lobby lobby = new Lobby();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create a server and start accepting players.
+     *
+     * @param port    Port to listen on, or 0 for any free port.
+     * @param virtual True to serve connections on virtual threads if the
+     *                runtime has them.
+     * @throws IOException If the port cannot be opened.
+     */
+    public ThreadedGameServer(int port, boolean virtual) throws IOException {
+        this.virtual = virtual && ConnectionThreads.isVirtualAvailable();
+        listener = new ServerSocket(port, 1024);
+        executor = ConnectionThreads.newExecutor("Stratego connection", virtual);
+        acceptThread = new Thread(this::accept, "Stratego server accept");
+        acceptThread.start();
+    }
+
+    /**
+     * Get the port the server listens on.
+     *
+     * @return Port number.
+     */
+    public int getPort() {
+        return listener.getLocalPort();
+    }
+
+    /**
+     * Checks whether connections are served on virtual threads.
+     *
+     * @return True for virtual threads, false for platform threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Get the number of players that are connected.
+     *
+     * @return Number of open connections.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Get the number of games in progress.
+     *
+     * @return Number of paired players.
+     */
+    public int getMatchCount() {
+        return lobby.getMatchCount();
+    }
+
+    /**
+     * Get the number of players waiting for an opponent.
+     *
+     * @return Number of players without a game.
+     */
+    public int getWaitingCount() {
+        return lobby.getWaitingCount();
+    }
+
+    /**
+     * Stop accepting players, close every connection and wait for the threads
+     * that served them to finish.
+     */
+    @Override
+    public void close() {
+        try {
+            listener.close();
+        } catch (IOException e) {
+        }
+        boolean interrupted = false;
+        try {
+            acceptThread.join();
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        for (Connection connection : connections)
+            connection.closeWhenSent();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_SECONDS, TimeUnit.SECONDS))
+                executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            interrupted = true;
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Accept players and serve each on a new thread.
+     */
+    private void accept() {
+        while (!listener.isClosed()) {
+            try {
+                Socket socket = listener.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                try {
+                    executor.execute(connection::serve);
+                } catch (RejectedExecutionException e) {
+                    // The server is closing
+                    connections.remove(connection);
+                    connection.closeWhenSent();
+                }
+            } catch (IOException e) {
+                if (!listener.isClosed())
+                    e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A connected player.
+     */
+    private final class Connection extends Lobby.Player {
+
+        private final Socket socket;
+        private DataOutputStream output;
+
+        /**
+         * Create a connection for a socket.
+         */
+        Connection(Socket socket) {
+            super(lobby);
+            this.socket = socket;
+        }
+
+        /**
+         * Read the player's messages until the connection is closed, then end
+         * the player's game.
+         */
+        void serve() {
+            try {
+                DataInputStream input = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+                synchronized (this) {
+                    output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                    MessageCodec.writeHeader(output);
+                    output.flush();
+                }
+                MessageCodec.readHeader(input);
+                while (true)
+                    receive(MessageCodec.read(input));
+            } catch (IOException e) {
+                // The player left, broke the protocol or the server is closing
+            } finally {
+                closeWhenSent();
+                connections.remove(this);
+                leave();
+            }
+        }
+
+        /**
+         * Write a message to the player's socket.
+         */
+        @Override
+        synchronized void send(StrategoMessage message) {
+            if (output == null || socket.isClosed())
+                return;
+            try {
+                MessageCodec.write(output, message);
+                output.flush();
+            } catch (IOException e) {
+                closeWhenSent();
+            }
+        }
+
+        /**
+         * Close the socket. Messages are sent as soon as they are written, so
+         * none are waiting. The thread reading the socket then ends the game.
+         */
+        @Override
+        void closeWhenSent() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * Run a server until the process is stopped.
+     *
+     * @param args Command line options, see the class description.
+     * @throws IOException If the port cannot be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = GameServer.DEFAULT_PORT;
+        boolean virtual = true;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                switch (args[i]) {
+                case "-p":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-m":
+                    if (!args[i + 1].equals("virtual") && !args[i + 1].equals("platform"))
+                        throw new IllegalArgumentException("Unknown mode: " + args[i + 1]);
+                    virtual = args[i + 1].equals("virtual");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: ThreadedGameServer [-p port] [-m virtual|platform]");
+            if (e.getMessage() != null)
+                System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        ThreadedGameServer server = new ThreadedGameServer(port, virtual);
+        System.out.println("Game server listening on port " + server.getPort() + " with "
+                + (server.isVirtual() ? "virtual" : "platform") + " threads");
+    }
+}
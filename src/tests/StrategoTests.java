@@ -2,25 +2,66 @@ package tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import org.junit.jupiter.api.Test;
 
+import ai.AlphaBetaSearch;
+import ai.Determinizer;
+import ai.ISMCTS;
+import ai.SearchAgent;
+import ai.TranspositionTable;
+import controller.Direction;
 import controller.StrategoController;
+import controller.UiMetrics;
+import main.Perft;
+import main.Tournament;
+import model.BeliefTracker;
+import model.Bitboard;
+import model.BoardState;
+import model.GameArchive;
+import model.GameJournal;
+import model.GamePiece;
+import model.GameReplay;
 import model.Loc;
+import model.Move;
+import model.MoveGenerator;
 import model.PieceType;
+import model.Setups;
 import model.StrategoModel;
-import view.Piece;
+import model.StrategoRules;
+import network.GameServer;
+import network.MessageCodec;
+import network.StrategoMessage;
+import network.StrategoPieceBattle;
+import network.StrategoPieceUpdate;
+import network.StrategoPlacementBatch;
+import network.Referee;
+import network.ThreadedGameServer;
 
 public class StrategoTests {
     @Test
     void testSetPieceOutOfBounds() {
         StrategoModel m = new StrategoModel();
-        Piece p = new Piece(PieceType.CAPTAIN);
+        GamePiece p = new GamePiece(PieceType.CAPTAIN);
         Loc l = new Loc(10, 0);
         assertEquals(null, m.setPiece(p, l));
     }
@@ -28,7 +69,7 @@ public class StrategoTests {
     @Test
     void testGetPieceOutOfBounds() {
         StrategoModel m = new StrategoModel();
-        Piece p = new Piece(PieceType.CAPTAIN);
+        GamePiece p = new GamePiece(PieceType.CAPTAIN);
         Loc l = new Loc(10, 0);
         assertEquals(null, m.getPiece(l));
     }
@@ -36,7 +77,7 @@ public class StrategoTests {
     @Test
     void testSetPieceToCurrentLocation() {
         StrategoModel m = new StrategoModel();
-        Piece p1 = new Piece(PieceType.CAPTAIN, false);
+        GamePiece p1 = new GamePiece(PieceType.CAPTAIN, false);
         Loc l1 = new Loc(0, 0);
         m.setPiece(p1, l1);
         assertEquals(null, m.setPiece(p1, l1));
@@ -50,7 +91,7 @@ public class StrategoTests {
 
     @Test
     void testGetQuantity() {
-        Piece p = new Piece(PieceType.SCOUT, true);
+        GamePiece p = new GamePiece(PieceType.SCOUT, true);
         assertEquals(8, p.getPieceType().getQuantity());
     }
 
@@ -143,7 +184,7 @@ public class StrategoTests {
         sc.getModel();
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
-        sc.placePiece(new Piece(PieceType.SCOUT), l1);
+        sc.placePiece(new GamePiece(PieceType.SCOUT), l1);
         assertTrue(sc.hasPiece(l1));
         sc.movePiece(l1, l2);
         assertFalse(sc.hasPiece(l1));
@@ -160,8 +201,8 @@ public class StrategoTests {
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
 
-        Piece scout = new Piece(PieceType.SCOUT);
-        Piece captain = new Piece(PieceType.CAPTAIN);
+        GamePiece scout = new GamePiece(PieceType.SCOUT);
+        GamePiece captain = new GamePiece(PieceType.CAPTAIN);
 
         sc.placePiece(scout, l1);
         sc.placePiece(captain, l2);
@@ -185,8 +226,8 @@ public class StrategoTests {
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
 
-        Piece scout = new Piece(PieceType.SCOUT);
-        Piece captain = new Piece(PieceType.CAPTAIN);
+        GamePiece scout = new GamePiece(PieceType.SCOUT);
+        GamePiece captain = new GamePiece(PieceType.CAPTAIN);
 
         sc.placePiece(scout, l2);
         sc.placePiece(captain, l1);
@@ -210,8 +251,8 @@ public class StrategoTests {
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
 
-        Piece p1 = new Piece(PieceType.CAPTAIN);
-        Piece p2 = new Piece(PieceType.CAPTAIN);
+        GamePiece p1 = new GamePiece(PieceType.CAPTAIN);
+        GamePiece p2 = new GamePiece(PieceType.CAPTAIN);
 
         sc.placePiece(p1, l1);
         sc.placePiece(p2, l2);
@@ -235,8 +276,8 @@ public class StrategoTests {
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
 
-        Piece p1 = new Piece(PieceType.CAPTAIN);
-        Piece p2 = new Piece(PieceType.BOMB);
+        GamePiece p1 = new GamePiece(PieceType.CAPTAIN);
+        GamePiece p2 = new GamePiece(PieceType.BOMB);
 
         sc.placePiece(p1, l1);
         sc.placePiece(p2, l2);
@@ -256,8 +297,8 @@ public class StrategoTests {
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
 
-        Piece p1 = new Piece(PieceType.MINER);
-        Piece p2 = new Piece(PieceType.BOMB);
+        GamePiece p1 = new GamePiece(PieceType.MINER);
+        GamePiece p2 = new GamePiece(PieceType.BOMB);
 
         sc.placePiece(p1, l1);
         sc.placePiece(p2, l2);
@@ -277,8 +318,8 @@ public class StrategoTests {
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
 
-        Piece p1 = new Piece(PieceType.SPY);
-        Piece p2 = new Piece(PieceType.MARSHALL);
+        GamePiece p1 = new GamePiece(PieceType.SPY);
+        GamePiece p2 = new GamePiece(PieceType.MARSHALL);
 
         sc.placePiece(p1, l1);
         sc.placePiece(p2, l2);
@@ -291,8 +332,8 @@ public class StrategoTests {
     @Test
     void testSwapPieceDuringPlacement() {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
-        Piece scout = new Piece(PieceType.SCOUT);
-        Piece captain = new Piece(PieceType.CAPTAIN);
+        GamePiece scout = new GamePiece(PieceType.SCOUT);
+        GamePiece captain = new GamePiece(PieceType.CAPTAIN);
 
         Loc l1 = new Loc(0, 0);
         Loc l2 = new Loc(0, 1);
@@ -323,7 +364,7 @@ public class StrategoTests {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
         sc.setPlacement(false);
 
-        Piece p1 = new Piece(PieceType.SCOUT, true);
+        GamePiece p1 = new GamePiece(PieceType.SCOUT, true);
         sc.placePiece(p1, new Loc(9, 9));
         assertTrue(sc.isGameOver()); // other team no flag
     }
@@ -334,8 +375,8 @@ public class StrategoTests {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
         sc.setPlacement(false);
 
-        Piece p1 = new Piece(PieceType.FLAG, true);
-        Piece p2 = new Piece(PieceType.BOMB, true);
+        GamePiece p1 = new GamePiece(PieceType.FLAG, true);
+        GamePiece p2 = new GamePiece(PieceType.BOMB, true);
         sc.placePiece(p1, new Loc(9, 8));
         sc.placePiece(p2, new Loc(9, 9));
         assertTrue(sc.isGameOver()); // other team has flag but no moveable pieces
@@ -347,8 +388,8 @@ public class StrategoTests {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
         sc.setPlacement(false);
 
-        Piece p1 = new Piece(PieceType.FLAG, true);
-        Piece p2 = new Piece(PieceType.SCOUT, true);
+        GamePiece p1 = new GamePiece(PieceType.FLAG, true);
+        GamePiece p2 = new GamePiece(PieceType.SCOUT, true);
         sc.placePiece(p1, new Loc(9, 8));
         sc.placePiece(p2, new Loc(9, 9));
         assertFalse(sc.isGameOver()); // other team has flag but no moveable pieces
@@ -358,7 +399,7 @@ public class StrategoTests {
     // only zero pieces
     void testGetMovesPlacementPhaseZeroPieces() {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
-        Piece p = new Piece(PieceType.SCOUT, false);
+        GamePiece p = new GamePiece(PieceType.SCOUT, false);
         Loc l = new Loc(9, 9);
         Set<Loc> set = new HashSet<Loc>();
         for (int i = 6; i < StrategoModel.ROWS; i++) {
@@ -373,7 +414,7 @@ public class StrategoTests {
     // only one piece
     void testGetMovesPlacementPhaseOnePiece() {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
-        Piece p = new Piece(PieceType.SCOUT, false);
+        GamePiece p = new GamePiece(PieceType.SCOUT, false);
         Loc l = new Loc(9, 9);
         sc.placePiece(p, l);
         Set<Loc> set = new HashSet<Loc>();
@@ -391,8 +432,8 @@ public class StrategoTests {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
         sc.setPlacement(false);
 
-        Piece p1 = new Piece(PieceType.SCOUT, false);
-        Piece p2 = new Piece(PieceType.CAPTAIN, true);
+        GamePiece p1 = new GamePiece(PieceType.SCOUT, false);
+        GamePiece p2 = new GamePiece(PieceType.CAPTAIN, true);
 
         Loc l1 = new Loc(9, 0);
         Loc l2 = new Loc(7, 0);
@@ -415,7 +456,7 @@ public class StrategoTests {
     void testGetMovesBattlePhaseCaptain() {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
         sc.setPlacement(false);
-        Piece p = new Piece(PieceType.CAPTAIN, false);
+        GamePiece p = new GamePiece(PieceType.CAPTAIN, false);
         Loc l = new Loc(6, 2);
         sc.placePiece(p, l);
         // assertEquals(new HashSet<Loc>(), sc.getMoves(l, false));
@@ -431,7 +472,7 @@ public class StrategoTests {
     void testGetMovesBattlePhaseBomb() {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
         sc.setPlacement(false);
-        Piece p = new Piece(PieceType.BOMB, false);
+        GamePiece p = new GamePiece(PieceType.BOMB, false);
         Loc l = new Loc(7, 7);
         sc.placePiece(p, l);
         assertEquals(new HashSet<Loc>(), sc.getMoves(l, false));
@@ -442,7 +483,7 @@ public class StrategoTests {
     void testGetMovesBattlePhaseFlag() {
         StrategoController sc = new StrategoController(false, true, "localhost", 4000);
         sc.setPlacement(false);
-        Piece p = new Piece(PieceType.FLAG, false);
+        GamePiece p = new GamePiece(PieceType.FLAG, false);
         Loc l = new Loc(7, 7);
         sc.placePiece(p, l);
         assertEquals(new HashSet<Loc>(), sc.getMoves(l, false));
@@ -477,4 +518,983 @@ public class StrategoTests {
         assertFalse(l1.equals(null));
     }
 
+    @Test
+    void testBitboardLakesMatchController() {
+        StrategoController sc = new StrategoController(new StrategoModel(), false);
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            Loc l = new Loc(Bitboard.row(sq), Bitboard.col(sq));
+            assertEquals(sc.isLake(l), Bitboard.isLake(sq));
+        }
+    }
+
+    @Test
+    void testBitboardSetupZones() {
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            int row = Bitboard.row(sq);
+            assertEquals(row >= 6, Bitboard.inSetupZone(GamePiece.RED_TEAM, sq));
+            assertEquals(row < 4, Bitboard.inSetupZone(GamePiece.BLUE_TEAM, sq));
+        }
+    }
+
+    @Test
+    void testBoardStateFollowsModel() {
+        StrategoModel m = new StrategoModel();
+        BoardState state = m.getState();
+        GamePiece p = new GamePiece(PieceType.MINER, true);
+        m.setPiece(p, new Loc(8, 5));
+        int from = Bitboard.square(8, 5);
+        int to = Bitboard.square(7, 5);
+        assertTrue(state.isOccupied(from, true));
+        assertFalse(state.isOccupied(from, false));
+        assertEquals(PieceType.MINER, state.getType(from));
+        assertTrue(state.hasPiece(true, PieceType.MINER));
+
+        m.setPiece(p, new Loc(7, 5));
+        assertFalse(state.isOccupied(from));
+        assertTrue(state.isOccupied(to));
+        assertEquals(Bitboard.bit(to), state.getPieces(true, PieceType.MINER, Bitboard.word(to)));
+
+        m.removePiece(p);
+        assertFalse(state.isOccupied(to));
+        assertFalse(state.hasPiece(true, PieceType.MINER));
+        assertEquals(0L, state.getOccupied(true, 0) | state.getOccupied(true, 1));
+    }
+
+    @Test
+    // rules can be used without a controller or view
+    void testRulesBattleWinner() {
+        GamePiece spy = new GamePiece(PieceType.SPY, false);
+        GamePiece marshall = new GamePiece(PieceType.MARSHALL, true);
+        GamePiece bomb = new GamePiece(PieceType.BOMB, true);
+        GamePiece miner = new GamePiece(PieceType.MINER, false);
+        assertEquals(spy, StrategoRules.getBattleWinner(spy, marshall));
+        assertEquals(marshall, StrategoRules.getBattleWinner(marshall, spy));
+        assertEquals(bomb, StrategoRules.getBattleWinner(spy, bomb));
+        assertEquals(miner, StrategoRules.getBattleWinner(miner, bomb));
+        assertEquals(null, StrategoRules.getBattleWinner(miner, new GamePiece(PieceType.MINER, true)));
+    }
+
+    @Test
+    void testMoveEncoding() {
+        int move = Move.of(Bitboard.square(9, 0), Bitboard.square(7, 0));
+        assertEquals(90, Move.from(move));
+        assertEquals(70, Move.to(move));
+        assertEquals(Move.BIN, Move.from(Move.of(Move.BIN, 99)));
+    }
+
+    @Test
+    void testMoveGeneratorTables() {
+        assertEquals(2, MoveGenerator.getNeighbors(Bitboard.square(0, 0)).length);
+        // the lake at (4, 2) stops rays and is never a neighbor
+        assertEquals(1, MoveGenerator.getRay(Bitboard.square(4, 0), Direction.RIGHT).length);
+        assertEquals(3, MoveGenerator.getNeighbors(Bitboard.square(4, 1)).length);
+        assertEquals(9, MoveGenerator.getRay(Bitboard.square(0, 0), Direction.DOWN).length);
+    }
+
+    @Test
+    // the buffer version writes the same moves that getMoves puts in a set
+    void testMoveGeneratorMatchesGetMoves() {
+        StrategoController sc = new StrategoController(new StrategoModel(), false);
+        sc.setPlacement(false);
+        sc.placePiece(new GamePiece(PieceType.SCOUT, false), new Loc(9, 0));
+        sc.placePiece(new GamePiece(PieceType.CAPTAIN, true), new Loc(7, 0));
+        sc.placePiece(new GamePiece(PieceType.MINER, false), new Loc(9, 1));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = sc.getMoves(new Loc(9, 0), false, moves);
+        Set<Loc> set = new HashSet<Loc>();
+        for (int i = 0; i < count; i++) {
+            int to = Move.to(moves[i]);
+            assertEquals(Bitboard.square(9, 0), Move.from(moves[i]));
+            set.add(new Loc(Bitboard.row(to), Bitboard.col(to)));
+        }
+        assertEquals(2, count);
+        assertEquals(sc.getMoves(new Loc(9, 0), false), set);
+
+        // scout: 8,0 and attack on 7,0; miner: 8,1 and 9,2
+        assertEquals(4, MoveGenerator.generateAll(sc.getModel().getState(), false, moves));
+    }
+
+    @Test
+    void testMakeUnmakeBattle() {
+        StrategoModel m = new StrategoModel();
+        GamePiece miner = new GamePiece(PieceType.MINER, false);
+        GamePiece bomb = new GamePiece(PieceType.BOMB, true);
+        GamePiece scout = new GamePiece(PieceType.SCOUT, true);
+        Loc l1 = new Loc(6, 0);
+        Loc l2 = new Loc(5, 0);
+        Loc l3 = new Loc(0, 0);
+        m.setPiece(miner, l1);
+        m.setPiece(bomb, l2);
+        m.setPiece(scout, l3);
+
+        assertEquals(StrategoRules.ATTACKER_WINS, m.makeMove(Move.of(60, 50)));
+        assertEquals(l2, miner.getLocation());
+        assertEquals(null, bomb.getLocation());
+        assertTrue(miner.isRevealed());
+        assertFalse(m.getState().hasPiece(true, PieceType.BOMB));
+        assertTrue(m.getState().getTurn());
+
+        // scout runs down the column and loses to the miner
+        assertEquals(StrategoRules.DEFENDER_WINS, m.makeMove(Move.of(0, 50)));
+        assertEquals(null, scout.getLocation());
+        assertEquals(miner, m.getPiece(l2));
+        assertEquals(2, m.getState().getPly());
+
+        m.unmakeMove();
+        m.unmakeMove();
+        assertEquals(l1, miner.getLocation());
+        assertEquals(l2, bomb.getLocation());
+        assertEquals(l3, scout.getLocation());
+        assertFalse(miner.isRevealed());
+        assertFalse(bomb.isRevealed());
+        assertEquals(bomb, m.getPiece(l2));
+        assertEquals(PieceType.BOMB, m.getState().getType(50));
+        assertFalse(m.getState().getTurn());
+        assertEquals(0, m.getState().getPly());
+    }
+
+    @Test
+    void testZobristHashIsIncremental() {
+        StrategoController sc = new StrategoController(new StrategoModel(), false);
+        StrategoModel m = sc.getModel();
+        BoardState state = m.getState();
+        long empty = m.getHash();
+        sc.placePiece(new GamePiece(PieceType.CAPTAIN, false), new Loc(6, 4));
+        sc.placePiece(new GamePiece(PieceType.SERGEANT, true), new Loc(5, 4));
+        assertEquals(state.computeHash(), m.getHash());
+        sc.setPlacement(false);
+        assertEquals(state.computeHash(), m.getHash());
+
+        long before = m.getHash();
+        m.makeMove(Move.of(Bitboard.square(6, 4), Bitboard.square(5, 4)));
+        assertTrue(state.isRevealed(Bitboard.square(5, 4)));
+        assertEquals(state.computeHash(), m.getHash());
+        m.unmakeMove();
+        assertEquals(before, m.getHash());
+
+        // the same pieces on the same squares hash differently once revealed
+        sc.movePiece(new Loc(6, 4), new Loc(6, 5));
+        sc.movePiece(new Loc(6, 5), new Loc(6, 4));
+        assertTrue(state.getTurn()); // END_OF_TURN passed the turn to blue
+        state.setTurn(false);
+        assertEquals(before, m.getHash());
+        m.reveal(m.getPiece(new Loc(6, 4)), m.getPiece(new Loc(5, 4)), false);
+        assertFalse(before == m.getHash());
+        assertEquals(state.computeHash(), m.getHash());
+
+        m.removePiece(new Loc(6, 4));
+        m.removePiece(new Loc(5, 4));
+        sc.setPlacement(true);
+        assertEquals(empty, m.getHash());
+    }
+
+    @Test
+    void testMaterialCounters() {
+        StrategoController sc = new StrategoController(new StrategoModel(), false);
+        sc.setPlacement(false);
+        StrategoModel m = sc.getModel();
+        sc.placePiece(new GamePiece(PieceType.FLAG, true), new Loc(0, 0));
+        sc.placePiece(new GamePiece(PieceType.SCOUT, true), new Loc(0, 1));
+        sc.placePiece(new GamePiece(PieceType.SCOUT, true), new Loc(0, 2));
+        sc.placePiece(new GamePiece(PieceType.MAJOR, false), new Loc(1, 2));
+        assertEquals(2, m.getPieceCount(true, PieceType.SCOUT));
+        assertEquals(2, m.getState().getMovableCount(true));
+        assertEquals(PieceType.MAJOR.getValue() - 2 * PieceType.SCOUT.getValue(), m.getMaterialBalance(false));
+        assertFalse(sc.isGameOver());
+
+        sc.movePiece(new Loc(1, 2), new Loc(0, 2));
+        assertEquals(1, m.getPieceCount(true, PieceType.SCOUT));
+        sc.movePiece(new Loc(0, 2), new Loc(0, 1));
+        assertEquals(0, m.getPieceCount(true, PieceType.SCOUT));
+        assertEquals(0, m.getState().getMovableCount(true));
+        assertTrue(sc.isGameOver()); // only the flag is left
+
+        m.makeMove(Move.of(Bitboard.square(0, 1), Bitboard.square(0, 0)));
+        assertEquals(0, m.getPieceCount(true, PieceType.FLAG));
+        m.unmakeMove();
+        assertEquals(1, m.getPieceCount(true, PieceType.FLAG));
+    }
+
+    @Test
+    void testLocFlyweight() {
+        assertTrue(Loc.of(3, 4) == Loc.of(3, 4));
+        assertTrue(Loc.of(34) == Loc.of(3, 4));
+        assertEquals(34, Loc.of(3, 4).getIndex());
+        assertTrue(Loc.of(3, 4).getRelative(Direction.DOWN, 2) == Loc.of(5, 4));
+        assertEquals(new Loc(3, 4), Loc.of(3, 4));
+        // off the board locations are still created
+        assertEquals(new Loc(10, 0), Loc.of(10, 0));
+    }
+
+    @Test
+    void testPieceUpdateSquares() {
+        StrategoPieceUpdate move = new StrategoPieceUpdate(Loc.of(6, 0), Loc.of(5, 0), false);
+        assertEquals(60, move.getFromSquare());
+        assertEquals(50, move.getToSquare());
+        assertTrue(move.getTo() == Loc.of(5, 0));
+        StrategoPieceUpdate remove = new StrategoPieceUpdate(Loc.of(6, 0));
+        assertTrue(remove.isRemove());
+        assertEquals(StrategoPieceUpdate.NO_SQUARE, remove.getToSquare());
+        assertEquals(null, remove.getTo());
+    }
+
+    @Test
+    void testTranspositionTableEntry() {
+        TranspositionTable table = new TranspositionTable(4);
+        int move = Move.of(61, 51);
+        table.store(12345L, move, -250, 7, TranspositionTable.LOWER);
+        long entry = table.probe(12345L);
+        assertEquals(-250, TranspositionTable.score(entry));
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(0L, table.probe(12345L + 16)); // same slot, other position
+        table.store(1L, Move.NONE, 0, 1, TranspositionTable.EXACT);
+        assertEquals(Move.NONE, TranspositionTable.move(table.probe(1L)));
+    }
+
+    @Test
+    void testSearchCapturesFlag() {
+        BoardState state = new BoardState();
+        state.setPlacement(false);
+        state.put(Bitboard.square(9, 0), PieceType.FLAG, false);
+        state.put(Bitboard.square(8, 0), PieceType.SERGEANT, false);
+        state.put(Bitboard.square(0, 9), PieceType.FLAG, true);
+        state.put(Bitboard.square(1, 9), PieceType.BOMB, true);
+        state.put(Bitboard.square(2, 7), PieceType.MARSHALL, true);
+        state.put(Bitboard.square(0, 2), PieceType.SCOUT, false);
+        long hash = state.getHash();
+        AlphaBetaSearch search = new AlphaBetaSearch(16);
+        int move = search.search(state, 4, 5000);
+        assertEquals(Move.of(Bitboard.square(0, 2), Bitboard.square(0, 9)), move);
+        assertTrue(search.getScore() >= AlphaBetaSearch.WIN - 64);
+        assertEquals(hash, state.getHash()); // board is restored
+        assertEquals(0, state.getPly());
+    }
+
+    @Test
+    void testSearchTakesFreePiece() {
+        BoardState state = new BoardState();
+        state.setPlacement(false);
+        state.put(Bitboard.square(9, 0), PieceType.FLAG, false);
+        state.put(Bitboard.square(5, 4), PieceType.GENERAL, false);
+        state.put(Bitboard.square(0, 9), PieceType.FLAG, true);
+        state.put(Bitboard.square(3, 4), PieceType.MARSHALL, true);
+        state.put(Bitboard.square(5, 5), PieceType.SCOUT, true);
+        AlphaBetaSearch search = new AlphaBetaSearch(16);
+        int move = search.search(state, 3, 5000);
+        // the general takes the scout rather than walk into the marshall
+        assertEquals(Move.of(Bitboard.square(5, 4), Bitboard.square(5, 5)), move);
+    }
+
+    @Test
+    void testFairSearchAgent() {
+        BoardState state = new BoardState();
+        state.setPlacement(false);
+        state.put(Bitboard.square(9, 0), PieceType.FLAG, false);
+        state.put(Bitboard.square(5, 4), PieceType.GENERAL, false);
+        state.put(Bitboard.square(4, 4), PieceType.FLAG, true);
+        state.put(Bitboard.square(5, 5), PieceType.BOMB, true);
+        state.put(Bitboard.square(0, 9), PieceType.SCOUT, true);
+        state.setRevealed(Bitboard.square(0, 9), true);
+        long hash = state.getHash();
+        int flag = Move.of(Bitboard.square(5, 4), Bitboard.square(4, 4));
+        int bomb = Move.of(Bitboard.square(5, 4), Bitboard.square(5, 5));
+
+        // Searching the board itself finds the hidden flag every time, while a
+        // fair agent can only guess which piece it is
+        Set<Integer> fair = new HashSet<>();
+        for (int seed = 0; seed < 10; seed++) {
+            SearchAgent omniscient = new SearchAgent(new AlphaBetaSearch(10), 20);
+            assertEquals(flag, omniscient.chooseMove(state));
+            SearchAgent agent = new SearchAgent(new AlphaBetaSearch(10), 20, new SplittableRandom(seed));
+            int move = agent.chooseMove(state);
+            assertTrue(move == flag || move == bomb);
+            fair.add(move);
+            assertEquals(hash, state.getHash());
+        }
+        assertEquals(2, fair.size());
+    }
+
+    @Test
+    void testMovedFlag() {
+        StrategoController sc = new StrategoController(new StrategoModel(), false);
+        StrategoModel m = sc.getModel();
+        BoardState state = m.getState();
+        sc.placePiece(new GamePiece(PieceType.SCOUT, false), new Loc(6, 0));
+        sc.movePiece(new Loc(6, 0), new Loc(7, 0)); // placement moves do not count
+        assertFalse(state.hasMoved(70));
+        sc.setPlacement(false);
+        sc.movePiece(new Loc(7, 0), new Loc(5, 0));
+        assertTrue(state.hasMoved(50));
+        assertFalse(state.hasMoved(70));
+
+        sc.placePiece(new GamePiece(PieceType.MINER, true), new Loc(4, 0));
+        state.makeMove(Move.of(40, 41));
+        assertTrue(state.hasMoved(41));
+        state.makeMove(Move.of(50, 41)); // scout loses to miner
+        assertTrue(state.hasMoved(41));
+        state.unmakeMove();
+        state.unmakeMove();
+        assertFalse(state.hasMoved(40));
+        assertTrue(state.hasMoved(50));
+    }
+
+    @Test
+    void testDeterminizerKeepsWhatIsKnown() {
+        BoardState state = new BoardState();
+        state.setPlacement(false);
+        state.put(Bitboard.square(9, 0), PieceType.FLAG, false);
+        state.put(Bitboard.square(9, 1), PieceType.MARSHALL, false);
+        state.put(Bitboard.square(0, 0), PieceType.FLAG, true);
+        state.put(Bitboard.square(0, 1), PieceType.BOMB, true);
+        state.put(Bitboard.square(0, 2), PieceType.BOMB, true);
+        state.put(Bitboard.square(0, 3), PieceType.SCOUT, true);
+        state.put(Bitboard.square(0, 4), PieceType.SCOUT, true);
+        state.put(Bitboard.square(0, 5), PieceType.GENERAL, true);
+        state.setRevealed(Bitboard.square(0, 5), true);
+        state.move(Bitboard.square(0, 4), Bitboard.square(1, 4));
+
+        Determinizer determinizer = new Determinizer(state, false);
+        assertEquals(5, determinizer.getUnknownCount());
+        BoardState sample = new BoardState();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 200; i++) {
+            determinizer.sample(sample, random);
+            assertEquals(PieceType.GENERAL, sample.getType(Bitboard.square(0, 5)));
+            assertEquals(PieceType.MARSHALL, sample.getType(Bitboard.square(9, 1)));
+            // the only movable type left for the piece that moved
+            assertEquals(PieceType.SCOUT, sample.getType(Bitboard.square(1, 4)));
+            assertTrue(sample.hasMoved(Bitboard.square(1, 4)));
+            assertEquals(2, sample.getCount(true, PieceType.BOMB));
+            assertEquals(1, sample.getCount(true, PieceType.FLAG));
+            assertEquals(sample.computeHash(), sample.getHash());
+        }
+    }
+
+    @Test
+    void testISMCTSCapturesFlag() {
+        BoardState state = new BoardState();
+        state.setPlacement(false);
+        state.put(Bitboard.square(9, 0), PieceType.FLAG, false);
+        state.put(Bitboard.square(0, 2), PieceType.SCOUT, false);
+        state.put(Bitboard.square(0, 9), PieceType.FLAG, true);
+        state.put(Bitboard.square(9, 9), PieceType.SERGEANT, true);
+        state.setMoved(Bitboard.square(9, 9), true);
+        long hash = state.getHash();
+        ISMCTS search = new ISMCTS(2, 7);
+        int move = search.search(state, 300);
+        search.close();
+        assertEquals(Move.of(Bitboard.square(0, 2), Bitboard.square(0, 9)), move);
+        assertTrue(search.getNodes() > 0);
+        assertEquals(hash, state.getHash());
+    }
+
+    @Test
+    void testBeliefTracker() {
+        StrategoController sc = new StrategoController(new StrategoModel(), false);
+        StrategoModel m = sc.getModel();
+        sc.placePiece(new GamePiece(PieceType.FLAG, true), new Loc(0, 0));
+        sc.placePiece(new GamePiece(PieceType.BOMB, true), new Loc(0, 1));
+        sc.placePiece(new GamePiece(PieceType.SCOUT, true), new Loc(0, 2));
+        sc.placePiece(new GamePiece(PieceType.SCOUT, true), new Loc(0, 3));
+        sc.placePiece(new GamePiece(PieceType.MINER, true), new Loc(0, 4));
+        sc.placePiece(new GamePiece(PieceType.FLAG, false), new Loc(9, 0));
+        sc.placePiece(new GamePiece(PieceType.MARSHALL, false), new Loc(2, 4));
+        sc.setPlacement(false);
+        BeliefTracker beliefs = new BeliefTracker(m, false);
+        double delta = 1e-4;
+
+        assertFalse(beliefs.isTracked(Bitboard.square(2, 4))); // our own piece
+        assertEquals(0.2, beliefs.getProbability(Bitboard.square(0, 1), PieceType.FLAG), delta);
+        assertEquals(0.4, beliefs.getProbability(Bitboard.square(0, 1), PieceType.SCOUT), delta);
+
+        // a piece that moves is not a bomb or the flag
+        m.setPiece(m.getPiece(new Loc(0, 4)), new Loc(1, 4));
+        int moved = Bitboard.square(1, 4);
+        assertEquals(0, beliefs.getProbability(moved, PieceType.BOMB), delta);
+        assertEquals(0, beliefs.getProbability(moved, PieceType.FLAG), delta);
+        double[] distribution = new double[BoardState.TYPES];
+        beliefs.getDistribution(moved, distribution);
+        double sum = 0;
+        for (double p : distribution)
+            sum += p;
+        assertEquals(1, sum, delta);
+
+        // a piece that moves two squares is a scout
+        m.setPiece(m.getPiece(new Loc(0, 2)), new Loc(2, 2));
+        assertEquals(1, beliefs.getProbability(Bitboard.square(2, 2), PieceType.SCOUT), delta);
+        assertEquals(PieceType.SCOUT, beliefs.getLikelyType(Bitboard.square(2, 2)));
+        double scouts = 0;
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++)
+            scouts += beliefs.getProbability(sq, PieceType.SCOUT);
+        assertEquals(2, scouts, delta);
+
+        // a battle reveals the piece and takes its type out of the pool
+        sc.movePiece(new Loc(2, 4), new Loc(1, 4));
+        assertFalse(beliefs.isTracked(moved));
+        assertEquals(0, beliefs.getPoolCount(PieceType.MINER));
+        assertEquals(0, beliefs.getProbability(Bitboard.square(0, 3), PieceType.MINER), delta);
+        // the other scout is on one of the three pieces that have not moved
+        assertEquals(1.0 / 3, beliefs.getProbability(Bitboard.square(0, 3), PieceType.SCOUT), delta);
+
+        // determinizations follow the beliefs
+        Determinizer determinizer = new Determinizer(m.getState(), false, beliefs);
+        BoardState sample = new BoardState();
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 50; i++) {
+            determinizer.sample(sample, random);
+            assertEquals(PieceType.SCOUT, sample.getType(Bitboard.square(2, 2)));
+            assertEquals(2, sample.getCount(true, PieceType.SCOUT));
+        }
+    }
+
+    @Test
+    void testTournament() {
+        Tournament tournament = new Tournament("scripted", "random", 6, 1, 2, 42, 300);
+        Tournament.Result result = tournament.run();
+        assertEquals(6, result.getGames());
+        assertEquals(6, result.getWinsA() + result.getWinsB() + result.getDraws());
+        assertTrue(result.getLatencyA().getCount() > 0);
+        // same seed, same games
+        Tournament.Result again = tournament.run();
+        assertEquals(result.getWinsA(), again.getWinsA());
+        assertEquals(result.getDraws(), again.getDraws());
+
+        double[] interval = Tournament.wilson(50, 100);
+        assertEquals(0.404, interval[0], 1e-3);
+        assertEquals(0.596, interval[1], 1e-3);
+    }
+
+    @Test
+    void testPerft() {
+        Perft perft = new Perft(1);
+        BoardState state = perft.createModel().getState();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        assertEquals(MoveGenerator.generateAll(state, state.getTurn(), moves), perft.run(1, 1, false).getLeaves());
+
+        // Checks the generator, controller and model at every position
+        Perft.Result validated = perft.run(3, 1, true);
+        Perft.Result single = perft.run(4, 1, false);
+        Perft.Result parallel = perft.run(4, 2, false);
+        assertEquals(1467, single.getLeaves());
+        assertEquals(single.getLeaves(), parallel.getLeaves());
+        assertEquals(single.getNodes(), parallel.getNodes());
+        assertEquals(single.getBattles(), parallel.getBattles());
+        assertEquals(perft.run(3, 1, false).getLeaves(), validated.getLeaves());
+    }
+
+    @Test
+    void testMessageCodec() throws IOException {
+        StrategoMessage[] messages = { new StrategoMessage(StrategoMessage.MessageType.BEGIN_PLACEMENT),
+                new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, GamePiece.BLUE_TEAM),
+                new StrategoMessage(StrategoMessage.MessageType.END_OF_TURN, GamePiece.RED_TEAM),
+                new StrategoMessage(StrategoMessage.MessageType.GAME_OVER, GamePiece.BLUE_TEAM),
+                new StrategoPieceUpdate(Loc.of(99), PieceType.MARSHALL, GamePiece.BLUE_TEAM),
+                new StrategoPieceUpdate(Loc.of(60), Loc.of(50), GamePiece.RED_TEAM),
+                new StrategoPieceUpdate(Loc.of(0)),
+                new StrategoPieceBattle(Loc.of(45), Loc.of(44), true) };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        MessageCodec.writeHeader(out);
+        for (StrategoMessage message : messages)
+            MessageCodec.write(out, message);
+        // A header and 1 to 3 bytes per message
+        assertEquals(MessageCodec.HEADER_SIZE + 4 + 3 + 3 + 2 + 3, bytes.size());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        MessageCodec.readHeader(in);
+        byte[] array = bytes.toByteArray();
+        ByteBuffer buffer = ByteBuffer.wrap(array, MessageCodec.HEADER_SIZE, 0);
+        for (StrategoMessage message : messages) {
+            StrategoMessage read = MessageCodec.read(in);
+            // A buffer only gives a message once all of its bytes are there
+            int size = MessageCodec.size(array[buffer.position()] & 0xFF);
+            buffer.limit(buffer.position() + size - 1);
+            assertEquals(null, MessageCodec.read(buffer));
+            buffer.limit(buffer.position() + size);
+            StrategoMessage fromBuffer = MessageCodec.read(buffer);
+            for (StrategoMessage copy : new StrategoMessage[] { read, fromBuffer }) {
+                assertEquals(message.getType(), copy.getType());
+                assertEquals(message.getTeam(), copy.getTeam());
+                assertEquals(message.getClass(), copy.getClass());
+                if (message instanceof StrategoPieceUpdate) {
+                    StrategoPieceUpdate update = (StrategoPieceUpdate) message;
+                    StrategoPieceUpdate other = (StrategoPieceUpdate) copy;
+                    assertEquals(update.getFrom(), other.getFrom());
+                    assertEquals(update.getTo(), other.getTo());
+                    assertEquals(update.getPieceType(), other.getPieceType());
+                }
+            }
+        }
+        assertTrue(((StrategoPieceBattle) MessageCodec.read(ByteBuffer.wrap(new byte[] { 0x27, 45, 44 }))).isTie());
+
+        // Bad headers, kinds, squares and piece types are rejected
+        for (byte[] bad : new byte[][] { { 0x0F }, { (byte) 0x80 }, { 0x05, 100, 1 }, { 0x04, 10, 12 } }) {
+            assertThrows(ProtocolException.class, () -> MessageCodec.read(ByteBuffer.wrap(bad)));
+        }
+        ByteBuffer header = ByteBuffer.allocate(MessageCodec.HEADER_SIZE);
+        header.putInt(MessageCodec.MAGIC).put((byte) (MessageCodec.VERSION + 1)).flip();
+        assertThrows(ProtocolException.class, () -> MessageCodec.readHeader(header));
+    }
+
+    /**
+     * Connect to a game server, send the header and announce a team.
+     */
+    private static Socket joinGameServer(int port, boolean team) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        MessageCodec.writeHeader(out);
+        MessageCodec.write(out, new StrategoMessage(StrategoMessage.MessageType.BEGIN_PLACEMENT, team));
+        MessageCodec.readHeader(new DataInputStream(socket.getInputStream()));
+        return socket;
+    }
+
+    @Test
+    void testGameServer() throws IOException, InterruptedException {
+        try (GameServer server = new GameServer(0, 2);
+                Socket red = joinGameServer(server.getPort(), GamePiece.RED_TEAM);
+                Socket blue = joinGameServer(server.getPort(), GamePiece.BLUE_TEAM)) {
+            DataInputStream redIn = new DataInputStream(red.getInputStream());
+            DataInputStream blueIn = new DataInputStream(blue.getInputStream());
+            DataOutputStream redOut = new DataOutputStream(red.getOutputStream());
+            DataOutputStream blueOut = new DataOutputStream(blue.getOutputStream());
+
+            // Each player gets the other's announcement
+            StrategoMessage start = MessageCodec.read(redIn);
+            assertTrue(start.isBeginning() && start.getTeam() == GamePiece.BLUE_TEAM && start.isRefereed());
+            start = MessageCodec.read(blueIn);
+            assertTrue(start.isBeginning() && start.getTeam() == GamePiece.RED_TEAM);
+            assertEquals(1, server.getMatchCount());
+
+            // Placements in the own setup zone are passed on without the rank
+            MessageCodec.write(redOut, new StrategoPieceUpdate(Loc.of(6, 0), PieceType.SCOUT, GamePiece.RED_TEAM));
+            StrategoPieceUpdate placed = (StrategoPieceUpdate) MessageCodec.read(blueIn);
+            assertEquals(Loc.of(6, 0), placed.getTo());
+            assertTrue(placed.isHidden());
+
+            // Placing a red piece as blue drops blue and red wins
+            MessageCodec.write(blueOut, new StrategoPieceUpdate(Loc.of(7, 0), PieceType.SCOUT, GamePiece.RED_TEAM));
+            StrategoMessage over = MessageCodec.read(redIn);
+            assertTrue(over.isGameOver() && over.getTeam() == GamePiece.RED_TEAM);
+            assertEquals(-1, blueIn.read());
+            for (int i = 0; i < 50 && server.getConnectionCount() > 0; i++)
+                Thread.sleep(20);
+            assertEquals(0, server.getConnectionCount());
+            assertEquals(0, server.getMatchCount());
+        }
+    }
+
+    @Test
+    void testGameServerClose() throws IOException, InterruptedException {
+        GameServer server = new GameServer(0, 2);
+        ThreadedGameServer threaded = new ThreadedGameServer(0, true);
+        try (Socket red = joinGameServer(server.getPort(), GamePiece.RED_TEAM);
+                Socket blue = joinGameServer(threaded.getPort(), GamePiece.BLUE_TEAM)) {
+            for (int i = 0; i < 50 && (server.getWaitingCount() == 0 || threaded.getWaitingCount() == 0); i++)
+                Thread.sleep(20);
+
+            // Closing a server ends its waiting players before it returns
+            server.close();
+            threaded.close();
+            assertEquals(0, server.getConnectionCount());
+            assertEquals(0, threaded.getConnectionCount());
+            assertEquals(-1, red.getInputStream().read());
+            assertEquals(-1, blue.getInputStream().read());
+        } finally {
+            server.close();
+            threaded.close();
+        }
+    }
+
+    @Test
+    void testThreadedGameServer() throws IOException, InterruptedException {
+        ThreadedGameServer server = new ThreadedGameServer(0, true);
+        try (Socket red = joinGameServer(server.getPort(), GamePiece.RED_TEAM);
+                Socket blue = joinGameServer(server.getPort(), GamePiece.BLUE_TEAM)) {
+            DataInputStream redIn = new DataInputStream(red.getInputStream());
+            DataInputStream blueIn = new DataInputStream(blue.getInputStream());
+            DataOutputStream redOut = new DataOutputStream(red.getOutputStream());
+
+            // The players are paired and their placements passed on
+            assertTrue(MessageCodec.read(redIn).isBeginning());
+            assertTrue(MessageCodec.read(blueIn).isBeginning());
+            MessageCodec.write(redOut, new StrategoPieceUpdate(Loc.of(6, 0), PieceType.SCOUT, GamePiece.RED_TEAM));
+            assertEquals(Loc.of(6, 0), ((StrategoPieceUpdate) MessageCodec.read(blueIn)).getTo());
+            assertEquals(2, server.getConnectionCount());
+            assertEquals(1, server.getMatchCount());
+
+            // Closing the server ends every connection before it returns
+            server.close();
+            assertEquals(0, server.getConnectionCount());
+            assertEquals(0, server.getMatchCount());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void testPlacementBatch() throws IOException {
+        StrategoModel model = new StrategoModel();
+        List<StrategoMessage> notified = new ArrayList<>();
+        model.addObserver((o, arg) -> notified.add((StrategoMessage) arg));
+        PieceType[] army = Setups.randomArmy(new SplittableRandom(3));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generatePlacements(model.getState(), GamePiece.RED_TEAM, Move.BIN, true, moves);
+        List<GamePiece> pieces = new ArrayList<>();
+        List<Loc> locs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pieces.add(new GamePiece(army[i], GamePiece.RED_TEAM));
+            locs.add(Loc.of(Move.to(moves[i])));
+        }
+
+        // A whole setup and a swap each notify observers once
+        StrategoPlacementBatch setup = model.placePieces(pieces, locs, GamePiece.RED_TEAM);
+        assertEquals(40, setup.size());
+        StrategoRules.movePiece(model, true, locs.get(0), locs.get(1));
+        assertEquals(2, notified.size());
+        StrategoPlacementBatch swap = (StrategoPlacementBatch) notified.get(1);
+        assertEquals(4, swap.size());
+
+        // Both batches are one message each and give the other side the same
+        // position
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        MessageCodec.write(out, setup);
+        assertEquals(2 + 3 * 40, bytes.size());
+        MessageCodec.write(out, swap);
+        StrategoModel other = new StrategoModel();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        other.processUpdate(MessageCodec.read(in));
+        other.processUpdate(MessageCodec.read(in));
+        assertEquals(model.getHash(), other.getHash());
+
+        // A buffer only gives the batch once all of its bytes are there
+        byte[] array = bytes.toByteArray();
+        assertEquals(null, MessageCodec.read(ByteBuffer.wrap(array, 0, 2 + 3 * 40 - 1)));
+        ByteBuffer buffer = ByteBuffer.wrap(array);
+        assertEquals(40, ((StrategoPlacementBatch) MessageCodec.read(buffer)).size());
+        assertEquals(4, ((StrategoPlacementBatch) MessageCodec.read(buffer)).size());
+
+        // Empty batches and battles in a batch are rejected
+        for (byte[] bad : new byte[][] { { 0x08, 0 }, { 0x08, 1, 0x07, 45, 44 } }) {
+            assertThrows(ProtocolException.class, () -> MessageCodec.read(ByteBuffer.wrap(bad)));
+        }
+    }
+
+    /**
+     * Create a batch that places a full army of a team on its setup zone, with
+     * the first piece given on the first square given.
+     */
+    private static StrategoPlacementBatch army(boolean team, PieceType first, Loc square) {
+        List<PieceType> types = new ArrayList<>();
+        for (PieceType type : PieceType.values()) {
+            for (int i = 0; i < type.getQuantity(); i++)
+                types.add(type);
+        }
+        types.remove(first);
+        types.add(0, first);
+        StrategoPlacementBatch batch = new StrategoPlacementBatch(team);
+        batch.add(new StrategoPieceUpdate(square, types.get(0), team));
+        int next = 1;
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+            if (Bitboard.inSetupZone(team, sq) && sq != square.getIndex())
+                batch.add(new StrategoPieceUpdate(Loc.of(sq), types.get(next++), team));
+        }
+        return batch;
+    }
+
+    @Test
+    void testReferee() throws ProtocolException {
+        List<StrategoMessage> toRed = new ArrayList<>();
+        List<StrategoMessage> toBlue = new ArrayList<>();
+        Referee referee = new Referee((team, message) -> (team ? toBlue : toRed).add(message));
+        StrategoModel blueView = new StrategoModel();
+
+        // Placements reach the other team without their ranks
+        StrategoPlacementBatch red = army(GamePiece.RED_TEAM, PieceType.SCOUT, Loc.of(6, 0));
+        StrategoPlacementBatch blue = army(GamePiece.BLUE_TEAM, PieceType.FLAG, Loc.of(3, 0));
+        referee.handle(GamePiece.RED_TEAM, red);
+        referee.handle(GamePiece.BLUE_TEAM, blue);
+        StrategoPlacementBatch seen = (StrategoPlacementBatch) toBlue.get(0);
+        for (StrategoPieceUpdate update : seen.getUpdates())
+            assertTrue(update.isHidden());
+        blueView.processUpdate(blue);
+        blueView.processUpdate(seen);
+        StrategoMessage move = new StrategoPieceUpdate(Loc.of(6, 0), Loc.of(3, 0), GamePiece.RED_TEAM);
+        assertThrows(ProtocolException.class, () -> referee.handle(GamePiece.RED_TEAM, move));
+
+        StrategoMessage begin = new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, GamePiece.RED_TEAM);
+        referee.handle(GamePiece.RED_TEAM, begin);
+        referee.handle(GamePiece.BLUE_TEAM, begin);
+        assertFalse(referee.getModel().getState().isPlacement());
+        blueView.processUpdate(begin);
+
+        // Only the referee decides who wins, and only in turn
+        assertThrows(ProtocolException.class, () -> referee.handle(GamePiece.RED_TEAM,
+                new StrategoMessage(StrategoMessage.MessageType.GAME_OVER, GamePiece.RED_TEAM)));
+        assertThrows(ProtocolException.class, () -> referee.handle(GamePiece.BLUE_TEAM,
+                new StrategoPieceUpdate(Loc.of(3, 1), Loc.of(4, 1), GamePiece.BLUE_TEAM)));
+
+        // The scout attacks the flag: each side learns the other's rank, then
+        // both see the battle
+        toBlue.clear();
+        referee.handle(GamePiece.RED_TEAM, move);
+        StrategoPieceUpdate reveal = (StrategoPieceUpdate) toBlue.get(0);
+        assertEquals(PieceType.SCOUT, reveal.getPieceType());
+        assertTrue(toBlue.get(1) instanceof StrategoPieceBattle);
+        for (StrategoMessage message : toBlue)
+            blueView.processUpdate(message);
+        assertEquals(PieceType.SCOUT, blueView.getPiece(Loc.of(3, 0)).getPieceType());
+        for (PieceType type : PieceType.values())
+            assertEquals(referee.getModel().getPieceCount(GamePiece.RED_TEAM, type),
+                    blueView.getPieceCount(GamePiece.RED_TEAM, type));
+
+        referee.handle(GamePiece.RED_TEAM,
+                new StrategoMessage(StrategoMessage.MessageType.END_OF_TURN, GamePiece.BLUE_TEAM));
+        assertTrue(referee.isOver());
+        assertEquals(GamePiece.RED_TEAM, referee.getWinner());
+        StrategoMessage over = toBlue.get(toBlue.size() - 1);
+        assertTrue(over.isGameOver() && over.getTeam() == GamePiece.RED_TEAM);
+    }
+
+    @Test
+    void testRefereeShortArmy() throws ProtocolException {
+        StrategoMessage begin = new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, GamePiece.RED_TEAM);
+        StrategoPlacementBatch flag = new StrategoPlacementBatch(GamePiece.BLUE_TEAM);
+        flag.add(new StrategoPieceUpdate(Loc.of(3, 0), PieceType.FLAG, GamePiece.BLUE_TEAM));
+
+        // Blue skips placing its army and loses
+        List<StrategoMessage> toRed = new ArrayList<>();
+        Referee referee = new Referee((team, message) -> {
+            if (team == GamePiece.RED_TEAM)
+                toRed.add(message);
+        });
+        referee.handle(GamePiece.RED_TEAM, army(GamePiece.RED_TEAM, PieceType.FLAG, Loc.of(9, 0)));
+        referee.handle(GamePiece.BLUE_TEAM, flag);
+        referee.handle(GamePiece.RED_TEAM, begin);
+        referee.handle(GamePiece.BLUE_TEAM, begin);
+        assertTrue(referee.isOver());
+        assertFalse(referee.isDraw());
+        assertEquals(GamePiece.RED_TEAM, referee.getWinner());
+        StrategoMessage over = toRed.get(toRed.size() - 1);
+        assertTrue(over.isGameOver() && over.getTeam() == GamePiece.RED_TEAM);
+
+        // Neither army is full, so nobody wins
+        toRed.clear();
+        referee = new Referee((team, message) -> {
+            if (team == GamePiece.RED_TEAM)
+                toRed.add(message);
+        });
+        StrategoPlacementBatch red = new StrategoPlacementBatch(GamePiece.RED_TEAM);
+        red.add(new StrategoPieceUpdate(Loc.of(9, 0), PieceType.FLAG, GamePiece.RED_TEAM));
+        referee.handle(GamePiece.RED_TEAM, red);
+        referee.handle(GamePiece.BLUE_TEAM, flag);
+        referee.handle(GamePiece.RED_TEAM, begin);
+        referee.handle(GamePiece.BLUE_TEAM, begin);
+        assertTrue(referee.isOver());
+        assertTrue(referee.isDraw());
+        for (StrategoMessage message : toRed)
+            assertFalse(message.isGameOver());
+    }
+
+    @Test
+    void testGameJournal() throws IOException {
+        Path file = Files.createTempFile("stratego", ".journal");
+        SplittableRandom random = new SplittableRandom(7);
+        StrategoModel model = new StrategoModel();
+        GameJournal journal = new GameJournal(file, 4);
+        journal.attach(model);
+        model.processUpdate(army(GamePiece.RED_TEAM, PieceType.FLAG, Loc.of(9, 0)));
+        model.processUpdate(army(GamePiece.BLUE_TEAM, PieceType.FLAG, Loc.of(0, 0)));
+        model.processUpdate(new StrategoMessage(StrategoMessage.MessageType.BEGIN_GAME, GamePiece.RED_TEAM));
+
+        // Play random moves with battles through the model's observers
+        BoardState state = model.getState();
+        List<Long> hashes = new ArrayList<>();
+        hashes.add(model.getHash());
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int ply = 0; ply < 61 && !model.isGameOver(state.getTurn()); ply++) {
+            boolean team = state.getTurn();
+            int move = moves[random.nextInt(MoveGenerator.generateAll(state, team, moves))];
+            StrategoRules.movePiece(model, false, Loc.of(Move.from(move)), Loc.of(Move.to(move)));
+            model.processUpdate(new StrategoMessage(StrategoMessage.MessageType.END_OF_TURN, !team));
+            hashes.add(model.getHash());
+        }
+        journal.close();
+
+        GameReplay replay = GameReplay.read(file);
+        assertEquals(hashes.size() - 1, replay.getPlies());
+        assertEquals(1 + replay.getPlies() / 4, replay.getSnapshotCount());
+        for (int ply = 0; ply <= replay.getPlies(); ply++) {
+            StrategoModel loaded = replay.load(ply);
+            assertEquals((long) hashes.get(ply), loaded.getHash());
+            assertEquals(loaded.getState().computeHash(), loaded.getHash());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> replay.load(replay.getPlies() + 1));
+
+        // A journal cut short is read up to its last whole record
+        byte[] data = Files.readAllBytes(file);
+        GameReplay cut = new GameReplay(Arrays.copyOf(data, data.length - 1));
+        assertEquals(replay.getPlies() - 1, cut.getPlies());
+        Files.delete(file);
+
+        // Tournament games are recorded move by move
+        Path folder = Files.createTempDirectory("stratego");
+        new Tournament("random", "random", 2, 1, 1, 42, 50, folder).run();
+        for (int game = 0; game < 2; game++) {
+            Path journalFile = folder.resolve("game-" + game + ".journal");
+            GameReplay played = GameReplay.read(journalFile);
+            assertTrue(played.getPlies() > 0);
+            StrategoModel start = played.load(0);
+            assertEquals(80, Long.bitCount(start.getState().getOccupied(GamePiece.RED_TEAM, 0))
+                    + Long.bitCount(start.getState().getOccupied(GamePiece.RED_TEAM, 1))
+                    + Long.bitCount(start.getState().getOccupied(GamePiece.BLUE_TEAM, 0))
+                    + Long.bitCount(start.getState().getOccupied(GamePiece.BLUE_TEAM, 1)));
+            StrategoModel end = played.load(played.getPlies());
+            assertEquals(end.getState().computeHash(), end.getHash());
+            Files.delete(journalFile);
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    void testGameArchive() throws IOException {
+        Path folder = Files.createTempDirectory("stratego");
+        Path file = folder.resolve("games.archive");
+        SplittableRandom random = new SplittableRandom(11);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        List<int[]> games = new ArrayList<>();
+        List<long[]> hashes = new ArrayList<>();
+        BoardState start = null;
+
+        // Small runs so that the position index is merged from several files
+        try (GameArchive.Writer writer = new GameArchive.Writer(file, 64)) {
+            for (int game = 0; game < 5; game++) {
+                StrategoModel model = new StrategoModel();
+                Setups.placeRandom(model, GamePiece.RED_TEAM, random);
+                Setups.placeRandom(model, GamePiece.BLUE_TEAM, random);
+                BoardState state = model.getState();
+                state.setPlacement(false);
+                start = new BoardState();
+                start.copyFrom(state);
+                int[] played = new int[40];
+                long[] seen = new long[41];
+                int ply = 0;
+                seen[0] = state.getHash();
+                while (ply < played.length && !state.hasLost(state.getTurn())) {
+                    int count = MoveGenerator.generateAll(state, state.getTurn(), moves);
+                    if (count == 0)
+                        break;
+                    played[ply] = moves[random.nextInt(count)];
+                    state.makeMove(played[ply++]);
+                    seen[ply] = state.getHash();
+                }
+                games.add(Arrays.copyOf(played, ply));
+                hashes.add(Arrays.copyOf(seen, ply + 1));
+                writer.add(100 - game, start, played, ply);
+            }
+
+            // A journal of the last game gives the same moves
+            Path journalFile = folder.resolve("game.journal");
+            GameJournal journal = new GameJournal(journalFile, 8);
+            BoardState state = new BoardState();
+            state.copyFrom(start);
+            journal.snapshot(state);
+            for (int move : games.get(4)) {
+                state.makeMove(move);
+                journal.recordMove(move, state);
+            }
+            journal.close();
+            GameReplay replay = GameReplay.read(journalFile);
+            assertTrue(Arrays.equals(games.get(4), replay.getMoves()));
+            writer.add(1000, replay);
+            Files.delete(journalFile);
+        }
+
+        GameArchive archive = new GameArchive(file);
+        assertEquals(6, archive.getGameCount());
+        long positions = 0;
+        for (long[] seen : hashes)
+            positions += seen.length;
+        assertEquals(positions + hashes.get(4).length, archive.getPositionCount());
+        assertEquals(96, GameArchive.getId(archive.getGame(0)));
+        assertEquals(null, archive.findGame(5));
+
+        BoardState state = new BoardState();
+        for (int game = 0; game < 5; game++) {
+            ByteBuffer record = archive.findGame(100 - game);
+            assertEquals(100 - game, GameArchive.getId(record));
+            assertEquals(games.get(game).length, GameArchive.getPlies(record));
+            for (int ply = 0; ply <= games.get(game).length; ply++) {
+                GameArchive.load(record, ply, state);
+                assertEquals(hashes.get(game)[ply], state.getHash());
+                assertEquals(state.computeHash(), state.getHash());
+                if (ply < games.get(game).length)
+                    assertEquals(games.get(game)[ply], GameArchive.getMove(record, ply));
+
+                // Every position leads back to its game
+                boolean found = false;
+                for (long entry = archive.findPosition(state.getHash()); entry >= 0
+                        && entry < archive.getPositionCount()
+                        && archive.getPositionHash(entry) == state.getHash(); entry++) {
+                    found |= GameArchive.getId(archive.getPositionGame(entry)) == 100 - game
+                            && archive.getPositionPly(entry) == ply;
+                }
+                assertTrue(found);
+            }
+        }
+        assertEquals(GameArchive.getResult(archive.findGame(96)), GameArchive.getResult(archive.findGame(1000)));
+        assertEquals(-1, archive.findPosition(0x123456789L));
+
+        List<Long> order = new ArrayList<>();
+        archive.forEachGame(game -> order.add(GameArchive.getId(game)));
+        assertEquals(Arrays.asList(100L, 99L, 98L, 97L, 96L, 1000L), order);
+        Files.delete(file);
+        Files.delete(folder);
+    }
+
+    @Test
+    void testUiMetrics() {
+        UiMetrics metrics = new UiMetrics();
+        long first = metrics.received();
+        long second = metrics.received();
+        assertEquals(2, metrics.getPending());
+        metrics.updated(first, metrics.dispatched(first));
+        metrics.updated(second, metrics.dispatched(second));
+        assertEquals(0, metrics.getPending());
+        assertEquals(2, metrics.getMaxPending());
+
+        // Both messages are shown by the same pulse
+        metrics.pulseStarted();
+        metrics.pulseFinished();
+        metrics.pulseStarted();
+        metrics.pulseFinished();
+        UiMetrics.Stat[] stats = metrics.getStats();
+        assertEquals("frame", stats[0].getName());
+        assertEquals(0, stats[0].getCount());
+        assertEquals(2, stats[1].getCount());
+        assertEquals(2, stats[2].getCount());
+        assertEquals(2, stats[3].getCount());
+        assertEquals(1, stats[4].getCount());
+        assertTrue(stats[4].getMax() >= stats[2].getMax());
+
+        metrics.frame(1_000_000);
+        metrics.frame(17_000_000);
+        assertEquals(16.0, stats[0].getLast(), 1e-9);
+        metrics.pauseFrames();
+        metrics.frame(500_000_000);
+        assertEquals(1, stats[0].getCount());
+
+        String[] lines = metrics.report().split("\n");
+        assertEquals(7, lines.length);
+        assertEquals("name,count,mean_ms,max_ms,last_ms", lines[0]);
+        assertTrue(lines[1].startsWith("frame,1,16.000,16.000,16.000"));
+        assertEquals("pending,0,,2,", lines[6]);
+
+        metrics.reset();
+        assertEquals(0, stats[2].getCount());
+        assertEquals(0, metrics.getMaxPending());
+    }
 }
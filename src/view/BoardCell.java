@@ -1,27 +1,41 @@
 package view;
 
-import java.io.File;
-
 import javafx.collections.ObservableList;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.image.Image;
+import javafx.scene.control.Label;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
+import javafx.scene.shape.Circle;
 import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
 
 /**
  * This class holds the board and piece images.
  *
+ * The destination marker and the piece bin's count and darkening are made the
+ * first time the cell shows them and are then only shown or hidden, so
+ * selecting pieces does not add nodes to the scene.
  */
 public class BoardCell extends StackPane {
 
+    private static final Font COUNT_FONT = new Font(20);
+
     private Rectangle border;
     private Rectangle color;
     private Paint baseColor;
     private Group piecePane;
-    private Group highlight;
+    // Layer of the nodes below, made when first shown and centered each on
+    // its own
+    private StackPane highlight;
+    private Circle destination;
+    private Label count;
+    private Rectangle darken;
+
+    // Node shown over everything else, e.g. the selection marker
+    private Group marker;
 
     private ImageView image;
     private double bgSize;
@@ -39,12 +53,13 @@ public class BoardCell extends StackPane {
         color.setVisible(false);
         baseColor = color.getFill();
         piecePane = new Group();
-        highlight = new Group();
+        highlight = new StackPane();
+        highlight.setPickOnBounds(false);
+        marker = new Group();
 
-        image = new ImageView(new Image(File.separator + "assets" + File.separator + "transparent.png", bgSize, bgSize,
-                false, false));
+        image = new ImageView(ImageCache.getTile(ImageCache.asset("transparent.png"), bgSize));
 
-        getChildren().addAll(this.border, image, color, piecePane, highlight);
+        getChildren().addAll(this.border, image, color, piecePane, highlight, marker);
     }
 
     /**
@@ -72,13 +87,13 @@ public class BoardCell extends StackPane {
     }
 
     /**
-     * Sets the image of the cell.
+     * Sets the image of the cell. The image is shared through the
+     * {@link ImageCache}.
      * 
      * @param str The address to the image asset.
      */
     public void setImage(String str) {
-        ImageView replace = new ImageView(new Image(str, bgSize, bgSize, false, false));
-        getChildren().set(1, replace);
+        image.setImage(ImageCache.getTile(str, bgSize));
     }
 
     /**
@@ -107,15 +122,52 @@ public class BoardCell extends StackPane {
     }
 
     /**
-     * Highlights the cell when selected.
+     * Highlights the cell when selected. The other highlights of the cell are
+     * hidden while it is.
      * 
-     * @param node The Node to add to top layer.
+     * @param node The Node to add to top layer, or null to remove it.
      */
     public void setHighlight(Node node) {
         if (node == null)
-            highlight.getChildren().clear();
+            marker.getChildren().clear();
         else
-            highlight.getChildren().setAll(node);
+            marker.getChildren().setAll(node);
+        highlight.setVisible(node == null);
+    }
+
+    /**
+     * Shows or hides the marker of a square the selected piece can move to.
+     * 
+     * @param shown True to show the marker.
+     */
+    public void setDestination(boolean shown) {
+        if (destination == null) {
+            if (!shown)
+                return;
+            destination = new Circle(border.getWidth() / 4, Color.gray(0, 0.5));
+            highlight.getChildren().add(destination);
+        }
+        destination.setVisible(shown);
+    }
+
+    /**
+     * Shows how many of the cell's piece are left in the piece bin, or darkens
+     * the cell when none are.
+     * 
+     * @param amount Number of pieces left.
+     */
+    public void setCount(int amount) {
+        if (count == null) {
+            count = new Label();
+            count.setTextFill(Color.WHITE);
+            count.setFont(COUNT_FONT);
+            darken = new Rectangle(border.getWidth(), border.getHeight(), Color.gray(0, 0.5));
+            highlight.getChildren().addAll(count, darken);
+        }
+        if (amount > 0)
+            count.setText("x" + amount);
+        count.setVisible(amount > 0);
+        darken.setVisible(amount <= 0);
     }
 
 }
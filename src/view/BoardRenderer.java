@@ -0,0 +1,98 @@
+package view;
+
+import javafx.scene.Node;
+
+/**
+ * Draws the squares of the board and the pieces on them, and reports the
+ * player's clicks and drags on the squares to the {@link BoardScene}.
+ *
+ * Squares are numbered as they are shown, row by row from the top left, so the
+ * scene turns the board around for the blue player before it talks to the
+ * renderer. Pieces are {@link Piece} objects either way, which the scene keeps
+ * for the battle animations; a renderer may show them as nodes or only draw
+ * their images.
+ */
+interface BoardRenderer {
+
+    /**
+     * Receives the player's input on the board.
+     */
+    interface Listener {
+
+        /**
+         * The player clicked a square.
+         *
+         * @param sq Square as shown.
+         */
+        void clicked(int sq);
+
+        /**
+         * The player started to drag from a square.
+         *
+         * @param sq Square as shown.
+         */
+        void dragStarted(int sq);
+
+        /**
+         * The player let go of a drag over a square. The drag may have started
+         * in the piece bin.
+         *
+         * @param sq Square as shown.
+         */
+        void dragReleased(int sq);
+    }
+
+    /**
+     * Get the node that shows the board.
+     *
+     * @return Node to add to the scene.
+     */
+    Node getNode();
+
+    /**
+     * Set where the player's input goes.
+     *
+     * @param listener Receiver of clicks and drags.
+     */
+    void setListener(Listener listener);
+
+    /**
+     * Get the piece shown on a square.
+     *
+     * @param sq Square as shown.
+     * @return The piece, or null if the square is empty.
+     */
+    Piece getPiece(int sq);
+
+    /**
+     * Show a piece on a square.
+     *
+     * @param sq    Square as shown.
+     * @param piece The piece, or null to empty the square.
+     */
+    void setPiece(int sq, Piece piece);
+
+    /**
+     * Show the piece on a square again after its image changed, e.g. because
+     * it was revealed.
+     *
+     * @param sq Square as shown.
+     */
+    void refresh(int sq);
+
+    /**
+     * Mark or unmark a square as holding the selected piece.
+     *
+     * @param sq       Square as shown.
+     * @param selected True to mark the square.
+     */
+    void setSelected(int sq, boolean selected);
+
+    /**
+     * Mark or unmark a square as a destination of the selected piece.
+     *
+     * @param sq          Square as shown.
+     * @param destination True to mark the square.
+     */
+    void setDestination(int sq, boolean destination);
+}
@@ -1,42 +1,50 @@
 package view;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 
 import controller.StrategoController;
+import controller.UiMetrics;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.ColumnConstraints;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
-import javafx.scene.layout.RowConstraints;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
+import model.Bitboard;
+import model.GameJournal;
+import model.GamePiece;
 import model.Loc;
+import model.Move;
+import model.MoveGenerator;
+import model.PieceType;
 import model.StrategoModel;
 import network.StrategoMessage;
 import network.StrategoPieceBattle;
 import network.StrategoPieceUpdate;
+import network.StrategoPlacementBatch;
 
 /**
  * This class creates the entire board and is controlled by the controller for
  * the game.
+ *
+ * F3 shows or hides the timings of the user interface over the board, and F4
+ * exports them to a file next to the game journals.
  */
 public class BoardScene extends Scene implements Observer {
 
@@ -46,9 +54,10 @@ public class BoardScene extends Scene implements Observer {
     private StrategoController controller;
 
     private BorderPane pane;
-    private GridPane grid;
     private StackPane stack;
     private PieceAnimation animation;
+    private MetricsOverlay metrics;
+    private BoardRenderer board;
 
     private HBox bottom;
     private PieceBin bin;
@@ -56,13 +65,16 @@ public class BoardScene extends Scene implements Observer {
     private PieceAutoPlace autoPlace;
 
     private boolean inverted;
-    private BoardCell[][] cells;
 
-    private BoardCell selected;
+    // Square of the selected piece on the board, or the bin cell it is taken
+    // from
+    private int selected = -1;
+    private BoardCell selectedBin;
     private boolean fromBin;
-    private Set<Loc> moves;
+    private int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private int moveCount;
     private ImageView selection = new ImageView(
-            new Image(File.separator + "assets" + File.separator + "selected.gif", TILE_SIZE, TILE_SIZE, false, true));
+            ImageCache.get(ImageCache.asset("selected.gif"), TILE_SIZE, TILE_SIZE, false, true));
 
     // Timer
     private Label timerLabel;
@@ -80,18 +92,38 @@ public class BoardScene extends Scene implements Observer {
      * @throws IOException If IO error.
      */
     public BoardScene(boolean team, boolean server, String host, int port) throws IOException {
+        this(team, server, host, port, false);
+    }
+
+    /**
+     * Constructor that chooses how the board is drawn.
+     *
+     * @param team   False for red team, true for blue team.
+     * @param server True if player is server, false if player is client.
+     * @param host   Host name.
+     * @param port   Port number.
+     * @param canvas True to draw the board on one canvas, false for a node per
+     *               square.
+     * @throws IOException If IO error.
+     */
+    public BoardScene(boolean team, boolean server, String host, int port, boolean canvas) throws IOException {
         super(new StackPane());
         this.inverted = team;
         stack = (StackPane) getRoot();
         pane = new BorderPane();
         pane.setBackground(new Background(new BackgroundFill(Color.GREY, null, null)));
-        grid = new GridPane();
-        grid.setAlignment(Pos.CENTER);
-        pane.setCenter(grid);
+        board = canvas ? new CanvasBoardRenderer() : new CellBoardRenderer();
+        pane.setCenter(board.getNode());
 
         controller = new StrategoController(team, server, host, port);
         setOurTurn(false);
         controller.getModel().addObserver(this);
+        try {
+            controller.record(GameJournal.newFile(GameJournal.DIRECTORY, team));
+        } catch (IOException e) {
+            // The game can be played without being recorded
+            e.printStackTrace();
+        }
 
         bin = new PieceBin(this, team);
         autoPlace = new PieceAutoPlace(bin, controller);
@@ -101,6 +133,11 @@ public class BoardScene extends Scene implements Observer {
         BorderPane.setMargin(bottom, new Insets(10));
         pane.setBottom(bottom);
 
+        // Battles can be skipped by clicking them or always played faster
+        CheckBox fastBattles = new CheckBox("Fast battles");
+        fastBattles.setOnAction(event -> animation.setFastForward(fastBattles.isSelected()));
+        bottomButtons.getChildren().add(fastBattles);
+
         // TODO: FOR TESTING ONLY
         if (true) {
             Button testMoves = new Button("Auto Win");
@@ -111,64 +148,83 @@ public class BoardScene extends Scene implements Observer {
                 onGameOver(controller.getTeam());
             });
         }
-        initCells();
+        initBoard();
 
         animation = new PieceAnimation();
         stack.getChildren().addAll(pane, animation);
-        animation.setVisible(false);
+        initMetrics();
     }
 
     /**
-     * Initialize the board cells with either grass or water and allow action
-     * events.
+     * Pass the player's clicks and drags on the board on to the selection,
+     * while it is their turn.
      */
-    private void initCells() {
-        cells = new BoardCell[StrategoModel.ROWS][StrategoModel.COLS];
-        for (int row = 0; row < StrategoModel.ROWS; row++) {
-            for (int col = 0; col < StrategoModel.COLS; col++) {
-                if (row == 0) {
-                    grid.getColumnConstraints().add(new ColumnConstraints(BoardScene.TILE_SIZE));
-                }
-                if (col == 0) {
-                    grid.getRowConstraints().add(new RowConstraints(BoardScene.TILE_SIZE));
-                }
-                BoardCell cell = new BoardCell(BORDER_SIZE, TILE_SIZE);
+    private void initBoard() {
+        board.setListener(new BoardRenderer.Listener() {
+            /**
+             * Make a move to the clicked square if it is a destination of the
+             * selected piece, else select the piece on it.
+             */
+            @Override
+            public void clicked(int sq) {
+                if (!controller.isTurn())
+                    return;
+                Loc to = Loc.of(screen(sq));
+                // If a valid move was clicked, make the move
+                if (moveSelected(to))
+                    return;
+                selectPiece(to, null);
+            }
+
+            /**
+             * Select the dragged piece.
+             */
+            @Override
+            public void dragStarted(int sq) {
+                if (!controller.isTurn())
+                    return;
+                selectPiece(Loc.of(screen(sq)), null);
+                startFullDrag();
+            }
 
-                String imageName = "/assets/grass.png";
-                if (controller.isLake(new Loc(row, col))) {
-                    imageName = "/assets/water.jfif";
+            /**
+             * Move the dragged piece to the square it was let go over.
+             */
+            @Override
+            public void dragReleased(int sq) {
+                if (!controller.isTurn())
+                    return;
+                moveSelected(Loc.of(screen(sq)));
+            }
+        });
+    }
+
+    /**
+     * Time the pulses of the scene and show or export the controller's
+     * metrics on F3 and F4.
+     */
+    private void initMetrics() {
+        UiMetrics counters = controller.getMetrics();
+        addPreLayoutPulseListener(counters::pulseStarted);
+        addPostLayoutPulseListener(counters::pulseFinished);
+
+        metrics = new MetricsOverlay(counters);
+        StackPane.setAlignment(metrics, Pos.TOP_LEFT);
+        stack.getChildren().add(metrics);
+
+        addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            if (event.getCode() == KeyCode.F3) {
+                metrics.toggle();
+            } else if (event.getCode() == KeyCode.F4) {
+                Path file = GameJournal.DIRECTORY.resolveSibling("metrics-" + System.currentTimeMillis() + ".csv");
+                try {
+                    counters.export(file);
+                    System.out.println("Metrics exported to " + file);
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
-                cell.setImage(imageName);
-
-                cells[row][col] = cell;
-                grid.add(cell, col, row);
-
-                cell.setOnMouseClicked(event -> {
-                    if (!controller.isTurn())
-                        return;
-                    Loc to = getLocation(cell);
-                    // If a valid move was clicked, make the move
-                    if (moveSelected(to))
-                        return;
-                    selectPiece(to, cell);
-                });
-
-                cell.setOnDragDetected(event -> {
-                    if (!controller.isTurn())
-                        return;
-                    Loc to = getLocation(cell);
-                    selectPiece(to, cell);
-                    startFullDrag();
-                });
-
-                cell.setOnMouseDragReleased(event -> {
-                    if (!controller.isTurn())
-                        return;
-                    Loc to = getLocation(cell);
-                    moveSelected(to);
-                });
             }
-        }
+        });
     }
 
     /**
@@ -178,13 +234,12 @@ public class BoardScene extends Scene implements Observer {
      * @return True if selected a cell with a piece and valid destination location.
      */
     private boolean moveSelected(Loc to) {
-        if (selected != null && moves.contains(to)) {
+        if ((selected >= 0 || fromBin) && isMove(to)) {
             if (fromBin) {
-                Piece piece = bin.takePiece(selected, controller.getTeam());
+                GamePiece piece = bin.takePiece(selectedBin, controller.getTeam());
                 controller.placePiece(piece, to);
             } else {
-                Loc from = getLocation(selected);
-                controller.movePiece(from, to);
+                controller.movePiece(Loc.of(selected), to);
             }
             selectPiece(null, null);
             return true;
@@ -194,44 +249,69 @@ public class BoardScene extends Scene implements Observer {
     }
 
     /**
-     * Selects the piece at the specified location and cell.
+     * Checks whether a location is a destination of the selected piece.
+     *
+     * @param to Location to check.
+     * @return True if the selected piece can move to the location.
+     */
+    private boolean isMove(Loc to) {
+        int sq = to.getIndex();
+        for (int i = 0; i < moveCount; i++) {
+            if (Move.to(moves[i]) == sq)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Selects the piece at a location on the board, or a piece in the bin.
+     * Selecting neither unselects the selected piece.
      * 
-     * @param loc  Specified location.
-     * @param cell Specified cell.
+     * @param loc Location of the piece on the board, or null.
+     * @param cell Cell of the piece in the bin, or null.
      */
     public void selectPiece(Loc loc, BoardCell cell) {
-        if (cell != null) {
-            if (selected != null)
+        if (loc != null || cell != null) {
+            if (selected >= 0 || fromBin)
                 selectPiece(null, null);
             // Select piece
-            fromBin = loc == null;
-            if (!fromBin && !controller.hasPiece(loc))
+            boolean inBin = loc == null;
+            if (!inBin && !controller.hasPiece(loc))
                 return;
+            Piece piece = inBin ? cell.getPiece() : board.getPiece(screen(loc.getIndex()));
             // Only allowed to select pieces on your own team
-            if (cell.getPiece().getTeam() != controller.getTeam())
+            if (piece == null || piece.getTeam() != controller.getTeam())
                 return;
-            selected = cell;
-            cell.setHighlight(selection);
-            moves = controller.getMoves(loc, fromBin);
-            for (Loc move : moves) {
-                if (move.equals(loc))
+            fromBin = inBin;
+            if (fromBin) {
+                selectedBin = cell;
+                cell.setHighlight(selection);
+            } else {
+                selected = loc.getIndex();
+                board.setSelected(screen(selected), true);
+            }
+            moveCount = controller.getMoves(loc, fromBin, moves);
+            for (int i = 0; i < moveCount; i++) {
+                int to = Move.to(moves[i]);
+                if (to == Move.from(moves[i]))
                     continue;
-                getCell(move).setHighlight(new Circle((TILE_SIZE / 4), Color.gray(0, 0.5)));
+                board.setDestination(screen(to), true);
             }
         } else {
             // Unselect piece
-            if (moves != null) {
-                for (Loc move : moves) {
-                    getCell(move).setHighlight(null);
-                }
+            for (int i = 0; i < moveCount; i++) {
+                board.setDestination(screen(Move.to(moves[i])), false);
             }
-            if (selected != null) {
-                selected.setHighlight(null);
-                if (fromBin)
-                    bin.onDeselect(selected);
+            if (fromBin) {
+                selectedBin.setHighlight(null);
+                bin.onDeselect(selectedBin);
+            } else if (selected >= 0) {
+                board.setSelected(screen(selected), false);
             }
-            selected = null;
-            moves = null;
+            selected = -1;
+            selectedBin = null;
+            fromBin = false;
+            moveCount = 0;
         }
     }
 
@@ -246,43 +326,14 @@ public class BoardScene extends Scene implements Observer {
     }
 
     /**
-     * Flip a location to the opposite side of the board. This is used to convert
-     * locations so that Player 2 has a flipped view of the board.
+     * Get the square on the screen of a square in the model, or the other way
+     * round. Player 2 has a flipped view of the board.
      *
-     * @param loc Location on the board
-     * @return Inverted location
+     * @param sq Square index in the model or on the screen.
+     * @return Square index on the screen or in the model.
      */
-    private Loc invertLocation(Loc loc) {
-        return new Loc(StrategoModel.ROWS - 1 - loc.getRow(), StrategoModel.COLS - 1 - loc.getCol());
-    }
-
-    /**
-     * Get a cell given a location. This method takes into account if the view is
-     * inverted.
-     *
-     * @param loc Location in the model.
-     * @return Corresponding board cell.
-     */
-    private BoardCell getCell(Loc loc) {
-        if (inverted)
-            loc = invertLocation(loc);
-        return cells[loc.getRow()][loc.getCol()];
-    }
-
-    /**
-     * Get the location in the model that corresponds to the given board cell. This
-     * method accounts for the view being inverted.
-     *
-     * @param cell BoardCell on the grid.
-     * @return Corresponding model location.
-     */
-    private Loc getLocation(BoardCell cell) {
-        int row = GridPane.getRowIndex(cell);
-        int col = GridPane.getColumnIndex(cell);
-        Loc loc = new Loc(row, col);
-        if (inverted)
-            loc = invertLocation(loc);
-        return loc;
+    private int screen(int sq) {
+        return inverted ? Bitboard.SQUARES - 1 - sq : sq;
     }
 
     /**
@@ -292,18 +343,17 @@ public class BoardScene extends Scene implements Observer {
      */
     private void onGameOver(boolean winnerTeam) {
         animation.winner(winnerTeam);
-        animation.setVisible(true);
-        animation.playAnimation();
         System.out.println("Game over");
         setOurTurn(false);
     }
 
     /**
-     * Closes all sockets.
+     * Closes all sockets and finishes the game's journal.
      */
     public void onClosed() {
         if (controller != null) {
             controller.closeAllSockets();
+            controller.stopRecording();
         }
     }
 
@@ -327,6 +377,11 @@ public class BoardScene extends Scene implements Observer {
             autoPlace.placeRemainingPieces();
             controller.setPlacement(false);
             setOurTurn(msg.getTeam() == controller.getTeam());
+        } else if (msg.isPlacementBatch()) {
+            // All cells change before the scene is laid out again
+            fromMe = msg.getTeam() == controller.getTeam();
+            for (StrategoPieceUpdate update : ((StrategoPlacementBatch) msg).getUpdates())
+                updateCells(update);
         } else if (msg.isPieceUpdate()) {
             StrategoPieceUpdate update = (StrategoPieceUpdate) msg;
             if (controller.isPlacement()) {
@@ -335,32 +390,23 @@ public class BoardScene extends Scene implements Observer {
             if (arg instanceof StrategoPieceBattle) {
                 StrategoPieceBattle battle = (StrategoPieceBattle) arg;
 
+                int winner = screen(battle.getWinner().getIndex());
+                int loser = screen(battle.getLoser().getIndex());
                 if (battle.isTie()) {
-                    animation.tie(getCell(battle.getWinner()).getPiece(), getCell(battle.getLoser()).getPiece());
+                    animation.tie(board.getPiece(winner), board.getPiece(loser));
                 } else {
-                    animation.battle(getCell(battle.getWinner()).getPiece(), getCell(battle.getLoser()).getPiece());
+                    animation.battle(board.getPiece(winner), board.getPiece(loser));
                 }
 
-                animation.setVisible(true);
-                animation.playAnimation();
-
-                getCell(battle.getWinner()).getPiece().setRevealed(true);
-                getCell(battle.getLoser()).getPiece().setRevealed(true);
+                board.getPiece(winner).setRevealed(true);
+                board.getPiece(loser).setRevealed(true);
+                board.refresh(winner);
+                board.refresh(loser);
                 if (fromMe)
                     controller.sendMessage(msg);
                 return;
             }
-            if (update.isPlacement()) {
-                Piece piece = new Piece(update.getPieceType(), update.getTeam(), controller.getTeam());
-                getCell(update.getTo()).setPiece(piece);
-            } else if (update.isMove()) {
-                BoardCell old = getCell(update.getFrom());
-                Piece piece = old.getPiece();
-                old.setPiece(null);
-                getCell(update.getTo()).setPiece(piece);
-            } else if (update.isRemove()) {
-                getCell(update.getFrom()).setPiece(null);
-            }
+            updateCells(update);
         } else if (msg.isEndOfTurn()) {
             if (fromMe && controller.isGameOver()) {
                 controller
@@ -381,6 +427,28 @@ public class BoardScene extends Scene implements Observer {
         }
     }
 
+    /**
+     * Show a placement, move or remove of a piece on the cells it changes.
+     *
+     * @param update Piece update that is not a battle.
+     */
+    private void updateCells(StrategoPieceUpdate update) {
+        if (update.isPlacement()) {
+            // The type of a hidden piece is only a placeholder from the model
+            PieceType type = update.isHidden() ? controller.getModel().getPiece(update.getToSquare()).getPieceType()
+                    : update.getPieceType();
+            Piece piece = new Piece(type, update.getTeam(), controller.getTeam());
+            board.setPiece(screen(update.getToSquare()), piece);
+        } else if (update.isMove()) {
+            int from = screen(update.getFromSquare());
+            Piece piece = board.getPiece(from);
+            board.setPiece(from, null);
+            board.setPiece(screen(update.getToSquare()), piece);
+        } else if (update.isRemove()) {
+            board.setPiece(screen(update.getFromSquare()), null);
+        }
+    }
+
     // ============= Placement phase and Timer ======================
 
     /**
@@ -0,0 +1,240 @@
+package view;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import model.Bitboard;
+import model.PieceType;
+import model.StrategoModel;
+
+/**
+ * Draws the whole board on one {@link Canvas} instead of a node per square, so
+ * the scene graph does not grow with the board. Pieces are kept as
+ * {@link Piece} objects but never added to the scene; only their images are
+ * drawn.
+ *
+ * The tile and piece images are copied once into a sprite atlas, so every
+ * square is drawn from the same image. A change marks its square as dirty, and
+ * the dirty squares are drawn once at the next frame, so a batch of changes
+ * such as a random setup costs one redraw of the squares it touched.
+ *
+ * The selected piece is marked with an outline, since the canvas only draws
+ * when something changes and cannot play the animated marker of the cells.
+ */
+class CanvasBoardRenderer implements BoardRenderer {
+
+    private static final double TILE = BoardScene.TILE_SIZE;
+    private static final double BORDER = BoardScene.BORDER_SIZE;
+    private static final double INNER = TILE - BORDER * 2;
+
+    // Width of a slot of the sprite atlas
+    private static final int SLOT = (int) Math.ceil(INNER);
+
+    private static final Color DESTINATION = Color.gray(0, 0.5);
+    private static final Color SELECTED = Color.GOLD;
+
+    private final Canvas canvas = new Canvas(StrategoModel.COLS * TILE, StrategoModel.ROWS * TILE);
+    private final GraphicsContext graphics = canvas.getGraphicsContext2D();
+
+    // Sprite atlas, and the slot of each image in it
+    private final WritableImage atlas;
+    private final Map<Image, Integer> slots = new IdentityHashMap<>();
+    private final Image grass = ImageCache.getTile(ImageCache.asset("grass.png"), INNER);
+    private final Image water = ImageCache.getTile(ImageCache.asset("water.jfif"), INNER);
+
+    private final Piece[] pieces = new Piece[Bitboard.SQUARES];
+    private final boolean[] destinations = new boolean[Bitboard.SQUARES];
+    private int selected = -1;
+
+    // Squares to draw at the next frame
+    private final boolean[] dirty = new boolean[Bitboard.SQUARES];
+    private boolean pending;
+    private final AnimationTimer redraw = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            pending = false;
+            for (int sq = 0; sq < Bitboard.SQUARES; sq++) {
+                if (dirty[sq]) {
+                    dirty[sq] = false;
+                    draw(sq);
+                }
+            }
+        }
+    };
+
+    private Listener listener;
+
+    /**
+     * Build the sprite atlas, draw the empty board and pass mouse events on to
+     * the listener by the square under the mouse.
+     */
+    CanvasBoardRenderer() {
+        Image[] sprites = new Image[PieceType.values().length + 3];
+        int count = 0;
+        sprites[count++] = grass;
+        sprites[count++] = water;
+        sprites[count++] = ImageCache.getPiece(ImageCache.asset("unknown.png"));
+        for (PieceType type : PieceType.values())
+            sprites[count++] = ImageCache.getPiece(ImageCache.asset(type));
+        atlas = new WritableImage(SLOT * count, SLOT);
+        for (int i = 0; i < count; i++) {
+            PixelReader reader = sprites[i].getPixelReader();
+            int width = (int) Math.min(sprites[i].getWidth(), SLOT);
+            int height = (int) Math.min(sprites[i].getHeight(), SLOT);
+            // An image that failed to load is drawn directly instead
+            if (reader == null || width == 0 || height == 0)
+                continue;
+            atlas.getPixelWriter().setPixels(i * SLOT, 0, width, height, reader, 0, 0);
+            slots.put(sprites[i], i);
+        }
+
+        for (int sq = 0; sq < Bitboard.SQUARES; sq++)
+            draw(sq);
+
+        canvas.setOnMouseClicked(event -> listener.clicked(square(event)));
+        canvas.setOnDragDetected(event -> listener.dragStarted(square(event)));
+        canvas.setOnMouseDragReleased(event -> listener.dragReleased(square(event)));
+    }
+
+    /**
+     * Get the square under the mouse.
+     */
+    private static int square(MouseEvent event) {
+        int row = (int) Math.min(Math.max(event.getY() / TILE, 0), StrategoModel.ROWS - 1);
+        int col = (int) Math.min(Math.max(event.getX() / TILE, 0), StrategoModel.COLS - 1);
+        return Bitboard.square(row, col);
+    }
+
+    /**
+     * Get the canvas.
+     */
+    @Override
+    public Node getNode() {
+        return canvas;
+    }
+
+    /**
+     * Set where clicks and drags on the canvas go.
+     */
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the piece drawn on a square.
+     */
+    @Override
+    public Piece getPiece(int sq) {
+        return pieces[sq];
+    }
+
+    /**
+     * Draw a piece on a square from the next frame on.
+     */
+    @Override
+    public void setPiece(int sq, Piece piece) {
+        pieces[sq] = piece;
+        invalidate(sq);
+    }
+
+    /**
+     * Draw a square again at the next frame.
+     */
+    @Override
+    public void refresh(int sq) {
+        invalidate(sq);
+    }
+
+    /**
+     * Outline a square, or stop outlining it, from the next frame on.
+     */
+    @Override
+    public void setSelected(int sq, boolean selected) {
+        if (selected) {
+            if (this.selected >= 0)
+                invalidate(this.selected);
+            this.selected = sq;
+        } else if (this.selected == sq) {
+            this.selected = -1;
+        }
+        invalidate(sq);
+    }
+
+    /**
+     * Mark a square as a destination, or unmark it, from the next frame on.
+     */
+    @Override
+    public void setDestination(int sq, boolean destination) {
+        if (destinations[sq] == destination)
+            return;
+        destinations[sq] = destination;
+        invalidate(sq);
+    }
+
+    /**
+     * Mark a square as dirty and make sure the next frame draws it.
+     */
+    private void invalidate(int sq) {
+        dirty[sq] = true;
+        if (!pending) {
+            pending = true;
+            redraw.start();
+        }
+    }
+
+    /**
+     * Draw one square with everything on it, the same way a {@link BoardCell}
+     * stacks its layers.
+     */
+    private void draw(int sq) {
+        double x = Bitboard.col(sq) * TILE;
+        double y = Bitboard.row(sq) * TILE;
+        graphics.setFill(Color.BLACK);
+        graphics.fillRect(x, y, TILE, TILE);
+        drawSprite(Bitboard.isLake(sq) ? water : grass, x + BORDER, y + BORDER);
+
+        Piece piece = pieces[sq];
+        if (piece != null) {
+            graphics.setFill(piece.getColor());
+            graphics.fillRect(x + BORDER, y + BORDER, INNER, INNER);
+            Image image = piece.getImage();
+            drawSprite(image, x + (TILE - image.getWidth()) / 2, y + (TILE - image.getHeight()) / 2);
+        }
+
+        if (sq == selected) {
+            graphics.setStroke(SELECTED);
+            graphics.setLineWidth(BORDER * 2);
+            graphics.strokeRect(x + BORDER * 2, y + BORDER * 2, TILE - BORDER * 4, TILE - BORDER * 4);
+        }
+        if (destinations[sq]) {
+            double radius = TILE / 4;
+            graphics.setFill(DESTINATION);
+            graphics.fillOval(x + TILE / 2 - radius, y + TILE / 2 - radius, radius * 2, radius * 2);
+        }
+    }
+
+    /**
+     * Draw an image from the atlas at its own size.
+     */
+    private void drawSprite(Image image, double x, double y) {
+        Integer slot = slots.get(image);
+        if (slot == null) {
+            graphics.drawImage(image, x, y);
+            return;
+        }
+        double width = Math.min(image.getWidth(), SLOT);
+        double height = Math.min(image.getHeight(), SLOT);
+        graphics.drawImage(atlas, slot * SLOT, 0, width, height, x, y, width, height);
+    }
+}
@@ -0,0 +1,111 @@
+package view;
+
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.RowConstraints;
+import model.Bitboard;
+import model.StrategoModel;
+
+/**
+ * Shows the board as a grid of {@link BoardCell} nodes, one per square, with
+ * each piece as a node of its cell.
+ */
+class CellBoardRenderer implements BoardRenderer {
+
+    private final GridPane grid = new GridPane();
+    private final BoardCell[] cells = new BoardCell[Bitboard.SQUARES];
+    private final ImageView selection = new ImageView(
+            ImageCache.get(ImageCache.asset("selected.gif"), BoardScene.TILE_SIZE, BoardScene.TILE_SIZE, false, true));
+    private Listener listener;
+
+    /**
+     * Create the cells with either grass or water and pass their mouse events
+     * on to the listener.
+     */
+    CellBoardRenderer() {
+        grid.setAlignment(Pos.CENTER);
+        for (int row = 0; row < StrategoModel.ROWS; row++) {
+            for (int col = 0; col < StrategoModel.COLS; col++) {
+                if (row == 0) {
+                    grid.getColumnConstraints().add(new ColumnConstraints(BoardScene.TILE_SIZE));
+                }
+                if (col == 0) {
+                    grid.getRowConstraints().add(new RowConstraints(BoardScene.TILE_SIZE));
+                }
+                BoardCell cell = new BoardCell(BoardScene.BORDER_SIZE, BoardScene.TILE_SIZE);
+                int sq = Bitboard.square(row, col);
+
+                String imageName = ImageCache.asset("grass.png");
+                if (Bitboard.isLake(sq)) {
+                    imageName = ImageCache.asset("water.jfif");
+                }
+                cell.setImage(imageName);
+
+                cells[sq] = cell;
+                grid.add(cell, col, row);
+
+                cell.setOnMouseClicked(event -> listener.clicked(sq));
+                cell.setOnDragDetected(event -> listener.dragStarted(sq));
+                cell.setOnMouseDragReleased(event -> listener.dragReleased(sq));
+            }
+        }
+    }
+
+    /**
+     * Get the grid of cells.
+     */
+    @Override
+    public Node getNode() {
+        return grid;
+    }
+
+    /**
+     * Set where clicks and drags on the cells go.
+     */
+    @Override
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the piece in a square's cell.
+     */
+    @Override
+    public Piece getPiece(int sq) {
+        return cells[sq].getPiece();
+    }
+
+    /**
+     * Put a piece in a square's cell.
+     */
+    @Override
+    public void setPiece(int sq, Piece piece) {
+        cells[sq].setPiece(piece);
+    }
+
+    /**
+     * Nothing to do, since the piece's node shows its new image by itself.
+     */
+    @Override
+    public void refresh(int sq) {
+    }
+
+    /**
+     * Show or hide the selection marker on a square's cell.
+     */
+    @Override
+    public void setSelected(int sq, boolean selected) {
+        cells[sq].setHighlight(selected ? selection : null);
+    }
+
+    /**
+     * Show or hide a destination marker on a square's cell.
+     */
+    @Override
+    public void setDestination(int sq, boolean destination) {
+        cells[sq].setDestination(destination);
+    }
+}
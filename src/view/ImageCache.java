@@ -0,0 +1,130 @@
+package view;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javafx.scene.image.Image;
+import model.PieceType;
+
+/**
+ * Images of the game shared by every view, so that each asset is decoded once
+ * per size instead of once per piece or cell. An {@link Image} can be shown by
+ * any number of image views at the same time.
+ *
+ * Images are keyed by their asset and the size and scaling they are loaded
+ * with. The piece, tile and battle images are loaded ahead of time by
+ * {@link #preload()}, which the application starts in the background, and any
+ * other image is loaded the first time it is asked for.
+ *
+ * Animated images start playing when they are loaded and every view of them
+ * shows the same frame, so an animation that must start from its first frame
+ * each time, like the explosion, should not be loaded through the cache.
+ */
+public final class ImageCache {
+
+    /**
+     * Size that battle animations show pieces at.
+     */
+    public static final double BATTLE_SIZE = 100;
+
+    private static final Map<String, Image> IMAGES = new ConcurrentHashMap<>();
+
+    /**
+     * Not instantiable.
+     */
+    private ImageCache() {
+    }
+
+    /**
+     * Get the path of an asset.
+     *
+     * @param name File name of the asset, e.g. grass.png.
+     * @return Path to load the asset from.
+     */
+    public static String asset(String name) {
+        return File.separator + "assets" + File.separator + name;
+    }
+
+    /**
+     * Get the path of the image of a piece type.
+     *
+     * @param type Piece type.
+     * @return Path to load the image from.
+     */
+    public static String asset(PieceType type) {
+        return asset(type.name() + ".png");
+    }
+
+    /**
+     * Get an image, loading it if no image of that asset has been loaded with
+     * the same size and scaling.
+     *
+     * @param path          Path of the asset.
+     * @param width         Width to scale the image to.
+     * @param height        Height to scale the image to.
+     * @param preserveRatio Whether to keep the image's aspect ratio.
+     * @param smooth        Whether to scale with a better but slower filter.
+     * @return The shared image.
+     */
+    public static Image get(String path, double width, double height, boolean preserveRatio, boolean smooth) {
+        String key = path + '@' + width + 'x' + height + (preserveRatio ? 'r' : '-') + (smooth ? 's' : '-');
+        return IMAGES.computeIfAbsent(key, k -> new Image(path, width, height, preserveRatio, smooth));
+    }
+
+    /**
+     * Get the image of a piece as it is drawn on the board and in the bin.
+     *
+     * @param path Path of the asset.
+     * @return The shared image.
+     */
+    public static Image getPiece(String path) {
+        double size = BoardScene.TILE_SIZE - BoardScene.BORDER_SIZE * 2;
+        return get(path, size, size, true, true);
+    }
+
+    /**
+     * Get the background image of a board cell.
+     *
+     * @param path Path of the asset.
+     * @param size Inner size of the cell.
+     * @return The shared image.
+     */
+    public static Image getTile(String path, double size) {
+        return get(path, size, size, false, false);
+    }
+
+    /**
+     * Get the image of a piece as battle animations show it.
+     *
+     * @param path Path of the asset.
+     * @return The shared image.
+     */
+    public static Image getBattle(String path) {
+        return get(path, BATTLE_SIZE, BATTLE_SIZE, false, false);
+    }
+
+    /**
+     * Load every piece, tile and battle image at the sizes the game shows
+     * them at.
+     */
+    public static void preload() {
+        double tile = BoardScene.TILE_SIZE - BoardScene.BORDER_SIZE * 2;
+        for (String name : new String[] { "transparent.png", "grass.png", "water.jfif" })
+            getTile(asset(name), tile);
+        getPiece(asset("unknown.png"));
+        for (PieceType type : PieceType.values()) {
+            getPiece(asset(type));
+            getBattle(asset(type));
+        }
+    }
+
+    /**
+     * Get the number of images loaded.
+     *
+     * @return Number of distinct images in the cache.
+     */
+    public static int size() {
+        return IMAGES.size();
+    }
+}
@@ -0,0 +1,87 @@
+package view;
+
+import java.util.Locale;
+
+import controller.UiMetrics;
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+/**
+ * Shows the {@link UiMetrics} of a game over the board: the frame and pulse
+ * times, how long messages take from the socket to the screen and how many
+ * wait for the JavaFX thread.
+ *
+ * Frames are only timed while the overlay is shown, since timing them needs a
+ * pulse at every frame.
+ */
+class MetricsOverlay extends Label {
+
+    // Time between updates of the text, in nanoseconds
+    private static final long REFRESH = 250_000_000L;
+
+    private final UiMetrics metrics;
+    private long lastRefresh;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        /**
+         * Time the frame and show the counters a few times a second.
+         */
+        @Override
+        public void handle(long now) {
+            metrics.frame(now);
+            if (now - lastRefresh >= REFRESH) {
+                lastRefresh = now;
+                refresh();
+            }
+        }
+    };
+
+    /**
+     * Create a hidden overlay.
+     *
+     * @param metrics Counters to show.
+     */
+    MetricsOverlay(UiMetrics metrics) {
+        this.metrics = metrics;
+        setFont(Font.font("Monospaced", 12));
+        setTextFill(Color.WHITE);
+        setBackground(new Background(new BackgroundFill(Color.gray(0, 0.7), null, null)));
+        setPadding(new Insets(5));
+        setMouseTransparent(true);
+        setVisible(false);
+    }
+
+    /**
+     * Show the overlay if it is hidden, or hide it if it is shown.
+     */
+    void toggle() {
+        setVisible(!isVisible());
+        if (isVisible()) {
+            refresh();
+            timer.start();
+        } else {
+            timer.stop();
+            metrics.pauseFrames();
+        }
+    }
+
+    /**
+     * Show the current counters.
+     */
+    private void refresh() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "%-8s %6s %8s %8s", "ms", "count",
+                "mean", "max"));
+        for (UiMetrics.Stat stat : metrics.getStats()) {
+            text.append(String.format(Locale.ROOT, "%n%-8s %6d %8.2f %8.2f", stat.getName(), stat.getCount(),
+                    stat.getMean(), stat.getMax()));
+        }
+        text.append(String.format(Locale.ROOT, "%n%-8s %6d %8s %8d", "pending", metrics.getPending(), "",
+                metrics.getMaxPending()));
+        setText(text.toString());
+    }
+}
@@ -1,65 +1,47 @@
 package view;
 
-import java.io.File;
-
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
-import model.Loc;
+import model.GamePiece;
 import model.PieceType;
 
 /**
- * Represents a piece on the game board. Holds the piece's image, type, team,
- * location on the board, whether or not the piece has been revealed by the
- * enemy player, and the team of the active player. These values can be set and
- * retrieved by the provided methods.
+ * Represents a piece on the game board. Draws the image of a {@link GamePiece},
+ * which holds the piece's type, team, location on the board and whether or not
+ * the piece has been revealed by the enemy player, from the point of view of
+ * the active player's team.
  * 
  */
 public class Piece extends ImageView {
 
-    public static final boolean RED_TEAM = false;
-    public static final boolean BLUE_TEAM = true;
-
-    private Loc loc;
-    private boolean revealed;
+    public static final boolean RED_TEAM = GamePiece.RED_TEAM;
+    public static final boolean BLUE_TEAM = GamePiece.BLUE_TEAM;
 
-    private PieceType type;
-    private boolean team;
+    private GamePiece piece;
     private boolean viewTeam;
-    private boolean loadGfx;
-
-    public Piece(PieceType type, boolean team, boolean viewTeam) {
-        this.type = type;
-        this.team = team;
-        this.viewTeam = viewTeam;
-        this.loadGfx = true;
-        loadGraphic();
-    }
 
     /**
-     * For testing only. Constructor. Sets global variables.
-     * 
-     * @param type Type of Piece object.
+     * Constructor. Creates a new game piece and loads its graphic.
+     *
+     * @param type     Type of piece.
+     * @param team     False for red, true for blue.
+     * @param viewTeam Team of the player looking at the piece.
      */
-    public Piece(PieceType type) {
-        this.type = type;
-        this.team = false;
-        this.viewTeam = team;
-        this.loadGfx = false;
+    public Piece(PieceType type, boolean team, boolean viewTeam) {
+        this(new GamePiece(type, team), viewTeam);
     }
 
     /**
-     * For testing only. Constructor. Sets global variables.
-     * 
-     * @param type Type of piece object.
-     * @param team False for red, true for blue.
+     * Constructor. Shows an existing game piece.
+     *
+     * @param piece    Game piece to show.
+     * @param viewTeam Team of the player looking at the piece.
      */
-    public Piece(PieceType type, boolean team) {
-        this.type = type;
-        this.team = team;
-        this.viewTeam = team;
-        this.loadGfx = false;
+    public Piece(GamePiece piece, boolean viewTeam) {
+        this.piece = piece;
+        this.viewTeam = viewTeam;
+        loadGraphic();
     }
 
     /**
@@ -67,13 +49,14 @@ public class Piece extends ImageView {
      *
      * This class extends a Node for the graphic of the piece, which can be changed
      * to something else if the pieces use a different graphic (e.g. ImageView).
+     * The image is shared with every other piece of the same type through the
+     * {@link ImageCache}.
      */
     private void loadGraphic() {
-        double size = BoardScene.TILE_SIZE - BoardScene.BORDER_SIZE * 2;
-        String source = File.separator + "assets" + File.separator + type.name() + ".png";
-        if (!revealed && team != viewTeam)
-            source = File.separator + "assets" + File.separator + "unknown.png";
-        this.setImage(new Image(source, size, size, true, true));
+        String source = ImageCache.asset(getPieceType());
+        if (!piece.isRevealed() && piece.getTeam() != viewTeam)
+            source = ImageCache.asset("unknown.png");
+        this.setImage(ImageCache.getPiece(source));
     }
 
     /**
@@ -89,7 +72,7 @@ public class Piece extends ImageView {
      * @return Team's color.
      */
     public Paint getColor() {
-        if (team == RED_TEAM)
+        if (piece.getTeam() == RED_TEAM)
             return Color.DARKRED;
         return Color.DARKBLUE;
     }
@@ -99,7 +82,7 @@ public class Piece extends ImageView {
      * @return Piece's type.
      */
     public PieceType getPieceType() {
-        return type;
+        return piece.getPieceType();
     }
 
     /**
@@ -107,37 +90,25 @@ public class Piece extends ImageView {
      * @return Team.
      */
     public boolean getTeam() {
-        return team;
-    }
-
-    /**
-     * 
-     * @return Location.
-     */
-    public Loc getLocation() {
-        return loc;
+        return piece.getTeam();
     }
 
     /**
-     * Sets the global variable Location with the given parameter.
      * 
-     * @param loc Location.
+     * @return The game piece shown by this view.
      */
-    public void setLocation(Loc loc) {
-        this.loc = loc;
+    public GamePiece getGamePiece() {
+        return piece;
     }
 
     /**
-     * Sets the global variable to the parameter. Load graphic if the global
-     * variable is true.
+     * Sets whether the game piece is revealed and reloads the graphic.
      * 
      * @param revealed True if revealed
      */
     public void setRevealed(boolean revealed) {
-        this.revealed = revealed;
-        if (loadGfx) {
-            loadGraphic();
-        }
+        piece.setRevealed(revealed);
+        loadGraphic();
     }
 
     /**
@@ -145,14 +116,7 @@ public class Piece extends ImageView {
      */
     @Override
     public String toString() {
-        String color = "";
-        if (team) {
-            color = "BLUE";
-        } else {
-            color = "RED";
-        }
-
-        return type.name() + " " + color;
+        return piece.toString();
     }
 
 }
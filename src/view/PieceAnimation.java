@@ -1,13 +1,16 @@
 package view;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
+import javafx.animation.Animation;
 import javafx.animation.FadeTransition;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
+import javafx.animation.ParallelTransition;
+import javafx.animation.SequentialTransition;
 import javafx.animation.Timeline;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -21,435 +24,349 @@ import model.PieceType;
 /**
  * Class that deals with the Animation of the Pieces. Handles battle, bomb, tie,
  * and winner animations.
- * 
+ *
+ * Animations are queued and played one after another, so a battle that arrives
+ * while another is shown waits for its turn instead of cutting it off. Queuing
+ * returns at once, so the board is updated while the animations catch up. The
+ * nodes and timelines of each kind of animation are built once and only reset
+ * before they are played again.
+ *
+ * Animations are played faster while more than {@link #MAX_BACKLOG} are
+ * waiting, or always in fast forward mode. Clicking the animation skips it.
  */
 public class PieceAnimation extends Pane {
 
-    // String for the images.
-    private String winnerImageStr;
-    private String loserImageStr;
-
-    // ImageViews of common images.
-    private ImageView winnerImage;
-    private ImageView loserImage;
-    private ImageView explosion;
+    /**
+     * Rate that animations are played at when fast forwarding.
+     */
+    public static final double FAST_RATE = 4;
 
-    // Common Tranisitions/Timelines.
-    private FadeTransition fade;
-    private Timeline timeline;
+    /**
+     * Number of waiting animations above which they are fast forwarded.
+     */
+    public static final int MAX_BACKLOG = 2;
+
+    // Common nodes.
+    private final Rectangle black = new Rectangle(600, 600, Color.BLACK);
+    private final ImageView winnerImage = new ImageView();
+    private final ImageView loserImage = new ImageView();
+    private final ImageView explosion = new ImageView();
+    private final Rectangle win = new Rectangle(600, 600);
+    private final Label flag = new Label();
+
+    // Prebuilt animations.
+    private final Animation battle;
+    private final Animation tie;
+    private final Animation bomb;
+    private final Animation winner;
+
+    // Animations waiting to be played, and the one playing.
+    private final Deque<Runnable> queue = new ArrayDeque<>();
+    private Animation playing;
+    private boolean fastForward;
 
     /**
-     * Constructor.
+     * Constructor. Builds the animations.
      */
     public PieceAnimation() {
+        setVisible(false);
+        flag.setFont(new Font(50));
+        flag.setLayoutX(200);
+        flag.setLayoutY(250);
+        explosion.setX(240);
+        explosion.setY(250);
+
+        battle = buildBattle();
+        tie = buildTie();
+        bomb = buildBomb();
+        winner = buildWinner();
+        for (Animation animation : new Animation[] { battle, tie, bomb, winner })
+            animation.setOnFinished(event -> playNext());
+
+        setOnMouseClicked(event -> skip());
     }
 
     /**
-     * Takes in two pieces, get their images and creates an animation of the winner
+     * Takes in two pieces, get their images and queues an animation of the winner
      * battling the loser. The winner grows and hits the loser. Loser shakes and
      * falls down. Animation ends. If the winner is a bomb, then play the bomb
      * animation instead.
-     * 
+     *
      * @param winner Piece that won the battle.
      * @param loser  Piece that lost the battle.
      */
     public void battle(Piece winner, Piece loser) {
-
-        // Starts up animation.
-        reset();
-        begin(winner, loser);
-
-        // If winner is a bomb, play bomb animation. Else continue.
-        if (winner.getPieceType() == PieceType.BOMB) {
-            bombExplode();
+        PieceType winnerType = winner.getPieceType();
+        PieceType loserType = loser.getPieceType();
+        if (winnerType == PieceType.BOMB) {
+            schedule(() -> {
+                resetBlack();
+                place(loserImage, loserType, -200, 300);
+                explosion.setVisible(false);
+                getChildren().setAll(black, loserImage, explosion);
+                play(bomb);
+            });
         } else {
-
-            setImages();
-
-            // Event to be played after the descent. Enlarge winner.
-            EventHandler<ActionEvent> afterDescent = new EventHandler<ActionEvent>() {
-
-                private Timeline enlarge;
-
-                @Override
-                public void handle(ActionEvent t) {
-
-                    enlarge = new Timeline();
-                    enlarge.setCycleCount(1);
-                    enlarge.setAutoReverse(false);
-
-                    // Event to be played after the enlarge. Fight scene.
-                    EventHandler<ActionEvent> afterEnlarge = new EventHandler<ActionEvent>() {
-
-                        private Timeline fight;
-
-                        @Override
-                        public void handle(ActionEvent t) {
-
-                            fight = new Timeline();
-                            fight.setCycleCount(1);
-                            fight.setAutoReverse(false);
-
-                            // Event to be played after the fight. Loser dies.
-                            EventHandler<ActionEvent> afterFight = new EventHandler<ActionEvent>() {
-
-                                Timeline die;
-
-                                @Override
-                                public void handle(ActionEvent t) {
-
-                                    die = new Timeline();
-                                    die.setCycleCount(1);
-                                    die.setAutoReverse(false);
-
-                                    // Event to be played after the animation. Set visibility to false.
-                                    EventHandler<ActionEvent> closeAnimation = new EventHandler<ActionEvent>() {
-
-                                        @Override
-                                        public void handle(ActionEvent t) {
-
-                                            setVisible(false);
-
-                                        }
-
-                                    };
-
-                                    // Loser shakes and falls off screen.
-                                    die.getKeyFrames()
-                                            .addAll(new KeyFrame(Duration.millis(100),
-                                                    new KeyValue(loserImage.rotateProperty(), 25)),
-                                                    new KeyFrame(Duration.millis(300),
-                                                            new KeyValue(loserImage.rotateProperty(), -25)),
-                                                    new KeyFrame(Duration.millis(400),
-                                                            new KeyValue(loserImage.rotateProperty(), 25)),
-                                                    new KeyFrame(Duration.millis(700),
-                                                            new KeyValue(loserImage.rotateProperty(), -25)),
-                                                    new KeyFrame(Duration.millis(800),
-                                                            new KeyValue(loserImage.rotateProperty(), 25)),
-                                                    new KeyFrame(Duration.millis(1000),
-                                                            new KeyValue(loserImage.rotateProperty(), -25)),
-                                                    new KeyFrame(Duration.millis(1500), closeAnimation,
-                                                            new KeyValue(loserImage.yProperty(), 900)));
-
-                                    die.play();
-
-                                }
-
-                            };
-
-                            // Winner goes to loser and 'attacks'.
-                            fight.getKeyFrames().addAll(
-                                    new KeyFrame(Duration.millis(400), new KeyValue(winnerImage.xProperty(), 400)),
-                                    new KeyFrame(Duration.millis(600), new KeyValue(winnerImage.xProperty(), 100)),
-                                    new KeyFrame(Duration.millis(400), afterFight,
-                                            new KeyValue(winnerImage.scaleXProperty(), 1),
-                                            new KeyValue(winnerImage.scaleYProperty(), 1)));
-
-                            fight.play();
-
-                        }
-
-                    };
-
-                    // Enlarge the winner image.
-                    try {
-                        enlarge.getKeyFrames()
-                                .add(new KeyFrame(Duration.millis(500), afterEnlarge,
-                                        new KeyValue(winnerImage.scaleXProperty(), 1.5),
-                                        new KeyValue(winnerImage.scaleYProperty(), 1.5)));
-                    } catch (NullPointerException e) {
-                    }
-
-                    enlarge.play();
-
-                }
-            };
-
-            // Descend the images.
-            timeline.getKeyFrames().add(new KeyFrame(Duration.millis(2000), afterDescent,
-                    new KeyValue(winnerImage.xProperty(), 100), new KeyValue(loserImage.xProperty(), 400)));
-
-            // Add images to the Pane.
-            getChildren().addAll(winnerImage, loserImage);
-
+            schedule(() -> {
+                resetBlack();
+                place(winnerImage, winnerType, -400, 250);
+                place(loserImage, loserType, 900, 250);
+                getChildren().setAll(black, winnerImage, loserImage);
+                play(battle);
+            });
         }
-
     }
 
     /**
-     * Plays when two pieces tie. Both pieces enlarge and attack each other.
-     * Although they are labeled winner and loser, there is no winner and loser. It
-     * is used to determine difference of pieces. Animation ends.
-     * 
+     * Queues the animation of two pieces that tie. Both pieces enlarge and attack
+     * each other. Although they are labeled winner and loser, there is no winner
+     * and loser. It is used to determine difference of pieces. Animation ends.
+     *
      * @param winner Piece that won the battle.
      * @param loser  Piece that lost the battle.
      */
     public void tie(Piece winner, Piece loser) {
-
-        // Starts up animation,
-        reset();
-        begin(winner, loser);
-
-        setImages();
-
-        // Event that plays after the descent. Enlarge images.
-        EventHandler<ActionEvent> afterDescent = new EventHandler<ActionEvent>() {
-
-            private Timeline enlarge;
-
-            @Override
-            public void handle(ActionEvent t) {
-
-                enlarge = new Timeline();
-                enlarge.setCycleCount(1);
-                enlarge.setAutoReverse(false);
-
-                // Event that plays after the images enlarge. Fight.
-                EventHandler<ActionEvent> afterEnlarge = new EventHandler<ActionEvent>() {
-
-                    private Timeline fight;
-
-                    @Override
-                    public void handle(ActionEvent t) {
-
-                        fight = new Timeline();
-                        fight.setCycleCount(1);
-                        fight.setAutoReverse(false);
-
-                        // Event that plays after animation is done. Set visibility to false.
-                        EventHandler<ActionEvent> closeAnimation = new EventHandler<ActionEvent>() {
-
-                            @Override
-                            public void handle(ActionEvent t) {
-
-                                setVisible(false);
-
-                            }
-
-                        };
-
-                        // Fight animation for winner image.
-                        fight.getKeyFrames()
-                                .addAll(new KeyFrame(Duration.millis(400), new KeyValue(winnerImage.xProperty(), 250)),
-                                        new KeyFrame(Duration.millis(600), new KeyValue(winnerImage.xProperty(), 100)),
-                                        new KeyFrame(Duration.millis(1500),
-                                                new KeyValue(winnerImage.scaleXProperty(), 1),
-                                                new KeyValue(winnerImage.scaleYProperty(), 1)));
-
-                        // Fight animation for loser image.
-                        fight.getKeyFrames().addAll(
-                                new KeyFrame(Duration.millis(400), new KeyValue(loserImage.xProperty(), 250)),
-                                new KeyFrame(Duration.millis(600), new KeyValue(loserImage.xProperty(), 400)),
-                                new KeyFrame(Duration.millis(1500), closeAnimation,
-                                        new KeyValue(loserImage.scaleXProperty(), 1),
-                                        new KeyValue(loserImage.scaleYProperty(), 1)));
-
-                        fight.play();
-
-                    }
-
-                };
-
-                // Enlarge both images.
-                enlarge.getKeyFrames().addAll(
-                        new KeyFrame(Duration.millis(500), new KeyValue(winnerImage.scaleXProperty(), 1.5),
-                                new KeyValue(winnerImage.scaleYProperty(), 1.5)),
-                        new KeyFrame(Duration.millis(500), afterEnlarge, new KeyValue(loserImage.scaleXProperty(), 1.5),
-                                new KeyValue(loserImage.scaleYProperty(), 1.5)));
-
-                enlarge.play();
-
-            }
-
-        };
-
-        // Both images come onto screen.
-        timeline.getKeyFrames().add(new KeyFrame(Duration.millis(2000), afterDescent,
-                new KeyValue(winnerImage.xProperty(), 100), new KeyValue(loserImage.xProperty(), 400)));
-
-        // Add images to the Pane.
-        getChildren().addAll(winnerImage, loserImage);
-
+        PieceType winnerType = winner.getPieceType();
+        PieceType loserType = loser.getPieceType();
+        schedule(() -> {
+            resetBlack();
+            place(winnerImage, winnerType, -400, 250);
+            place(loserImage, loserType, 900, 250);
+            getChildren().setAll(black, winnerImage, loserImage);
+            play(tie);
+        });
     }
 
     /**
-     * Plays when the game is over. The color of the winner is faded on and a
-     * message enlarges onto screen.
-     * 
+     * Queues the animation of the game being over. The color of the winner is
+     * faded on and a message enlarges onto screen.
+     *
      * @param team Team that won the game.
      */
     public void winner(boolean team) {
-
-        reset();
-
-        Rectangle win;
-
-        // Color fade.
-        if (team == Piece.BLUE_TEAM) {
-            win = new Rectangle(600, 600, Color.BLUE);
-        } else {
-            win = new Rectangle(600, 600, Color.RED);
-        }
-
-        fade = new FadeTransition(Duration.millis(1500), win);
-        fade.setFromValue(0);
-        fade.setToValue(1);
-
-        // Winner label.
-        Label flag = new Label((team == Piece.RED_TEAM ? "Red " : "Blue ") + " wins!");
-        flag.setFont(new Font(50));
-        flag.setLayoutX(200);
-        flag.setLayoutY(250);
-
-        timeline = new Timeline();
-        timeline.setCycleCount(1);
-        timeline.setAutoReverse(false);
-
-        // Event to close the animation. Set visibility to false.
-        EventHandler<ActionEvent> closeAnimation = new EventHandler<ActionEvent>() {
-
-            @Override
-            public void handle(ActionEvent t) {
-
-                setVisible(false);
-
-            }
-
-        };
-
-        // Enlarges the label.
-        timeline.getKeyFrames().add(new KeyFrame(Duration.millis(4000), closeAnimation,
-                new KeyValue(flag.scaleXProperty(), 2), new KeyValue(flag.scaleYProperty(), 2)));
-
-        // Adds the background and label to the Pane.
-        getChildren().addAll(win, flag);
+        schedule(() -> {
+            win.setFill(team == Piece.BLUE_TEAM ? Color.BLUE : Color.RED);
+            win.setOpacity(0);
+            flag.setText((team == Piece.RED_TEAM ? "Red " : "Blue ") + " wins!");
+            flag.setScaleX(1);
+            flag.setScaleY(1);
+            getChildren().setAll(win, flag);
+            play(winner);
+        });
     }
 
     /**
-     * Plays the animation. Plays the fade and the timeline.
+     * Sets whether every animation is played faster.
+     *
+     * @param fastForward True to play animations at {@link #FAST_RATE}.
      */
-    public void playAnimation() {
-        fade.play();
-        timeline.play();
+    public void setFastForward(boolean fastForward) {
+        this.fastForward = fastForward;
+        updateRate();
     }
 
     /**
-     * Plays the bomb explosion animation. Loser image comes onto screen and then
-     * bomb gif plays on top. Animation ends.
+     * Checks whether every animation is played faster.
+     *
+     * @return True if animations are played at {@link #FAST_RATE}.
      */
-    private void bombExplode() {
-
-        // Sets the ImageView of the explosion gif.
-        explosion = new ImageView(
-                new Image(File.separator + "assets" + File.separator + "explosion.gif", 131, 162, false, false));
-        explosion.setX(240);
-        explosion.setY(250);
-        explosion.setVisible(false);
-
-        // Sets the ImageView of the loser image.
-        loserImage = new ImageView(new Image(loserImageStr, 100, 100, false, false));
-        loserImage.setX(-200);
-        loserImage.setY(300);
-
-        // Event that plays after the loser images arrives on screen. Gif is visible.
-        EventHandler<ActionEvent> afterArrival = new EventHandler<ActionEvent>() {
-
-            @Override
-            public void handle(ActionEvent event) {
-
-                Timeline gif = new Timeline();
-                gif.setCycleCount(1);
-                gif.setAutoReverse(false);
-
-                // Event that plays after the animation. Sets the visibility to false.
-                EventHandler<ActionEvent> closeAnimation = new EventHandler<ActionEvent>() {
-
-                    @Override
-                    public void handle(ActionEvent t) {
-
-                        setVisible(false);
-
-                    }
-
-                };
-
-                // Makes explosion visible.
-                explosion.setVisible(true);
-
-                gif.getKeyFrames().addAll(new KeyFrame(Duration.millis(1111), closeAnimation,
-                        new KeyValue(loserImage.opacityProperty(), 0)));
-
-                gif.play();
-
-            }
-
-        };
+    public boolean isFastForward() {
+        return fastForward;
+    }
 
-        timeline.getKeyFrames()
-                .add(new KeyFrame(Duration.millis(2000), afterArrival, new KeyValue(loserImage.xProperty(), 250)));
+    /**
+     * Skips the animation that is playing and goes on to the next one, if any.
+     */
+    public void skip() {
+        if (playing == null)
+            return;
+        playing.stop();
+        playNext();
+    }
 
-        // Adds the images to the Pane.
-        getChildren().addAll(loserImage, explosion);
+    /**
+     * Skips the animation that is playing and every one waiting.
+     */
+    public void skipAll() {
+        queue.clear();
+        skip();
+    }
 
+    /**
+     * Queues an animation and starts it if nothing is playing.
+     *
+     * @param setup Resets the nodes of the animation and plays it.
+     */
+    private void schedule(Runnable setup) {
+        queue.add(setup);
+        if (playing == null)
+            playNext();
+        else
+            updateRate();
     }
 
     /**
-     * Sets all the globals to null and removes all the children from the Pane.
-     * Ready for a new animation.
+     * Plays the next animation in the queue, or hides the pane if there is none.
      */
-    private void reset() {
+    private void playNext() {
+        Runnable next = queue.poll();
+        if (next == null) {
+            playing = null;
+            setVisible(false);
+            return;
+        }
+        setVisible(true);
+        next.run();
+    }
 
-        timeline = null;
-        fade = null;
-        winnerImageStr = null;
-        loserImageStr = null;
-        winnerImage = null;
-        loserImage = null;
+    /**
+     * Plays an animation from its start at the current rate.
+     *
+     * @param animation One of the prebuilt animations.
+     */
+    private void play(Animation animation) {
+        playing = animation;
+        updateRate();
+        animation.playFromStart();
+    }
 
-        getChildren().removeAll(getChildren());
+    /**
+     * Plays the current animation faster while animations are waiting or in fast
+     * forward mode.
+     */
+    private void updateRate() {
+        if (playing != null)
+            playing.setRate(fastForward || queue.size() > MAX_BACKLOG ? FAST_RATE : 1);
+    }
 
+    /**
+     * Hides the black background before it fades in.
+     */
+    private void resetBlack() {
+        black.setOpacity(0);
     }
 
     /**
-     * Creates the black fade, creates the timeline, and gets the image strings.
-     * 
-     * @param winner Piece that won the battle.
-     * @param loser  Piece that lost the battle.
+     * Resets an image view to show a piece at a position.
+     *
+     * @param view Image view to reset.
+     * @param type Type of the piece to show.
+     * @param x    X position.
+     * @param y    Y position.
      */
-    private void begin(Piece winner, Piece loser) {
+    private static void place(ImageView view, PieceType type, double x, double y) {
+        view.setImage(ImageCache.getBattle(ImageCache.asset(type)));
+        view.setX(x);
+        view.setY(y);
+        view.setScaleX(1);
+        view.setScaleY(1);
+        view.setRotate(0);
+        view.setOpacity(1);
+    }
 
-        // Black fade.
-        Rectangle black = new Rectangle(600, 600, Color.BLACK);
-        fade = new FadeTransition(Duration.millis(1500), black);
+    /**
+     * Creates the black fade and the images descending onto the screen, which
+     * battles and ties start with.
+     *
+     * @return The animation.
+     */
+    private Animation buildDescent() {
+        FadeTransition fade = new FadeTransition(Duration.millis(1500), black);
         fade.setFromValue(0);
         fade.setToValue(0.8);
-        getChildren().add(black);
-
-        timeline = new Timeline();
-        timeline.setCycleCount(1);
-        timeline.setAutoReverse(false);
-
-        if (winner != null) {
-            winnerImageStr = File.separator + "assets" + File.separator + winner.getPieceType().name() + ".png";
-        }
-
-        loserImageStr = File.separator + "assets" + File.separator + loser.getPieceType().name() + ".png";
+        Timeline descent = new Timeline(new KeyFrame(Duration.millis(2000),
+                new KeyValue(winnerImage.xProperty(), 100), new KeyValue(loserImage.xProperty(), 400)));
+        return new ParallelTransition(fade, descent);
+    }
 
+    /**
+     * Builds the battle animation. After the descent the winner enlarges, goes to
+     * the loser and 'attacks', and the loser shakes and falls off screen.
+     *
+     * @return The animation.
+     */
+    private Animation buildBattle() {
+        // Enlarge the winner image.
+        Timeline enlarge = new Timeline(new KeyFrame(Duration.millis(500),
+                new KeyValue(winnerImage.scaleXProperty(), 1.5), new KeyValue(winnerImage.scaleYProperty(), 1.5)));
+
+        // Winner goes to loser and 'attacks'.
+        Timeline fight = new Timeline(new KeyFrame(Duration.millis(400), new KeyValue(winnerImage.xProperty(), 400)),
+                new KeyFrame(Duration.millis(600), new KeyValue(winnerImage.xProperty(), 100)),
+                new KeyFrame(Duration.millis(400), new KeyValue(winnerImage.scaleXProperty(), 1),
+                        new KeyValue(winnerImage.scaleYProperty(), 1)));
+
+        // Loser shakes and falls off screen.
+        Timeline die = new Timeline(new KeyFrame(Duration.millis(100), new KeyValue(loserImage.rotateProperty(), 25)),
+                new KeyFrame(Duration.millis(300), new KeyValue(loserImage.rotateProperty(), -25)),
+                new KeyFrame(Duration.millis(400), new KeyValue(loserImage.rotateProperty(), 25)),
+                new KeyFrame(Duration.millis(700), new KeyValue(loserImage.rotateProperty(), -25)),
+                new KeyFrame(Duration.millis(800), new KeyValue(loserImage.rotateProperty(), 25)),
+                new KeyFrame(Duration.millis(1000), new KeyValue(loserImage.rotateProperty(), -25)),
+                new KeyFrame(Duration.millis(1500), new KeyValue(loserImage.yProperty(), 900)));
+
+        return new SequentialTransition(buildDescent(), enlarge, fight, die);
     }
 
     /**
-     * Sets the images with their image strings.
+     * Builds the tie animation. After the descent both images enlarge and attack
+     * each other.
+     *
+     * @return The animation.
      */
-    private void setImages() {
+    private Animation buildTie() {
+        // Enlarge both images.
+        Timeline enlarge = new Timeline(new KeyFrame(Duration.millis(500),
+                new KeyValue(winnerImage.scaleXProperty(), 1.5), new KeyValue(winnerImage.scaleYProperty(), 1.5),
+                new KeyValue(loserImage.scaleXProperty(), 1.5), new KeyValue(loserImage.scaleYProperty(), 1.5)));
+
+        // Both images go to the middle and back, shrinking.
+        Timeline fight = new Timeline(new KeyFrame(Duration.millis(400), new KeyValue(winnerImage.xProperty(), 250),
+                new KeyValue(loserImage.xProperty(), 250)),
+                new KeyFrame(Duration.millis(600), new KeyValue(winnerImage.xProperty(), 100),
+                        new KeyValue(loserImage.xProperty(), 400)),
+                new KeyFrame(Duration.millis(1500), new KeyValue(winnerImage.scaleXProperty(), 1),
+                        new KeyValue(winnerImage.scaleYProperty(), 1), new KeyValue(loserImage.scaleXProperty(), 1),
+                        new KeyValue(loserImage.scaleYProperty(), 1)));
+
+        return new SequentialTransition(buildDescent(), enlarge, fight);
+    }
 
-        winnerImage = new ImageView(new Image(winnerImageStr, 100, 100, false, false));
-        winnerImage.setX(-400);
-        winnerImage.setY(250);
+    /**
+     * Builds the bomb animation. The loser image comes onto screen and then the
+     * bomb gif plays on top while the loser fades away.
+     *
+     * @return The animation.
+     */
+    private Animation buildBomb() {
+        FadeTransition fade = new FadeTransition(Duration.millis(1500), black);
+        fade.setFromValue(0);
+        fade.setToValue(0.8);
+        Timeline arrival = new Timeline(
+                new KeyFrame(Duration.millis(2000), new KeyValue(loserImage.xProperty(), 250)));
 
-        loserImage = new ImageView(new Image(loserImageStr, 100, 100, false, false));
-        loserImage.setX(900);
-        loserImage.setY(250);
+        // The gif is loaded each time so that it starts from its first frame.
+        Timeline gif = new Timeline(new KeyFrame(Duration.ZERO, event -> {
+            explosion.setImage(
+                    new Image(File.separator + "assets" + File.separator + "explosion.gif", 131, 162, false, false));
+            explosion.setVisible(true);
+        }), new KeyFrame(Duration.millis(1111), new KeyValue(loserImage.opacityProperty(), 0)));
 
+        return new SequentialTransition(new ParallelTransition(fade, arrival), gif);
     }
 
+    /**
+     * Builds the game over animation. The color of the winner fades on while the
+     * message enlarges.
+     *
+     * @return The animation.
+     */
+    private Animation buildWinner() {
+        FadeTransition fade = new FadeTransition(Duration.millis(1500), win);
+        fade.setFromValue(0);
+        fade.setToValue(1);
+        Timeline enlarge = new Timeline(new KeyFrame(Duration.millis(4000), new KeyValue(flag.scaleXProperty(), 2),
+                new KeyValue(flag.scaleYProperty(), 2)));
+        return new ParallelTransition(fade, enlarge);
+    }
 }
@@ -1,12 +1,15 @@
 package view;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 import controller.StrategoController;
 import javafx.scene.control.Button;
+import model.GamePiece;
 import model.Loc;
+import model.Move;
+import model.MoveGenerator;
 
 /**
  * Button for autoplacing the pieces randomly.
@@ -33,13 +36,25 @@ public class PieceAutoPlace extends Button {
      *                   board will not be disturbed.
      */
     private void placePieces(StrategoController controller, boolean reset) {
-        List<Piece> pieceList = getPiecesShuffled(reset);
-        Set<Loc> moves = controller.getMoves(null, false);
-        for (Loc move : moves) {
-            if (!reset && controller.hasPiece(move))
-                continue;
-            controller.placePiece(pieceList.remove(0), move);
+        List<GamePiece> pieceList = getPiecesShuffled(reset);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = controller.getMoves(null, !reset, moves);
+        List<GamePiece> pieces = new ArrayList<>(count * 2);
+        List<Loc> locs = new ArrayList<>(count * 2);
+        // Clear the setup zone first so that every placement lands on an empty
+        // square, and send everything to the other player in one batch
+        for (int i = 0; i < count && reset; i++) {
+            int to = Move.to(moves[i]);
+            if (controller.hasPiece(to)) {
+                pieces.add(null);
+                locs.add(Loc.of(to));
+            }
         }
+        for (int i = 0; i < count; i++) {
+            pieces.add(pieceList.remove(pieceList.size() - 1));
+            locs.add(Loc.of(Move.to(moves[i])));
+        }
+        controller.placePieces(pieces, locs);
         bin.disableAll();
     }
 
@@ -51,10 +66,10 @@ public class PieceAutoPlace extends Button {
      *              shuffled list of the pieces that have yet to be placed.
      * @return Shuffled list of pieces.
      */
-    private List<Piece> getPiecesShuffled(boolean reset) {
+    private List<GamePiece> getPiecesShuffled(boolean reset) {
         if (reset)
             bin.resetPieces();
-        List<Piece> list = bin.remainingPieces();
+        List<GamePiece> list = bin.remainingPieces();
         Collections.shuffle(list);
         return list;
     }
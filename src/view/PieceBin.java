@@ -4,11 +4,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javafx.geometry.Pos;
-import javafx.scene.control.Label;
 import javafx.scene.layout.GridPane;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.scene.text.Font;
+import model.GamePiece;
 import model.PieceType;
 
 /**
@@ -45,26 +42,25 @@ public class PieceBin extends GridPane {
         cols = types.length / 2;
         pieces = new BoardCell[rows][cols];
         amounts = new int[rows][cols];
+        initCells();
         resetPieces();
     }
 
     /**
-     * Sets up the pieces inside a bin.
+     * Creates the cells of the bin, one per piece type. The cells are kept for
+     * the whole game and only their counts change.
      */
-    public void resetPieces() {
+    private void initCells() {
         PieceType[] types = PieceType.values();
-        getChildren().clear();
         int pieceNo = 0;
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
                 BoardCell cell = new BoardCell(BoardScene.BORDER_SIZE, BoardScene.TILE_SIZE);
                 cell.setPiece(new Piece(types[pieceNo], team, team));
                 pieces[i][j] = cell;
-                amounts[i][j] = types[pieceNo].getQuantity();
                 pieceNo++;
                 this.add(cell, j, i);
 
-                updateHighlight(i, j);
                 cell.setOnMouseClicked(event -> {
                     scene.selectPiece(null, cell);
                 });
@@ -77,20 +73,32 @@ public class PieceBin extends GridPane {
         }
     }
 
+    /**
+     * Sets up the pieces inside a bin.
+     */
+    public void resetPieces() {
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                amounts[i][j] = pieces[i][j].getPiece().getPieceType().getQuantity();
+                updateHighlight(i, j);
+            }
+        }
+    }
+
     /**
      * Goes through the pieces and sees which pieces still have amounts left.
      * Returns the list of pieces.
      * 
      * @return A list of the remaining pieces.
      */
-    public List<Piece> remainingPieces() {
-        List<Piece> pieces = new ArrayList<>();
+    public List<GamePiece> remainingPieces() {
+        List<GamePiece> pieces = new ArrayList<>();
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
                 PieceType type = this.pieces[i][j].getPiece().getPieceType();
                 int amount = amounts[i][j];
                 for (int c = 0; c < amount; c++) {
-                    pieces.add(new Piece(type, team, team));
+                    pieces.add(new GamePiece(type, team));
                 }
             }
         }
@@ -117,17 +125,8 @@ public class PieceBin extends GridPane {
      */
     private void updateHighlight(int row, int col) {
         int amount = amounts[row][col];
-        if (amount > 0) {
-            Label count = new Label("x" + amount);
-            count.setTextFill(Color.WHITE);
-            count.setFont(new Font(20));
-            pieces[row][col].setHighlight(count);
-            pieces[row][col].setDisable(false);
-        } else {
-            Rectangle darken = new Rectangle(BoardScene.TILE_SIZE, BoardScene.TILE_SIZE, Color.gray(0, 0.5));
-            pieces[row][col].setHighlight(darken);
-            pieces[row][col].setDisable(true);
-        }
+        pieces[row][col].setCount(amount);
+        pieces[row][col].setDisable(amount <= 0);
     }
 
     /**
@@ -150,13 +149,13 @@ public class PieceBin extends GridPane {
      * @param team Team.
      * @return Null if no more amount, Piece if there are amounts left.
      */
-    public Piece takePiece(BoardCell cell, boolean team) {
+    public GamePiece takePiece(BoardCell cell, boolean team) {
         int row = GridPane.getRowIndex(cell);
         int col = GridPane.getColumnIndex(cell);
         if (amounts[row][col] > 0) {
             amounts[row][col]--;
             updateHighlight(row, col);
-            return new Piece(cell.getPiece().getPieceType(), team, team);
+            return new GamePiece(cell.getPiece().getPieceType(), team);
         }
         return null;
     }
@@ -2,7 +2,9 @@ package view;
 
 import java.io.IOException;
 
+import ai.AIPlayer;
 import javafx.application.Application;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
 import network.NetworkSetupDialog;
 
@@ -13,11 +15,23 @@ public class StrategoView extends Application {
 
     private Stage stage;
 
+    // Computer player started from this window, if any
+    private AIPlayer computer;
+
+    // Whether boards are drawn on a canvas, chosen with --renderer=canvas
+    private boolean canvas;
+
     /**
-     * Start the GUI for game.
+     * Start the GUI for game. The game's images are decoded in the background
+     * while the main menu is shown.
      */
     @Override
     public void start(Stage primaryStage) {
+        Thread preload = new Thread(ImageCache::preload, "Stratego images");
+        preload.setDaemon(true);
+        preload.start();
+
+        canvas = "canvas".equals(getParameters().getNamed().get("renderer"));
         stage = primaryStage;
         stage.setTitle("Stratego");
 
@@ -26,16 +40,40 @@ public class StrategoView extends Application {
         stage.show();
     }
 
+    /**
+     * Disconnect the computer player, if any, when the application exits.
+     */
+    @Override
+    public void stop() {
+        if (computer != null)
+            computer.close();
+    }
+
     /**
      * Starts the game when the start game button is clicked. Shows a window
      * allowing player to choose server/client/host name/port number options.
+     *
+     * When the computer is chosen to play, it connects in the background and the
+     * main menu stays open, so a human can start the other side of the game from
+     * the same window or from another instance.
      */
     void startGame() {
         NetworkSetupDialog dialog = new NetworkSetupDialog();
         dialog.showAndWait().ifPresent(result -> {
+            if (!result.isHuman()) {
+                if (computer != null)
+                    computer.close();
+                computer = new AIPlayer(result.getTeam(), result.isServer(), result.getHost(), result.getPort());
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Computer Player");
+                alert.setContentText("The computer is playing " + (result.getTeam() ? "blue" : "red")
+                        + ". Start a game as " + (result.getTeam() ? "red" : "blue") + " to play against it.");
+                alert.showAndWait();
+                return;
+            }
             try {
-                BoardScene scene = new BoardScene(!result.isServer(), result.isServer(), result.getHost(),
-                        result.getPort());
+                BoardScene scene = new BoardScene(result.getTeam(), result.isServer(), result.getHost(),
+                        result.getPort(), canvas);
                 stage.setScene(scene);
                 stage.setOnCloseRequest(event -> scene.onClosed());
             } catch (IOException e) {